@@ -0,0 +1,148 @@
+package com.roc.netty.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.codec.MessageDecoder;
+import com.roc.netty.client.codec.MessageEncoder;
+import com.roc.netty.client.config.NettyConfig;
+import com.roc.netty.client.constant.Constants;
+import com.roc.netty.client.handler.ClientBusinessHandler;
+import com.roc.netty.client.handler.HeartbeatHandler;
+import com.roc.netty.client.netty.LatencyProbe;
+import com.roc.netty.client.trace.Tracer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端分发：服务端发来的帧经客户端管道（解码、心跳、业务处理器），有回复时直到回复帧编码完成
+ * 管道顺序与 NettyClient 一致，省去统计、压缩和空闲检测。基准测试的日志级别为WARN，INFO日志不计入。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientDispatchBenchmark {
+
+    private static final int PROBE_REPLY_LENGTH = 25;
+
+    private EmbeddedChannel client;
+    private ByteBuf heartbeat;
+    private ByteBuf probeReply;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        NettyConfig nettyConfig = new NettyConfig();
+        ClientBusinessHandler businessHandler = new ClientBusinessHandler(new ObjectMapper(), null, null, null, null,
+                new LatencyProbe(nettyConfig), new Tracer(nettyConfig));
+        client = new EmbeddedChannel(
+                new LengthFieldBasedFrameDecoder(Frames.MAX_FRAME_LENGTH, 0, 4, 0, 4),
+                new LengthFieldPrepender(4),
+                new MessageEncoder(),
+                new MessageDecoder(),
+                new HeartbeatHandler(),
+                businessHandler);
+        // 连接建立时发送的测试消息
+        client.releaseOutbound();
+
+        heartbeat = serverFrame(Constants.HEARTBEAT_REQUEST, new byte[0]);
+        ByteBuffer reply = ByteBuffer.allocate(PROBE_REPLY_LENGTH);
+        reply.putLong(1).putLong(System.nanoTime()).put((byte) 1).putLong(1000);
+        probeReply = serverFrame(Constants.LATENCY_PROBE_REPLY, reply.array());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        heartbeat.release();
+        probeReply.release();
+        client.finishAndReleaseAll();
+    }
+
+    /**
+     * 服务端的心跳请求，直接回复
+     */
+    @Benchmark
+    public void heartbeat(Blackhole bh) {
+        client.writeInbound(heartbeat.retainedDuplicate());
+        Frames.drainOutbound(client, bh);
+    }
+
+    /**
+     * 延迟探测回复，记录到直方图
+     */
+    @Benchmark
+    public void probeReply(Blackhole bh) {
+        client.writeInbound(probeReply.retainedDuplicate());
+        Frames.drainOutbound(client, bh);
+    }
+
+    /**
+     * 业务响应
+     */
+    @Benchmark
+    public void businessResponse(Response response, Blackhole bh) {
+        client.writeInbound(response.frame.retainedDuplicate());
+        Frames.drainOutbound(client, bh);
+    }
+
+    /**
+     * 按服务端的编码构造一帧
+     */
+    static ByteBuf serverFrame(byte type, byte[] content) {
+        com.roc.netty.server.protocol.MessageProtocol message = new com.roc.netty.server.protocol.MessageProtocol();
+        message.setType(type);
+        message.setLength(1 + content.length);
+        message.setContent(content);
+        EmbeddedChannel encoder = new EmbeddedChannel(new LengthFieldPrepender(4),
+                new com.roc.netty.server.codec.MessageEncoder());
+        try {
+            return Frames.encode(encoder, message);
+        } finally {
+            encoder.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * 业务响应帧，内容为 payloadSize 字节的文本
+     */
+    @State(Scope.Thread)
+    public static class Response {
+
+        @Param({"16", "1024", "16384"})
+        private int payloadSize;
+
+        private ByteBuf frame;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            byte[] content = new byte[payloadSize];
+            Arrays.fill(content, (byte) 'a');
+            frame = serverFrame(Constants.BUSINESS_MESSAGE_RESPONSE, content);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            frame.release();
+        }
+    }
+}
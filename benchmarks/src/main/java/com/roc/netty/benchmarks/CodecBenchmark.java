@@ -0,0 +1,117 @@
+package com.roc.netty.benchmarks;
+
+import com.roc.netty.client.codec.MessageEncoder;
+import com.roc.netty.client.constant.Constants;
+import com.roc.netty.client.protocol.MessageProtocol;
+import com.roc.netty.server.codec.FrameDecoder;
+import com.roc.netty.server.codec.MessageDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldPrepender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 帧编解码：客户端 LengthFieldPrepender + MessageEncoder 编码，服务端 FrameDecoder + MessageDecoder 解码
+ * 与 NettyClient/NettyServer 的管道顺序和长度字段参数一致，traced 为 true 时帧头带追踪上下文。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    // 以太网MSS，分段解码时每次写入的字节数
+    private static final int SEGMENT_SIZE = 1460;
+
+    @Param({"0", "256", "4096", "65536"})
+    private int payloadSize;
+
+    @Param({"false", "true"})
+    private boolean traced;
+
+    private EmbeddedChannel encoder;
+    private EmbeddedChannel decoder;
+    private MessageProtocol message;
+    private ByteBuf frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] content = new byte[payloadSize];
+        new Random(42).nextBytes(content);
+        message = new MessageProtocol();
+        message.setType(Constants.BUSINESS_MESSAGE_REQUEST);
+        message.setLength(1 + content.length);
+        message.setContent(content);
+        if (traced) {
+            message.setTrace(0x1234567890abcdefL, 0x0fedcba987654321L);
+        }
+
+        encoder = new EmbeddedChannel(new LengthFieldPrepender(4), new MessageEncoder());
+        decoder = new EmbeddedChannel(new FrameDecoder(Frames.MAX_FRAME_LENGTH, 0, 4, 0, 4), new MessageDecoder());
+
+        // 编码一次得到完整的帧，作为解码的输入
+        frame = Frames.encode(encoder, message);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        frame.release();
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void encode(Blackhole bh) {
+        encoder.writeOutbound(message);
+        Frames.drainOutbound(encoder, bh);
+    }
+
+    /**
+     * 一次写入完整的帧
+     */
+    @Benchmark
+    public Object decode() {
+        decoder.writeInbound(frame.retainedDuplicate());
+        return decoder.readInbound();
+    }
+
+    /**
+     * 按MSS分段写入，大帧需要多次累积才能解出
+     */
+    @Benchmark
+    public Object decodeSegmented() {
+        int length = frame.readableBytes();
+        for (int offset = 0; offset < length; offset += SEGMENT_SIZE) {
+            decoder.writeInbound(frame.retainedSlice(offset, Math.min(SEGMENT_SIZE, length - offset)));
+        }
+        return decoder.readInbound();
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        encoder.writeOutbound(message);
+        ByteBuf part;
+        while ((part = encoder.readOutbound()) != null) {
+            decoder.writeInbound(part);
+        }
+        return decoder.readInbound();
+    }
+}
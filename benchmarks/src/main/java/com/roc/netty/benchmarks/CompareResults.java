@@ -0,0 +1,91 @@
+package com.roc.netty.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 对比两次 JMH JSON 结果：按基准方法和参数匹配，输出分数变化
+ * 变化超出两次结果误差之和才算显著；指定了允许的退化百分比时，存在更大的显著退化则以状态码1退出。
+ * <p>
+ * 用法：java -cp benchmarks.jar com.roc.netty.benchmarks.CompareResults baseline.json current.json [maxRegressionPercent]
+ */
+public final class CompareResults {
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <current.json> [maxRegressionPercent]");
+            System.exit(2);
+        }
+        Map<String, JsonNode> baseline = load(args[0]);
+        Map<String, JsonNode> current = load(args[1]);
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : Double.NaN;
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode now = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", score(now), "new");
+                continue;
+            }
+            double change = (score(now) - score(before)) / score(before) * 100;
+            // 吞吐量越高越好，其余模式（平均时间、采样、单次）越低越好
+            double improvement = "thrpt".equals(now.path("mode").asText()) ? change : -change;
+            boolean significant = Math.abs(score(now) - score(before)) > error(now) + error(before);
+            String mark = !significant ? "" : improvement >= 0 ? " +" : " -";
+            System.out.printf("%-90s %14.3f %14.3f %8.1f%%%s%n", entry.getKey(), score(before), score(now), change, mark);
+            if (significant && -improvement > maxRegression) {
+                regressions++;
+            }
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf("%-90s %14.3f %14s %9s%n", name, score(baseline.get(name)), "-", "removed");
+            }
+        }
+        System.out.println("(+ / - : change exceeds the combined score error)");
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, maxRegression);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 读取结果，key为 基准方法:参数=值,...
+     */
+    private static Map<String, JsonNode> load(String file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(new File(file))) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace("com.roc.netty.benchmarks.", ""));
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            char separator = ':';
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(separator).append(param.getKey()).append('=').append(param.getValue().asText());
+                separator = ',';
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static double error(JsonNode result) {
+        double error = result.path("primaryMetric").path("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
@@ -0,0 +1,123 @@
+package com.roc.netty.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.server.codec.CompressionCodec;
+import com.roc.netty.server.service.FileService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 服务端上传解码，不含写盘
+ * 整文件上传为 FileService.processUploadedFile 的解析JSON、Base64解码和GZIP解压；
+ * 分块上传与 UploadSession 相同，按64KB分块写入 CompressionCodec 的流式解码器。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileDecodeBenchmark {
+
+    // 客户端 FileUploadStream 的分块大小
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Param({"65536", "1048576"})
+    private int fileSize;
+
+    private byte[] content;
+    private byte[] json;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        content = LogContent.generate(fileSize, 10);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(content);
+        }
+        Map<String, Object> fileInfo = new HashMap<>();
+        fileInfo.put("fileName", "application.log");
+        fileInfo.put("content", Base64.getEncoder().encodeToString(compressed.toByteArray()));
+        objectMapper = new ObjectMapper();
+        json = objectMapper.writeValueAsBytes(fileInfo);
+    }
+
+    /**
+     * 整文件上传
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public byte[] decodeJson() throws IOException {
+        return FileService.decodeContent(objectMapper.readValue(json, HashMap.class));
+    }
+
+    /**
+     * 分块上传
+     */
+    @Benchmark
+    public long decodeChunks(Encoded encoded) {
+        EmbeddedChannel inflater = new EmbeddedChannel(encoded.codec.newDecoder());
+        long decoded = 0;
+        for (int offset = 0; offset < encoded.data.length; offset += CHUNK_SIZE) {
+            inflater.writeInbound(Unpooled.wrappedBuffer(encoded.data, offset,
+                    Math.min(CHUNK_SIZE, encoded.data.length - offset)));
+            decoded += drain(inflater);
+        }
+        inflater.finish();
+        return decoded + drain(inflater);
+    }
+
+    private static long drain(EmbeddedChannel inflater) {
+        long decoded = 0;
+        ByteBuf buf;
+        while ((buf = inflater.readInbound()) != null) {
+            decoded += buf.readableBytes();
+            buf.release();
+        }
+        return decoded;
+    }
+
+    /**
+     * 按客户端编码的上传数据
+     */
+    @State(Scope.Thread)
+    public static class Encoded {
+
+        @Param({"GZIP", "SNAPPY"})
+        private CompressionCodec codec;
+
+        private byte[] data;
+
+        @Setup(Level.Trial)
+        public void setUp(FileDecodeBenchmark benchmark) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (OutputStream encoder = com.roc.netty.client.compress.CompressionCodec.valueOf(codec.name()).wrap(out)) {
+                encoder.write(benchmark.content);
+            }
+            data = out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.roc.netty.benchmarks;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 基准测试用的帧构造与读取
+ */
+final class Frames {
+
+    // NettyServer/NettyClient 中的长度字段参数
+    static final int MAX_FRAME_LENGTH = 100 * 1024 * 1024;
+
+    private Frames() {
+    }
+
+    /**
+     * 经编码管道写出一条消息，合并为一个完整的帧
+     */
+    static ByteBuf encode(EmbeddedChannel encoder, Object message) {
+        encoder.writeOutbound(message);
+        ByteBuf frame = Unpooled.directBuffer();
+        ByteBuf part;
+        while ((part = encoder.readOutbound()) != null) {
+            frame.writeBytes(part);
+            part.release();
+        }
+        return frame;
+    }
+
+    /**
+     * 读出并释放管道写出的所有缓冲
+     */
+    static void drainOutbound(EmbeddedChannel channel, Blackhole bh) {
+        ByteBuf part;
+        while ((part = channel.readOutbound()) != null) {
+            bh.consume(part.readableBytes());
+            part.release();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.roc.netty.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * 基准测试用的日志内容：sensitivePercent 的行含银行卡号，其余为普通业务日志
+ */
+final class LogContent {
+
+    private LogContent() {
+    }
+
+    /**
+     * 生成约 size 字节的日志，按整行截止
+     */
+    static byte[] generate(int size, int sensitivePercent) {
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 256);
+        for (int i = 0; out.size() < size; i++) {
+            String line = random.nextInt(100) < sensitivePercent
+                    ? String.format("2025-06-11 10:00:%02d.123 [http-nio-8081-exec-%d] INFO  c.r.n.c.s.PaymentService - "
+                    + "transfer to account 6222%011d amount %d%n", i % 60, i % 8, random.nextInt(Integer.MAX_VALUE), i)
+                    : String.format("2025-06-11 10:00:%02d.123 [netty-client-worker-1] INFO  c.r.n.c.h.ClientBusinessHandler - "
+                    + "客户端收到消息 - 类型: 4, 消息ID: %d, 长度: 57%n", i % 60, i);
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+}
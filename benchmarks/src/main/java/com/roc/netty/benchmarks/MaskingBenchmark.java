@@ -0,0 +1,125 @@
+package com.roc.netty.benchmarks;
+
+import com.roc.netty.client.desensitize.DesensitizeEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 脱敏：原正则路径 vs 单遍字节扫描引擎
+ * 输入为一批日志行，sensitivePercent 控制含银行卡号的行所占比例
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaskingBenchmark {
+
+    // netty-client application.yml 中的银行卡号正则
+    private static final String BANK_ACCOUNT_REGEX = "(?:^|[^0-9])([0-9]{4})([0-9]{4,11})([0-9]{4})(?:$|[^0-9])";
+    private static final int LINE_COUNT = 1000;
+
+    @Param({"0", "10", "100"})
+    private int sensitivePercent;
+
+    private String content;
+    private byte[][] lines;
+    private byte[][] work;
+    private Pattern pattern;
+    private Matcher matcher;
+    private DesensitizeEngine bankOnlyEngine;
+    private DesensitizeEngine allRulesEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        lines = new byte[LINE_COUNT][];
+        for (int i = 0; i < LINE_COUNT; i++) {
+            String line = random.nextInt(100) < sensitivePercent
+                    ? String.format("2025-06-11 10:00:%02d.123 [http-nio-8081-exec-%d] INFO  c.r.n.c.s.PaymentService - "
+                    + "transfer to account 6222%011d amount %d%n", i % 60, i % 8, random.nextInt(Integer.MAX_VALUE), i)
+                    : String.format("2025-06-11 10:00:%02d.123 [netty-client-worker-1] INFO  c.r.n.c.h.ClientBusinessHandler - "
+                    + "客户端收到消息 - 类型: 4, 消息ID: %d, 长度: 57%n", i % 60, i);
+            sb.append(line);
+            lines[i] = line.getBytes(StandardCharsets.UTF_8);
+        }
+        content = sb.toString();
+        work = new byte[LINE_COUNT][];
+        for (int i = 0; i < LINE_COUNT; i++) {
+            work[i] = new byte[lines[i].length];
+        }
+
+        pattern = Pattern.compile(BANK_ACCOUNT_REGEX);
+        matcher = pattern.matcher("");
+        bankOnlyEngine = DesensitizeEngine.builder().bankAccount(true).build();
+        allRulesEngine = DesensitizeEngine.builder()
+                .bankAccount(true)
+                .phone(true)
+                .nationalId(true)
+                .email(true)
+                .keywords(Arrays.asList("password=", "token="))
+                .build();
+    }
+
+    /**
+     * 最初的实现：整个文件解码为String后replaceAll，每次调用都重新编译正则
+     */
+    @Benchmark
+    public String regexWholeContent() {
+        return content.replaceAll(BANK_ACCOUNT_REGEX, "$1****$3");
+    }
+
+    /**
+     * 逐行解码 + 预编译Matcher
+     */
+    @Benchmark
+    public void regexPerLine(Blackhole bh) {
+        for (byte[] line : lines) {
+            matcher.reset(new String(line, StandardCharsets.UTF_8));
+            if (matcher.find()) {
+                bh.consume(matcher.replaceAll("$1****$3").getBytes(StandardCharsets.UTF_8));
+            } else {
+                bh.consume(line);
+            }
+        }
+    }
+
+    @Benchmark
+    public void scannerBankAccount(Blackhole bh) {
+        scan(bankOnlyEngine, bh);
+    }
+
+    @Benchmark
+    public void scannerAllRules(Blackhole bh) {
+        scan(allRulesEngine, bh);
+    }
+
+    private void scan(DesensitizeEngine engine, Blackhole bh) {
+        for (int i = 0; i < LINE_COUNT; i++) {
+            byte[] line = lines[i];
+            // 引擎原地改写，每次先复制原始行
+            System.arraycopy(line, 0, work[i], 0, line.length);
+            bh.consume(engine.mask(work[i], 0, line.length));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.roc.netty.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.server.codec.FrameDecoder;
+import com.roc.netty.server.codec.MessageDecoder;
+import com.roc.netty.server.codec.MessageEncoder;
+import com.roc.netty.server.config.TraceConfig;
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.handler.HeartbeatHandler;
+import com.roc.netty.server.handler.LatencyProbeHandler;
+import com.roc.netty.server.handler.ServerBusinessHandler;
+import com.roc.netty.server.service.ClientConnectionService;
+import com.roc.netty.server.service.LatencyProbeService;
+import com.roc.netty.server.trace.Tracer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldPrepender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端分发：客户端发来的帧经服务端管道（解码、心跳、延迟探测、业务处理器）直到回复帧编码完成
+ * 管道顺序与 NettyServer 一致，省去统计、压缩和空闲检测；业务处理器只接入这些消息用到的服务。
+ * 基准测试的日志级别为WARN，业务处理器的INFO日志不计入。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerDispatchBenchmark {
+
+    private static final int PROBE_LENGTH = 32;
+
+    private EmbeddedChannel server;
+    private ByteBuf heartbeat;
+    private ByteBuf probe;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ClientConnectionService connections = new ClientConnectionService();
+        ServerBusinessHandler businessHandler = new ServerBusinessHandler(connections, null, null, null, null,
+                new LatencyProbeService(connections), new Tracer(new TraceConfig()), new ObjectMapper());
+        server = new EmbeddedChannel(
+                new FrameDecoder(Frames.MAX_FRAME_LENGTH, 0, 4, 0, 4),
+                new LengthFieldPrepender(4),
+                new MessageEncoder(),
+                new MessageDecoder(),
+                new HeartbeatHandler(),
+                new LatencyProbeHandler(),
+                businessHandler);
+        // 连接建立时发送的欢迎消息
+        server.releaseOutbound();
+
+        heartbeat = clientFrame(Constants.HEARTBEAT_REQUEST, new byte[0]);
+        probe = clientFrame(Constants.LATENCY_PROBE, new byte[PROBE_LENGTH]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        heartbeat.release();
+        probe.release();
+        server.finishAndReleaseAll();
+    }
+
+    /**
+     * 心跳请求，IO线程中直接回复
+     */
+    @Benchmark
+    public void heartbeat(Blackhole bh) {
+        server.writeInbound(heartbeat.retainedDuplicate());
+        Frames.drainOutbound(server, bh);
+    }
+
+    /**
+     * 延迟探测，IO线程和业务处理器各回复一次
+     */
+    @Benchmark
+    public void latencyProbe(Blackhole bh) {
+        server.writeInbound(probe.retainedDuplicate());
+        Frames.drainOutbound(server, bh);
+    }
+
+    /**
+     * 业务请求，业务处理器构造并回复响应
+     */
+    @Benchmark
+    public void businessRequest(Request request, Blackhole bh) {
+        server.writeInbound(request.frame.retainedDuplicate());
+        Frames.drainOutbound(server, bh);
+    }
+
+    /**
+     * 按客户端的编码构造一帧
+     */
+    static ByteBuf clientFrame(byte type, byte[] content) {
+        com.roc.netty.client.protocol.MessageProtocol message = new com.roc.netty.client.protocol.MessageProtocol();
+        message.setType(type);
+        message.setLength(1 + content.length);
+        message.setContent(content);
+        EmbeddedChannel encoder = new EmbeddedChannel(new LengthFieldPrepender(4),
+                new com.roc.netty.client.codec.MessageEncoder());
+        try {
+            return Frames.encode(encoder, message);
+        } finally {
+            encoder.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * 业务请求帧，内容为 payloadSize 字节的文本
+     */
+    @State(Scope.Thread)
+    public static class Request {
+
+        @Param({"16", "1024", "16384"})
+        private int payloadSize;
+
+        private ByteBuf frame;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            byte[] content = new byte[payloadSize];
+            Arrays.fill(content, (byte) 'a');
+            frame = clientFrame(Constants.BUSINESS_MESSAGE_REQUEST, content);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            frame.release();
+        }
+    }
+}
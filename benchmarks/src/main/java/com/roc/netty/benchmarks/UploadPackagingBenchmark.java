@@ -0,0 +1,137 @@
+package com.roc.netty.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.compress.CompressionCodec;
+import com.roc.netty.client.desensitize.DesensitizeEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 上传打包：日志内容逐行脱敏后编码
+ * 分块上传与 LogFileServiceImpl 相同，逐行原地掩码后写入 CompressionCodec 的编码流；
+ * 整文件上传为 FileService.processUploadedFile 接收的格式：GZIP压缩、Base64编码后放入JSON。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadPackagingBenchmark {
+
+    @Param({"65536", "1048576"})
+    private int fileSize;
+
+    @Param({"10"})
+    private int sensitivePercent;
+
+    private byte[] content;
+    private byte[] work;
+    private DesensitizeEngine engine;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        content = LogContent.generate(fileSize, sensitivePercent);
+        work = new byte[content.length];
+        // netty-client application.yml 中的默认规则
+        engine = DesensitizeEngine.builder()
+                .bankAccount(true)
+                .phone(true)
+                .nationalId(true)
+                .email(true)
+                .keywords(Arrays.asList("password=", "token="))
+                .build();
+        objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * 分块上传：脱敏 + 流式编码
+     */
+    @Benchmark
+    public long maskAndEncode(Codec codec) throws IOException {
+        CountingOutputStream sink = new CountingOutputStream();
+        try (OutputStream out = codec.codec.wrap(sink)) {
+            maskLines(out);
+        }
+        return sink.count;
+    }
+
+    /**
+     * 整文件上传：脱敏 + GZIP + Base64 + JSON
+     */
+    @Benchmark
+    public byte[] maskAndPackageJson() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4);
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            maskLines(out);
+        }
+        Map<String, Object> fileInfo = new HashMap<>();
+        fileInfo.put("fileName", "application.log");
+        fileInfo.put("content", Base64.getEncoder().encodeToString(compressed.toByteArray()));
+        return objectMapper.writeValueAsBytes(fileInfo);
+    }
+
+    private void maskLines(OutputStream out) throws IOException {
+        // 引擎原地改写，每次先复制原始内容
+        System.arraycopy(content, 0, work, 0, content.length);
+        int lineStart = 0;
+        for (int i = 0; i < work.length; i++) {
+            if (work[i] == '\n') {
+                int length = engine.mask(work, lineStart, i + 1 - lineStart);
+                out.write(work, lineStart, length);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < work.length) {
+            out.write(work, lineStart, engine.mask(work, lineStart, work.length - lineStart));
+        }
+    }
+
+    /**
+     * 分块上传的编码
+     */
+    @State(Scope.Thread)
+    public static class Codec {
+
+        @Param({"STORE", "GZIP_FAST", "GZIP", "SNAPPY"})
+        private CompressionCodec codec;
+    }
+
+    /**
+     * 只计数的输出，代替 FileUploadStream
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.roc.netty.loadgen;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * 压测工具：模拟大量客户端连接 netty-server，按设定速率发送心跳、业务消息和文件上传
+ * 配置文件为 loadgen.yml，避免与 netty-client 的 application.yml 冲突；退出码非0表示压测期间有错误。
+ */
+@SpringBootApplication
+public class LoadGeneratorApplication {
+
+    public static void main(String[] args) {
+        System.exit(SpringApplication.exit(new SpringApplicationBuilder(LoadGeneratorApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.config.name=loadgen")
+                .run(args)));
+    }
+}
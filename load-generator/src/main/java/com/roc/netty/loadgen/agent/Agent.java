@@ -0,0 +1,302 @@
+package com.roc.netty.loadgen.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.constant.Constants;
+import com.roc.netty.client.protocol.MessageProtocol;
+import com.roc.netty.loadgen.config.LoadConfig;
+import com.roc.netty.loadgen.metrics.LoadMetrics;
+import com.roc.netty.loadgen.metrics.Operation;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个模拟客户端：一条连接，按固定速率发送心跳、业务消息和文件上传
+ * 每种请求按计划时间表发送：第n个请求的计划时间为 起始相位 + n * 间隔，IO线程繁忙或定时器延后时补发所有已到期的请求，
+ * 延迟从计划时间算起，这样服务端变慢导致的发送推迟也计入延迟，不会因为少发请求而低估（协调遗漏校正）。
+ * 响应按发送顺序匹配（服务端对同一连接按序处理）；所有状态只在连接的IO线程中访问。
+ */
+@Slf4j
+public class Agent extends SimpleChannelInboundHandler<MessageProtocol> {
+
+    private static final String UPLOAD_FILE_NAME = "loadgen.log";
+
+    private final LoadConfig config;
+    private final LoadMetrics metrics;
+    private final Payloads payloads;
+    private final ObjectMapper objectMapper;
+    @Getter
+    private final String clientId;
+
+    // 按 HEARTBEAT、MESSAGE、UPLOAD 排列
+    private final Operation[] operations = {Operation.HEARTBEAT, Operation.MESSAGE, Operation.UPLOAD};
+    private final long[] intervals = new long[operations.length];
+    private final long[] next = new long[operations.length];
+    private final TimestampQueue heartbeats = new TimestampQueue();
+    private final TimestampQueue messages = new TimestampQueue();
+    // 队首为进行中的上传（已申报时），其余等待前一个完成
+    private final TimestampQueue uploads = new TimestampQueue();
+
+    private Channel channel;
+    private boolean uploading;
+    private int transferId;
+    private volatile boolean stopped;
+
+    public Agent(int index, LoadConfig config, LoadMetrics metrics, Payloads payloads, ObjectMapper objectMapper) {
+        this.config = config;
+        this.metrics = metrics;
+        this.payloads = payloads;
+        this.objectMapper = objectMapper;
+        this.clientId = String.format("loadgen-%05d", index);
+        double[] rates = {config.getHeartbeatRate(), config.getMessageRate(), config.getUploadRate()};
+        for (int i = 0; i < operations.length; i++) {
+            intervals[i] = rates[i] > 0 ? (long) (1_000_000_000L / rates[i]) : 0;
+        }
+    }
+
+    /**
+     * 停止按计划发送新请求，已发出和排队中的上传继续完成
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        channel = ctx.channel();
+        metrics.connectionOpened();
+        // 随机相位，避免所有客户端在同一时刻发送
+        long now = System.nanoTime();
+        for (int i = 0; i < operations.length; i++) {
+            if (intervals[i] > 0) {
+                next[i] = now + ThreadLocalRandom.current().nextLong(intervals[i]);
+            }
+        }
+        schedule(now);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        metrics.connectionClosed(stopped);
+        // 连接断开时未完成的请求都计为失败
+        fail(Operation.HEARTBEAT, heartbeats, "connection closed");
+        fail(Operation.MESSAGE, messages, "connection closed");
+        fail(Operation.UPLOAD, uploads, "connection closed");
+        uploading = false;
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.debug("Agent {} connection error: {}", clientId, cause.getMessage());
+        ctx.close();
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, MessageProtocol msg) {
+        long now = System.nanoTime();
+        switch (msg.getType()) {
+            case Constants.HEARTBEAT_RESPONSE:
+                complete(Operation.HEARTBEAT, heartbeats, now);
+                break;
+            case Constants.BUSINESS_MESSAGE_RESPONSE:
+                complete(Operation.MESSAGE, messages, now);
+                break;
+            case Constants.HEARTBEAT_REQUEST:
+                // 服务端空闲检测的心跳，照常回复
+                ctx.writeAndFlush(frame(Constants.HEARTBEAT_RESPONSE, new byte[0]));
+                break;
+            case Constants.UPLOAD_GRANT:
+                onGrant(msg.getContent());
+                break;
+            case Constants.FILE_SEND_TO_SERVER_RESPONSE:
+                if (uploading) {
+                    complete(Operation.UPLOAD, uploads, now);
+                    uploading = false;
+                    startUpload();
+                }
+                break;
+            case Constants.FILE_SEND_TO_CLIENT_RESPONSE:
+                // 服务端处理上传出错时回复该类型
+                if (uploading) {
+                    metrics.error(Operation.UPLOAD, "server error");
+                    uploads.remove();
+                    uploading = false;
+                    startUpload();
+                }
+                break;
+            default:
+                // 欢迎消息、压缩字典等与压测无关
+                break;
+        }
+    }
+
+    /**
+     * 发送所有已到期的请求，然后按最早的下次计划时间重新调度
+     */
+    private void tick() {
+        if (stopped || !channel.isActive()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < operations.length; i++) {
+            if (intervals[i] == 0) {
+                continue;
+            }
+            while (next[i] <= now) {
+                fire(operations[i], next[i], now);
+                next[i] += intervals[i];
+            }
+        }
+        channel.flush();
+        schedule(System.nanoTime());
+    }
+
+    private void schedule(long now) {
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < operations.length; i++) {
+            if (intervals[i] > 0) {
+                earliest = Math.min(earliest, next[i]);
+            }
+        }
+        if (earliest != Long.MAX_VALUE) {
+            channel.eventLoop().schedule(this::tick, Math.max(0, earliest - now), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void fire(Operation operation, long intended, long now) {
+        TimestampQueue queue = queue(operation);
+        if (queue.size() >= config.getMaxOutstanding()) {
+            metrics.overloaded(operation);
+            return;
+        }
+        metrics.sent(operation);
+        switch (operation) {
+            case HEARTBEAT:
+                channel.write(frame(Constants.HEARTBEAT_REQUEST, new byte[0]));
+                queue.add(intended, now);
+                break;
+            case MESSAGE:
+                channel.write(frame(Constants.BUSINESS_MESSAGE_REQUEST, payloads.getMessage()));
+                queue.add(intended, now);
+                break;
+            case UPLOAD:
+                // 每个客户端同时只有一个上传，其余排队，排队时间计入校正延迟
+                queue.add(intended, now);
+                if (!uploading) {
+                    startUpload();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+    }
+
+    /**
+     * 申报队首的上传，收到授予后再发送数据
+     */
+    private void startUpload() {
+        if (uploads.isEmpty() || !channel.isActive()) {
+            return;
+        }
+        uploading = true;
+        transferId++;
+        uploads.setSent(System.nanoTime());
+        Map<String, Object> announce = new HashMap<>();
+        announce.put("transferId", transferId);
+        announce.put("fileName", UPLOAD_FILE_NAME);
+        announce.put("size", payloads.getUploadOriginalSize());
+        announce.put("clientId", clientId);
+        channel.writeAndFlush(frame(Constants.UPLOAD_ANNOUNCE, json(announce)));
+    }
+
+    private void onGrant(byte[] content) {
+        int granted;
+        try {
+            granted = objectMapper.readTree(content).path("transferId").asInt();
+        } catch (IOException e) {
+            metrics.error(Operation.UPLOAD, "invalid grant");
+            return;
+        }
+        if (!uploading || granted != transferId) {
+            return;
+        }
+        Map<String, Object> header = new HashMap<>();
+        header.put("transferId", transferId);
+        header.put("fileName", UPLOAD_FILE_NAME);
+        header.put("beCompressed", payloads.isUploadCompressed());
+        header.put("codec", config.getUploadCodec());
+        header.put("clientId", clientId);
+        header.put("binary", false);
+        header.put("manifest", false);
+        channel.write(frame(Constants.FILE_UPLOAD_BEGIN, json(header)));
+
+        for (byte[] data : payloads.getUploadChunks()) {
+            byte[] chunk = new byte[4 + data.length];
+            ByteBuffer.wrap(chunk).putInt(transferId);
+            System.arraycopy(data, 0, chunk, 4, data.length);
+            channel.write(frame(Constants.FILE_UPLOAD_CHUNK, chunk));
+        }
+
+        Map<String, Object> trailer = new HashMap<>();
+        trailer.put("transferId", transferId);
+        trailer.put("originalSize", payloads.getUploadOriginalSize());
+        trailer.put("compressedSize", payloads.getUploadCompressedSize());
+        channel.writeAndFlush(frame(Constants.FILE_UPLOAD_END, json(trailer)));
+    }
+
+    private void complete(Operation operation, TimestampQueue queue, long now) {
+        if (queue.isEmpty()) {
+            log.debug("Agent {} unexpected {} response", clientId, operation);
+            return;
+        }
+        metrics.completed(operation, now - queue.peekIntended(), now - queue.peekSent());
+        queue.remove();
+    }
+
+    private void fail(Operation operation, TimestampQueue queue, String cause) {
+        while (!queue.isEmpty()) {
+            metrics.error(operation, cause);
+            queue.remove();
+        }
+    }
+
+    private TimestampQueue queue(Operation operation) {
+        switch (operation) {
+            case HEARTBEAT:
+                return heartbeats;
+            case MESSAGE:
+                return messages;
+            case UPLOAD:
+                return uploads;
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+    }
+
+    private byte[] json(Map<String, Object> value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageProtocol frame(byte type, byte[] content) {
+        MessageProtocol message = new MessageProtocol();
+        message.setType(type);
+        message.setLength(1 + content.length);
+        message.setContent(content);
+        return message;
+    }
+}
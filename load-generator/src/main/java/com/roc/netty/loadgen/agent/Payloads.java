@@ -0,0 +1,82 @@
+package com.roc.netty.loadgen.agent;
+
+import com.roc.netty.loadgen.config.LoadConfig;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 压测发送的内容，启动时生成一次，所有模拟客户端共用
+ * 上传内容按配置的编码预先压缩并切成数据块，发送时只需复制并写入传输ID。
+ */
+@Getter
+public class Payloads {
+
+    /**
+     * 上传数据块中数据部分的最大长度，与客户端的分块大小一致
+     */
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final String[] LEVELS = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+
+    private final byte[] message;
+    private final long uploadOriginalSize;
+    private final long uploadCompressedSize;
+    /**
+     * 各数据块的数据部分，不含传输ID
+     */
+    private final byte[][] uploadChunks;
+    private final boolean uploadCompressed;
+
+    public Payloads(LoadConfig config) {
+        Random random = new Random(42);
+        message = new byte[config.getMessageSize()];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) (' ' + random.nextInt(95));
+        }
+
+        byte[] original = logContent(config.getUploadSize(), random);
+        uploadOriginalSize = original.length;
+        uploadCompressed = "GZIP".equals(config.getUploadCodec());
+        byte[] encoded = uploadCompressed ? gzip(original) : original;
+        uploadCompressedSize = encoded.length;
+        int chunks = Math.max(1, (encoded.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        uploadChunks = new byte[chunks][];
+        for (int i = 0; i < chunks; i++) {
+            uploadChunks[i] = Arrays.copyOfRange(encoded, i * CHUNK_SIZE, Math.min(encoded.length, (i + 1) * CHUNK_SIZE));
+        }
+    }
+
+    /**
+     * 生成指定大小的日志文本，行格式与常见应用日志相近，压缩率也相近
+     */
+    private static byte[] logContent(int size, Random random) {
+        StringBuilder out = new StringBuilder(size + 256);
+        long timestamp = 1_700_000_000_000L;
+        while (out.length() < size) {
+            timestamp += random.nextInt(50);
+            out.append(timestamp).append(" [worker-").append(random.nextInt(16)).append("] ")
+                    .append(LEVELS[random.nextInt(LEVELS.length)]).append(" c.r.n.service.OrderService - order ")
+                    .append(random.nextInt(1_000_000)).append(" processed in ").append(random.nextInt(500))
+                    .append(" ms, user=").append(Long.toHexString(random.nextLong())).append('\n');
+        }
+        out.setLength(size);
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
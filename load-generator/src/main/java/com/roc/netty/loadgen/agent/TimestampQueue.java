@@ -0,0 +1,75 @@
+package com.roc.netty.loadgen.agent;
+
+/**
+ * 未完成请求的时间戳队列：计划发送时间与实际发送时间成对存放，按发送顺序出队
+ * 只在连接的IO线程中访问，不加锁；容量不足时翻倍。
+ */
+class TimestampQueue {
+
+    private long[] intended = new long[16];
+    private long[] sent = new long[16];
+    private int head;
+    private int size;
+
+    void add(long intendedNanos, long sentNanos) {
+        if (size == intended.length) {
+            grow();
+        }
+        int tail = (head + size) & (intended.length - 1);
+        intended[tail] = intendedNanos;
+        sent[tail] = sentNanos;
+        size++;
+    }
+
+    /**
+     * 队首的计划发送时间，须在 isEmpty 为false时调用
+     */
+    long peekIntended() {
+        return intended[head];
+    }
+
+    /**
+     * 队首的实际发送时间，须在 isEmpty 为false时调用
+     */
+    long peekSent() {
+        return sent[head];
+    }
+
+    /**
+     * 修改队首的实际发送时间
+     */
+    void setSent(long sentNanos) {
+        sent[head] = sentNanos;
+    }
+
+    void remove() {
+        head = (head + 1) & (intended.length - 1);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        long[] newIntended = new long[intended.length * 2];
+        long[] newSent = new long[sent.length * 2];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) & (intended.length - 1);
+            newIntended[i] = intended[index];
+            newSent[i] = sent[index];
+        }
+        intended = newIntended;
+        sent = newSent;
+        head = 0;
+    }
+}
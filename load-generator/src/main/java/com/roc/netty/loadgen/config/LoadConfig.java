@@ -0,0 +1,84 @@
+package com.roc.netty.loadgen.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Pattern;
+
+/**
+ * 压测配置，速率均为每个模拟客户端的速率
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "load", ignoreUnknownFields = false)
+public class LoadConfig {
+
+    @NotBlank
+    private String host = "127.0.0.1";  // 服务器地址
+
+    @Min(1)
+    @Max(65535)
+    private int port = 8888;  // 服务器端口
+
+    @Min(1)
+    private int agents = 1000;  // 模拟客户端数
+
+    private String localAddresses = "";  // 连接轮流绑定的本地地址，逗号分隔，为空时使用 127.0.0.1 起的 localAddressCount 个地址
+
+    @Min(1)
+    @Max(254)
+    private int localAddressCount = 1;  // 本地地址个数，每个地址约有2.8万个临时端口
+
+    @Min(0)
+    private int threads = 0;  // IO线程数，0为CPU核数的2倍
+
+    private boolean epoll = true;  // 是否在 Linux 上使用 epoll 传输
+
+    @Min(1)
+    private int connectRate = 500;  // 每秒建立的连接数
+
+    @Min(100)
+    private int connectTimeoutMillis = 5000;  // 连接超时(毫秒)
+
+    @Min(0)
+    private int warmupSeconds = 10;  // 全部连接后预热的时间(秒)，不计入结果
+
+    @Min(1)
+    private int durationSeconds = 60;  // 计入结果的压测时间(秒)
+
+    @Min(0)
+    private int drainSeconds = 10;  // 停止发送后等待未完成请求的最长时间(秒)
+
+    @Min(1)
+    private int reportIntervalSeconds = 5;  // 进度输出间隔(秒)
+
+    @DecimalMin("0")
+    private double heartbeatRate = 0.1;  // 每个客户端每秒的心跳数
+
+    @DecimalMin("0")
+    private double messageRate = 1;  // 每个客户端每秒的业务消息数
+
+    @Min(0)
+    private int messageSize = 256;  // 业务消息内容大小(字节)
+
+    @DecimalMin("0")
+    private double uploadRate = 0.01;  // 每个客户端每秒的文件上传数
+
+    @Min(1)
+    private int uploadSize = 256 * 1024;  // 上传文件压缩前的大小(字节)
+
+    @Pattern(regexp = "STORE|GZIP")
+    private String uploadCodec = "GZIP";  // 上传编码：STORE 或 GZIP
+
+    @Min(1)
+    private int maxOutstanding = 1000;  // 每个客户端每种请求最多未完成的个数，超过时不再发送，计为过载
+
+    private String output = "";  // 结果写入的JSON文件，为空不写
+}
@@ -0,0 +1,215 @@
+package com.roc.netty.loadgen.metrics;
+
+import com.roc.netty.client.metrics.LatencyHistogram;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测计数与延迟直方图
+ * 每个IO线程写入自己的记录器，读取时合并为快照，两次快照相减得到一段时间内的结果。
+ * 延迟按两种口径记录：校正延迟从计划发送时间算起，发送被推迟（客户端IO线程繁忙、发送缓冲积压）的时间也计入，
+ * 避免协调遗漏（coordinated omission）低估服务端变慢时的延迟；未校正延迟从实际发送时间算起，只反映服务端处理与网络。
+ */
+@Component
+public class LoadMetrics {
+
+    private static final int OPERATIONS = Operation.values().length;
+    private static final int SENT = 0;
+    private static final int COMPLETED = 1;
+    private static final int ERRORS = 2;
+    private static final int OVERLOADED = 3;
+    private static final int COUNTERS = 4;
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+    private final FastThreadLocal<Recorder> recorder = new FastThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            Recorder created = new Recorder();
+            recorders.add(created);
+            return created;
+        }
+    };
+
+    private final AtomicInteger connected = new AtomicInteger();
+    private final LongAdder disconnects = new LongAdder();
+    private final Map<String, LongAdder> errorCauses = new ConcurrentHashMap<>();
+
+    /**
+     * 发出一个请求
+     */
+    public void sent(Operation operation) {
+        recorder.get().increment(operation, SENT);
+    }
+
+    /**
+     * 收到响应
+     *
+     * @param correctedNanos   从计划发送时间到收到响应
+     * @param uncorrectedNanos 从实际发送时间到收到响应
+     */
+    public void completed(Operation operation, long correctedNanos, long uncorrectedNanos) {
+        Recorder current = recorder.get();
+        current.increment(operation, COMPLETED);
+        current.corrected[operation.ordinal()].record(correctedNanos);
+        current.uncorrected[operation.ordinal()].record(uncorrectedNanos);
+    }
+
+    /**
+     * 请求失败
+     */
+    public void error(Operation operation, String cause) {
+        recorder.get().increment(operation, ERRORS);
+        errorCauses.computeIfAbsent(operation + ": " + cause, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * 未完成的请求过多，本次不发送
+     */
+    public void overloaded(Operation operation) {
+        recorder.get().increment(operation, OVERLOADED);
+    }
+
+    public void connectionOpened() {
+        connected.incrementAndGet();
+    }
+
+    public void connectionClosed(boolean expected) {
+        connected.decrementAndGet();
+        if (!expected) {
+            disconnects.increment();
+        }
+    }
+
+    public int getConnected() {
+        return connected.get();
+    }
+
+    public long getDisconnects() {
+        return disconnects.sum();
+    }
+
+    /**
+     * 各错误原因的次数
+     */
+    public Map<String, Long> getErrorCauses() {
+        Map<String, Long> causes = new TreeMap<>();
+        errorCauses.forEach((cause, count) -> causes.put(cause, count.sum()));
+        return causes;
+    }
+
+    /**
+     * 合并各线程的计数与直方图
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(System.nanoTime());
+        for (Recorder each : recorders) {
+            for (int i = 0; i < snapshot.counters.length; i++) {
+                snapshot.counters[i] += each.counters.get(i);
+            }
+            for (int op = 0; op < OPERATIONS; op++) {
+                each.corrected[op].addTo(snapshot.corrected[op]);
+                each.uncorrected[op].addTo(snapshot.uncorrected[op]);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 某一时刻的累计结果
+     */
+    public static class Snapshot {
+        private final long nanos;
+        private final long[] counters = new long[OPERATIONS * COUNTERS];
+        private final long[][] corrected = new long[OPERATIONS][LatencyHistogram.BUCKETS];
+        private final long[][] uncorrected = new long[OPERATIONS][LatencyHistogram.BUCKETS];
+
+        private Snapshot(long nanos) {
+            this.nanos = nanos;
+        }
+
+        /**
+         * 从 earlier 到本快照之间的结果
+         */
+        public Snapshot since(Snapshot earlier) {
+            Snapshot delta = new Snapshot(nanos - earlier.nanos);
+            for (int i = 0; i < counters.length; i++) {
+                delta.counters[i] = counters[i] - earlier.counters[i];
+            }
+            for (int op = 0; op < OPERATIONS; op++) {
+                for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                    delta.corrected[op][i] = corrected[op][i] - earlier.corrected[op][i];
+                    delta.uncorrected[op][i] = uncorrected[op][i] - earlier.uncorrected[op][i];
+                }
+            }
+            return delta;
+        }
+
+        /**
+         * 由 since 得到时为时间段长度，否则为快照时刻
+         */
+        public double seconds() {
+            return nanos / 1e9;
+        }
+
+        public long sent(Operation operation) {
+            return counters[operation.ordinal() * COUNTERS + SENT];
+        }
+
+        public long completed(Operation operation) {
+            return counters[operation.ordinal() * COUNTERS + COMPLETED];
+        }
+
+        public long errors(Operation operation) {
+            return counters[operation.ordinal() * COUNTERS + ERRORS];
+        }
+
+        public long overloaded(Operation operation) {
+            return counters[operation.ordinal() * COUNTERS + OVERLOADED];
+        }
+
+        /**
+         * 校正延迟的分位数(毫秒)
+         */
+        public double correctedMillis(Operation operation, double quantile) {
+            return LatencyHistogram.valueAtQuantile(corrected[operation.ordinal()], quantile) / 1e6;
+        }
+
+        /**
+         * 未校正延迟的分位数(毫秒)
+         */
+        public double uncorrectedMillis(Operation operation, double quantile) {
+            return LatencyHistogram.valueAtQuantile(uncorrected[operation.ordinal()], quantile) / 1e6;
+        }
+    }
+
+    /**
+     * 单个线程的计数器与直方图
+     */
+    private static class Recorder {
+        private final AtomicLongArray counters = new AtomicLongArray(OPERATIONS * COUNTERS);
+        private final LatencyHistogram[] corrected = new LatencyHistogram[OPERATIONS];
+        private final LatencyHistogram[] uncorrected = new LatencyHistogram[OPERATIONS];
+
+        Recorder() {
+            for (int op = 0; op < OPERATIONS; op++) {
+                corrected[op] = new LatencyHistogram();
+                uncorrected[op] = new LatencyHistogram();
+            }
+        }
+
+        void increment(Operation operation, int counter) {
+            int index = operation.ordinal() * COUNTERS + counter;
+            // 只有本线程写入，lazySet 即可
+            counters.lazySet(index, counters.get(index) + 1);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.roc.netty.loadgen.metrics;
+
+/**
+ * 压测的操作类型
+ */
+public enum Operation {
+
+    /**
+     * 建立连接，从发起连接到连接建立
+     */
+    CONNECT,
+
+    /**
+     * 心跳请求到心跳响应
+     */
+    HEARTBEAT,
+
+    /**
+     * 业务消息到业务响应
+     */
+    MESSAGE,
+
+    /**
+     * 上传申报到服务端回复文件已保存，包含等待上传名额的时间
+     */
+    UPLOAD
+}
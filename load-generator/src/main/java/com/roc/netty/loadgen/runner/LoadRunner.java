@@ -0,0 +1,352 @@
+package com.roc.netty.loadgen.runner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.roc.netty.client.codec.MessageDecoder;
+import com.roc.netty.client.codec.MessageEncoder;
+import com.roc.netty.loadgen.agent.Agent;
+import com.roc.netty.loadgen.agent.Payloads;
+import com.roc.netty.loadgen.config.LoadConfig;
+import com.roc.netty.loadgen.metrics.LoadMetrics;
+import com.roc.netty.loadgen.metrics.Operation;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测流程：按速率建立连接 -> 预热 -> 计时压测 -> 停止发送并等待未完成的请求 -> 输出结果
+ * 只有计时压测期间发出的请求计入结果（两次快照之差），进度按输出间隔打印。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoadRunner implements CommandLineRunner, ExitCodeGenerator {
+
+    private static final int MAX_FRAME_LENGTH = 100 * 1024 * 1024;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999", "max"};
+    // 按操作输出的顺序
+    private static final Operation[] REQUESTS = {Operation.HEARTBEAT, Operation.MESSAGE, Operation.UPLOAD};
+
+    private final LoadConfig config;
+    private final LoadMetrics metrics;
+    private final ObjectMapper objectMapper;
+
+    private int exitCode;
+
+    @Override
+    public void run(String... args) throws Exception {
+        checkFileDescriptors();
+        Payloads payloads = new Payloads(config);
+        List<InetSocketAddress> localAddresses = localAddresses();
+        boolean epoll = config.isEpoll() && Epoll.isAvailable();
+        int threads = config.getThreads() > 0 ? config.getThreads() : Runtime.getRuntime().availableProcessors() * 2;
+        EventLoopGroup group = epoll ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+        log.info("Load test against {}:{} - agents: {}, local addresses: {}, threads: {}, transport: {}",
+                config.getHost(), config.getPort(), config.getAgents(), localAddresses.size(), threads,
+                epoll ? "epoll" : "nio");
+        log.info("Per agent rates - heartbeat: {}/s, message: {}/s ({} bytes), upload: {}/s ({} bytes, {} {} bytes)",
+                config.getHeartbeatRate(), config.getMessageRate(), config.getMessageSize(), config.getUploadRate(),
+                payloads.getUploadOriginalSize(), config.getUploadCodec(), payloads.getUploadCompressedSize());
+
+        List<Agent> agents = new ArrayList<>(config.getAgents());
+        List<Channel> channels = new ArrayList<>(config.getAgents());
+        try {
+            Bootstrap bootstrap = new Bootstrap()
+                    .group(group)
+                    .channel(epoll ? EpollSocketChannel.class : NioSocketChannel.class)
+                    .option(ChannelOption.TCP_NODELAY, true)
+                    .option(ChannelOption.SO_KEEPALIVE, true)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis());
+            LoadMetrics.Snapshot initial = metrics.snapshot();
+            connect(bootstrap, payloads, localAddresses, agents, channels);
+
+            LoadMetrics.Snapshot last = metrics.snapshot();
+            if (config.getWarmupSeconds() > 0) {
+                log.info("Warming up for {} seconds", config.getWarmupSeconds());
+                last = progress("warmup", last, TimeUnit.SECONDS.toNanos(config.getWarmupSeconds()));
+            }
+
+            log.info("Measuring for {} seconds", config.getDurationSeconds());
+            LoadMetrics.Snapshot baseline = last;
+            last = progress("measure", last, TimeUnit.SECONDS.toNanos(config.getDurationSeconds()));
+            LoadMetrics.Snapshot measured = last.since(baseline);
+
+            for (Agent agent : agents) {
+                agent.stop();
+            }
+            drain(initial);
+            LoadMetrics.Snapshot total = metrics.snapshot().since(initial);
+
+            Map<String, Object> report = report(measured, total);
+            print(report);
+            if (!config.getOutput().isEmpty()) {
+                objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(new File(config.getOutput()), report);
+                log.info("Report written to {}", config.getOutput());
+            }
+            exitCode = hasErrors(total) ? 1 : 0;
+        } finally {
+            for (Channel channel : channels) {
+                channel.close();
+            }
+            group.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * 按连接速率建立所有连接，连接延迟与失败计入CONNECT
+     */
+    private void connect(Bootstrap bootstrap, Payloads payloads, List<InetSocketAddress> localAddresses,
+                         List<Agent> agents, List<Channel> channels) throws InterruptedException {
+        InetSocketAddress remote = new InetSocketAddress(config.getHost(), config.getPort());
+        CountDownLatch done = new CountDownLatch(config.getAgents());
+        long interval = 1_000_000_000L / config.getConnectRate();
+        long begin = System.nanoTime();
+        long lastReport = begin;
+        for (int i = 0; i < config.getAgents(); i++) {
+            long intended = begin + i * interval;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            Agent agent = new Agent(i, config, metrics, payloads, objectMapper);
+            agents.add(agent);
+            long sent = System.nanoTime();
+            metrics.sent(Operation.CONNECT);
+            ChannelFuture future = bootstrap.clone()
+                    .handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline()
+                                    .addLast(new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, 4, 0, 4))
+                                    .addLast(new LengthFieldPrepender(4))
+                                    .addLast(new MessageEncoder())
+                                    .addLast(new MessageDecoder())
+                                    .addLast(agent);
+                        }
+                    })
+                    .connect(remote, localAddresses.get(i % localAddresses.size()));
+            channels.add(future.channel());
+            future.addListener(f -> {
+                long now = System.nanoTime();
+                if (f.isSuccess()) {
+                    metrics.completed(Operation.CONNECT, now - intended, now - sent);
+                } else {
+                    metrics.error(Operation.CONNECT, String.valueOf(f.cause() != null ? f.cause().getMessage() : "failed"));
+                }
+                done.countDown();
+            });
+            if (System.nanoTime() - lastReport >= TimeUnit.SECONDS.toNanos(config.getReportIntervalSeconds())) {
+                lastReport = System.nanoTime();
+                log.info("Connecting - started: {}, connected: {}", i + 1, metrics.getConnected());
+            }
+        }
+        done.await(config.getConnectTimeoutMillis() + 1000L, TimeUnit.MILLISECONDS);
+        LoadMetrics.Snapshot snapshot = metrics.snapshot();
+        log.info("Connected {} of {} agents in {} ms, errors: {}, connect p99: {} ms", snapshot.completed(Operation.CONNECT),
+                config.getAgents(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin),
+                snapshot.errors(Operation.CONNECT), snapshot.correctedMillis(Operation.CONNECT, 0.99));
+    }
+
+    /**
+     * 等待一段时间，按输出间隔打印该间隔内的吞吐与延迟，返回结束时的快照
+     */
+    private LoadMetrics.Snapshot progress(String phase, LoadMetrics.Snapshot last, long nanos) throws InterruptedException {
+        long end = System.nanoTime() + nanos;
+        long interval = TimeUnit.SECONDS.toNanos(config.getReportIntervalSeconds());
+        while (true) {
+            long wait = Math.min(interval, end - System.nanoTime());
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            LoadMetrics.Snapshot current = metrics.snapshot();
+            LoadMetrics.Snapshot delta = current.since(last);
+            StringBuilder line = new StringBuilder(phase).append(" - connected: ").append(metrics.getConnected());
+            for (Operation operation : REQUESTS) {
+                line.append(String.format(" | %s %.0f/s p50 %.2f ms p99 %.2f ms err %d ovl %d",
+                        operation.name().toLowerCase(), delta.completed(operation) / delta.seconds(),
+                        delta.correctedMillis(operation, 0.5), delta.correctedMillis(operation, 0.99),
+                        delta.errors(operation), delta.overloaded(operation)));
+            }
+            log.info(line.toString());
+            last = current;
+            if (end - System.nanoTime() <= 0) {
+                return last;
+            }
+        }
+    }
+
+    /**
+     * 停止发送后等待未完成的请求，最多 drainSeconds 秒
+     */
+    private void drain(LoadMetrics.Snapshot initial) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getDrainSeconds());
+        long outstanding = outstanding(metrics.snapshot().since(initial));
+        while (outstanding > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(100);
+            outstanding = outstanding(metrics.snapshot().since(initial));
+        }
+        log.info("Drained, unanswered requests: {}", outstanding);
+    }
+
+    private static long outstanding(LoadMetrics.Snapshot snapshot) {
+        long outstanding = 0;
+        for (Operation operation : REQUESTS) {
+            outstanding += unanswered(snapshot, operation);
+        }
+        return outstanding;
+    }
+
+    private static long unanswered(LoadMetrics.Snapshot snapshot, Operation operation) {
+        return Math.max(0, snapshot.sent(operation) - snapshot.completed(operation) - snapshot.errors(operation));
+    }
+
+    private static boolean hasErrors(LoadMetrics.Snapshot total) {
+        for (Operation operation : Operation.values()) {
+            if (total.errors(operation) > 0) {
+                return true;
+            }
+        }
+        return outstanding(total) > 0;
+    }
+
+    /**
+     * 结果：计时压测期间各操作的计数、吞吐与延迟分位数，连接与未应答数按全程统计
+     */
+    private Map<String, Object> report(LoadMetrics.Snapshot measured, LoadMetrics.Snapshot total) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("host", config.getHost());
+        settings.put("port", config.getPort());
+        settings.put("agents", config.getAgents());
+        settings.put("durationSeconds", config.getDurationSeconds());
+        settings.put("heartbeatRate", config.getHeartbeatRate());
+        settings.put("messageRate", config.getMessageRate());
+        settings.put("messageSize", config.getMessageSize());
+        settings.put("uploadRate", config.getUploadRate());
+        settings.put("uploadSize", config.getUploadSize());
+        settings.put("uploadCodec", config.getUploadCodec());
+        report.put("settings", settings);
+        report.put("measuredSeconds", measured.seconds());
+        report.put("connected", metrics.getConnected());
+        report.put("disconnects", metrics.getDisconnects());
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        operations.put(Operation.CONNECT.name().toLowerCase(), operation(total, Operation.CONNECT, total));
+        for (Operation operation : REQUESTS) {
+            operations.put(operation.name().toLowerCase(), operation(measured, operation, total));
+        }
+        report.put("operations", operations);
+        report.put("errors", metrics.getErrorCauses());
+        return report;
+    }
+
+    private static Map<String, Object> operation(LoadMetrics.Snapshot window, Operation operation, LoadMetrics.Snapshot total) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("sent", window.sent(operation));
+        result.put("completed", window.completed(operation));
+        result.put("errors", window.errors(operation));
+        result.put("overloaded", window.overloaded(operation));
+        result.put("unanswered", unanswered(total, operation));
+        result.put("throughput", window.seconds() > 0 ? window.completed(operation) / window.seconds() : 0);
+        Map<String, Object> corrected = new LinkedHashMap<>();
+        Map<String, Object> uncorrected = new LinkedHashMap<>();
+        for (int i = 0; i < QUANTILES.length; i++) {
+            corrected.put(QUANTILE_NAMES[i] + "Millis", window.correctedMillis(operation, QUANTILES[i]));
+            uncorrected.put(QUANTILE_NAMES[i] + "Millis", window.uncorrectedMillis(operation, QUANTILES[i]));
+        }
+        result.put("latency", corrected);
+        result.put("uncorrectedLatency", uncorrected);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void print(Map<String, Object> report) {
+        StringBuilder out = new StringBuilder("\n");
+        out.append(String.format("%-10s %10s %10s %8s %8s %10s %10s %9s %9s %9s %9s %9s | %9s %9s%n",
+                "operation", "sent", "completed", "errors", "overload", "unanswered", "ops/s",
+                "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "raw p50", "raw p99"));
+        Map<String, Object> operations = (Map<String, Object>) report.get("operations");
+        for (Map.Entry<String, Object> entry : operations.entrySet()) {
+            Map<String, Object> op = (Map<String, Object>) entry.getValue();
+            Map<String, Object> latency = (Map<String, Object>) op.get("latency");
+            Map<String, Object> raw = (Map<String, Object>) op.get("uncorrectedLatency");
+            out.append(String.format("%-10s %10d %10d %8d %8d %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f | %9.2f %9.2f%n",
+                    entry.getKey(), op.get("sent"), op.get("completed"), op.get("errors"), op.get("overloaded"),
+                    op.get("unanswered"), op.get("throughput"), latency.get("p50Millis"), latency.get("p90Millis"),
+                    latency.get("p99Millis"), latency.get("p999Millis"), latency.get("maxMillis"),
+                    raw.get("p50Millis"), raw.get("p99Millis")));
+        }
+        Map<String, Long> errors = (Map<String, Long>) report.get("errors");
+        errors.forEach((cause, count) -> out.append("error ").append(cause).append(": ").append(count).append('\n'));
+        log.info("Result over {} seconds, connected: {}, disconnects: {}{}", String.format("%.1f", report.get("measuredSeconds")),
+                report.get("connected"), report.get("disconnects"), out);
+    }
+
+    /**
+     * 连接轮流绑定的本地地址（端口0由系统分配），多个回环地址可突破单地址约2.8万临时端口的限制
+     */
+    private List<InetSocketAddress> localAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        if (!config.getLocalAddresses().trim().isEmpty()) {
+            for (String address : config.getLocalAddresses().split(",")) {
+                if (!address.trim().isEmpty()) {
+                    addresses.add(new InetSocketAddress(address.trim(), 0));
+                }
+            }
+        } else {
+            for (int i = 1; i <= config.getLocalAddressCount(); i++) {
+                addresses.add(new InetSocketAddress("127.0.0." + i, 0));
+            }
+        }
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("No local address configured");
+        }
+        return addresses;
+    }
+
+    /**
+     * 文件描述符上限不足时提示，每个连接占用一个
+     */
+    private void checkFileDescriptors() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            long limit = ((com.sun.management.UnixOperatingSystemMXBean) os).getMaxFileDescriptorCount();
+            if (limit < config.getAgents() + 100L) {
+                log.warn("Open file limit {} is too low for {} agents, raise it with ulimit -n", limit, config.getAgents());
+            }
+        }
+    }
+}
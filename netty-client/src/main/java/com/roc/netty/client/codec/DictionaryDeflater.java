@@ -0,0 +1,83 @@
+package com.roc.netty.client.codec;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于预置字典的raw Deflate压缩
+ * 每个连接一个实例，只在所属EventLoop中使用；小消息单独压缩几乎没有收益，
+ * 预置字典让压缩器从第一个字节起就能引用样本中的常见片段
+ */
+public class DictionaryDeflater {
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    private final Inflater inflater = new Inflater(true);
+    private final int maxLength;
+    private byte[] buffer = new byte[1024];
+
+    /**
+     * @param maxLength 解压后允许的最大长度
+     */
+    public DictionaryDeflater(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * 压缩消息内容，压缩后不小于原文时返回null
+     */
+    public byte[] deflate(byte[] data, byte[] dictionary) {
+        deflater.reset();
+        deflater.setDictionary(dictionary);
+        deflater.setInput(data);
+        deflater.finish();
+        ensureCapacity(data.length);
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length >= data.length) {
+                return null;
+            }
+            length += deflater.deflate(buffer, length, data.length - length);
+        }
+        return length < data.length ? Arrays.copyOf(buffer, length) : null;
+    }
+
+    /**
+     * 解压消息内容
+     */
+    public byte[] inflate(byte[] data, byte[] dictionary) throws DataFormatException {
+        inflater.reset();
+        inflater.setDictionary(dictionary);
+        inflater.setInput(data);
+        int length = 0;
+        while (!inflater.finished()) {
+            if (length == buffer.length) {
+                if (buffer.length >= maxLength) {
+                    throw new DataFormatException("Inflated message exceeds " + maxLength + " bytes");
+                }
+                buffer = Arrays.copyOf(buffer, Math.min(maxLength, buffer.length * 2));
+            }
+            int n = inflater.inflate(buffer, length, buffer.length - length);
+            if (n == 0 && inflater.needsInput()) {
+                throw new DataFormatException("Truncated compressed message");
+            }
+            length += n;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * 释放本地内存，连接关闭时调用
+     */
+    public void end() {
+        deflater.end();
+        inflater.end();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = new byte[capacity];
+        }
+    }
+}
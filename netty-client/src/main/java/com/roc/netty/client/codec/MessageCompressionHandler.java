@@ -0,0 +1,112 @@
+package com.roc.netty.client.codec;
+
+import com.roc.netty.client.constant.Constants;
+import com.roc.netty.client.protocol.MessageProtocol;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.MessageToMessageCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 业务消息预置字典压缩，每个连接一个实例
+ * 收到服务端下发的字典后回复确认，之后发出的业务消息用最新字典压缩；
+ * 保留最近几个版本的字典，用于解压服务端按已确认旧版本压缩的消息。
+ */
+@Slf4j
+public class MessageCompressionHandler extends MessageToMessageCodec<MessageProtocol, MessageProtocol> {
+
+    private static final int MAX_MESSAGE_LENGTH = 100 * 1024 * 1024;
+    private static final int MAX_VERSIONS = 4;
+
+    private final int minSize;
+    private final DictionaryDeflater deflater = new DictionaryDeflater(MAX_MESSAGE_LENGTH);
+    private final Map<Short, byte[]> dictionaries = new LinkedHashMap<Short, byte[]>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Short, byte[]> eldest) {
+            return size() > MAX_VERSIONS;
+        }
+    };
+    // 当前使用的字典版本，0表示尚未收到字典
+    private short currentVersion;
+
+    public MessageCompressionHandler(int minSize) {
+        this.minSize = minSize;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        deflater.end();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, MessageProtocol msg, List<Object> out) {
+        if (currentVersion != 0 && isBusiness(msg.getType())
+                && msg.getContent() != null && msg.getContent().length >= minSize) {
+            byte[] compressed = deflater.deflate(msg.getContent(), dictionaries.get(currentVersion));
+            if (compressed != null) {
+                MessageProtocol message = new MessageProtocol();
+                message.setType(msg.getType());
+                message.setMsgId(msg.getMsgId());
+                message.setFlags((byte) (Constants.FLAG_DICT_COMPRESSED | (msg.getFlags() & Constants.FLAG_TRACED)));
+                message.setDictVersion(currentVersion);
+                message.setTraceId(msg.getTraceId());
+                message.setSpanId(msg.getSpanId());
+                message.setContent(compressed);
+                message.setLength(1 + message.extensionLength() + compressed.length);
+                out.add(message);
+                return;
+            }
+        }
+        out.add(msg);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, MessageProtocol msg, List<Object> out) throws Exception {
+        if (msg.getType() == Constants.DICTIONARY) {
+            acceptDictionary(ctx, msg.getContent());
+            return;
+        }
+        if ((msg.getFlags() & Constants.FLAG_DICT_COMPRESSED) != 0) {
+            byte[] dictionary = dictionaries.get(msg.getDictVersion());
+            if (dictionary == null) {
+                throw new DecoderException("Unknown message dictionary version: " + msg.getDictVersion());
+            }
+            byte[] content = deflater.inflate(msg.getContent(), dictionary);
+            msg.setFlags((byte) (msg.getFlags() & ~Constants.FLAG_DICT_COMPRESSED));
+            msg.setDictVersion((short) 0);
+            msg.setContent(content);
+            msg.setLength(1 + msg.extensionLength() + content.length);
+        }
+        out.add(msg);
+    }
+
+    /**
+     * 保存服务端下发的字典并回复确认，确认发出后才开始用新字典压缩
+     */
+    private void acceptDictionary(ChannelHandlerContext ctx, byte[] content) {
+        if (content == null || content.length < 2) {
+            log.warn("Invalid message dictionary, length: {}", content == null ? 0 : content.length);
+            return;
+        }
+        short version = (short) (((content[0] & 0xFF) << 8) | (content[1] & 0xFF));
+        dictionaries.put(version, Arrays.copyOfRange(content, 2, content.length));
+
+        MessageProtocol ack = new MessageProtocol();
+        ack.setType(Constants.DICTIONARY_ACK);
+        ack.setLength(1 + 2);
+        ack.setContent(new byte[]{content[0], content[1]});
+        ctx.writeAndFlush(ack);
+        currentVersion = version;
+        log.info("Message dictionary version {} received, size: {} bytes", version, content.length - 2);
+    }
+
+    private static boolean isBusiness(byte type) {
+        return type == Constants.BUSINESS_MESSAGE_REQUEST || type == Constants.BUSINESS_MESSAGE_RESPONSE;
+    }
+}
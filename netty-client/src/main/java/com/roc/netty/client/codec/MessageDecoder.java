@@ -1,5 +1,6 @@
 package com.roc.netty.client.codec;
 
+import com.roc.netty.client.constant.Constants;
 import com.roc.netty.client.protocol.MessageProtocol;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -41,10 +42,30 @@ public class MessageDecoder extends ByteToMessageDecoder {
         try {
             // 读取消息类型
             byte type = in.readByte();
+            int headerLength = 1;
+            byte flags = 0;
+            short dictVersion = 0;
+            long traceId = 0;
+            long spanId = 0;
+            if ((type & Constants.TYPE_EXTENDED) != 0) {
+                // 扩展头：标志 + 可选的字典版本 + 可选的追踪上下文
+                type = (byte) (type & ~Constants.TYPE_EXTENDED);
+                flags = in.readByte();
+                headerLength++;
+                if ((flags & Constants.FLAG_DICT_COMPRESSED) != 0) {
+                    dictVersion = in.readShort();
+                    headerLength += 2;
+                }
+                if ((flags & Constants.FLAG_TRACED) != 0) {
+                    traceId = in.readLong();
+                    spanId = in.readLong();
+                    headerLength += 16;
+                }
+            }
             
             // 读取消息内容
             byte[] content = null;
-            int contentLength = length - 1; // 减去类型字段的1个字节
+            int contentLength = length - headerLength; // 减去类型字段和扩展头
             if (contentLength > 0) {
                 content = new byte[contentLength];
                 in.readBytes(content);
@@ -54,6 +75,10 @@ public class MessageDecoder extends ByteToMessageDecoder {
             MessageProtocol message = new MessageProtocol();
             message.setLength(length);
             message.setType(type);
+            message.setFlags(flags);
+            message.setDictVersion(dictVersion);
+            message.setTraceId(traceId);
+            message.setSpanId(spanId);
             message.setContent(content);
             
             // 添加到输出列表，传递给下一个handler
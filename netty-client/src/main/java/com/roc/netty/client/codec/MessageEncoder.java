@@ -1,5 +1,6 @@
 package com.roc.netty.client.codec;
 
+import com.roc.netty.client.constant.Constants;
 import com.roc.netty.client.protocol.MessageProtocol;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -25,7 +26,20 @@ public class MessageEncoder extends MessageToByteEncoder<MessageProtocol> {
             out.writeInt(msg.getLength());
             
             // 写入消息类型 (1字节)
-            out.writeByte(msg.getType());
+            if (msg.getFlags() == 0) {
+                out.writeByte(msg.getType());
+            } else {
+                // 扩展头：类型最高位置1，后跟标志、可选的字典版本和追踪上下文
+                out.writeByte(msg.getType() | Constants.TYPE_EXTENDED);
+                out.writeByte(msg.getFlags());
+                if ((msg.getFlags() & Constants.FLAG_DICT_COMPRESSED) != 0) {
+                    out.writeShort(msg.getDictVersion());
+                }
+                if ((msg.getFlags() & Constants.FLAG_TRACED) != 0) {
+                    out.writeLong(msg.getTraceId());
+                    out.writeLong(msg.getSpanId());
+                }
+            }
             
             // 写入消息内容
             if (msg.getContent() != null && msg.getContent().length > 0) {
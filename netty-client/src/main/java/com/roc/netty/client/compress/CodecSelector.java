@@ -0,0 +1,189 @@
+package com.roc.netty.client.compress;
+
+import com.roc.netty.client.config.LogUploadConfig;
+import com.roc.netty.client.netty.NettyClient;
+import com.roc.netty.common.metrics.CpuLoad;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 上传编码自适应选择
+ * 1. 采样文件头部：已是压缩格式（魔数）的数据原样发送；其余先对样本脱敏，熵接近8比特/字节的内容脱敏后不压缩；
+ * 2. 压缩收益低或CPU紧张时用快速编码；
+ * 3. 链路慢时用最高压缩比，链路很快时用快速编码，其余使用默认GZIP。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CodecSelector {
+
+    // 常见压缩/二进制格式的魔数
+    private static final byte[][] COMPRESSED_MAGICS = {
+            {(byte) 0x1f, (byte) 0x8b},                                      // gzip
+            {'P', 'K', 3, 4},                                                // zip
+            {'B', 'Z', 'h'},                                                 // bzip2
+            {(byte) 0xfd, '7', 'z', 'X', 'Z', 0},                            // xz
+            {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd},            // zstd
+            {(byte) 0xff, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y'},   // snappy framed
+            {'7', 'z', (byte) 0xbc, (byte) 0xaf, 0x27, 0x1c},                // 7z
+            {(byte) 0x89, 'P', 'N', 'G'},                                    // png
+            {(byte) 0xff, (byte) 0xd8, (byte) 0xff},                         // jpeg
+    };
+
+    private final LogUploadConfig logUploadConfig;
+    private final NettyClient nettyClient;
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+    /**
+     * 为一个文件选择编码
+     *
+     * @param compressionEnabled logUpload.isCompressed
+     * @param masker             对样本脱敏，熵按实际发送的内容计算
+     */
+    public Decision select(Path file, boolean compressionEnabled, SampleMasker masker) throws IOException {
+        LogUploadConfig.CodecConfig config = logUploadConfig.getCodec();
+        byte[] sample = new byte[config.getSampleSize()];
+        int length = readSample(file, sample);
+
+        if (startsWithMagic(sample, length)) {
+            return new Decision(CompressionCodec.STORE, true, 8.0, "already compressed");
+        }
+        length = masker.mask(sample, length);
+        double entropy = entropy(sample, length);
+        if (entropy >= config.getStoreEntropy()) {
+            // 不是已知的压缩格式，仍按文本脱敏，只是不再压缩
+            return new Decision(CompressionCodec.STORE, false, entropy, "high entropy");
+        }
+        if (!compressionEnabled) {
+            return new Decision(CompressionCodec.STORE, false, entropy, "compression disabled");
+        }
+        if (!config.isAdaptive()) {
+            return new Decision(CompressionCodec.GZIP, false, entropy, "adaptive disabled");
+        }
+
+        CompressionCodec fast = "snappy".equalsIgnoreCase(config.getFastCodec())
+                ? CompressionCodec.SNAPPY : CompressionCodec.GZIP_FAST;
+        if (entropy >= config.getFastEntropy()) {
+            return new Decision(fast, false, entropy, "low compressibility");
+        }
+        double headroom = cpuHeadroom();
+        if (headroom >= 0 && headroom < config.getMinCpuHeadroom()) {
+            return new Decision(fast, false, entropy, "cpu headroom " + format(headroom));
+        }
+        long link = nettyClient.getLinkBytesPerSecond();
+        if (link > 0 && link < config.getSlowLinkBytesPerSecond()) {
+            return new Decision(CompressionCodec.GZIP_BEST, false, entropy, "slow link " + link + " B/s");
+        }
+        if (link > config.getFastLinkBytesPerSecond()) {
+            return new Decision(fast, false, entropy, "fast link " + link + " B/s");
+        }
+        return new Decision(CompressionCodec.GZIP, false, entropy, "default");
+    }
+
+    private static int readSample(Path file, byte[] sample) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int length = 0;
+            while (length < sample.length) {
+                int n = channel.read(ByteBuffer.wrap(sample, length, sample.length - length));
+                if (n < 0) {
+                    break;
+                }
+                length += n;
+            }
+            return length;
+        }
+    }
+
+    private static boolean startsWithMagic(byte[] sample, int length) {
+        outer:
+        for (byte[] magic : COMPRESSED_MAGICS) {
+            if (length < magic.length) {
+                continue;
+            }
+            for (int i = 0; i < magic.length; i++) {
+                if (sample[i] != magic[i]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 字节分布的香农熵（比特/字节）
+     */
+    static double entropy(byte[] sample, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int[] counts = new int[256];
+        for (int i = 0; i < length; i++) {
+            counts[sample[i] & 0xFF]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / length;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+    /**
+     * 系统CPU空闲比例，无法获取时返回-1
+     */
+    private double cpuHeadroom() {
+        double load = CpuLoad.system();
+        if (load < 0) {
+            double loadAverage = osBean.getSystemLoadAverage();
+            if (loadAverage < 0) {
+                return -1;
+            }
+            load = Math.min(1.0, loadAverage / osBean.getAvailableProcessors());
+        }
+        return 1.0 - load;
+    }
+
+    private static String format(double value) {
+        return String.format("%.2f", value);
+    }
+
+    /**
+     * 样本脱敏，结果写回 sample
+     */
+    @FunctionalInterface
+    public interface SampleMasker {
+        /**
+         * @return 脱敏后的长度
+         */
+        int mask(byte[] sample, int length) throws IOException;
+    }
+
+    /**
+     * 编码选择结果
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Decision {
+        private final CompressionCodec codec;
+        // 数据本身是已知的压缩/二进制格式，原样发送，不做脱敏
+        private final boolean raw;
+        private final double entropy;
+        private final String reason;
+    }
+}
@@ -0,0 +1,57 @@
+package com.roc.netty.client.compress;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 上传数据的压缩编码，名称写入传输头的 codec 字段，服务端据此选择解码器
+ * GZIP系列只是压缩级别不同，服务端统一按GZIP解码
+ */
+public enum CompressionCodec {
+
+    STORE(0),
+    GZIP_FAST(Deflater.BEST_SPEED),
+    SNAPPY(0),
+    GZIP(Deflater.DEFAULT_COMPRESSION),
+    GZIP_BEST(Deflater.BEST_COMPRESSION);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int level;
+
+    CompressionCodec(int level) {
+        this.level = level;
+    }
+
+    public boolean isCompressed() {
+        return this != STORE;
+    }
+
+    /**
+     * 创建编码输出流，关闭时写出尾部并关闭out；STORE直接返回out
+     * 逐行写入的数据先经缓冲再进入编码器，减少每行一次的本地调用
+     */
+    public OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+            case STORE:
+                return out;
+            case SNAPPY:
+                return new SnappyFramedOutputStream(out);
+            default:
+                return new BufferedOutputStream(new LeveledGzipOutputStream(out, level), BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * 可指定压缩级别的GZIPOutputStream
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        private LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
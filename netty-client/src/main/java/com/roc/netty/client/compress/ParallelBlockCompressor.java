@@ -0,0 +1,222 @@
+package com.roc.netty.client.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 大文件并行分块处理（pigz方式）
+ * 文件按行对齐切成固定大小的块，每块在线程池中独立处理并压缩为一个完整的GZIP成员，
+ * 再按原顺序写出。多个GZIP成员直接拼接仍是合法的GZIP流，GZIPInputStream可以直接读取。
+ * 同时驻留内存的块受共享的内存预算约束，多个文件并发上传时共用同一预算。
+ */
+public class ParallelBlockCompressor {
+
+    /**
+     * 单个块的处理逻辑，由调用方提供（如逐行脱敏）
+     */
+    public interface BlockProcessor {
+        /**
+         * 处理buf[0, length)并写入out，buf可被原地修改
+         *
+         * @return 写入out的未压缩字节数
+         */
+        long process(byte[] buf, int length, OutputStream out) throws IOException;
+    }
+
+    /**
+     * 为每个块创建压缩输出流，返回原流表示不压缩
+     */
+    public interface StreamFactory {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+
+    private static final int KB = 1024;
+
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int maxInFlight;
+    private final Semaphore memoryBudget;
+    private final int budgetPermits;
+
+    /**
+     * @param executor     块处理线程池
+     * @param parallelism  单个文件同时处理的最大块数
+     * @param blockSize    块大小（字节），块在最后一个换行处截断
+     * @param memoryBudget 所有文件同时驻留内存的块字节上限
+     */
+    public ParallelBlockCompressor(ExecutorService executor, int parallelism, int blockSize, long memoryBudget) {
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.maxInFlight = Math.max(1, parallelism);
+        this.budgetPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget / KB));
+        this.memoryBudget = new Semaphore(budgetPermits);
+    }
+
+    /**
+     * 并行处理整个文件并按顺序写入out
+     *
+     * @return 处理后（压缩前）的总字节数
+     */
+    public long compress(FileChannel channel, BlockProcessor processor, StreamFactory streamFactory,
+                         OutputStream out) throws IOException {
+        Deque<Block> inFlight = new ArrayDeque<>();
+        long processedBytes = 0;
+        byte[] carry = new byte[0];
+        int carryLength = 0;
+
+        try {
+            while (true) {
+                byte[] buf = new byte[blockSize];
+                System.arraycopy(carry, 0, buf, 0, carryLength);
+                int length = carryLength;
+                boolean eof = false;
+                while (length < buf.length) {
+                    int n = channel.read(ByteBuffer.wrap(buf, length, buf.length - length));
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    length += n;
+                }
+
+                // 行对齐：块在最后一个换行处截断，余下部分留给下一块
+                int blockLength = length;
+                if (!eof) {
+                    int lastNewline = lastIndexOf(buf, length, (byte) '\n');
+                    if (lastNewline >= 0) {
+                        blockLength = lastNewline + 1;
+                    }
+                }
+                carryLength = length - blockLength;
+                carry = carryLength > 0 ? copyTail(buf, blockLength, carryLength, carry) : carry;
+
+                if (blockLength > 0) {
+                    // 输入块与输出结果在最坏情况下各占一份
+                    int permits = Math.min(budgetPermits, (2 * blockLength) / KB + 1);
+                    // 预算不足时先写出自己已完成的块，自己没有在途块时才阻塞等待，避免多个文件互相占用预算而死锁
+                    while (!memoryBudget.tryAcquire(permits)) {
+                        if (inFlight.isEmpty()) {
+                            acquire(permits);
+                            break;
+                        }
+                        processedBytes += writeHead(inFlight, out);
+                    }
+                    inFlight.add(submit(buf, blockLength, processor, streamFactory, permits));
+                }
+
+                // 保持有序输出：队首完成即写出，超过并行度时阻塞等待队首
+                while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || inFlight.peek().future.isDone())) {
+                    processedBytes += writeHead(inFlight, out);
+                }
+                if (eof && carryLength == 0) {
+                    break;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                processedBytes += writeHead(inFlight, out);
+            }
+            return processedBytes;
+        } finally {
+            for (Block block : inFlight) {
+                block.future.cancel(true);
+                memoryBudget.release(block.permits);
+            }
+        }
+    }
+
+    private Block submit(byte[] buf, int length, BlockProcessor processor, StreamFactory streamFactory, int permits) {
+        Future<BlockResult> future = executor.submit(() -> {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(length / 4 + 64);
+            long processed;
+            try (OutputStream encoder = streamFactory.wrap(bos)) {
+                processed = processor.process(buf, length, encoder);
+            }
+            return new BlockResult(bos, processed);
+        });
+        return new Block(future, permits);
+    }
+
+    private long writeHead(Deque<Block> inFlight, OutputStream out) throws IOException {
+        Block block = inFlight.peek();
+        try {
+            BlockResult result = block.future.get();
+            result.data.writeTo(out);
+            return result.processedBytes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing block");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to process block", cause);
+        } finally {
+            inFlight.poll();
+            memoryBudget.release(block.permits);
+        }
+    }
+
+    private void acquire(int permits) throws IOException {
+        try {
+            memoryBudget.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for memory budget");
+        }
+    }
+
+    /**
+     * 当前可用的内存预算（字节）
+     */
+    public long getAvailableMemory() {
+        return (long) memoryBudget.availablePermits() * KB;
+    }
+
+    private static int lastIndexOf(byte[] buf, int length, byte b) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] copyTail(byte[] buf, int from, int length, byte[] target) {
+        if (target.length < length) {
+            target = new byte[Math.max(length, 2 * target.length)];
+        }
+        System.arraycopy(buf, from, target, 0, length);
+        return target;
+    }
+
+    private static final class Block {
+        private final Future<BlockResult> future;
+        private final int permits;
+
+        private Block(Future<BlockResult> future, int permits) {
+            this.future = future;
+            this.permits = permits;
+        }
+    }
+
+    private static final class BlockResult {
+        private final ByteArrayOutputStream data;
+        private final long processedBytes;
+
+        private BlockResult(ByteArrayOutputStream data, long processedBytes) {
+            this.data = data;
+            this.processedBytes = processedBytes;
+        }
+    }
+}
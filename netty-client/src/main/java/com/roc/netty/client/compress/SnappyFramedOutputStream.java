@@ -0,0 +1,80 @@
+package com.roc.netty.client.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.SnappyFrameEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 基于Netty SnappyFrameEncoder的输出流，输出Snappy framing格式
+ * 写入的数据攒满一块后交给编码器，编码结果写入下游输出流
+ */
+public class SnappyFramedOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final EmbeddedChannel encoder = new EmbeddedChannel(new SnappyFrameEncoder());
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private int position;
+    private boolean closed;
+
+    public SnappyFramedOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[position++] = (byte) b;
+        if (position == BLOCK_SIZE) {
+            encodeBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE - position);
+            System.arraycopy(b, off, block, position, n);
+            position += n;
+            off += n;
+            len -= n;
+            if (position == BLOCK_SIZE) {
+                encodeBlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            encodeBlock();
+            encoder.finishAndReleaseAll();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void encodeBlock() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        encoder.writeOutbound(Unpooled.copiedBuffer(block, 0, position));
+        position = 0;
+        ByteBuf encoded;
+        while ((encoded = encoder.readOutbound()) != null) {
+            try {
+                encoded.readBytes(out, encoded.readableBytes());
+            } finally {
+                encoded.release();
+            }
+        }
+    }
+}
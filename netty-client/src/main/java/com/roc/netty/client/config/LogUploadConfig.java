@@ -0,0 +1,156 @@
+package com.roc.netty.client.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 日志上传配置属性
+ * logUpload.isCompressed 与 logUpload.bankAccount.* 仍由 LogFileServiceImpl 通过 @Value 读取
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "log-upload")
+public class LogUploadConfig {
+
+    @Pattern(regexp = "[A-Za-z0-9._-]{0,64}")
+    private String clientId = "";  // 客户端标识，服务端按该标识分区存储上传的日志，为空时使用主机名
+
+    @Min(64 * 1024)
+    private int maxLineLength = 1024 * 1024;  // 单行最大长度(字节)，超过时上传按该长度分段脱敏，提取截断为该长度
+
+    @Min(1)
+    private int resultTimeoutSeconds = 600;  // 发送完成后等待服务端落盘回复的最长时间(秒)，超时后该文件上传失败
+
+    @Valid
+    private MaskingConfig masking = new MaskingConfig();
+
+    @Valid
+    private ParallelConfig parallel = new ParallelConfig();
+
+    @Valid
+    private CodecConfig codec = new CodecConfig();
+
+    @Valid
+    private ExtractConfig extract = new ExtractConfig();
+
+    @Valid
+    private AdmissionConfig admission = new AdmissionConfig();
+
+    @Valid
+    private DedupConfig dedup = new DedupConfig();
+
+    /**
+     * 脱敏配置
+     */
+    @Data
+    public static class MaskingConfig {
+        // 脱敏引擎：regex 仅使用 logUpload.bankAccount.regex；scanner 单遍多规则字节扫描，银行卡号使用内置规则
+        @Pattern(regexp = "(?i)regex|scanner")
+        private String engine = "regex";
+
+        private boolean phone = false;  // 11位手机号，保留前3后4位，仅scanner
+
+        private boolean nationalId = false;  // 18位身份证号，保留前6后4位，仅scanner
+
+        private boolean email = false;  // 邮箱，保留用户名首字符，仅scanner
+
+        private List<String> keywords = new ArrayList<>();  // 关键字之后的值整体掩码，如 password=，仅scanner
+    }
+
+    /**
+     * 并行上传配置
+     */
+    @Data
+    public static class ParallelConfig {
+        private boolean enabled = false;  // 是否启用并行上传
+
+        @Min(1)
+        private int parallelism = Runtime.getRuntime().availableProcessors();  // 块压缩线程数
+
+        @Min(1)
+        private int fileConcurrency = 4;  // 同时上传的文件数
+
+        @Min(64 * 1024)
+        private int blockSize = 4 * 1024 * 1024;  // 每个并行块的大小(字节)，按行对齐
+
+        @Min(1024 * 1024)
+        private long memoryBudget = 256L * 1024 * 1024;  // 所有在途块占用内存上限(字节)
+    }
+
+    /**
+     * 压缩编码选择配置，仅在 logUpload.isCompressed 为 true 时生效
+     */
+    @Data
+    public static class CodecConfig {
+        private boolean adaptive = true;  // 按内容、链路吞吐与CPU余量选择编码，关闭时固定使用GZIP
+
+        private String fastCodec = "deflate";  // 快速编码：deflate(GZIP级别1) 或 snappy
+
+        @Min(1024)
+        private int sampleSize = 64 * 1024;  // 文件头部采样大小(字节)
+
+        private double storeEntropy = 7.2;  // 采样熵(比特/字节)不低于该值时视为二进制，原样发送
+
+        private double fastEntropy = 6.5;  // 采样熵不低于该值时压缩收益低，使用快速编码
+
+        private double minCpuHeadroom = 0.2;  // 系统CPU空闲比例低于该值时使用快速编码
+
+        private long slowLinkBytesPerSecond = 4L * 1024 * 1024;  // 链路吞吐低于该值时使用最高压缩比
+
+        private long fastLinkBytesPerSecond = 100L * 1024 * 1024;  // 链路吞吐高于该值时使用快速编码
+    }
+
+    /**
+     * 服务端下发的过滤提取配置
+     */
+    @Data
+    public static class ExtractConfig {
+        @Min(1)
+        private int parallelism = Math.min(4, Runtime.getRuntime().availableProcessors());  // 同时扫描的文件数
+
+        @Min(1)
+        private long maxLines = 100000;  // 单次提取最多返回的行数，服务端请求的上限更大时以此为准
+
+        @Min(1024)
+        private int chunkSize = 64 * 1024;  // 结果数据块大小(字节)，按行对齐
+    }
+
+    /**
+     * 上传准入配置
+     */
+    @Data
+    public static class AdmissionConfig {
+        private boolean enabled = true;  // 上传前是否向服务端申报并等待授予
+
+        @Min(1)
+        private int queuedTimeoutSeconds = 10;  // 等待服务端确认申报的最长时间(秒)，超时视为服务端不支持准入，直接上传
+
+        @Min(1)
+        private int grantTimeoutSeconds = 600;  // 等待授予的最长时间(秒)，超时后该文件上传失败
+    }
+
+    /**
+     * 上传内容去重配置
+     */
+    @Data
+    public static class DedupConfig {
+        private boolean enabled = true;  // 上传前发送内容清单，服务端已有的块不再传输
+
+        @Min(64 * 1024)
+        private int chunkSize = 1024 * 1024;  // 清单的块大小(字节)，固定大小切块，日志末尾追加时只有最后的块变化
+
+        @Min(1)
+        private int replyTimeoutSeconds = 60;  // 等待服务端回复清单的最长时间(秒)，超时后整文件上传
+
+        private String cacheFile = ".upload-hash-cache.json";  // 哈希缓存文件，按路径、大小和修改时间复用已计算的哈希
+    }
+}
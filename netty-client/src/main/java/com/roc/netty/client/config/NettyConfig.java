@@ -6,6 +6,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
@@ -26,6 +28,9 @@ public class NettyConfig {
     @Valid
     private ThreadPoolConfig thread = new ThreadPoolConfig();
 
+    @Valid
+    private TraceConfig trace = new TraceConfig();
+
 
     /**
      * 客户端配置
@@ -59,6 +64,44 @@ public class NettyConfig {
         @Min(1)
         private int maxLostHeartbeat = 3;  // 最大丢失心跳次数
 
+        private boolean messageCompression = false;  // 是否接受服务端下发的字典，启用业务消息压缩
+
+        @Min(1)
+        private int messageCompressionMinSize = 32;  // 小于该大小的消息不压缩(字节)
+
+        private boolean metrics = true;  // 是否按消息类型统计收发帧数、字节数和处理延迟
+
+        private boolean latencyProbe = false;  // 是否定时向服务端发送往返延迟探测
+
+        @Min(10)
+        private int latencyProbeIntervalMillis = 1000;  // 探测间隔(毫秒)
+
+    }
+
+    /**
+     * 消息追踪配置：帧头携带追踪ID与跨度ID，各跳记录跨度并定时导出为 Zipkin v2 JSON
+     */
+    @Data
+    @Validated
+    public static class TraceConfig {
+        private boolean enabled = true;  // 是否记录跨度，关闭后收到带追踪上下文的消息也不记录
+
+        @DecimalMin("0")
+        @DecimalMax("1")
+        private double sampleRate = 0.01;  // 本端发起的消息被追踪的比例
+
+        @Min(64)
+        private int ringSize = 8192;  // 跨度环形缓冲大小，取不小于该值的2的幂，导出跟不上时覆盖最早的跨度
+
+        @Min(100)
+        private int exportIntervalMillis = 1000;  // 导出间隔(毫秒)
+
+        private String exportFile = "";  // 导出文件，每行一个 Zipkin v2 JSON 跨度，为空不导出到文件
+
+        private String exportUrl = "";  // 导出地址，如 Zipkin 的 http://host:9411/api/v2/spans，为空不导出到HTTP
+
+        @NotBlank
+        private String serviceName = "netty-client";  // 导出跨度中的服务名
     }
 
     /**
@@ -2,6 +2,7 @@ package com.roc.netty.client.controller;
 
 import com.roc.netty.client.dto.ApiResponse;
 import com.roc.netty.client.dto.MessageRequest;
+import com.roc.netty.client.netty.LatencyProbe;
 import com.roc.netty.client.netty.NettyClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +10,8 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 消息控制器
@@ -21,6 +24,7 @@ import javax.validation.Valid;
 public class MessageController {
 
     private final NettyClient nettyClient;
+    private final LatencyProbe latencyProbe;
 
     /**
      * 发送消息到服务器
@@ -40,10 +44,13 @@ public class MessageController {
     }
 
     /**
-     * 获取客户端连接状态
+     * 获取客户端连接状态，以及延迟探测测得的各阶段延迟
      */
     @GetMapping("/status")
-    public ApiResponse<Boolean> getStatus() {
-        return ApiResponse.success("获取状态成功", nettyClient.isConnected());
+    public ApiResponse<Map<String, Object>> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("connected", nettyClient.isConnected());
+        status.put("latency", latencyProbe.getStats());
+        return ApiResponse.success("获取状态成功", status);
     }
 }
@@ -0,0 +1,46 @@
+package com.roc.netty.client.controller;
+
+import com.roc.netty.client.metrics.MessageMetrics;
+import com.roc.netty.client.trace.SpanExporter;
+import com.roc.netty.client.trace.Tracer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Netty 连接运行状态
+ */
+@RestController
+@RequestMapping("/api/netty")
+@RequiredArgsConstructor
+public class NettyController {
+
+    private final MessageMetrics messageMetrics;
+    private final Tracer tracer;
+    private final SpanExporter spanExporter;
+
+    /**
+     * 各消息类型的收发帧数、字节数和处理延迟直方图，Prometheus 文本格式
+     */
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String getMetrics() {
+        return messageMetrics.prometheus();
+    }
+
+    /**
+     * 消息追踪：跨度记录与导出统计，以及最近记录的跨度
+     */
+    @GetMapping("/traces")
+    public Map<String, Object> getTraces(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("'limit' must be positive");
+        }
+        Map<String, Object> result = spanExporter.getStats();
+        result.put("recent", tracer.recent(limit));
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package com.roc.netty.client.dedup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.BitSet;
+
+/**
+ * 只转发选中块的内容，按固定大小切块
+ * 超过清单大小的部分（计算哈希之后追加到文件的内容）不转发，由下次上传处理。关闭时不关闭out。
+ */
+public class ChunkFilterStream extends OutputStream {
+
+    private final OutputStream out;
+    private final int chunkSize;
+    private final long limit;
+    private final BitSet selected;
+    private long position;
+
+    /**
+     * @param limit    只转发 [0, limit) 内的内容
+     * @param selected 需要转发的块序号
+     */
+    public ChunkFilterStream(OutputStream out, int chunkSize, long limit, BitSet selected) {
+        this.out = out;
+        this.chunkSize = chunkSize;
+        this.limit = limit;
+        this.selected = selected;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position < limit && selected.get((int) (position / chunkSize))) {
+            out.write(b);
+        }
+        position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0 && position < limit) {
+            int chunk = (int) (position / chunkSize);
+            long chunkEnd = Math.min((long) (chunk + 1) * chunkSize, limit);
+            int n = (int) Math.min(len, chunkEnd - position);
+            if (selected.get(chunk)) {
+                out.write(b, off, n);
+            }
+            position += n;
+            off += n;
+            len -= n;
+        }
+        position += len;
+    }
+}
@@ -0,0 +1,64 @@
+package com.roc.netty.client.dedup;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 计算写入内容的块哈希，写入的数据按固定大小切块，不保留内容
+ */
+public class ChunkHasher extends OutputStream {
+
+    private final int chunkSize;
+    private final byte[] buffer;
+    private int bufferLength;
+    private long size;
+    private long[] hashes = new long[16];
+    private int count;
+
+    public ChunkHasher(int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) {
+        buffer[bufferLength++] = (byte) b;
+        if (bufferLength == chunkSize) {
+            complete();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            int n = Math.min(len, chunkSize - bufferLength);
+            System.arraycopy(b, off, buffer, bufferLength, n);
+            bufferLength += n;
+            off += n;
+            len -= n;
+            if (bufferLength == chunkSize) {
+                complete();
+            }
+        }
+    }
+
+    /**
+     * 结束写入，返回全部内容的哈希
+     */
+    public FileHashes finish() {
+        if (bufferLength > 0) {
+            complete();
+        }
+        long[] chunks = Arrays.copyOf(hashes, count);
+        return new FileHashes(size, chunkSize, XxHash64.combine(chunks), chunks);
+    }
+
+    private void complete() {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        hashes[count++] = XxHash64.hash(buffer, 0, bufferLength);
+        size += bufferLength;
+        bufferLength = 0;
+    }
+}
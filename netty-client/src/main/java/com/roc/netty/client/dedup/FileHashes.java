@@ -0,0 +1,19 @@
+package com.roc.netty.client.dedup;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 上传内容（脱敏后、压缩前）的哈希：按固定大小切块的各块哈希与整文件哈希
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileHashes {
+
+    private long size;
+    private int chunkSize;
+    private long fileHash;
+    private long[] chunks;
+}
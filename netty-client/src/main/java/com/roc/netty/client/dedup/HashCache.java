@@ -0,0 +1,112 @@
+package com.roc.netty.client.dedup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.config.LogUploadConfig;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 上传内容哈希缓存，按文件路径、大小和修改时间复用，未变化的文件不重新读取计算
+ * 缓存保存在本地文件中，重启后仍然有效；内容还取决于脱敏规则，规则变化时缓存不再匹配。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HashCache {
+
+    private final ObjectMapper objectMapper;
+    private final LogUploadConfig logUploadConfig;
+
+    // 文件绝对路径 -> 哈希
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 计算文件内容的哈希
+     */
+    @FunctionalInterface
+    public interface Hasher {
+        FileHashes hash() throws IOException;
+    }
+
+    @PostConstruct
+    public void load() {
+        Path file = Paths.get(logUploadConfig.getDedup().getCacheFile());
+        if (!logUploadConfig.getDedup().isEnabled() || !Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            Map<String, Entry> loaded = objectMapper.readValue(file.toFile(), new TypeReference<Map<String, Entry>>() {
+            });
+            // 已删除的文件不再保留
+            loaded.keySet().removeIf(path -> !Files.exists(Paths.get(path)));
+            entries.putAll(loaded);
+            log.info("Upload hash cache loaded - files: {}", entries.size());
+        } catch (IOException e) {
+            log.warn("Failed to load upload hash cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 取文件内容的哈希，缓存不匹配时计算并缓存
+     *
+     * @param variant 内容变体：同一文件按不同规则处理（如脱敏规则不同）时内容不同
+     */
+    public FileHashes get(Path file, long variant, Hasher hasher) throws IOException {
+        String key = file.toAbsolutePath().normalize().toString();
+        int chunkSize = logUploadConfig.getDedup().getChunkSize();
+        BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.matches(before, variant, chunkSize)) {
+            return entry.getHashes();
+        }
+        FileHashes hashes = hasher.hash();
+        // 计算期间文件被修改（如正在写入的当天日志）时不缓存
+        BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+        if (after.size() == before.size() && after.lastModifiedTime().equals(before.lastModifiedTime())) {
+            entries.put(key, new Entry(before.size(), before.lastModifiedTime().toMillis(), variant, hashes));
+            save();
+        }
+        return hashes;
+    }
+
+    private synchronized void save() {
+        Path file = Paths.get(logUploadConfig.getDedup().getCacheFile());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), entries);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to save upload hash cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Entry {
+        private long size;
+        private long modified;
+        private long variant;
+        private FileHashes hashes;
+
+        boolean matches(BasicFileAttributes attributes, long variant, int chunkSize) {
+            return size == attributes.size() && modified == attributes.lastModifiedTime().toMillis()
+                    && this.variant == variant && hashes.getChunkSize() == chunkSize;
+        }
+    }
+}
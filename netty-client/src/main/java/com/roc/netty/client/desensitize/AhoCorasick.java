@@ -0,0 +1,109 @@
+package com.roc.netty.client.desensitize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * 基于字节的Aho-Corasick多模式匹配自动机（ASCII字母不区分大小写）
+ * 构建时展开为稠密的状态转移表，匹配时每个字节只做一次数组查找
+ */
+public final class AhoCorasick {
+
+    private static final int ALPHABET = 256;
+
+    // transitions[state * 256 + byte] = 下一个状态
+    private final int[] transitions;
+    // 到达该状态时是否有关键字结束
+    private final boolean[] accepting;
+
+    public AhoCorasick(List<String> keywords) {
+        int maxStates = 1;
+        for (String keyword : keywords) {
+            maxStates += keyword.getBytes(StandardCharsets.UTF_8).length;
+        }
+        int[] trie = new int[maxStates * ALPHABET];
+        Arrays.fill(trie, -1);
+        boolean[] accept = new boolean[maxStates];
+        int states = 1;
+
+        for (String keyword : keywords) {
+            int state = 0;
+            for (byte b : keyword.getBytes(StandardCharsets.UTF_8)) {
+                int c = lower(b & 0xFF);
+                int next = trie[state * ALPHABET + c];
+                if (next < 0) {
+                    next = states++;
+                    trie[state * ALPHABET + c] = next;
+                }
+                state = next;
+            }
+            if (state > 0) {
+                accept[state] = true;
+            }
+        }
+
+        // 广度优先计算失败指针，并把失败转移直接填入转移表
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie[c];
+            if (next < 0) {
+                trie[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accept[state] |= accept[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie[state * ALPHABET + c];
+                if (next < 0) {
+                    trie[state * ALPHABET + c] = trie[fail[state] * ALPHABET + c];
+                } else {
+                    fail[next] = trie[fail[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        // 大写字母与小写字母共用转移
+        for (int state = 0; state < states; state++) {
+            for (int c = 'A'; c <= 'Z'; c++) {
+                trie[state * ALPHABET + c] = trie[state * ALPHABET + lower(c)];
+            }
+        }
+
+        this.transitions = Arrays.copyOf(trie, states * ALPHABET);
+        this.accepting = Arrays.copyOf(accept, states);
+    }
+
+    /**
+     * 初始状态
+     */
+    public int start() {
+        return 0;
+    }
+
+    /**
+     * 读入一个字节后的状态
+     */
+    public int next(int state, byte b) {
+        return transitions[state * ALPHABET + (b & 0xFF)];
+    }
+
+    /**
+     * 当前状态是否刚好匹配完某个关键字
+     */
+    public boolean isMatch(int state) {
+        return accepting[state];
+    }
+
+    private static int lower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
@@ -0,0 +1,249 @@
+package com.roc.netty.client.desensitize;
+
+import java.util.List;
+
+/**
+ * 单遍多规则脱敏引擎
+ * 直接在UTF-8字节上扫描一遍，同时完成以下规则，不解码为String：
+ * <ul>
+ *     <li>数字串状态机：11位手机号、18位身份证号、12-19位银行卡号</li>
+ *     <li>Aho-Corasick关键字：如 password= 之后的值</li>
+ *     <li>以 @ 为锚点的邮箱用户名</li>
+ * </ul>
+ * 所有替换结果都不长于原文，因此原地改写；不含敏感信息的行不会产生任何对象分配。
+ * 实例不可变，可被多个线程共享。
+ */
+public final class DesensitizeEngine {
+
+    private static final byte MASK = '*';
+    // 关键字之后的值最多保留的掩码字符数
+    private static final int MAX_VALUE_MASK = 4;
+
+    private final boolean bankAccount;
+    private final boolean phone;
+    private final boolean nationalId;
+    private final boolean email;
+    private final AhoCorasick keywords;
+
+    private DesensitizeEngine(Builder builder) {
+        this.bankAccount = builder.bankAccount;
+        this.phone = builder.phone;
+        this.nationalId = builder.nationalId;
+        this.email = builder.email;
+        this.keywords = builder.keywords == null || builder.keywords.isEmpty()
+                ? null : new AhoCorasick(builder.keywords);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 是否启用了任何规则
+     */
+    public boolean isEnabled() {
+        return bankAccount || phone || nationalId || email || keywords != null;
+    }
+
+    /**
+     * 对buf[offset, offset + length)原地脱敏
+     *
+     * @return 脱敏后的长度
+     */
+    public int mask(byte[] buf, int offset, int length) {
+        int end = offset + length;
+        int w = offset;          // 写位置，始终 <= 读位置
+        int runStart = -1;       // 当前数字串在输出中的起点
+        int state = 0;           // 关键字自动机状态
+        boolean inValue = false; // 正在掩码关键字之后的值
+        int valueMasked = 0;
+
+        for (int i = offset; i < end; i++) {
+            byte b = buf[i];
+
+            if (inValue) {
+                if (!isValueDelimiter(b)) {
+                    if (valueMasked < MAX_VALUE_MASK) {
+                        buf[w++] = MASK;
+                        valueMasked++;
+                    }
+                    continue;
+                }
+                inValue = false;
+            }
+
+            boolean digit = b >= '0' && b <= '9';
+            if (digit) {
+                if (runStart < 0) {
+                    runStart = w;
+                }
+            } else if (runStart >= 0) {
+                if ((b == 'X' || b == 'x') && nationalId && w - runStart == 17) {
+                    // 末位为X的身份证号
+                    buf[w++] = b;
+                    w = maskDigitRun(buf, runStart, w);
+                    runStart = -1;
+                    state = keywords == null ? 0 : keywords.next(state, b);
+                    continue;
+                }
+                w = maskDigitRun(buf, runStart, w);
+                runStart = -1;
+            }
+
+            if (b == '@' && email) {
+                maskEmailLocalPart(buf, offset, w, i + 1, end);
+            }
+
+            buf[w++] = b;
+
+            if (keywords != null) {
+                state = keywords.next(state, b);
+                if (keywords.isMatch(state)) {
+                    inValue = true;
+                    valueMasked = 0;
+                    state = keywords.start();
+                }
+            }
+        }
+        if (runStart >= 0) {
+            w = maskDigitRun(buf, runStart, w);
+        }
+        return w - offset;
+    }
+
+    /**
+     * 按长度识别一段完整的数字串并掩码
+     *
+     * @return 掩码后的写位置
+     */
+    private int maskDigitRun(byte[] buf, int start, int end) {
+        int len = end - start;
+        if (len < 11) {
+            return end;
+        }
+        if (len == 18 && nationalId) {
+            // 身份证号：保留前6位和后4位
+            fill(buf, start + 6, start + 14);
+            return end;
+        }
+        if (len == 11 && phone && buf[start] == '1') {
+            // 手机号：保留前3位和后4位
+            fill(buf, start + 3, start + 7);
+            return end;
+        }
+        if (len >= 12 && len <= 19 && bankAccount) {
+            // 银行卡号：保留前4位和后4位，中间固定替换为4个*
+            fill(buf, start + 4, start + 8);
+            System.arraycopy(buf, end - 4, buf, start + 8, 4);
+            return start + 12;
+        }
+        return end;
+    }
+
+    /**
+     * 邮箱：在已输出的内容中向前找用户名，保留首字符，其余替换为*
+     *
+     * @param lineStart   行起点
+     * @param w           当前写位置（@之前）
+     * @param domainStart 输入中@之后的位置
+     * @param end         输入结束位置
+     */
+    private static void maskEmailLocalPart(byte[] buf, int lineStart, int w, int domainStart, int end) {
+        int localStart = w;
+        while (localStart > lineStart && isLocalPartChar(buf[localStart - 1])) {
+            localStart--;
+        }
+        if (w - localStart < 2 || !isDomain(buf, domainStart, end)) {
+            return;
+        }
+        fill(buf, localStart + 1, w);
+    }
+
+    private static boolean isDomain(byte[] buf, int start, int end) {
+        int i = start;
+        int lastDot = -1;
+        while (i < end) {
+            byte b = buf[i];
+            if (b == '.') {
+                if (i == start || buf[i - 1] == '.') {
+                    return false;
+                }
+                lastDot = i;
+            } else if (!isAlphanumeric(b) && b != '-') {
+                break;
+            }
+            i++;
+        }
+        return lastDot > start && lastDot < i - 1;
+    }
+
+    private static boolean isLocalPartChar(byte b) {
+        return isAlphanumeric(b) || b == '.' || b == '_' || b == '%' || b == '+' || b == '-' || b == MASK;
+    }
+
+    private static boolean isAlphanumeric(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean isValueDelimiter(byte b) {
+        switch (b) {
+            case ' ':
+            case '\t':
+            case '\r':
+            case '\n':
+            case ',':
+            case ';':
+            case '&':
+            case '"':
+            case '\'':
+            case '}':
+            case ')':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void fill(byte[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            buf[i] = MASK;
+        }
+    }
+
+    public static class Builder {
+        private boolean bankAccount;
+        private boolean phone;
+        private boolean nationalId;
+        private boolean email;
+        private List<String> keywords;
+
+        public Builder bankAccount(boolean enabled) {
+            this.bankAccount = enabled;
+            return this;
+        }
+
+        public Builder phone(boolean enabled) {
+            this.phone = enabled;
+            return this;
+        }
+
+        public Builder nationalId(boolean enabled) {
+            this.nationalId = enabled;
+            return this;
+        }
+
+        public Builder email(boolean enabled) {
+            this.email = enabled;
+            return this;
+        }
+
+        public Builder keywords(List<String> keywords) {
+            this.keywords = keywords;
+            return this;
+        }
+
+        public DesensitizeEngine build() {
+            return new DesensitizeEngine(this);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.roc.netty.client.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 服务端下发的过滤提取请求
+ */
+@Data
+public class ExtractRequest {
+    private int extractId;  // 提取ID，返回的数据块和结束统计都带上该ID
+
+    private String startDay;  // 开始日期 yyyy-MM-dd，按日志文件名中的日期筛选
+
+    private String endDay;  // 结束日期 yyyy-MM-dd（包含）
+
+    private List<String> levels;  // 级别，为空时不限
+
+    private List<String> literals;  // 行中必须包含的文本，全部包含才匹配
+
+    private String regex;  // 行需匹配的正则
+
+    private long maxLines;  // 最多返回的行数
+}
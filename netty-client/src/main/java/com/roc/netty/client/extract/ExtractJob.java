@@ -0,0 +1,78 @@
+package com.roc.netty.client.extract;
+
+import com.roc.netty.client.dto.ExtractRequest;
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次提取在客户端的执行状态，多个文件扫描线程共享
+ */
+public class ExtractJob {
+
+    @Getter
+    private final ExtractRequest request;
+    private final AtomicLong linesMatched = new AtomicLong();
+    private final AtomicLong bytesScanned = new AtomicLong();
+    private final AtomicInteger files = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean truncated;
+    private volatile String error;
+
+    public ExtractJob(ExtractRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * 已取消、出错或达到行数上限时停止扫描
+     */
+    public boolean isStopped() {
+        return cancelled || truncated || error != null;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 占用一个输出行名额，超过上限时返回false并标记截断
+     */
+    public boolean acquireLine() {
+        if (linesMatched.incrementAndGet() > request.getMaxLines()) {
+            linesMatched.decrementAndGet();
+            truncated = true;
+            return false;
+        }
+        return true;
+    }
+
+    public void fileScanned(long bytes) {
+        files.incrementAndGet();
+        bytesScanned.addAndGet(bytes);
+    }
+
+    public void fail(String message) {
+        if (error == null) {
+            error = message;
+        }
+    }
+
+    /**
+     * 结束帧内容
+     */
+    public Map<String, Object> summary(String clientId) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("extractId", request.getExtractId());
+        summary.put("clientId", clientId);
+        summary.put("files", files.get());
+        summary.put("bytesScanned", bytesScanned.get());
+        summary.put("linesMatched", linesMatched.get());
+        summary.put("truncated", truncated);
+        summary.put("cancelled", cancelled);
+        summary.put("error", error);
+        return summary;
+    }
+}
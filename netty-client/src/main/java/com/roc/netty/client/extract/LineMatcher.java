@@ -0,0 +1,111 @@
+package com.roc.netty.client.extract;
+
+import com.roc.netty.client.dto.ExtractRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按提取条件匹配日志行，条件从便宜到昂贵依次判断：级别 -> 文本 -> 正则
+ * 级别和文本直接在字节上比较，只有前两者都通过的行才解码为字符串做正则匹配。
+ * 文本和正则作用于脱敏后的行，避免通过条件探测被掩码的内容。
+ * 持有可复用的Matcher，每个扫描线程一个实例。
+ */
+public class LineMatcher {
+
+    // "yyyy-MM-dd HH:mm:ss.SSS [" 的长度，其后为线程名
+    private static final int THREAD_START = 25;
+
+    private final byte[][] levels;
+    private final byte[][] literals;
+    private final Matcher matcher;
+
+    public LineMatcher(ExtractRequest request) {
+        this.levels = toBytes(request.getLevels());
+        this.literals = toBytes(request.getLiterals());
+        this.matcher = request.getRegex() != null ? Pattern.compile(request.getRegex()).matcher("") : null;
+    }
+
+    /**
+     * 级别条件，未指定级别时总是匹配
+     */
+    public boolean matchesLevel(byte[] line, int offset, int length) {
+        return levels == null || levelMatches(line, offset, length);
+    }
+
+    /**
+     * 文本和正则条件
+     */
+    public boolean matchesContent(byte[] line, int offset, int length) {
+        if (literals != null) {
+            for (byte[] literal : literals) {
+                if (indexOf(line, offset, length, literal) < 0) {
+                    return false;
+                }
+            }
+        }
+        if (matcher != null) {
+            matcher.reset(new String(line, offset, length, StandardCharsets.UTF_8));
+            return matcher.find();
+        }
+        return true;
+    }
+
+    /**
+     * 按logback格式取 "] " 之后的级别，不符合格式的行（如异常堆栈）不匹配
+     */
+    private boolean levelMatches(byte[] line, int offset, int length) {
+        int end = offset + length;
+        if (length <= THREAD_START || line[offset + THREAD_START - 1] != '[') {
+            return false;
+        }
+        int p = offset + THREAD_START;
+        while (p + 1 < end && !(line[p] == ']' && line[p + 1] == ' ')) {
+            p++;
+        }
+        int levelStart = p + 2;
+        int levelEnd = levelStart;
+        while (levelEnd < end && line[levelEnd] != ' ') {
+            levelEnd++;
+        }
+        for (byte[] level : levels) {
+            if (level.length == levelEnd - levelStart && regionEquals(line, levelStart, level)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int indexOf(byte[] data, int offset, int length, byte[] target) {
+        int last = offset + length - target.length;
+        byte first = target[0];
+        for (int i = offset; i <= last; i++) {
+            if (data[i] == first && regionEquals(data, i, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(byte[] data, int offset, byte[] target) {
+        for (int j = 1; j < target.length; j++) {
+            if (data[offset + j] != target[j]) {
+                return false;
+            }
+        }
+        return data[offset] == target[0];
+    }
+
+    private static byte[][] toBytes(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        byte[][] bytes = new byte[values.size()][];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+}
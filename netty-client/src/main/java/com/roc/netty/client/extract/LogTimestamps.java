@@ -0,0 +1,71 @@
+package com.roc.netty.client.extract;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * 解析日志行开头的时间戳，格式：yyyy-MM-dd HH:mm:ss.SSS（与客户端logback输出一致）
+ * 直接按字节解析，同一天的零点时间缓存复用，避免逐行创建日期对象
+ */
+public class LogTimestamps {
+
+    // "yyyy-MM-dd HH:mm:ss" 的长度，毫秒部分可选
+    private static final int MIN_LENGTH = 19;
+
+    private final ZoneId zone;
+    private int cachedDate = -1;
+    private long cachedDayStartMillis;
+
+    public LogTimestamps(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * 解析行首时间戳，返回epoch毫秒，行首不是时间戳时返回-1
+     */
+    public long parse(byte[] line, int offset, int length) {
+        if (length < MIN_LENGTH
+                || line[offset + 4] != '-' || line[offset + 7] != '-'
+                || (line[offset + 10] != ' ' && line[offset + 10] != 'T')
+                || line[offset + 13] != ':' || line[offset + 16] != ':') {
+            return -1;
+        }
+        int year = digits(line, offset, 4);
+        int month = digits(line, offset + 5, 2);
+        int day = digits(line, offset + 8, 2);
+        int hour = digits(line, offset + 11, 2);
+        int minute = digits(line, offset + 14, 2);
+        int second = digits(line, offset + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return -1;
+        }
+        int millis = 0;
+        if (length >= MIN_LENGTH + 4 && (line[offset + 19] == '.' || line[offset + 19] == ',')) {
+            millis = Math.max(0, digits(line, offset + 20, 3));
+        }
+
+        int date = year * 10000 + month * 100 + day;
+        if (date != cachedDate) {
+            try {
+                cachedDayStartMillis = LocalDate.of(year, month, day).atStartOfDay(zone).toInstant().toEpochMilli();
+            } catch (RuntimeException e) {
+                return -1;
+            }
+            cachedDate = date;
+        }
+        return cachedDayStartMillis + ((hour * 60L + minute) * 60 + second) * 1000 + millis;
+    }
+
+    private static int digits(byte[] line, int offset, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = line[offset + i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
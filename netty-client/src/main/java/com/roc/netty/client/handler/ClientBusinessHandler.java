@@ -1,12 +1,24 @@
 package com.roc.netty.client.handler;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.roc.netty.client.constant.Constants;
+import com.roc.netty.client.dto.ExtractRequest;
+import com.roc.netty.client.metrics.MessageMetrics;
+import com.roc.netty.client.netty.LatencyProbe;
+import com.roc.netty.client.netty.UploadAdmission;
+import com.roc.netty.client.netty.UploadDedup;
+import com.roc.netty.client.netty.UploadResults;
 import com.roc.netty.client.protocol.MessageProtocol;
+import com.roc.netty.client.service.LogFileService;
+import com.roc.netty.client.trace.Span;
+import com.roc.netty.client.trace.Tracer;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
@@ -20,8 +32,44 @@ import java.nio.charset.StandardCharsets;
 @Sharable
 public class ClientBusinessHandler extends SimpleChannelInboundHandler<MessageProtocol> {
 
+    private final ObjectMapper objectMapper;
+    // LogFileService 依赖 NettyClient，延迟获取避免循环依赖
+    private final ObjectProvider<LogFileService> logFileService;
+    private final ObjectProvider<UploadAdmission> uploadAdmission;
+    private final ObjectProvider<UploadDedup> uploadDedup;
+    private final UploadResults uploadResults;
+    private final LatencyProbe latencyProbe;
+    private final Tracer tracer;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof MessageProtocol) || !((MessageProtocol) msg).isTraced() || !tracer.isEnabled()) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        // 本跳的跨度从解码完成开始，回复的消息以本跨度为上游
+        MessageProtocol message = (MessageProtocol) msg;
+        byte type = message.getType();
+        long traceId = message.getTraceId();
+        long parentId = message.getSpanId();
+        long spanId = Tracer.nextId();
+        long startNanos = message.getReceivedNanos() != 0 ? message.getReceivedNanos() : System.nanoTime();
+        message.setSpanId(spanId);
+        try {
+            super.channelRead(ctx, msg);
+        } finally {
+            tracer.record(traceId, spanId, parentId, "handle " + MessageMetrics.typeName(type), Span.CONSUMER, type,
+                    String.valueOf(ctx.channel().remoteAddress()), startNanos, System.nanoTime());
+        }
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, MessageProtocol msg) throws Exception {
+        // 探测回复频繁，不逐条打印
+        if (msg.getType() == Constants.LATENCY_PROBE_REPLY) {
+            latencyProbe.onReply(msg.getContent());
+            return;
+        }
         String content = "";
         if (msg.getContent() != null) {
             content = new String(msg.getContent(), StandardCharsets.UTF_8);
@@ -41,8 +89,11 @@ public class ClientBusinessHandler extends SimpleChannelInboundHandler<MessagePr
                         msg.getType(), msg.getMsgId(), msg.getLength(), msg.getContent());
                 break;
             case Constants.FILE_SEND_TO_SERVER_RESPONSE:
-                log.info("准备发送消息到客户端 - 类型: {}, 消息ID: {}, 长度: {}, 内容: {}",
-                        msg.getType(), msg.getMsgId(), msg.getLength(), msg.getContent());
+                uploadResults.onResult(msg.getContent());
+                break;
+            case Constants.FILE_SEND_TO_CLIENT_RESPONSE:
+                // 服务端处理上传出错时回复该类型
+                uploadResults.onError(msg.getContent());
                 break;
             case Constants.FILE_SEND_TO_CLIENT_REQUEST:
                 String responseContent = "Client received: " + content;
@@ -50,9 +101,33 @@ public class ClientBusinessHandler extends SimpleChannelInboundHandler<MessagePr
                 message.setType(Constants.FILE_SEND_TO_CLIENT_RESPONSE);  // 业务消息类型
                 message.setLength(1 + responseContent.getBytes().length);  // 类型字段(1字节) + 内容长度
                 message.setContent(responseContent.getBytes());
+                if (msg.isTraced()) {
+                    message.setTrace(msg.getTraceId(), msg.getSpanId());
+                }
 
                 ctx.writeAndFlush(message);
                 break;
+            case Constants.DICTIONARY:
+                // 未启用消息压缩时忽略服务端下发的字典，不确认则服务端不会压缩发往本客户端的消息
+                log.debug("Message compression disabled, dictionary ignored");
+                break;
+            case Constants.UPLOAD_QUEUED:
+                uploadAdmission.getObject().onQueued(msg.getContent());
+                break;
+            case Constants.UPLOAD_GRANT:
+                uploadAdmission.getObject().onGrant(msg.getContent());
+                break;
+            case Constants.UPLOAD_MANIFEST_REPLY:
+                uploadDedup.getObject().onReply(msg.getContent());
+                break;
+            case Constants.EXTRACT_REQUEST:
+                // 扫描在提取线程池中执行，不占用IO线程
+                logFileService.getObject().extract(objectMapper.readValue(msg.getContent(), ExtractRequest.class));
+                break;
+            case Constants.EXTRACT_CANCEL:
+                JsonNode cancel = objectMapper.readTree(msg.getContent());
+                logFileService.getObject().cancelExtract(cancel.get("extractId").asInt());
+                break;
             default:
                 log.warn("客户端收到未知消息类型: {}, 消息ID: {}, 长度: {}, 内容: {}", msg.getType(), msg.getMsgId(), msg.getLength(), content);
         }
@@ -91,11 +166,16 @@ public class ClientBusinessHandler extends SimpleChannelInboundHandler<MessagePr
                 log.error("客户端消息发送失败: {}", future.cause().getMessage(), future.cause());
             }
         });
+        latencyProbe.start(ctx.channel());
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         log.info("与服务器断开连接");
+        latencyProbe.stop();
+        uploadAdmission.getObject().connectionLost();
+        uploadDedup.getObject().connectionLost();
+        uploadResults.connectionLost();
     }
 
     @Override
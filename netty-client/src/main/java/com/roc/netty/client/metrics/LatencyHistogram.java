@@ -0,0 +1,82 @@
+package com.roc.netty.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图（纳秒），HdrHistogram式的对数-线性分桶：
+ * 小于64的值每个值一个桶，之后每个2的幂区间分32个等宽子桶，相对误差不超过1/32。
+ * 只能由一个线程写入，任意线程读取；写入只更新计数，不加锁、不分配内存。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << (SUB_BUCKET_BITS - 1);
+    // 超过该值(约18分钟)的记为该值
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    /**
+     * 桶的个数
+     */
+    public static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * 记录一个值，只能在写入线程调用
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        int index = indexOf(value);
+        // 单线程写入，lazySet 保证其他线程最终可见且无需CAS
+        counts.lazySet(index, counts.get(index) + 1);
+        sum.lazySet(sum.get() + value);
+    }
+
+    /**
+     * 把各桶计数累加到 merged，返回值的总和
+     */
+    public long addTo(long[] merged) {
+        for (int i = 0; i < BUCKETS; i++) {
+            merged[i] += counts.get(i);
+        }
+        return sum.get();
+    }
+
+    /**
+     * 第index个桶内的最大值
+     */
+    public static long highestEquivalent(int index) {
+        int bucket = index < 2 * SUB_BUCKET_HALF_COUNT ? 0 : index / SUB_BUCKET_HALF_COUNT - 1;
+        long subBucket = index - (long) bucket * SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+    /**
+     * 合并后的计数中第 quantile 分位的值（桶内最大值），没有记录时为0
+     */
+    public static long valueAtQuantile(long[] merged, double quantile) {
+        long total = 0;
+        for (long count : merged) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < merged.length; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return highestEquivalent(i);
+            }
+        }
+        return highestEquivalent(merged.length - 1);
+    }
+
+    private static int indexOf(long value) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        return bucket * SUB_BUCKET_HALF_COUNT + (int) (value >>> bucket);
+    }
+}
@@ -0,0 +1,211 @@
+package com.roc.netty.client.metrics;
+
+import com.roc.netty.client.constant.Constants;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按消息类型统计收发的帧数、字节数和处理延迟
+ * 每个线程写入自己的计数器，读取时合并，记录时不加锁、不分配内存。
+ */
+@Component
+public class MessageMetrics {
+
+    private static final int TYPES = 128;
+    private static final int FRAMES_IN = 0;
+    private static final int BYTES_IN = 1;
+    private static final int FRAMES_OUT = 2;
+    private static final int BYTES_OUT = 3;
+    private static final int COUNTERS = 4;
+
+    // 帧在消息长度之外的开销：长度前缀(4) + 消息长度字段(4)
+    private static final int FRAME_OVERHEAD = 8;
+
+    // Prometheus 直方图的桶上限(秒)
+    private static final double[] LATENCY_BUCKETS = {
+            0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01,
+            0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final String[] TYPE_NAMES = typeNames();
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+
+    private final FastThreadLocal<Recorder> recorder = new FastThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            Recorder created = new Recorder();
+            recorders.add(created);
+            return created;
+        }
+    };
+
+    /**
+     * 收到一帧
+     *
+     * @param length 消息长度（MessageProtocol.length）
+     */
+    public void inbound(byte type, int length) {
+        recorder.get().add(type, FRAMES_IN, BYTES_IN, length + FRAME_OVERHEAD);
+    }
+
+    /**
+     * 发出一帧
+     */
+    public void outbound(byte type, int length) {
+        recorder.get().add(type, FRAMES_OUT, BYTES_OUT, length + FRAME_OVERHEAD);
+    }
+
+    /**
+     * 一帧从解码完成到业务处理器处理完的耗时
+     */
+    public void handled(byte type, long nanos) {
+        recorder.get().histogram(type).record(nanos);
+    }
+
+    /**
+     * Prometheus 文本格式（0.0.4）输出
+     */
+    public String prometheus() {
+        long[] counters = new long[TYPES * COUNTERS];
+        long[][] latencies = new long[TYPES][];
+        long[] latencySums = new long[TYPES];
+        for (Recorder each : recorders) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] += each.counters.get(i);
+            }
+            for (int type = 0; type < TYPES; type++) {
+                LatencyHistogram histogram = each.histograms.get(type);
+                if (histogram != null) {
+                    if (latencies[type] == null) {
+                        latencies[type] = new long[LatencyHistogram.BUCKETS];
+                    }
+                    latencySums[type] += histogram.addTo(latencies[type]);
+                }
+            }
+        }
+
+        StringBuilder out = new StringBuilder(4096);
+        counter(out, counters, FRAMES_IN, "netty_frames_received_total", "Frames received, by message type");
+        counter(out, counters, BYTES_IN, "netty_bytes_received_total", "Bytes received including frame headers, by message type");
+        counter(out, counters, FRAMES_OUT, "netty_frames_sent_total", "Frames sent, by message type");
+        counter(out, counters, BYTES_OUT, "netty_bytes_sent_total", "Bytes sent including frame headers, by message type");
+
+        out.append("# HELP netty_handler_latency_seconds Time from frame decoded to business handler done, by message type\n");
+        out.append("# TYPE netty_handler_latency_seconds histogram\n");
+        for (int type = 0; type < TYPES; type++) {
+            long[] merged = latencies[type];
+            if (merged == null) {
+                continue;
+            }
+            long cumulative = 0;
+            int index = 0;
+            for (double bucket : LATENCY_BUCKETS) {
+                long limit = (long) (bucket * 1_000_000_000L);
+                while (index < merged.length && LatencyHistogram.highestEquivalent(index) <= limit) {
+                    cumulative += merged[index++];
+                }
+                out.append("netty_handler_latency_seconds_bucket{type=\"").append(TYPE_NAMES[type])
+                        .append("\",le=\"").append(BigDecimal.valueOf(bucket).stripTrailingZeros().toPlainString())
+                        .append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            while (index < merged.length) {
+                cumulative += merged[index++];
+            }
+            out.append("netty_handler_latency_seconds_bucket{type=\"").append(TYPE_NAMES[type])
+                    .append("\",le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append("netty_handler_latency_seconds_sum{type=\"").append(TYPE_NAMES[type]).append("\"} ")
+                    .append(latencySums[type] / 1e9).append('\n');
+            out.append("netty_handler_latency_seconds_count{type=\"").append(TYPE_NAMES[type]).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+
+        // 直方图的细分桶可以给出比上面固定桶更准确的分位数
+        out.append("# HELP netty_handler_latency_quantile_seconds Handler latency quantiles since start, by message type\n");
+        out.append("# TYPE netty_handler_latency_quantile_seconds gauge\n");
+        for (int type = 0; type < TYPES; type++) {
+            if (latencies[type] == null) {
+                continue;
+            }
+            for (double quantile : QUANTILES) {
+                out.append("netty_handler_latency_quantile_seconds{type=\"").append(TYPE_NAMES[type])
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(LatencyHistogram.valueAtQuantile(latencies[type], quantile) / 1e9).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, long[] counters, int counter, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (int type = 0; type < TYPES; type++) {
+            long value = counters[type * COUNTERS + counter];
+            if (value != 0) {
+                out.append(name).append("{type=\"").append(TYPE_NAMES[type]).append("\"} ").append(value).append('\n');
+            }
+        }
+    }
+
+    /**
+     * 消息类型名称
+     */
+    public static String typeName(byte type) {
+        return TYPE_NAMES[type & 0x7F];
+    }
+
+    /**
+     * 消息类型名称取自 Constants 中的类型常量，未定义的类型用数字
+     */
+    private static String[] typeNames() {
+        String[] names = new String[TYPES];
+        for (int type = 0; type < TYPES; type++) {
+            names[type] = String.valueOf(type);
+        }
+        for (Field field : Constants.class.getFields()) {
+            if (field.getType() == byte.class && Modifier.isStatic(field.getModifiers())
+                    && !field.getName().startsWith("FLAG_") && !field.getName().startsWith("TYPE_")) {
+                try {
+                    names[field.getByte(null) & 0x7F] = field.getName();
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 单个线程的计数器
+     */
+    private static class Recorder {
+        private final AtomicLongArray counters = new AtomicLongArray(TYPES * COUNTERS);
+        private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(TYPES);
+
+        void add(byte type, int frames, int bytes, int length) {
+            int base = (type & 0x7F) * COUNTERS;
+            // 只有本线程写入，lazySet 即可
+            counters.lazySet(base + frames, counters.get(base + frames) + 1);
+            counters.lazySet(base + bytes, counters.get(base + bytes) + length);
+        }
+
+        LatencyHistogram histogram(byte type) {
+            LatencyHistogram histogram = histograms.get(type & 0x7F);
+            if (histogram == null) {
+                // 每个线程每种类型只在第一次记录时创建
+                histogram = new LatencyHistogram();
+                histograms.set(type & 0x7F, histogram);
+            }
+            return histogram;
+        }
+    }
+}
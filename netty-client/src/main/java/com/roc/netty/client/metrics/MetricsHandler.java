@@ -0,0 +1,40 @@
+package com.roc.netty.client.metrics;
+
+import com.roc.netty.client.protocol.MessageProtocol;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 统计收发帧数和字节数，并为收到的消息记录解码完成时间
+ * 紧跟在 MessageDecoder 之后、IO线程中执行，统计的是压缩后在连接上传输的帧。
+ */
+@Component
+@RequiredArgsConstructor
+@ChannelHandler.Sharable
+public class MetricsHandler extends ChannelDuplexHandler {
+
+    private final MessageMetrics messageMetrics;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof MessageProtocol) {
+            MessageProtocol message = (MessageProtocol) msg;
+            message.setReceivedNanos(System.nanoTime());
+            messageMetrics.inbound(message.getType(), message.getLength());
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof MessageProtocol) {
+            MessageProtocol message = (MessageProtocol) msg;
+            messageMetrics.outbound(message.getType(), message.getLength());
+        }
+        ctx.write(msg, promise);
+    }
+}
@@ -0,0 +1,107 @@
+package com.roc.netty.client.netty;
+
+import com.roc.netty.client.constant.Constants;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 提取结果输出流
+ * 与 {@link FileUploadStream} 不同，数据块只在行边界切分，服务端收到的每一块都是完整的行
+ * 帧内容格式：
+ * +-----------+--------+----------+----------------+
+ * | ExtractId | Stream | BaseTime | Lines          |
+ * | 4字节      | 4字节   | 8字节     | 以换行分隔的行    |
+ * +-----------+--------+----------+----------------+
+ * Stream为该文件在本次提取中的序号；BaseTime为写入块内首行时该文件最近一个带时间戳的行的时间（没有时为-1），
+ * 块首的异常堆栈等不带时间戳的行沿用该时间，不依赖其他文件的块到达服务端的顺序
+ */
+public class ExtractResultStream extends OutputStream {
+
+    private static final int HEADER_LENGTH = 4 + 4 + 8;
+
+    private final NettyClient nettyClient;
+    private final int extractId;
+    private final int stream;
+    private final int chunkSize;
+
+    private byte[] chunk;
+    private int position = HEADER_LENGTH;
+    // 最近扫描到的带时间戳的行的时间，及当前块开始时的值
+    private long lastTime = -1;
+    private long baseTime = -1;
+
+    public ExtractResultStream(NettyClient nettyClient, int extractId, int stream, int chunkSize) {
+        this.nettyClient = nettyClient;
+        this.extractId = extractId;
+        this.stream = stream;
+        this.chunkSize = chunkSize;
+        this.chunk = new byte[HEADER_LENGTH + chunkSize];
+    }
+
+    /**
+     * 扫描到一个带时间戳的行（无论是否匹配），在写入该行之前调用
+     */
+    public void timestamp(long time) {
+        lastTime = time;
+    }
+
+    @Override
+    public void write(int b) {
+        reserve(1);
+        chunk[position++] = (byte) b;
+    }
+
+    /**
+     * 缓冲区按需扩容以容纳超长的行
+     */
+    @Override
+    public void write(byte[] b, int off, int len) {
+        reserve(len);
+        System.arraycopy(b, off, chunk, position, len);
+        position += len;
+    }
+
+    /**
+     * 一行写完后调用，缓冲的数据达到块大小时发送
+     */
+    public void endLine() throws IOException {
+        if (position == HEADER_LENGTH || chunk[position - 1] != '\n') {
+            write('\n');
+        }
+        if (position - HEADER_LENGTH >= chunkSize) {
+            send();
+        }
+    }
+
+    /**
+     * 发送剩余的行
+     */
+    @Override
+    public void flush() throws IOException {
+        if (position > HEADER_LENGTH) {
+            send();
+        }
+    }
+
+    private void send() throws IOException {
+        byte[] frame = Arrays.copyOf(chunk, position);
+        position = HEADER_LENGTH;
+        ByteBuffer.wrap(frame).putInt(extractId).putInt(stream).putLong(baseTime);
+        nettyClient.sendFrame(Constants.EXTRACT_DATA, frame);
+    }
+
+    /**
+     * 写入前按需扩容；块内第一次写入时记录块的起始时间
+     */
+    private void reserve(int length) {
+        if (position == HEADER_LENGTH) {
+            baseTime = lastTime;
+        }
+        if (position + length > chunk.length) {
+            chunk = Arrays.copyOf(chunk, Math.max(chunk.length * 2, position + length));
+        }
+    }
+}
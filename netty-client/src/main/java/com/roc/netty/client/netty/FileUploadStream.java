@@ -0,0 +1,158 @@
+package com.roc.netty.client.netty;
+
+import com.roc.netty.client.constant.Constants;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 文件分块上传输出流
+ * 写入的字节按固定大小切块，每块作为一帧FILE_UPLOAD_CHUNK直接写入Channel；
+ * 数据块异步写出失败或服务端已回复错误时，之后的写入和关闭抛出IOException
+ * 帧内容格式：
+ * +------------+---------+
+ * | TransferId | Data    |
+ * | 4字节      | N字节    |
+ * +------------+---------+
+ */
+public class FileUploadStream extends OutputStream {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024; // 64KB
+    private static final int HEADER_LENGTH = 4;
+    private static final AtomicInteger TRANSFER_ID = new AtomicInteger();
+
+    private final NettyClient nettyClient;
+    private final int transferId;
+    private final int chunkSize;
+    // 服务端的上传结果，传输过程中收到错误时不再发送，为null时不检查
+    private final CompletableFuture<?> result;
+    // 第一次异步写出失败的原因
+    private final AtomicReference<Throwable> writeFailure = new AtomicReference<>();
+
+    private byte[] chunk;
+    private int position = HEADER_LENGTH;
+    private long bytesSent;
+    private boolean closed;
+
+    public FileUploadStream(NettyClient nettyClient, int transferId) {
+        this(nettyClient, transferId, DEFAULT_CHUNK_SIZE, null);
+    }
+
+    public FileUploadStream(NettyClient nettyClient, int transferId, CompletableFuture<?> result) {
+        this(nettyClient, transferId, DEFAULT_CHUNK_SIZE, result);
+    }
+
+    public FileUploadStream(NettyClient nettyClient, int transferId, int chunkSize, CompletableFuture<?> result) {
+        this.nettyClient = nettyClient;
+        this.transferId = transferId;
+        this.chunkSize = chunkSize;
+        this.result = result;
+        this.chunk = newChunk();
+    }
+
+    /**
+     * 生成本进程内唯一的传输ID
+     */
+    public static int nextTransferId() {
+        return TRANSFER_ID.incrementAndGet();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        chunk[position++] = (byte) b;
+        if (position == chunk.length) {
+            sendChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(b, off, chunk, position, n);
+            position += n;
+            off += n;
+            len -= n;
+            if (position == chunk.length) {
+                sendChunk();
+            }
+        }
+    }
+
+    /**
+     * 发送最后一个不满的数据块
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        checkFailure();
+        if (position > HEADER_LENGTH) {
+            sendChunk(Arrays.copyOf(chunk, position));
+        }
+        chunk = null;
+        checkFailure();
+    }
+
+    /**
+     * 已发送的数据字节数（不含帧头）
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public int getTransferId() {
+        return transferId;
+    }
+
+    private void sendChunk() throws IOException {
+        byte[] frame = chunk;
+        // 数组交给编码器异步写出，这里换一个新数组继续写
+        chunk = newChunk();
+        position = HEADER_LENGTH;
+        sendChunk(frame);
+    }
+
+    private void sendChunk(byte[] frame) throws IOException {
+        frame[0] = (byte) (transferId >>> 24);
+        frame[1] = (byte) (transferId >>> 16);
+        frame[2] = (byte) (transferId >>> 8);
+        frame[3] = (byte) transferId;
+        bytesSent += frame.length - HEADER_LENGTH;
+        nettyClient.sendFrame(Constants.FILE_UPLOAD_CHUNK, frame, writeFailure);
+    }
+
+    private byte[] newChunk() {
+        return new byte[HEADER_LENGTH + chunkSize];
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Upload stream closed");
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable failure = writeFailure.get();
+        if (failure != null) {
+            throw new IOException("Failed to send chunk of transfer " + transferId, failure);
+        }
+        if (result != null && result.isCompletedExceptionally()) {
+            try {
+                result.join();
+            } catch (CompletionException e) {
+                throw new IOException("Upload rejected by server: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+}
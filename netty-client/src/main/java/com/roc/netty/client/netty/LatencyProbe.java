@@ -0,0 +1,154 @@
+package com.roc.netty.client.netty;
+
+import com.roc.netty.client.config.NettyConfig;
+import com.roc.netty.client.constant.Constants;
+import com.roc.netty.client.metrics.LatencyHistogram;
+import com.roc.netty.client.protocol.MessageProtocol;
+import io.netty.channel.Channel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 往返延迟探测：定时发送带时间戳的探测帧，服务端在IO线程和业务线程处理完后各回复一次
+ * IO线程回复的往返时间减去服务端停留时间为网络时间，业务线程回复中的服务端停留时间为业务线程池排队时间。
+ * 发送与接收都在连接的IO线程中执行，直方图只由该线程写入。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LatencyProbe {
+
+    private static final byte STAGE_IO = 1;
+    private static final byte STAGE_BUSINESS = 2;
+    private static final int PROBE_LENGTH = 32;
+    private static final int REPLY_LENGTH = 25;
+
+    private final NettyConfig nettyConfig;
+
+    private final LatencyHistogram ioRtt = new LatencyHistogram();
+    private final LatencyHistogram businessRtt = new LatencyHistogram();
+    private final LatencyHistogram network = new LatencyHistogram();
+    private final LatencyHistogram serverQueue = new LatencyHistogram();
+
+    private volatile ScheduledFuture<?> task;
+    private volatile long sent;
+    private volatile long replies;
+    private long lastIoRtt;
+    private long lastBusinessRtt;
+
+    /**
+     * 连接建立后开始定时探测
+     */
+    public void start(Channel channel) {
+        NettyConfig.ClientConfig config = nettyConfig.getClient();
+        if (!config.isLatencyProbe()) {
+            return;
+        }
+        stop();
+        long interval = config.getLatencyProbeIntervalMillis();
+        task = channel.eventLoop().scheduleAtFixedRate(() -> send(channel), interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 连接断开，停止探测
+     */
+    public void stop() {
+        ScheduledFuture<?> current = task;
+        if (current != null) {
+            current.cancel(false);
+            task = null;
+        }
+    }
+
+    private void send(Channel channel) {
+        if (!channel.isActive()) {
+            return;
+        }
+        ByteBuffer content = ByteBuffer.allocate(PROBE_LENGTH);
+        content.putLong(sent + 1);
+        content.putLong(System.nanoTime());
+        content.putLong(lastIoRtt);
+        content.putLong(lastBusinessRtt);
+
+        MessageProtocol message = new MessageProtocol();
+        message.setType(Constants.LATENCY_PROBE);
+        message.setLength(1 + PROBE_LENGTH);
+        message.setContent(content.array());
+        channel.writeAndFlush(message);
+        sent++;
+    }
+
+    /**
+     * 收到服务端回复，在IO线程中调用
+     */
+    public void onReply(byte[] content) {
+        if (content == null || content.length < REPLY_LENGTH) {
+            log.warn("Invalid latency probe reply length: {}", content == null ? 0 : content.length);
+            return;
+        }
+        ByteBuffer reply = ByteBuffer.wrap(content);
+        long rtt = System.nanoTime() - reply.getLong(8);
+        byte stage = reply.get(16);
+        long serverNanos = reply.getLong(17);
+        if (stage == STAGE_IO) {
+            ioRtt.record(rtt);
+            network.record(rtt - serverNanos);
+            lastIoRtt = rtt;
+        } else if (stage == STAGE_BUSINESS) {
+            businessRtt.record(rtt);
+            serverQueue.record(serverNanos);
+            lastBusinessRtt = rtt;
+        }
+        replies++;
+    }
+
+    /**
+     * 各阶段的延迟分位数，以及业务往返时间中网络与服务端排队各占多少（中位数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", nettyConfig.getClient().isLatencyProbe());
+        stats.put("sent", sent);
+        stats.put("replies", replies);
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stages.put("ioRoundTrip", summary(ioRtt));
+        stages.put("businessRoundTrip", summary(businessRtt));
+        stages.put("network", summary(network));
+        stages.put("serverQueue", summary(serverQueue));
+        stats.put("stages", stages);
+
+        Map<String, Object> breakdown = new LinkedHashMap<>();
+        breakdown.put("roundTripMillis", quantileMillis(businessRtt, 0.5));
+        breakdown.put("networkMillis", quantileMillis(network, 0.5));
+        breakdown.put("serverQueueMillis", quantileMillis(serverQueue, 0.5));
+        stats.put("p50Breakdown", breakdown);
+        return stats;
+    }
+
+    private static Map<String, Object> summary(LatencyHistogram histogram) {
+        long[] counts = counts(histogram);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("p50Millis", LatencyHistogram.valueAtQuantile(counts, 0.5) / 1e6);
+        summary.put("p90Millis", LatencyHistogram.valueAtQuantile(counts, 0.9) / 1e6);
+        summary.put("p99Millis", LatencyHistogram.valueAtQuantile(counts, 0.99) / 1e6);
+        summary.put("maxMillis", LatencyHistogram.valueAtQuantile(counts, 1) / 1e6);
+        return summary;
+    }
+
+    private static double quantileMillis(LatencyHistogram histogram, double quantile) {
+        return LatencyHistogram.valueAtQuantile(counts(histogram), quantile) / 1e6;
+    }
+
+    private static long[] counts(LatencyHistogram histogram) {
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(counts);
+        return counts;
+    }
+}
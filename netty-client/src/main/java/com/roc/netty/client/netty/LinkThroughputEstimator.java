@@ -0,0 +1,41 @@
+package com.roc.netty.client.netty;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 链路吞吐估算
+ * 只在出站缓冲超过高水位、发送方必须等待时采样：此时缓冲区的排空速度就是链路实际能承载的速度。
+ * 采样按指数加权平均，长时间没有新采样则认为估算已过期。
+ */
+public class LinkThroughputEstimator {
+
+    private static final double ALPHA = 0.3;
+    private static final long STALE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    // 太短的等待受调度抖动影响大，不计入
+    private static final long MIN_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private double bytesPerSecond = -1;
+    private long lastSampleNanos;
+
+    /**
+     * 记录一次排空：等待期间写出了drainedBytes字节，耗时elapsedNanos
+     */
+    public synchronized void record(long drainedBytes, long elapsedNanos) {
+        if (drainedBytes <= 0 || elapsedNanos < MIN_SAMPLE_NANOS) {
+            return;
+        }
+        double sample = drainedBytes * 1e9 / elapsedNanos;
+        bytesPerSecond = bytesPerSecond < 0 ? sample : ALPHA * sample + (1 - ALPHA) * bytesPerSecond;
+        lastSampleNanos = System.nanoTime();
+    }
+
+    /**
+     * 估算的链路吞吐（字节/秒），没有有效采样时返回-1，表示链路不是瓶颈或尚未测得
+     */
+    public synchronized long getBytesPerSecond() {
+        if (bytesPerSecond < 0 || System.nanoTime() - lastSampleNanos > STALE_NANOS) {
+            return -1;
+        }
+        return (long) bytesPerSecond;
+    }
+}
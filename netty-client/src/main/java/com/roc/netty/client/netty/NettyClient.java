@@ -1,17 +1,24 @@
 package com.roc.netty.client.netty;
 
+import com.roc.netty.client.codec.MessageCompressionHandler;
 import com.roc.netty.client.codec.MessageDecoder;
 import com.roc.netty.client.codec.MessageEncoder;
 import com.roc.netty.client.config.NettyConfig;
 import com.roc.netty.client.constant.Constants;
 import com.roc.netty.client.handler.ClientBusinessHandler;
 import com.roc.netty.client.handler.HeartbeatHandler;
+import com.roc.netty.client.metrics.LatencyHandler;
+import com.roc.netty.client.metrics.MetricsHandler;
 import com.roc.netty.client.protocol.MessageProtocol;
+import com.roc.netty.client.trace.Tracer;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -24,10 +31,12 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Netty客户端实现
@@ -41,20 +50,31 @@ public class NettyClient {
     private static final int LENGTH_FIELD_LENGTH = 4;
     private static final int LENGTH_ADJUSTMENT = 0;
     private static final int INITIAL_BYTES_TO_STRIP = 4;
+    // 出站缓冲水位，分块上传时超过高水位即等待写出，限制每次上传占用的内存
+    private static final int WRITE_BUFFER_LOW_WATER_MARK = 1024 * 1024; // 1MB
+    private static final int WRITE_BUFFER_HIGH_WATER_MARK = 2 * 1024 * 1024; // 2MB
 
     private final ClientBusinessHandler clientBusinessHandler;
     private final HeartbeatHandler heartbeatHandler;
+    private final MetricsHandler metricsHandler;
+    private final LatencyHandler latencyHandler;
+    private final Tracer tracer;
     private final NettyConfig nettyConfig;
     private final NioEventLoopGroup workerGroup;
     private final ExecutorService connectionExecutor;
+    private final LinkThroughputEstimator linkThroughput = new LinkThroughputEstimator();
 
     private volatile Channel channel;
     private volatile boolean running = true;
 
-    public NettyClient(NettyConfig nettyConfig, ClientBusinessHandler clientBusinessHandler, HeartbeatHandler heartbeatHandler) {
+    public NettyClient(NettyConfig nettyConfig, ClientBusinessHandler clientBusinessHandler, HeartbeatHandler heartbeatHandler,
+                       MetricsHandler metricsHandler, LatencyHandler latencyHandler, Tracer tracer) {
         this.nettyConfig = nettyConfig;
         this.clientBusinessHandler = clientBusinessHandler;
         this.heartbeatHandler = heartbeatHandler;
+        this.metricsHandler = metricsHandler;
+        this.latencyHandler = latencyHandler;
+        this.tracer = tracer;
 
         // 初始化工作线程组
         this.workerGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("netty-client-worker"));
@@ -102,12 +122,13 @@ public class NettyClient {
                     .channel(NioSocketChannel.class)
                     .option(ChannelOption.TCP_NODELAY, true)
                     .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeout())
+                    .option(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                            new WriteBufferWaterMark(WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_HIGH_WATER_MARK))
                     .handler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         protected void initChannel(SocketChannel ch) {
-                            ch.pipeline()
-
-                                    .addLast(new LengthFieldBasedFrameDecoder(
+                            ChannelPipeline p = ch.pipeline();
+                            p.addLast(new LengthFieldBasedFrameDecoder(
                                             MAX_FRAME_LENGTH,
                                             LENGTH_FIELD_OFFSET,
                                             LENGTH_FIELD_LENGTH,
@@ -115,14 +136,25 @@ public class NettyClient {
                                             INITIAL_BYTES_TO_STRIP))
                                     .addLast(new LengthFieldPrepender(4))
                                     .addLast(new MessageEncoder())
-                                    .addLast(new MessageDecoder())
-                                    .addLast(new IdleStateHandler(
+                                    .addLast(new MessageDecoder());
+                            // 按消息类型统计收发的帧，位于压缩之前，统计的是实际传输的大小
+                            if (config.isMetrics()) {
+                                p.addLast(metricsHandler);
+                            }
+                            // 业务消息预置字典压缩
+                            if (config.isMessageCompression()) {
+                                p.addLast(new MessageCompressionHandler(config.getMessageCompressionMinSize()));
+                            }
+                            p.addLast(new IdleStateHandler(
                                             config.getReaderIdleTimeSeconds(),
                                             config.getWriterIdleTimeSeconds(),
                                             config.getAllIdleTimeSeconds(),
                                             TimeUnit.SECONDS))
-                                    .addLast(heartbeatHandler)
-                                    .addLast(clientBusinessHandler);
+                                    .addLast(heartbeatHandler);
+                            if (config.isMetrics()) {
+                                p.addLast(latencyHandler);
+                            }
+                            p.addLast(clientBusinessHandler);
                         }
                     })
                     .connect(config.getHost(), config.getPort())
@@ -165,7 +197,7 @@ public class NettyClient {
             msg.setLength(1 + content.length);
             msg.setContent(content);
 
-            channel.writeAndFlush(msg);
+            tracer.send(channel, msg, isFile ? "send file" : "send message", String.valueOf(channel.remoteAddress()));
             log.debug("Message sent: {}", message);
             return true;
         } catch (Exception e) {
@@ -174,6 +206,63 @@ public class NettyClient {
         }
     }
 
+    /**
+     * 发送一帧消息，出站缓冲超过高水位时阻塞到该帧写出为止
+     * 用于文件分块流式上传，不能在EventLoop线程中调用
+     *
+     * @param type    消息类型
+     * @param content 消息内容
+     */
+    public void sendFrame(byte type, byte[] content) throws IOException {
+        sendFrame(type, content, null);
+    }
+
+    /**
+     * 发送一帧消息，出站缓冲超过高水位时阻塞到该帧写出为止
+     * 未等待写出的帧在返回后才可能失败，失败原因记录到failure（只保留第一次失败），由调用方在之后的写入中检查
+     *
+     * @param type    消息类型
+     * @param content 消息内容
+     * @param failure 记录异步写出失败，为null时不记录
+     */
+    public void sendFrame(byte type, byte[] content, AtomicReference<Throwable> failure) throws IOException {
+        Channel ch = this.channel;
+        if (ch == null || !ch.isActive()) {
+            throw new IOException("Not connected to server");
+        }
+
+        MessageProtocol msg = new MessageProtocol();
+        msg.setType(type);
+        msg.setLength(1 + content.length);
+        msg.setContent(content);
+
+        ChannelFuture future = ch.writeAndFlush(msg);
+        if (failure != null) {
+            future.addListener(f -> {
+                if (!f.isSuccess()) {
+                    failure.compareAndSet(null, f.cause());
+                }
+            });
+        }
+        if (!ch.isWritable()) {
+            // 等待本帧写出，此时之前排队的帧也已全部写出，排空速度即链路吞吐
+            ChannelOutboundBuffer outboundBuffer = ch.unsafe().outboundBuffer();
+            long pendingBytes = outboundBuffer != null ? outboundBuffer.totalPendingWriteBytes() : 0;
+            long start = System.nanoTime();
+            future.awaitUninterruptibly();
+            linkThroughput.record(pendingBytes, System.nanoTime() - start);
+        }
+        if (future.isDone() && !future.isSuccess()) {
+            throw new IOException("Failed to send frame", future.cause());
+        }
+    }
+
+    /**
+     * 估算的链路吞吐（字节/秒），未测得时返回-1
+     */
+    public long getLinkBytesPerSecond() {
+        return linkThroughput.getBytesPerSecond();
+    }
 
     /**
      * 检查客户端是否已连接
@@ -0,0 +1,120 @@
+package com.roc.netty.client.netty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.config.LogUploadConfig;
+import com.roc.netty.client.constant.Constants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 上传准入：开始上传前向服务端申报文件大小，等待服务端授予名额
+ * 由服务端根据写盘吞吐、负载和各客户端的公平性决定上传顺序，避免大量客户端同时上传压垮服务端。
+ * 服务端收到申报后立即确认排队；短时间内既没有确认也没有授予时视为服务端不支持准入，直接上传。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadAdmission {
+
+    private final NettyClient nettyClient;
+    private final ObjectMapper objectMapper;
+    private final LogUploadConfig logUploadConfig;
+
+    // transferId -> 等待中的授予
+    private final Map<Integer, Waiting> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * 申报并阻塞等待授予，不能在IO线程中调用
+     *
+     * @throws IOException 未连接、等待超时或等待期间连接断开
+     */
+    public void acquire(int transferId, String fileName, long size, String clientId) throws IOException {
+        LogUploadConfig.AdmissionConfig config = logUploadConfig.getAdmission();
+        if (!config.isEnabled()) {
+            return;
+        }
+        Waiting entry = new Waiting();
+        waiting.put(transferId, entry);
+        long start = System.nanoTime();
+        try {
+            Map<String, Object> announce = new LinkedHashMap<>();
+            announce.put("transferId", transferId);
+            announce.put("fileName", fileName);
+            announce.put("size", size);
+            announce.put("clientId", clientId);
+            // 超过等待时间后本端放弃，服务端不再为其保留排队位置
+            announce.put("waitSeconds", config.getGrantTimeoutSeconds());
+            nettyClient.sendFrame(Constants.UPLOAD_ANNOUNCE, objectMapper.writeValueAsBytes(announce));
+            try {
+                entry.queued.get(config.getQueuedTimeoutSeconds(), TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                log.warn("Server did not acknowledge upload announce of {} within {}s, uploading without admission",
+                        fileName, config.getQueuedTimeoutSeconds());
+                return;
+            }
+            long remaining = TimeUnit.SECONDS.toNanos(config.getGrantTimeoutSeconds()) - (System.nanoTime() - start);
+            entry.granted.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            log.info("Upload of {} granted after {} ms", fileName, (System.nanoTime() - start) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for upload grant");
+        } catch (ExecutionException e) {
+            throw new IOException("Upload grant failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for upload grant of " + fileName);
+        } finally {
+            waiting.remove(transferId);
+        }
+    }
+
+    /**
+     * 服务端确认申报已排队，内容（JSON）：transferId
+     */
+    public void onQueued(byte[] content) throws IOException {
+        JsonNode queued = objectMapper.readTree(content);
+        Waiting entry = waiting.get(queued.get("transferId").asInt());
+        if (entry != null) {
+            entry.queued.complete(null);
+        }
+    }
+
+    /**
+     * 收到服务端授予，内容（JSON）：transferId, waitedMillis
+     */
+    public void onGrant(byte[] content) throws IOException {
+        JsonNode grant = objectMapper.readTree(content);
+        Waiting entry = waiting.get(grant.get("transferId").asInt());
+        if (entry != null) {
+            entry.queued.complete(null);
+            entry.granted.complete(null);
+        }
+    }
+
+    /**
+     * 连接断开，服务端已丢弃申报，等待中的上传失败
+     */
+    public void connectionLost() {
+        for (Waiting entry : waiting.values()) {
+            IOException lost = new IOException("Connection lost");
+            entry.queued.completeExceptionally(lost);
+            entry.granted.completeExceptionally(lost);
+        }
+    }
+
+    private static class Waiting {
+        private final CompletableFuture<Void> queued = new CompletableFuture<>();
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+    }
+}
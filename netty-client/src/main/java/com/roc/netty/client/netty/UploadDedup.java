@@ -0,0 +1,114 @@
+package com.roc.netty.client.netty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.config.LogUploadConfig;
+import com.roc.netty.client.constant.Constants;
+import com.roc.netty.client.dedup.FileHashes;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 上传内容去重：上传前向服务端发送文件清单，由服务端回复需要上传的块
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadDedup {
+
+    public enum Status {
+        UNCHANGED,  // 服务端已有相同内容，不需上传
+        PARTIAL,  // 只上传缺失的块
+        FULL,  // 整文件上传，服务端记录块哈希
+        DISABLED  // 服务端未启用去重，不带清单上传
+    }
+
+    private final NettyClient nettyClient;
+    private final ObjectMapper objectMapper;
+    private final LogUploadConfig logUploadConfig;
+
+    // transferId -> 等待中的回复
+    private final Map<Integer, CompletableFuture<Reply>> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * 发送清单并阻塞等待回复，不能在IO线程中调用
+     *
+     * @throws IOException 未连接、等待超时或等待期间连接断开
+     */
+    public Reply negotiate(int transferId, String fileName, String clientId, FileHashes hashes) throws IOException {
+        CompletableFuture<Reply> reply = new CompletableFuture<>();
+        waiting.put(transferId, reply);
+        try {
+            Map<String, Object> manifest = new LinkedHashMap<>();
+            manifest.put("transferId", transferId);
+            manifest.put("fileName", fileName);
+            manifest.put("clientId", clientId);
+            manifest.put("size", hashes.getSize());
+            manifest.put("chunkSize", hashes.getChunkSize());
+            manifest.put("fileHash", hashes.getFileHash());
+            manifest.put("chunks", hashes.getChunks());
+            nettyClient.sendFrame(Constants.UPLOAD_MANIFEST, objectMapper.writeValueAsBytes(manifest));
+            return reply.get(logUploadConfig.getDedup().getReplyTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for manifest reply");
+        } catch (ExecutionException e) {
+            throw new IOException("Manifest reply failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for manifest reply of " + fileName);
+        } finally {
+            waiting.remove(transferId);
+        }
+    }
+
+    /**
+     * 收到服务端回复，内容（JSON）：transferId, status, missing
+     */
+    public void onReply(byte[] content) throws IOException {
+        JsonNode node = objectMapper.readTree(content);
+        CompletableFuture<Reply> future = waiting.get(node.get("transferId").asInt());
+        if (future == null) {
+            return;
+        }
+        Status status = Status.valueOf(node.get("status").asText().toUpperCase());
+        BitSet missing = null;
+        if (node.has("missing")) {
+            missing = new BitSet();
+            for (JsonNode index : node.get("missing")) {
+                missing.set(index.asInt());
+            }
+        }
+        future.complete(new Reply(status, missing));
+    }
+
+    /**
+     * 连接断开，等待中的上传失败
+     */
+    public void connectionLost() {
+        for (CompletableFuture<Reply> future : waiting.values()) {
+            future.completeExceptionally(new IOException("Connection lost"));
+        }
+    }
+
+    /**
+     * 服务端回复：状态与需要上传的块（仅PARTIAL）
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Reply {
+        private final Status status;
+        private final BitSet missing;
+    }
+}
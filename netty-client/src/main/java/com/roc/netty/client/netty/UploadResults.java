@@ -0,0 +1,116 @@
+package com.roc.netty.client.netty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.config.LogUploadConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 分块上传的结果：服务端落盘后回复FILE_SEND_TO_SERVER_RESPONSE，出错时回复错误帧，内容（JSON）：transferId, message
+ * 上传在收到落盘回复后才算成功；传输过程中收到错误时上传流立即失败，不再发送剩余的数据块
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadResults {
+
+    private final ObjectMapper objectMapper;
+    private final LogUploadConfig logUploadConfig;
+
+    // transferId -> 等待中的结果
+    private final Map<Integer, CompletableFuture<String>> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * 开始上传前登记，返回的future在收到服务端回复后完成
+     */
+    public CompletableFuture<String> expect(int transferId) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        waiting.put(transferId, result);
+        return result;
+    }
+
+    /**
+     * 阻塞等待服务端的落盘回复，不能在IO线程中调用
+     *
+     * @throws IOException 服务端回复错误、等待超时或等待期间连接断开
+     */
+    public String await(int transferId, String fileName) throws IOException {
+        CompletableFuture<String> result = waiting.get(transferId);
+        if (result == null) {
+            throw new IllegalStateException("Upload result not expected: " + transferId);
+        }
+        int timeoutSeconds = logUploadConfig.getResultTimeoutSeconds();
+        try {
+            return result.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for upload result");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for server to save " + fileName);
+        } finally {
+            waiting.remove(transferId);
+        }
+    }
+
+    /**
+     * 不再等待结果（上传已在本端失败或放弃）
+     */
+    public void cancel(int transferId) {
+        waiting.remove(transferId);
+    }
+
+    /**
+     * 收到落盘回复，整文件上传的纯文本回复不带传输ID，忽略
+     */
+    public void onResult(byte[] content) throws IOException {
+        JsonNode reply = readReply(content);
+        if (reply == null) {
+            return;
+        }
+        CompletableFuture<String> result = waiting.get(reply.path("transferId").asInt());
+        if (result != null) {
+            result.complete(reply.path("message").asText());
+        }
+    }
+
+    /**
+     * 收到错误回复
+     */
+    public void onError(byte[] content) throws IOException {
+        JsonNode reply = readReply(content);
+        if (reply == null) {
+            return;
+        }
+        CompletableFuture<String> result = waiting.get(reply.path("transferId").asInt());
+        if (result != null) {
+            result.completeExceptionally(new IOException(reply.path("message").asText()));
+        }
+    }
+
+    /**
+     * 连接断开，服务端已放弃未完成的上传，等待中的上传失败
+     */
+    public void connectionLost() {
+        for (CompletableFuture<String> result : waiting.values()) {
+            result.completeExceptionally(new IOException("Connection lost"));
+        }
+    }
+
+    private JsonNode readReply(byte[] content) throws IOException {
+        if (content == null || content.length == 0 || content[0] != '{') {
+            return null;
+        }
+        return objectMapper.readTree(content);
+    }
+}
@@ -1,5 +1,7 @@
 package com.roc.netty.client.service;
 
+import com.roc.netty.client.dto.ExtractRequest;
+
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.Map;
@@ -25,4 +27,14 @@ public interface LogFileService {
      * Send a file to the server
      */
     boolean sendFileToServer(Path filePath);
+
+    /**
+     * Scan local log files and send matching lines to the server, returns immediately
+     */
+    void extract(ExtractRequest request);
+
+    /**
+     * Stop a running extraction
+     */
+    void cancelExtract(int extractId);
 }
@@ -3,33 +3,75 @@ package com.roc.netty.client.service.impl;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.core.util.OptionHelper;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.compress.CodecSelector;
+import com.roc.netty.client.compress.CompressionCodec;
+import com.roc.netty.client.compress.ParallelBlockCompressor;
+import com.roc.netty.client.config.LogUploadConfig;
+import com.roc.netty.client.constant.Constants;
+import com.roc.netty.client.dedup.ChunkFilterStream;
+import com.roc.netty.client.dedup.ChunkHasher;
+import com.roc.netty.client.dedup.FileHashes;
+import com.roc.netty.client.dedup.HashCache;
+import com.roc.netty.client.dedup.XxHash64;
+import com.roc.netty.client.desensitize.DesensitizeEngine;
+import com.roc.netty.client.dto.ExtractRequest;
+import com.roc.netty.client.extract.ExtractJob;
+import com.roc.netty.client.extract.LineMatcher;
+import com.roc.netty.client.extract.LogTimestamps;
+import com.roc.netty.client.netty.ExtractResultStream;
+import com.roc.netty.client.netty.FileUploadStream;
 import com.roc.netty.client.netty.NettyClient;
+import com.roc.netty.client.netty.UploadAdmission;
+import com.roc.netty.client.netty.UploadDedup;
+import com.roc.netty.client.netty.UploadResults;
 import com.roc.netty.client.service.LogFileService;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.GZIPInputStream;
 
 @Slf4j
 @Service
@@ -42,16 +84,117 @@ public class LogFileServiceImpl implements LogFileService {
     @Value("${logUpload.bankAccount.isDesensitized:false}")
     private boolean beDesensitized;
 
-    @Value("${logUpload.bankAccount.regex:(\\d{4})(\\d{4,10})(\\d{4})}")
+    @Value("${logUpload.bankAccount.regex:" + DEFAULT_BANK_ACCOUNT_REGEX + "}")
     private String bankAccountRegex;
 
+    private static final String DEFAULT_BANK_ACCOUNT_REGEX = "(\\d{4})(\\d{4,10})(\\d{4})";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern FILE_DATE_PATTERN = Pattern.compile(".*(\\d{4}-\\d{2}-\\d{2}).*");
+
     private final NettyClient nettyClient;
     private final ObjectMapper objectMapper;
+    private final LogUploadConfig logUploadConfig;
+    private final CodecSelector codecSelector;
+    private final UploadAdmission uploadAdmission;
+    private final UploadDedup uploadDedup;
+    private final UploadResults uploadResults;
+    private final HashCache hashCache;
+
+    // 单遍多规则脱敏引擎，为null时不做脱敏
+    private DesensitizeEngine desensitizeEngine;
+
+    // regex引擎下预编译的银行卡号正则，每次上传创建一个Matcher逐行复用
+    private Pattern bankAccountPattern;
+
+    // 上传时声明的客户端标识
+    private String clientId;
+
+    // 脱敏规则的指纹，规则变化时上传内容的哈希缓存失效
+    private long maskingVariant;
+
+    // 并行上传：块压缩线程池、文件上传线程池，未启用时为null
+    private ForkJoinPool compressPool;
+    private ExecutorService fileUploadExecutor;
+    private ParallelBlockCompressor blockCompressor;
+
+    // 过滤提取：文件扫描线程池、进行中的提取
+    private ExecutorService extractExecutor;
+    private final Map<Integer, ExtractJob> extractJobs = new ConcurrentHashMap<>();
 
     private final String logRootDirectory = System.getProperty("user.dir")
             + File.separator
             + OptionHelper.substVars("${LOG_PATH}", (LoggerContext) LoggerFactory.getILoggerFactory());
 
+    @PostConstruct
+    public void init() {
+        clientId = StringUtils.hasText(logUploadConfig.getClientId()) ? logUploadConfig.getClientId() : hostClientId();
+
+        LogUploadConfig.MaskingConfig masking = logUploadConfig.getMasking();
+        if ("regex".equalsIgnoreCase(masking.getEngine())) {
+            if (masking.isPhone() || masking.isNationalId() || masking.isEmail() || !masking.getKeywords().isEmpty()) {
+                log.warn("logUpload.masking phone/nationalId/email/keywords rules need the scanner masking engine, "
+                        + "ignored by the regex engine");
+            }
+            if (beDesensitized) {
+                bankAccountPattern = Pattern.compile(bankAccountRegex);
+            }
+        } else {
+            if (beDesensitized && !DEFAULT_BANK_ACCOUNT_REGEX.equals(bankAccountRegex)) {
+                log.warn("logUpload.bankAccount.regex is ignored by the {} masking engine, "
+                        + "bank accounts are matched by its built-in 12-19 digit rule", masking.getEngine());
+            }
+            DesensitizeEngine engine = DesensitizeEngine.builder()
+                    .bankAccount(beDesensitized)
+                    .phone(masking.isPhone())
+                    .nationalId(masking.isNationalId())
+                    .email(masking.isEmail())
+                    .keywords(masking.getKeywords())
+                    .build();
+            desensitizeEngine = engine.isEnabled() ? engine : null;
+        }
+        byte[] rules = (masking + "|" + beDesensitized + "|" + bankAccountRegex).getBytes(StandardCharsets.UTF_8);
+        maskingVariant = XxHash64.hash(rules, 0, rules.length);
+
+        LogUploadConfig.ParallelConfig parallel = logUploadConfig.getParallel();
+        if (parallel.isEnabled()) {
+            compressPool = new ForkJoinPool(parallel.getParallelism());
+            fileUploadExecutor = Executors.newFixedThreadPool(parallel.getFileConcurrency(),
+                    new DefaultThreadFactory("log-upload"));
+            blockCompressor = new ParallelBlockCompressor(compressPool, parallel.getParallelism(),
+                    parallel.getBlockSize(), parallel.getMemoryBudget());
+            log.info("Parallel log upload enabled - parallelism: {}, files: {}, block size: {}, memory budget: {}",
+                    parallel.getParallelism(), parallel.getFileConcurrency(),
+                    parallel.getBlockSize(), parallel.getMemoryBudget());
+        }
+        extractExecutor = Executors.newFixedThreadPool(logUploadConfig.getExtract().getParallelism(),
+                new DefaultThreadFactory("log-extract"));
+    }
+
+    /**
+     * 以主机名作为客户端标识，去掉目录名中不安全的字符
+     */
+    private static String hostClientId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        String id = host.replaceAll("[^A-Za-z0-9._-]", "_");
+        return id.length() > 64 ? id.substring(0, 64) : id;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        extractExecutor.shutdownNow();
+        if (fileUploadExecutor != null) {
+            fileUploadExecutor.shutdownNow();
+        }
+        if (compressPool != null) {
+            compressPool.shutdownNow();
+        }
+    }
+
     @Override
     public Map<String, Object> uploadLogFilesByDateRange(LocalDate startDate, LocalDate endDate) {
         Map<String, Object> response = new HashMap<>();
@@ -81,13 +224,22 @@ public class LogFileServiceImpl implements LogFileService {
             }
 
             // Process the files...
-            for (Path filePath : fileList) {
-                boolean uploadSuccess = sendFileToServer(filePath);
-                if (!uploadSuccess) {
+            if (fileUploadExecutor != null) {
+                List<Path> failed = sendFilesConcurrently(fileList);
+                if (!failed.isEmpty()) {
                     response.put("success", false);
-                    response.put("message", "Failed to send file: " + filePath);
+                    response.put("message", "Failed to send files: " + failed);
                     return response;
                 }
+            } else {
+                for (Path filePath : fileList) {
+                    boolean uploadSuccess = sendFileToServer(filePath);
+                    if (!uploadSuccess) {
+                        response.put("success", false);
+                        response.put("message", "Failed to send file: " + filePath);
+                        return response;
+                    }
+                }
             }
 
             response.put("success", true);
@@ -102,6 +254,32 @@ public class LogFileServiceImpl implements LogFileService {
         }
     }
 
+    /**
+     * 多个文件并发上传，返回失败的文件
+     */
+    private List<Path> sendFilesConcurrently(List<Path> fileList) {
+        List<Future<Boolean>> futures = new ArrayList<>(fileList.size());
+        for (Path filePath : fileList) {
+            futures.add(fileUploadExecutor.submit(() -> sendFileToServer(filePath)));
+        }
+        List<Path> failed = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                if (!futures.get(i).get()) {
+                    failed.add(fileList.get(i));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.addAll(fileList.subList(i, fileList.size()));
+                break;
+            } catch (ExecutionException e) {
+                log.error("Error uploading file {}: {}", fileList.get(i), e.getCause().getMessage(), e.getCause());
+                failed.add(fileList.get(i));
+            }
+        }
+        return failed;
+    }
+
     private boolean isLogFileInDateRange(Path path, LocalDate startDate, LocalDate endDate) {
         String fileName = path.getFileName().toString().toLowerCase();
 
@@ -112,8 +290,7 @@ public class LogFileServiceImpl implements LogFileService {
 
         try {
             // Extract date from filename (assuming format like app-2023-01-01.log or 2023-01-01.log)
-            Pattern pattern = Pattern.compile(".*(\\d{4}-\\d{2}-\\d{2}).*");
-            Matcher matcher = pattern.matcher(fileName);
+            Matcher matcher = FILE_DATE_PATTERN.matcher(fileName);
 
             if (matcher.find()) {
                 String dateStr = matcher.group(1);
@@ -205,61 +382,443 @@ public class LogFileServiceImpl implements LogFileService {
 
     @Override
     public boolean sendFileToServer(Path filePath) {
+        int transferId = FileUploadStream.nextTransferId();
+        String fileName = filePath.getFileName().toString();
+
+        CodecSelector.Decision decision;
+        // 服务端落盘后的回复
+        CompletableFuture<String> result;
+        // 发送了内容清单时的哈希与需要上传的块，missing为null时整文件上传
+        FileHashes hashes = null;
+        BitSet missing = null;
         try {
-            // Read file content as text for masking
-            String fileContent = new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
-            String fileName = filePath.getFileName().toString();
-
-            // Mask bank account numbers if enabled
-            if (beDesensitized) {
-                fileContent = maskBankAccounts(fileContent);
+            decision = codecSelector.select(filePath, beCompressed, this::maskSample);
+            if (logUploadConfig.getDedup().isEnabled()) {
+                hashes = hashCache.get(filePath, decision.isRaw() ? 0 : maskingVariant,
+                        () -> hashContent(filePath, decision.isRaw()));
+                UploadDedup.Reply reply = negotiate(transferId, fileName, hashes);
+                if (reply == null || reply.getStatus() == UploadDedup.Status.DISABLED) {
+                    hashes = null;
+                } else if (reply.getStatus() == UploadDedup.Status.UNCHANGED) {
+                    log.info("File {} unchanged on server, upload skipped", fileName);
+                    return true;
+                } else if (reply.getStatus() == UploadDedup.Status.PARTIAL) {
+                    missing = reply.getMissing();
+                    log.info("File {} uploading {} of {} chunks", fileName, missing.cardinality(),
+                            hashes.getChunks().length);
+                }
             }
 
-            // Convert back to bytes for compression
-            byte[] contentBytes = fileContent.getBytes(StandardCharsets.UTF_8);
-            Map<String, Object> fileData = new HashMap<>();
-
-            fileData.put("fileName", fileName);
-            fileData.put("originalSize", contentBytes.length);
+            // 等待服务端授予上传名额后再开始发送
+            uploadAdmission.acquire(transferId, fileName, Files.size(filePath), clientId);
+            log.info("File {} upload codec {}", fileName, decision);
+
+            Map<String, Object> header = new HashMap<>();
+            header.put("transferId", transferId);
+            header.put("fileName", fileName);
+            header.put("beCompressed", decision.getCodec().isCompressed());
+            header.put("codec", decision.getCodec().name());
+            header.put("clientId", clientId);
+            header.put("binary", decision.isRaw());
+            header.put("manifest", hashes != null);
+            // 先登记再开始传输，传输过程中服务端的错误回复也能送达
+            result = uploadResults.expect(transferId);
+            nettyClient.sendFrame(Constants.FILE_UPLOAD_BEGIN, objectMapper.writeValueAsBytes(header));
+        } catch (IOException e) {
+            log.error("Error starting upload of file {}: {}", filePath, e.getMessage(), e);
+            uploadResults.cancel(transferId);
+            return false;
+        }
 
-            if (beCompressed) {
-                // Compress the content
-                byte[] compressedContent = compress(contentBytes);
-                fileData.put("compressedSize", compressedContent.length);
-                fileData.put("content", Base64.getEncoder().encodeToString(compressedContent));
-                fileData.put("beCompressed", true);
+        Map<String, Object> trailer = new HashMap<>();
+        trailer.put("transferId", transferId);
+        try {
+            // 读取 -> 逐行脱敏 -> 增量压缩 -> 按固定大小分块写入Channel，内存占用与文件大小无关
+            FileUploadStream uploadStream = new FileUploadStream(nettyClient, transferId, result);
+            CompressionCodec codec = decision.getCodec();
+            long originalSize;
+            if (missing != null) {
+                // 只发送服务端缺少的块，由服务端与已有的块按序还原；计算哈希之后追加的内容留给下次上传
+                try (OutputStream out = codec.wrap(uploadStream)) {
+                    writeContent(filePath, decision.isRaw(),
+                            new ChunkFilterStream(out, hashes.getChunkSize(), hashes.getSize(), missing));
+                }
+                originalSize = hashes.getSize();
+            } else if (decision.isRaw()) {
+                // 已压缩或二进制文件：不脱敏、不再压缩，原样发送
+                try (OutputStream out = uploadStream) {
+                    originalSize = Files.copy(filePath, out);
+                }
+            } else if (blockCompressor != null) {
+                // 并行：按行对齐分块，各块独立脱敏并压缩为独立的GZIP成员/Snappy流后按序拼接
+                try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+                     OutputStream out = uploadStream) {
+                    originalSize = blockCompressor.compress(channel, this::maskBlock, codec::wrap, out);
+                }
             } else {
-                // No compression
-                fileData.put("content", fileContent);
-                fileData.put("beCompressed", false);
+                try (OutputStream out = codec.wrap(uploadStream)) {
+                    originalSize = maskAndCopy(filePath, out);
+                }
             }
 
-            // Convert to JSON string and send
-            String jsonData = objectMapper.writeValueAsString(fileData);
-            return nettyClient.sendMessage(jsonData, true);
+            trailer.put("originalSize", originalSize);
+            trailer.put("compressedSize", uploadStream.getBytesSent());
+            nettyClient.sendFrame(Constants.FILE_UPLOAD_END, objectMapper.writeValueAsBytes(trailer));
 
         } catch (IOException e) {
             log.error("Error processing or sending file to server: {}", e.getMessage(), e);
+            // 服务端已回复错误时会忽略放弃通知
+            abortUpload(trailer);
+            uploadResults.cancel(transferId);
             return false;
         }
+
+        // 服务端落盘并回复后才算上传成功
+        try {
+            log.info("File {} uploaded: {}", fileName, uploadResults.await(transferId, fileName));
+            return true;
+        } catch (IOException e) {
+            log.error("Upload of file {} failed: {}", fileName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 发送内容清单，服务端未回复（如未支持去重）时返回null，按原方式整文件上传
+     */
+    private UploadDedup.Reply negotiate(int transferId, String fileName, FileHashes hashes) throws IOException {
+        try {
+            return uploadDedup.negotiate(transferId, fileName, clientId, hashes);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            if (!nettyClient.isConnected()) {
+                throw e;
+            }
+            log.warn("No manifest reply for {}, uploading whole file: {}", fileName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 计算上传内容（脱敏后、压缩前）的块哈希
+     */
+    private FileHashes hashContent(Path filePath, boolean raw) throws IOException {
+        ChunkHasher hasher = new ChunkHasher(logUploadConfig.getDedup().getChunkSize());
+        writeContent(filePath, raw, hasher);
+        return hasher.finish();
+    }
+
+    /**
+     * 将上传内容（脱敏后、压缩前）写入out，启用并行上传时按块并行脱敏
+     *
+     * @return 写入的字节数
+     */
+    private long writeContent(Path filePath, boolean raw, OutputStream out) throws IOException {
+        if (raw) {
+            return Files.copy(filePath, out);
+        }
+        if (blockCompressor != null) {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                return blockCompressor.compress(channel, this::maskBlock, stream -> stream, out);
+            }
+        }
+        return maskAndCopy(filePath, out);
+    }
+
+    /**
+     * 通知服务端放弃本次传输，连接已断开时由服务端在连接关闭时清理
+     */
+    private void abortUpload(Map<String, Object> trailer) {
+        if (!nettyClient.isConnected()) {
+            return;
+        }
+        try {
+            trailer.put("aborted", true);
+            nettyClient.sendFrame(Constants.FILE_UPLOAD_END, objectMapper.writeValueAsBytes(trailer));
+        } catch (IOException e) {
+            log.warn("Failed to abort upload {}: {}", trailer.get("transferId"), e.getMessage());
+        }
     }
 
     /**
-     * Masks bank account numbers in the content (keeps first 4 and last 4 digits)
+     * 通过FileChannel分块读取文件，按行脱敏后写入输出流
+     *
+     * @return 写入输出流的字节数
      */
-    private String maskBankAccounts(String content) {
-        return content.replaceAll(bankAccountRegex, "$1****$3");
+    private long maskAndCopy(Path filePath, OutputStream out) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        // 跨读缓冲区的不完整行
+        byte[] pending = new byte[256];
+        int pendingLength = 0;
+        int maxLineLength = logUploadConfig.getMaxLineLength();
+        long longLines = 0;
+        long written = 0;
+        Matcher matcher = bankAccountPattern != null ? bankAccountPattern.matcher("") : null;
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            int limit;
+            while ((limit = channel.read(ByteBuffer.wrap(buf))) != -1) {
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (buf[i] != '\n') {
+                        continue;
+                    }
+                    if (pendingLength > 0) {
+                        pending = append(pending, pendingLength, buf, lineStart, i + 1 - lineStart);
+                        written += writeLine(out, matcher, pending, 0, pendingLength + i + 1 - lineStart);
+                        pendingLength = 0;
+                    } else {
+                        written += writeLine(out, matcher, buf, lineStart, i + 1 - lineStart);
+                    }
+                    lineStart = i + 1;
+                }
+                if (lineStart < limit) {
+                    pending = append(pending, pendingLength, buf, lineStart, limit - lineStart);
+                    pendingLength += limit - lineStart;
+                    if (pendingLength >= maxLineLength) {
+                        // 超长的行（如没有换行的文件）按段脱敏写出，缓冲不超过 最大行长 + 读缓冲区
+                        written += writeLine(out, matcher, pending, 0, pendingLength);
+                        pendingLength = 0;
+                        longLines++;
+                    }
+                }
+            }
+        }
+        if (pendingLength > 0) {
+            written += writeLine(out, matcher, pending, 0, pendingLength);
+        }
+        if (longLines > 0) {
+            log.warn("File {} has lines longer than {} bytes, masked in {} segments", filePath, maxLineLength, longLines);
+        }
+        return written;
     }
 
     /**
-     * Compresses data using GZIP
+     * 选择编码前对采样内容脱敏，结果写回sample
+     *
+     * @return 脱敏后的长度
      */
-    private byte[] compress(byte[] data) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(data.length);
-        try (GZIPOutputStream gzipOS = new GZIPOutputStream(byteArrayOutputStream)) {
-            gzipOS.write(data);
+    private int maskSample(byte[] sample, int length) throws IOException {
+        if (desensitizeEngine == null && bankAccountPattern == null) {
+            return length;
         }
-        return byteArrayOutputStream.toByteArray();
+        ByteArrayOutputStream masked = new ByteArrayOutputStream(length);
+        maskBlock(sample, length, masked);
+        int maskedLength = Math.min(masked.size(), sample.length);
+        System.arraycopy(masked.toByteArray(), 0, sample, 0, maskedLength);
+        return maskedLength;
     }
 
+    /**
+     * 并行上传时处理一个按行对齐的块
+     */
+    private long maskBlock(byte[] block, int length, OutputStream out) throws IOException {
+        if (desensitizeEngine == null && bankAccountPattern == null) {
+            out.write(block, 0, length);
+            return length;
+        }
+        Matcher matcher = bankAccountPattern != null ? bankAccountPattern.matcher("") : null;
+        long written = 0;
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (block[i] == '\n') {
+                written += writeLine(out, matcher, block, lineStart, i + 1 - lineStart);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < length) {
+            written += writeLine(out, matcher, block, lineStart, length - lineStart);
+        }
+        return written;
+    }
+
+    @Override
+    public void extract(ExtractRequest request) {
+        request.setMaxLines(Math.min(request.getMaxLines() > 0 ? request.getMaxLines() : Long.MAX_VALUE,
+                logUploadConfig.getExtract().getMaxLines()));
+        ExtractJob job = new ExtractJob(request);
+        extractJobs.put(request.getExtractId(), job);
+        log.info("Extract {} started - days: {} ~ {}, levels: {}, literals: {}, regex: {}",
+                request.getExtractId(), request.getStartDay(), request.getEndDay(),
+                request.getLevels(), request.getLiterals(), request.getRegex());
+
+        // 列出文件后每个文件一个扫描任务，全部结束后发送统计；不在线程池内阻塞等待
+        CompletableFuture.supplyAsync(() -> listExtractFiles(request), extractExecutor)
+                .thenCompose(files -> CompletableFuture.allOf(IntStream.range(0, files.size())
+                        .mapToObj(i -> CompletableFuture.runAsync(
+                                () -> scanFile(job, files.get(i), i), extractExecutor))
+                        .toArray(CompletableFuture[]::new)))
+                .whenComplete((v, e) -> {
+                    if (e != null) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        log.error("Extract {} failed: {}", request.getExtractId(), cause.getMessage(), cause);
+                        job.fail(cause.getMessage() != null ? cause.getMessage() : cause.toString());
+                    }
+                    extractJobs.remove(request.getExtractId());
+                    sendExtractEnd(job);
+                });
+    }
+
+    @Override
+    public void cancelExtract(int extractId) {
+        ExtractJob job = extractJobs.get(extractId);
+        if (job != null) {
+            log.info("Extract {} cancelled by server", extractId);
+            job.cancel();
+        }
+    }
+
+    private List<Path> listExtractFiles(ExtractRequest request) {
+        Path root = Paths.get(logRootDirectory);
+        if (!Files.isDirectory(root)) {
+            return new ArrayList<>();
+        }
+        LocalDate startDate = LocalDate.parse(request.getStartDay());
+        LocalDate endDate = LocalDate.parse(request.getEndDay());
+        try (Stream<Path> walk = Files.walk(root)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(path -> isLogFileInDateRange(path, startDate, endDate))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading directory: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 逐行扫描一个文件，匹配的行脱敏后发送；同一文件内按原顺序发送
+     *
+     * @param stream 文件在本次提取中的序号，服务端按序号区分同一客户端并行扫描的文件
+     */
+    private void scanFile(ExtractJob job, Path filePath, int stream) {
+        if (job.isStopped()) {
+            return;
+        }
+        ExtractRequest request = job.getRequest();
+        LineMatcher lineMatcher = new LineMatcher(request);
+        Matcher maskMatcher = bankAccountPattern != null ? bankAccountPattern.matcher("") : null;
+        ExtractResultStream out = new ExtractResultStream(nettyClient, request.getExtractId(), stream,
+                logUploadConfig.getExtract().getChunkSize());
+        LogTimestamps timestamps = new LogTimestamps(ZoneId.systemDefault());
+        byte[] buf = new byte[BUFFER_SIZE];
+        byte[] pending = new byte[256];
+        int pendingLength = 0;
+        int maxLineLength = logUploadConfig.getMaxLineLength();
+        long scanned = 0;
+
+        try (InputStream in = openForScan(filePath)) {
+            int limit;
+            while (!job.isStopped() && (limit = in.read(buf)) != -1) {
+                scanned += limit;
+                int lineStart = 0;
+                for (int i = 0; i < limit && !job.isStopped(); i++) {
+                    if (buf[i] != '\n') {
+                        continue;
+                    }
+                    if (pendingLength > 0) {
+                        // 超过最大行长的部分丢弃
+                        int tail = Math.min(i - lineStart, maxLineLength - pendingLength);
+                        pending = append(pending, pendingLength, buf, lineStart, tail);
+                        extractLine(job, lineMatcher, maskMatcher, timestamps, out, pending, 0, pendingLength + tail);
+                        pendingLength = 0;
+                    } else {
+                        extractLine(job, lineMatcher, maskMatcher, timestamps, out, buf, lineStart, i - lineStart);
+                    }
+                    lineStart = i + 1;
+                }
+                if (lineStart < limit) {
+                    int keep = Math.min(limit - lineStart, maxLineLength - pendingLength);
+                    pending = append(pending, pendingLength, buf, lineStart, keep);
+                    pendingLength += keep;
+                }
+            }
+            if (pendingLength > 0 && !job.isStopped()) {
+                extractLine(job, lineMatcher, maskMatcher, timestamps, out, pending, 0, pendingLength);
+            }
+            // 截断或取消时已匹配的行仍然发出
+            out.flush();
+            job.fileScanned(scanned);
+        } catch (IOException e) {
+            log.error("Extract {} error scanning file {}: {}", request.getExtractId(), filePath, e.getMessage(), e);
+            job.fail(filePath.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private static InputStream openForScan(Path filePath) throws IOException {
+        InputStream in = Files.newInputStream(filePath);
+        if (filePath.getFileName().toString().toLowerCase().endsWith(".gz")) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /**
+     * 级别在原始行上判断，文本和正则在脱敏后的行上判断
+     */
+    private void extractLine(ExtractJob job, LineMatcher lineMatcher, Matcher maskMatcher, LogTimestamps timestamps,
+                             ExtractResultStream out, byte[] line, int offset, int length) throws IOException {
+        if (length > 0 && line[offset + length - 1] == '\r') {
+            length--;
+        }
+        // 不匹配的行也记录时间，块首的堆栈行沿用其所属行的时间
+        long time = timestamps.parse(line, offset, length);
+        if (time >= 0) {
+            out.timestamp(time);
+        }
+        if (length == 0 || !lineMatcher.matchesLevel(line, offset, length)) {
+            return;
+        }
+        if (desensitizeEngine != null) {
+            length = desensitizeEngine.mask(line, offset, length);
+        } else if (maskMatcher != null) {
+            maskMatcher.reset(new String(line, offset, length, StandardCharsets.UTF_8));
+            if (maskMatcher.find()) {
+                line = maskMatcher.replaceAll("$1****$3").getBytes(StandardCharsets.UTF_8);
+                offset = 0;
+                length = line.length;
+            }
+        }
+        if (lineMatcher.matchesContent(line, offset, length) && job.acquireLine()) {
+            out.write(line, offset, length);
+            out.endLine();
+        }
+    }
+
+    private void sendExtractEnd(ExtractJob job) {
+        Map<String, Object> summary = job.summary(clientId);
+        log.info("Extract finished - {}", summary);
+        try {
+            nettyClient.sendFrame(Constants.EXTRACT_END, objectMapper.writeValueAsBytes(summary));
+        } catch (IOException e) {
+            log.warn("Failed to send extract {} result: {}", summary.get("extractId"), e.getMessage());
+        }
+    }
+
+    /**
+     * 写出一行（包含行尾换行符），开启脱敏时先做掩码
+     */
+    private int writeLine(OutputStream out, Matcher matcher, byte[] line, int offset, int length) throws IOException {
+        if (desensitizeEngine != null) {
+            // 原地改写，不解码为String
+            length = desensitizeEngine.mask(line, offset, length);
+        } else if (matcher != null) {
+            matcher.reset(new String(line, offset, length, StandardCharsets.UTF_8));
+            if (matcher.find()) {
+                byte[] masked = matcher.replaceAll("$1****$3").getBytes(StandardCharsets.UTF_8);
+                out.write(masked);
+                return masked.length;
+            }
+        }
+        out.write(line, offset, length);
+        return length;
+    }
+
+    private static byte[] append(byte[] target, int targetLength, byte[] src, int offset, int length) {
+        if (targetLength + length > target.length) {
+            target = Arrays.copyOf(target, Math.max(target.length * 2, targetLength + length));
+        }
+        System.arraycopy(src, offset, target, targetLength, length);
+        return target;
+    }
 }
@@ -0,0 +1,47 @@
+package com.roc.netty.client.trace;
+
+import lombok.Getter;
+
+/**
+ * 一跳的跨度：发送方从发起到写出完成，接收方从解码完成到处理器处理完
+ * 字段在放入环形缓冲前赋值，之后不再修改。
+ */
+@Getter
+public class Span {
+
+    /**
+     * 发送方跨度
+     */
+    public static final String PRODUCER = "PRODUCER";
+
+    /**
+     * 接收方跨度
+     */
+    public static final String CONSUMER = "CONSUMER";
+
+    private final long traceId;
+    private final long id;
+    private final long parentId;
+    private final String name;
+    private final String kind;
+    private final byte messageType;
+    private final String peer;
+    private final long timestampMicros;
+    private final long durationMicros;
+
+    // 在环形缓冲中的序号，由 SpanRing 在发布前写入
+    long sequence;
+
+    public Span(long traceId, long id, long parentId, String name, String kind, byte messageType, String peer,
+                long timestampMicros, long durationMicros) {
+        this.traceId = traceId;
+        this.id = id;
+        this.parentId = parentId;
+        this.name = name;
+        this.kind = kind;
+        this.messageType = messageType;
+        this.peer = peer;
+        this.timestampMicros = timestampMicros;
+        this.durationMicros = durationMicros;
+    }
+}
@@ -0,0 +1,174 @@
+package com.roc.netty.client.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.client.config.NettyConfig;
+import com.roc.netty.client.metrics.MessageMetrics;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时把环形缓冲中的跨度导出为 Zipkin v2 JSON：写入本地文件（每行一个跨度）或 POST 到 HTTP 地址（跨度数组）
+ * 只在导出线程读取环形缓冲，导出失败的一批跨度丢弃，不重试。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SpanExporter {
+
+    private static final int HTTP_TIMEOUT_MILLIS = 5000;
+
+    private final NettyConfig nettyConfig;
+    private final Tracer tracer;
+    private final ObjectMapper objectMapper;
+
+    private ScheduledExecutorService scheduler;
+    private long cursor;
+    private final long[] dropped = new long[1];
+    private volatile long exported;
+    private volatile long droppedSpans;
+    private volatile long failures;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void start() {
+        if (!StringUtils.hasText(nettyConfig.getTrace().getExportFile()) && !StringUtils.hasText(nettyConfig.getTrace().getExportUrl())) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("span-exporter", true));
+        long interval = nettyConfig.getTrace().getExportIntervalMillis();
+        scheduler.scheduleWithFixedDelay(this::export, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Span export started, file: {}, url: {}", nettyConfig.getTrace().getExportFile(), nettyConfig.getTrace().getExportUrl());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            export();
+        }
+    }
+
+    private synchronized void export() {
+        List<Span> spans = new ArrayList<>();
+        cursor = tracer.ring().drain(cursor, spans, dropped);
+        droppedSpans = dropped[0];
+        if (spans.isEmpty()) {
+            return;
+        }
+        List<Map<String, Object>> zipkin = new ArrayList<>(spans.size());
+        for (Span span : spans) {
+            zipkin.add(zipkin(span));
+        }
+        try {
+            if (StringUtils.hasText(nettyConfig.getTrace().getExportFile())) {
+                writeFile(zipkin);
+            }
+            if (StringUtils.hasText(nettyConfig.getTrace().getExportUrl())) {
+                post(zipkin);
+            }
+            exported += spans.size();
+        } catch (Exception e) {
+            failures++;
+            lastError = e.toString();
+            log.warn("Failed to export {} spans: {}", spans.size(), e.toString());
+        }
+    }
+
+    private Map<String, Object> zipkin(Span span) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("traceId", Tracer.hex(span.getTraceId()));
+        json.put("id", Tracer.hex(span.getId()));
+        if (span.getParentId() != 0) {
+            json.put("parentId", Tracer.hex(span.getParentId()));
+        }
+        json.put("name", span.getName());
+        json.put("kind", span.getKind());
+        json.put("timestamp", span.getTimestampMicros());
+        json.put("duration", span.getDurationMicros());
+        Map<String, Object> endpoint = new LinkedHashMap<>();
+        endpoint.put("serviceName", nettyConfig.getTrace().getServiceName());
+        json.put("localEndpoint", endpoint);
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("messageType", MessageMetrics.typeName(span.getMessageType()));
+        if (span.getPeer() != null) {
+            tags.put("peer", span.getPeer());
+        }
+        json.put("tags", tags);
+        return json;
+    }
+
+    private void writeFile(List<Map<String, Object>> spans) throws IOException {
+        Path file = Paths.get(nettyConfig.getTrace().getExportFile());
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Map<String, Object> span : spans) {
+                writer.write(objectMapper.writeValueAsString(span));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private void post(List<Map<String, Object>> spans) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(nettyConfig.getTrace().getExportUrl()).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(HTTP_TIMEOUT_MILLIS);
+            connection.setReadTimeout(HTTP_TIMEOUT_MILLIS);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                objectMapper.writeValue(out, spans);
+            }
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new IOException("HTTP " + status + " from " + nettyConfig.getTrace().getExportUrl());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * 跨度记录与导出统计
+     */
+    public Map<String, Object> getStats() {
+        SpanRing ring = tracer.ring();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", nettyConfig.getTrace().isEnabled());
+        stats.put("sampleRate", nettyConfig.getTrace().getSampleRate());
+        stats.put("ringCapacity", ring.capacity());
+        stats.put("recorded", ring.written());
+        stats.put("exporting", scheduler != null);
+        stats.put("exported", exported);
+        stats.put("dropped", droppedSpans);
+        stats.put("exportFailures", failures);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
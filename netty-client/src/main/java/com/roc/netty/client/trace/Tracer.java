@@ -0,0 +1,127 @@
+package com.roc.netty.client.trace;
+
+import com.roc.netty.client.config.NettyConfig;
+import com.roc.netty.client.metrics.MessageMetrics;
+import com.roc.netty.client.protocol.MessageProtocol;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 消息追踪：按采样率为本端发起的消息分配追踪ID，并记录各跳的跨度
+ * 没被采样的消息帧头不带追踪上下文，也不记录跨度，只多一次随机数判断。
+ */
+@Component
+public class Tracer {
+
+    private final NettyConfig.TraceConfig traceConfig;
+    private final SpanRing ring;
+
+    // nanoTime 换算成纪元微秒的基准
+    private final long baseNanos = System.nanoTime();
+    private final long baseEpochMicros = System.currentTimeMillis() * 1000;
+
+    public Tracer(NettyConfig nettyConfig) {
+        this.traceConfig = nettyConfig.getTrace();
+        this.ring = new SpanRing(traceConfig.getRingSize());
+    }
+
+    /**
+     * 新ID，不为0
+     */
+    public static long nextId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    public boolean isEnabled() {
+        return traceConfig.isEnabled();
+    }
+
+    /**
+     * 按采样率决定是否追踪一条新发起的消息，追踪时返回新的追踪ID，否则返回0
+     */
+    public long sample() {
+        double rate = traceConfig.getSampleRate();
+        if (!traceConfig.isEnabled() || rate <= 0 || ThreadLocalRandom.current().nextDouble() >= rate) {
+            return 0;
+        }
+        return nextId();
+    }
+
+    /**
+     * 发送一条本端发起的消息，被采样时在帧头带上追踪上下文，并记录从发起到写出完成的跨度
+     * 须在 setLength 之后调用。
+     */
+    public ChannelFuture send(Channel channel, MessageProtocol message, String name, String peer) {
+        long traceId = sample();
+        if (traceId == 0) {
+            return channel.writeAndFlush(message);
+        }
+        long spanId = nextId();
+        message.setTrace(traceId, spanId);
+        long start = System.nanoTime();
+        ChannelFuture future = channel.writeAndFlush(message);
+        future.addListener(done -> record(traceId, spanId, 0, name, Span.PRODUCER, message.getType(), peer,
+                start, System.nanoTime()));
+        return future;
+    }
+
+    /**
+     * 记录一个跨度
+     *
+     * @param startNanos 开始时间(System.nanoTime)
+     * @param endNanos   结束时间(System.nanoTime)
+     */
+    public void record(long traceId, long spanId, long parentId, String name, String kind, byte messageType,
+                       String peer, long startNanos, long endNanos) {
+        if (!traceConfig.isEnabled()) {
+            return;
+        }
+        long timestamp = baseEpochMicros + (startNanos - baseNanos) / 1000;
+        long duration = Math.max(1, (endNanos - startNanos) / 1000);
+        ring.add(new Span(traceId, spanId, parentId, name, kind, messageType, peer, timestamp, duration));
+    }
+
+    SpanRing ring() {
+        return ring;
+    }
+
+    /**
+     * 最近记录的至多 limit 个跨度，新的在前
+     */
+    public List<Map<String, Object>> recent(int limit) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Span span : ring.recent(limit)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("traceId", hex(span.getTraceId()));
+            item.put("id", hex(span.getId()));
+            item.put("parentId", span.getParentId() != 0 ? hex(span.getParentId()) : null);
+            item.put("name", span.getName());
+            item.put("kind", span.getKind());
+            item.put("messageType", MessageMetrics.typeName(span.getMessageType()));
+            item.put("peer", span.getPeer());
+            item.put("timestampMicros", span.getTimestampMicros());
+            item.put("durationMicros", span.getDurationMicros());
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 16位十六进制ID，与 Zipkin 的格式一致
+     */
+    public static String hex(long id) {
+        String hex = Long.toHexString(id);
+        return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+}
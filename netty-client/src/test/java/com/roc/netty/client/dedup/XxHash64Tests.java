@@ -0,0 +1,35 @@
+package com.roc.netty.client.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XxHash64Tests {
+
+    private static long hash(String text, long seed) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        return XxHash64.hash(data, 0, data.length, seed);
+    }
+
+    @Test
+    void matchesReferenceVectors() {
+        // 参考实现（xxHash）的结果，覆盖 <4、<32 和 >=32 字节的输入
+        assertEquals(0xEF46DB3751D8E999L, hash("", 0));
+        assertEquals(0xD24EC4F1A98C6E5BL, hash("a", 0));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc", 0));
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition", 0));
+        assertEquals(0xB559B98D844E0635L, hash("xxhash", 20141025));
+    }
+
+    @Test
+    void hashesArrayRegions() {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        assertEquals(0x99594F4828043D35L, XxHash64.hash(data, 0, data.length));
+        assertEquals(0xCAD9EE8BBA9D4439L, XxHash64.hash(data, 3, 103));
+    }
+}
@@ -0,0 +1,51 @@
+package com.roc.netty.client.desensitize;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AhoCorasickTests {
+
+    /**
+     * 返回每个关键字结束位置的下标
+     */
+    private static List<Integer> matchEnds(AhoCorasick automaton, String text) {
+        List<Integer> ends = new ArrayList<>();
+        int state = automaton.start();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            state = automaton.next(state, bytes[i]);
+            if (automaton.isMatch(state)) {
+                ends.add(i);
+            }
+        }
+        return ends;
+    }
+
+    @Test
+    void matchesOverlappingKeywordsThroughFailureLinks() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "his", "hers"));
+        // ushers: she/he 结束于3，hers 结束于5
+        assertEquals(Arrays.asList(3, 5), matchEnds(automaton, "ushers"));
+        assertEquals(Arrays.asList(1, 5), matchEnds(automaton, "he his"));
+    }
+
+    @Test
+    void ignoresAsciiCase() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("password=", "Token="));
+        assertEquals(Collections.singletonList(8), matchEnds(automaton, "PASSWORD=x"));
+        assertEquals(Collections.singletonList(10), matchEnds(automaton, "user token=abc"));
+    }
+
+    @Test
+    void noMatchWithoutKeywords() {
+        assertEquals(Collections.emptyList(), matchEnds(new AhoCorasick(Arrays.asList("abc")), "ababab"));
+        assertEquals(Collections.emptyList(), matchEnds(new AhoCorasick(Collections.<String>emptyList()), "anything"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.roc.netty.client.desensitize;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DesensitizeEngineTests {
+
+    private final DesensitizeEngine engine = DesensitizeEngine.builder()
+            .bankAccount(true)
+            .phone(true)
+            .nationalId(true)
+            .email(true)
+            .keywords(Arrays.asList("password=", "token="))
+            .build();
+
+    private static String mask(DesensitizeEngine engine, String line) {
+        byte[] buf = line.getBytes(StandardCharsets.UTF_8);
+        int length = engine.mask(buf, 0, buf.length);
+        return new String(buf, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void masksPhoneNumber() {
+        assertEquals("tel 138****5678 end", mask(engine, "tel 13812345678 end"));
+        // 不以1开头的11位数字不是手机号
+        assertEquals("no 23812345678", mask(engine, "no 23812345678"));
+    }
+
+    @Test
+    void masksNationalId() {
+        assertEquals("id 110101********1234", mask(engine, "id 110101199001011234"));
+        assertEquals("id 110101********123X,", mask(engine, "id 11010119900101123X,"));
+    }
+
+    @Test
+    void shortensBankAccount() {
+        assertEquals("card 6222****7890 ok", mask(engine, "card 6222021234567890 ok"));
+        assertEquals("6222****4321", mask(engine, "6222021234567894321"));
+    }
+
+    @Test
+    void masksEmailLocalPart() {
+        assertEquals("mail j*******@example.com", mask(engine, "mail john.doe@example.com"));
+        // 没有域名的@不是邮箱
+        assertEquals("user@host says hi", mask(engine, "user@host says hi"));
+    }
+
+    @Test
+    void masksKeywordValues() {
+        assertEquals("password=**** next", mask(engine, "password=secret123 next"));
+        assertEquals("{\"TOKEN=***\"}", mask(engine, "{\"TOKEN=abc\"}"));
+    }
+
+    @Test
+    void leavesCleanLinesUntouched() {
+        String line = "2024-01-01 12:00:00.000 [main] INFO order 12345 done";
+        byte[] buf = line.getBytes(StandardCharsets.UTF_8);
+        byte[] before = buf.clone();
+        assertEquals(buf.length, engine.mask(buf, 0, buf.length));
+        assertEquals(new String(before, StandardCharsets.UTF_8), new String(buf, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void masksOnlyTheGivenRange() {
+        byte[] buf = "13812345678|13812345678|13812345678".getBytes(StandardCharsets.UTF_8);
+        int length = engine.mask(buf, 12, 11);
+        assertEquals(11, length);
+        assertEquals("13812345678|138****5678|13812345678", new String(buf, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void disabledRulesDoNotMask() {
+        DesensitizeEngine phoneOnly = DesensitizeEngine.builder().phone(true).build();
+        assertEquals("138****5678 6222021234567890 a.b@c.com",
+                mask(phoneOnly, "13812345678 6222021234567890 a.b@c.com"));
+        assertFalse(DesensitizeEngine.builder().build().isEnabled());
+        assertEquals("password=abc 13812345678", mask(DesensitizeEngine.builder().build(), "password=abc 13812345678"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.roc.netty.common.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * 系统CPU使用率
+ * JDK 14 起 getSystemCpuLoad 已废弃并由 getCpuLoad 取代，这里通过反射优先调用 getCpuLoad，在各JDK版本上都不依赖废弃方法。
+ */
+public final class CpuLoad {
+
+    private static final OperatingSystemMXBean OS_BEAN = ManagementFactory.getOperatingSystemMXBean();
+    private static final Method LOAD_METHOD = resolve();
+
+    private CpuLoad() {
+    }
+
+    /**
+     * 系统CPU使用率(0~1)，无法获取时返回-1
+     */
+    public static double system() {
+        if (LOAD_METHOD == null) {
+            return -1;
+        }
+        try {
+            return ((Number) LOAD_METHOD.invoke(OS_BEAN)).doubleValue();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static Method resolve() {
+        Class<?> type;
+        try {
+            type = Class.forName("com.sun.management.OperatingSystemMXBean");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!type.isInstance(OS_BEAN)) {
+            return null;
+        }
+        for (String name : new String[]{"getCpuLoad", "getSystemCpuLoad"}) {
+            try {
+                return type.getMethod(name);
+            } catch (NoSuchMethodException e) {
+                // JDK 14 之前没有 getCpuLoad
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.roc.netty.server.codec;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.SnappyFrameDecoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+
+import java.util.Map;
+
+/**
+ * 上传数据的压缩编码，与客户端 CompressionCodec 保持一致
+ * GZIP系列只是压缩级别不同，统一按GZIP解码
+ */
+public enum CompressionCodec {
+
+    STORE,
+    GZIP_FAST,
+    SNAPPY,
+    GZIP,
+    GZIP_BEST;
+
+    public boolean isCompressed() {
+        return this != STORE;
+    }
+
+    /**
+     * 创建流式解码器，STORE返回null
+     */
+    public ChannelHandler newDecoder() {
+        switch (this) {
+            case STORE:
+                return null;
+            case SNAPPY:
+                return new SnappyFrameDecoder(true);
+            default:
+                // 支持多个GZIP成员拼接的数据（并行压缩）
+                return new JdkZlibDecoder(ZlibWrapper.GZIP, true);
+        }
+    }
+
+    /**
+     * 从传输头解析编码：优先使用 codec 字段，旧版客户端只有 beCompressed
+     */
+    public static CompressionCodec fromHeader(Map<String, Object> header) {
+        Object codec = header.get("codec");
+        if (codec != null) {
+            return valueOf(codec.toString());
+        }
+        return Boolean.TRUE.equals(header.get("beCompressed")) ? GZIP : STORE;
+    }
+}
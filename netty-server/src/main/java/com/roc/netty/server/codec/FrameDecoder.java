@@ -0,0 +1,21 @@
+package com.roc.netty.server.codec;
+
+import com.roc.netty.server.metrics.ConnectionMemory;
+import com.roc.netty.server.metrics.MemoryAccountable;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+/**
+ * 基于长度字段的帧解码器，报告累积缓冲的大小
+ */
+public class FrameDecoder extends LengthFieldBasedFrameDecoder implements MemoryAccountable {
+
+    public FrameDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength,
+                        int lengthAdjustment, int initialBytesToStrip) {
+        super(maxFrameLength, lengthFieldOffset, lengthFieldLength, lengthAdjustment, initialBytesToStrip);
+    }
+
+    @Override
+    public void account(ConnectionMemory.Usage usage) {
+        usage.buffer(ConnectionMemory.Purpose.CUMULATION, internalBuffer());
+    }
+}
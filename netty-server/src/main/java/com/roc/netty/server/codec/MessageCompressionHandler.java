@@ -0,0 +1,162 @@
+package com.roc.netty.server.codec;
+
+import com.roc.netty.server.compress.DictionaryTrainer;
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.metrics.ConnectionMemory;
+import com.roc.netty.server.metrics.MemoryAccountable;
+import com.roc.netty.server.protocol.MessageProtocol;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.MessageToMessageCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * 业务消息预置字典压缩，每个连接一个实例
+ * 1. 有新字典时向客户端下发（连接建立时及重新训练后有消息经过时）；
+ * 2. 客户端确认某个版本后，发往该客户端的业务消息用该版本压缩；
+ * 3. 收到的压缩消息按帧中的字典版本解压；
+ * 4. 经过的业务消息原文交给字典训练器采样。
+ */
+@Slf4j
+public class MessageCompressionHandler extends MessageToMessageCodec<MessageProtocol, MessageProtocol>
+        implements MemoryAccountable {
+
+    private static final int MAX_MESSAGE_LENGTH = 100 * 1024 * 1024;
+    // zlib 本地内存：Deflater(最高级别，32KB窗口) 约 256KB + 状态，Inflater 约 7KB + 32KB窗口
+    private static final int DEFLATER_NATIVE_BYTES = 268 * 1024;
+    private static final int INFLATER_NATIVE_BYTES = 40 * 1024;
+
+    private final DictionaryTrainer dictionaryTrainer;
+    private final int minSize;
+    private final DictionaryDeflater deflater = new DictionaryDeflater(MAX_MESSAGE_LENGTH);
+
+    // 已下发和客户端已确认的字典版本，0表示没有
+    private short offeredVersion;
+    private short ackedVersion;
+
+    private long compressedMessages;
+    private long originalBytes;
+    private long compressedBytes;
+
+    public MessageCompressionHandler(DictionaryTrainer dictionaryTrainer, int minSize) {
+        this.dictionaryTrainer = dictionaryTrainer;
+        this.minSize = minSize;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        offerDictionary(ctx);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        deflater.end();
+        if (compressedMessages > 0) {
+            log.info("Message compression - channel: {}, messages: {}, {} -> {} bytes",
+                    ctx.channel().remoteAddress(), compressedMessages, originalBytes, compressedBytes);
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void account(ConnectionMemory.Usage usage) {
+        usage.add(ConnectionMemory.Purpose.COMPRESSION, ConnectionMemory.Kind.HEAP, deflater.bufferSize());
+        usage.add(ConnectionMemory.Purpose.COMPRESSION, ConnectionMemory.Kind.NATIVE,
+                DEFLATER_NATIVE_BYTES + INFLATER_NATIVE_BYTES);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, MessageProtocol msg, List<Object> out) {
+        offerDictionary(ctx);
+        if (isBusiness(msg.getType())) {
+            dictionaryTrainer.sample(msg.getContent());
+            if (ackedVersion != 0 && msg.getContent() != null && msg.getContent().length >= minSize) {
+                byte[] dictionary = dictionaryTrainer.get(ackedVersion);
+                byte[] compressed = dictionary != null ? deflater.deflate(msg.getContent(), dictionary) : null;
+                if (compressed != null) {
+                    out.add(compressedMessage(msg, compressed));
+                    return;
+                }
+            }
+        }
+        out.add(msg);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, MessageProtocol msg, List<Object> out) throws Exception {
+        if (msg.getType() == Constants.DICTIONARY_ACK) {
+            byte[] ack = msg.getContent();
+            if (ack == null || ack.length < 2) {
+                // 不足2字节的版本号，丢弃该确认，沿用之前确认的版本
+                log.warn("Invalid dictionary ack from {}, length: {}", ctx.channel().remoteAddress(),
+                        ack == null ? 0 : ack.length);
+                return;
+            }
+            ackedVersion = (short) (((ack[0] & 0xFF) << 8) | (ack[1] & 0xFF));
+            log.info("Client {} acknowledged message dictionary version {}", ctx.channel().remoteAddress(), ackedVersion);
+            return;
+        }
+        if ((msg.getFlags() & Constants.FLAG_DICT_COMPRESSED) != 0) {
+            byte[] dictionary = dictionaryTrainer.get(msg.getDictVersion());
+            if (dictionary == null) {
+                throw new DecoderException("Unknown message dictionary version: " + msg.getDictVersion());
+            }
+            byte[] content = deflater.inflate(msg.getContent(), dictionary);
+            msg.setFlags((byte) (msg.getFlags() & ~Constants.FLAG_DICT_COMPRESSED));
+            msg.setDictVersion((short) 0);
+            msg.setContent(content);
+            msg.setLength(1 + msg.extensionLength() + content.length);
+        }
+        if (isBusiness(msg.getType())) {
+            dictionaryTrainer.sample(msg.getContent());
+        }
+        offerDictionary(ctx);
+        out.add(msg);
+    }
+
+    /**
+     * 有未下发的新字典时发给客户端
+     */
+    private void offerDictionary(ChannelHandlerContext ctx) {
+        DictionaryTrainer.Dictionary dictionary = dictionaryTrainer.current();
+        if (dictionary == null || dictionary.getVersion() == offeredVersion) {
+            return;
+        }
+        offeredVersion = dictionary.getVersion();
+        byte[] content = new byte[2 + dictionary.getContent().length];
+        content[0] = (byte) (offeredVersion >> 8);
+        content[1] = (byte) offeredVersion;
+        System.arraycopy(dictionary.getContent(), 0, content, 2, dictionary.getContent().length);
+
+        MessageProtocol message = new MessageProtocol();
+        message.setType(Constants.DICTIONARY);
+        message.setLength(1 + content.length);
+        message.setContent(content);
+        ctx.writeAndFlush(message);
+        log.info("Message dictionary version {} sent to {}", offeredVersion, ctx.channel().remoteAddress());
+    }
+
+    private MessageProtocol compressedMessage(MessageProtocol msg, byte[] compressed) {
+        compressedMessages++;
+        originalBytes += msg.getContent().length;
+        compressedBytes += compressed.length;
+
+        MessageProtocol message = new MessageProtocol();
+        message.setType(msg.getType());
+        message.setMsgId(msg.getMsgId());
+        message.setFlags((byte) (Constants.FLAG_DICT_COMPRESSED | (msg.getFlags() & Constants.FLAG_TRACED)));
+        message.setDictVersion(ackedVersion);
+        message.setTraceId(msg.getTraceId());
+        message.setSpanId(msg.getSpanId());
+        message.setContent(compressed);
+        message.setLength(1 + message.extensionLength() + compressed.length);
+        return message;
+    }
+
+    private static boolean isBusiness(byte type) {
+        return type == Constants.BUSINESS_MESSAGE_REQUEST || type == Constants.BUSINESS_MESSAGE_RESPONSE;
+    }
+}
@@ -1,5 +1,9 @@
 package com.roc.netty.server.codec;
 
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.jfr.FrameDecodedEvent;
+import com.roc.netty.server.metrics.ConnectionMemory;
+import com.roc.netty.server.metrics.MemoryAccountable;
 import com.roc.netty.server.protocol.MessageProtocol;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -13,7 +17,7 @@ import java.util.List;
  * 将字节流解码为MessageProtocol对象
  */
 @Slf4j
-public class MessageDecoder extends ByteToMessageDecoder {
+public class MessageDecoder extends ByteToMessageDecoder implements MemoryAccountable {
 
     // 最小长度：长度字段(4) + 类型(1)
     private static final int MIN_LENGTH = 5;
@@ -38,13 +42,35 @@ public class MessageDecoder extends ByteToMessageDecoder {
             return;
         }
         
+        FrameDecodedEvent event = new FrameDecodedEvent();
+        event.begin();
         try {
             // 读取消息类型
             byte type = in.readByte();
+            int headerLength = 1;
+            byte flags = 0;
+            short dictVersion = 0;
+            long traceId = 0;
+            long spanId = 0;
+            if ((type & Constants.TYPE_EXTENDED) != 0) {
+                // 扩展头：标志 + 可选的字典版本 + 可选的追踪上下文
+                type = (byte) (type & ~Constants.TYPE_EXTENDED);
+                flags = in.readByte();
+                headerLength++;
+                if ((flags & Constants.FLAG_DICT_COMPRESSED) != 0) {
+                    dictVersion = in.readShort();
+                    headerLength += 2;
+                }
+                if ((flags & Constants.FLAG_TRACED) != 0) {
+                    traceId = in.readLong();
+                    spanId = in.readLong();
+                    headerLength += 16;
+                }
+            }
             
             // 读取消息内容
             byte[] content = null;
-            int contentLength = length - 1; // 减去类型字段的1个字节
+            int contentLength = length - headerLength; // 减去类型字段和扩展头
             if (contentLength > 0) {
                 content = new byte[contentLength];
                 in.readBytes(content);
@@ -54,10 +80,15 @@ public class MessageDecoder extends ByteToMessageDecoder {
             MessageProtocol message = new MessageProtocol();
             message.setLength(length);
             message.setType(type);
+            message.setFlags(flags);
+            message.setDictVersion(dictVersion);
+            message.setTraceId(traceId);
+            message.setSpanId(spanId);
             message.setContent(content);
             
             // 添加到输出列表，传递给下一个handler
             out.add(message);
+            event.record(type, length, ctx.channel().remoteAddress());
             
             if (log.isDebugEnabled()) {
                 log.debug("Decoded message - Type: {}, Length: {}, Content: {}", 
@@ -69,4 +100,9 @@ public class MessageDecoder extends ByteToMessageDecoder {
             throw e;
         }
     }
+
+    @Override
+    public void account(ConnectionMemory.Usage usage) {
+        usage.buffer(ConnectionMemory.Purpose.CUMULATION, internalBuffer());
+    }
 }
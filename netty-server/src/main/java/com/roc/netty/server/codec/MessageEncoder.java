@@ -1,5 +1,7 @@
 package com.roc.netty.server.codec;
 
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.jfr.FrameEncodedEvent;
 import com.roc.netty.server.protocol.MessageProtocol;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -20,17 +22,33 @@ public class MessageEncoder extends MessageToByteEncoder<MessageProtocol> {
             return;
         }
 
+        FrameEncodedEvent event = new FrameEncodedEvent();
+        event.begin();
         try {
             // 写入消息长度 (4字节)
             out.writeInt(msg.getLength());
             
             // 写入消息类型 (1字节)
-            out.writeByte(msg.getType());
+            if (msg.getFlags() == 0) {
+                out.writeByte(msg.getType());
+            } else {
+                // 扩展头：类型最高位置1，后跟标志、可选的字典版本和追踪上下文
+                out.writeByte(msg.getType() | Constants.TYPE_EXTENDED);
+                out.writeByte(msg.getFlags());
+                if ((msg.getFlags() & Constants.FLAG_DICT_COMPRESSED) != 0) {
+                    out.writeShort(msg.getDictVersion());
+                }
+                if ((msg.getFlags() & Constants.FLAG_TRACED) != 0) {
+                    out.writeLong(msg.getTraceId());
+                    out.writeLong(msg.getSpanId());
+                }
+            }
             
             // 写入消息内容
             if (msg.getContent() != null && msg.getContent().length > 0) {
                 out.writeBytes(msg.getContent());
             }
+            event.record(msg.getType(), msg.getLength(), ctx.channel().remoteAddress());
             
             if (log.isDebugEnabled()) {
                 log.debug("Encoded message - Type: {}, Length: {}, Content: {}", 
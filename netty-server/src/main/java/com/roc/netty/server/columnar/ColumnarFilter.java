@@ -0,0 +1,102 @@
+package com.roc.netty.server.columnar;
+
+import com.roc.netty.server.ingest.LogLineParser;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * 列式查询条件，各条件之间为且的关系
+ */
+@Getter
+public class ColumnarFilter {
+
+    // 时间范围 [from, to)
+    private final long from;
+    private final long to;
+    // 按级别编号索引，null表示不限级别
+    private final boolean[] levels;
+    private final int levelMask;
+    private final Pattern logger;
+    private final Pattern thread;
+    private final byte[] message;
+
+    /**
+     * @param levels  级别，逗号分隔，如 WARN,ERROR
+     * @param logger  logger名称，LIKE语法：% 匹配任意个字符，_ 匹配一个字符
+     * @param thread  线程名称，语法同上
+     * @param message 消息中包含的文本
+     */
+    public ColumnarFilter(long from, long to, String levels, String logger, String thread, String message) {
+        if (from >= to) {
+            throw new IllegalArgumentException("'from' must be earlier than 'to'");
+        }
+        this.from = from;
+        this.to = to;
+        this.levels = parseLevels(levels);
+        int mask = 0;
+        for (int i = 0; i < LogLineParser.LEVEL_NAMES.length; i++) {
+            if (this.levels == null || this.levels[i]) {
+                mask |= 1 << i;
+            }
+        }
+        this.levelMask = mask;
+        this.logger = like(logger);
+        this.thread = like(thread);
+        this.message = isBlank(message) ? null : message.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 对字典中的每个名称求一次匹配结果，之后按编码查表
+     */
+    static boolean[] match(Pattern pattern, String[] names) {
+        boolean[] matched = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            matched[i] = pattern.matcher(names[i]).matches();
+        }
+        return matched;
+    }
+
+    private static boolean[] parseLevels(String value) {
+        if (isBlank(value)) {
+            return null;
+        }
+        boolean[] levels = new boolean[LogLineParser.LEVEL_NAMES.length];
+        for (String name : value.split(",")) {
+            int level = LogLineParser.levelOf(name.trim());
+            if (level < 0) {
+                throw new IllegalArgumentException("Unknown log level: " + name.trim());
+            }
+            levels[level] = true;
+        }
+        return levels;
+    }
+
+    private static Pattern like(String value) {
+        if (isBlank(value)) {
+            return null;
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : value.trim().toCharArray()) {
+            if (c != '%' && c != '_') {
+                literal.append(c);
+                continue;
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            regex.append(c == '%' ? ".*" : ".");
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,493 @@
+package com.roc.netty.server.columnar;
+
+import com.roc.netty.server.compaction.RetentionTarget;
+import com.roc.netty.server.config.ColumnarConfig;
+import com.roc.netty.server.ingest.IngestListener;
+import com.roc.netty.server.ingest.LogLineParser;
+import com.roc.netty.server.logstore.LogStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 结构化日志列式存储
+ * 上传的日志按logback格式解析为 时间/级别/线程/logger/消息 五列，按 客户端/日期 分文件，
+ * 每满 rowGroupSize 行编码为一个行组追加到文件。查询时先按行组头部的时间范围和级别位图跳过行组，
+ * 再只读取条件和输出用到的列，在解码后的数组上逐列过滤。
+ * 保留清理按整个日文件删除。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ColumnarStore implements IngestListener, RetentionTarget {
+
+    private static final String SUFFIX = ".col";
+    private static final DateTimeFormatter ROW_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final DateTimeFormatter MINUTE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final IngestListener DISCARD = (clientId, line, offset, length) -> {
+    };
+
+    private final ColumnarConfig columnarConfig;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<String, NavigableMap<LocalDate, DayFile>> clients = new ConcurrentHashMap<>();
+
+    // 统计
+    private final LongAdder rowsIngested = new LongAdder();
+    private final LongAdder continuationLines = new LongAdder();
+    private final LongAdder droppedLines = new LongAdder();
+    private final LongAdder rowGroupsWritten = new LongAdder();
+    private final LongAdder rawMessageBytes = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (!columnarConfig.isEnabled()) {
+            return;
+        }
+        Path root = Paths.get(columnarConfig.getDirectory());
+        Files.createDirectories(root);
+        int files = 0;
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                NavigableMap<LocalDate, DayFile> days = days(dir.getFileName().toString());
+                try (Stream<Path> paths = Files.list(dir)) {
+                    for (Path file : (Iterable<Path>) paths::iterator) {
+                        LocalDate day = parseDay(file);
+                        if (day != null) {
+                            days.put(day, DayFile.open(day, file));
+                            files++;
+                        }
+                    }
+                }
+            }
+        }
+        log.info("Columnar store loaded - directory: {}, clients: {}, files: {}",
+                root.toAbsolutePath(), clients.size(), files);
+    }
+
+    /**
+     * 行之间有依赖（续行并入上一行），必须通过 {@link #forFile} 按文件消费
+     */
+    @Override
+    public void onLine(String clientId, byte[] line, int offset, int length) {
+        throw new IllegalStateException("Columnar store lines must be fed through forFile");
+    }
+
+    @Override
+    public IngestListener forFile(String clientId, String fileName) {
+        if (!columnarConfig.isEnabled() || !LogStore.isValidClientId(clientId)) {
+            return DISCARD;
+        }
+        return new FileIngest(clientId);
+    }
+
+    /**
+     * 查询符合条件的行，按日期和写入顺序返回
+     */
+    public Map<String, Object> query(String clientId, ColumnarFilter filter, int limit) throws IOException {
+        int maxRows = Math.max(1, Math.min(limit, columnarConfig.getMaxQueryRows()));
+        List<Map<String, Object>> rows = new ArrayList<>();
+        ScanStats stats = scan(clientId, filter, scan -> {
+            long[] times = scan.times();
+            byte[] levels = scan.levels();
+            String[] threads = scan.threadNames();
+            int[] threadCodes = scan.threadCodes();
+            String[] loggers = scan.loggerNames();
+            int[] loggerCodes = scan.loggerCodes();
+            RowGroup.Messages messages = scan.messages();
+            for (int i = 0; i < scan.selected.length; i++) {
+                if (!scan.selected[i]) {
+                    continue;
+                }
+                if (rows.size() == maxRows) {
+                    return false;
+                }
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("time", ROW_TIME_FORMAT.format(Instant.ofEpochMilli(times[i]).atZone(zone)));
+                row.put("level", LogLineParser.LEVEL_NAMES[levels[i]]);
+                row.put("thread", threads[threadCodes[i]]);
+                row.put("logger", loggers[loggerCodes[i]]);
+                row.put("message", messages.get(i));
+                rows.add(row);
+            }
+            return true;
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("clientId", clientId);
+        result.put("count", rows.size());
+        result.put("truncated", stats.stopped);
+        result.put("stats", stats.toMap());
+        result.put("rows", rows);
+        return result;
+    }
+
+    /**
+     * 统计符合条件的行数，可按 level / logger / thread / minute 分组
+     */
+    public Map<String, Object> count(String clientId, ColumnarFilter filter, String groupBy) throws IOException {
+        String group = groupBy == null ? "" : groupBy.trim().toLowerCase();
+        Map<String, Long> groups = "minute".equals(group) ? new TreeMap<>() : new HashMap<>();
+        long[] total = new long[1];
+        ScanStats stats = scan(clientId, filter, scan -> {
+            total[0] += scan.selectedCount;
+            boolean[] sel = scan.selected;
+            switch (group) {
+                case "":
+                    break;
+                case "level":
+                    addCounts(groups, sel, scan.levels(), LogLineParser.LEVEL_NAMES);
+                    break;
+                case "logger":
+                    addCounts(groups, sel, scan.loggerCodes(), scan.loggerNames());
+                    break;
+                case "thread":
+                    addCounts(groups, sel, scan.threadCodes(), scan.threadNames());
+                    break;
+                case "minute":
+                    long[] times = scan.times();
+                    long currentMinute = Long.MIN_VALUE;
+                    String key = null;
+                    for (int i = 0; i < sel.length; i++) {
+                        if (!sel[i]) {
+                            continue;
+                        }
+                        long minute = times[i] / 60000;
+                        if (minute != currentMinute) {
+                            currentMinute = minute;
+                            key = MINUTE_FORMAT.format(Instant.ofEpochMilli(minute * 60000).atZone(zone));
+                        }
+                        groups.merge(key, 1L, Long::sum);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported groupBy: " + groupBy);
+            }
+            return true;
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("clientId", clientId);
+        result.put("count", total[0]);
+        if (!group.isEmpty()) {
+            // 时间分组按时间排列，其余按行数从多到少
+            result.put("groups", "minute".equals(group) ? groups : groups.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new)));
+        }
+        result.put("stats", stats.toMap());
+        return result;
+    }
+
+    /**
+     * 各客户端的存储概况和写入统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> clientStats = new TreeMap<>();
+        for (Map.Entry<String, NavigableMap<LocalDate, DayFile>> entry : clients.entrySet()) {
+            long rowGroups = 0;
+            long rows = 0;
+            long bytes = 0;
+            for (DayFile dayFile : entry.getValue().values()) {
+                for (RowGroup rowGroup : dayFile.getRowGroups()) {
+                    rowGroups++;
+                    rows += rowGroup.rows;
+                }
+                bytes += dayFile.size();
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("days", entry.getValue().size());
+            stats.put("rowGroups", rowGroups);
+            stats.put("rows", rows);
+            stats.put("bytes", bytes);
+            clientStats.put(entry.getKey(), stats);
+        }
+        long raw = rawMessageBytes.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", columnarConfig.isEnabled());
+        stats.put("rowsIngested", rowsIngested.sum());
+        stats.put("continuationLines", continuationLines.sum());
+        stats.put("droppedLines", droppedLines.sum());
+        stats.put("rowGroupsWritten", rowGroupsWritten.sum());
+        stats.put("rawMessageBytes", raw);
+        stats.put("bytesWritten", bytesWritten.sum());
+        stats.put("clients", clientStats);
+        return stats;
+    }
+
+    @Override
+    public String getRetentionName() {
+        return "columnar";
+    }
+
+    @Override
+    public List<String> retentionClients() {
+        return new ArrayList<>(clients.keySet());
+    }
+
+    @Override
+    public List<Unit> retentionUnits(String clientId) {
+        List<Unit> units = new ArrayList<>();
+        NavigableMap<LocalDate, DayFile> days = clients.get(clientId);
+        if (days != null) {
+            for (DayFile dayFile : days.values()) {
+                units.add(new Unit(dayFile.getDay() + SUFFIX, dayFile.getDay(), dayFile.size(), false));
+            }
+        }
+        return units;
+    }
+
+    @Override
+    public long deleteUnit(String clientId, Unit unit) throws IOException {
+        NavigableMap<LocalDate, DayFile> days = clients.get(clientId);
+        DayFile dayFile = days != null ? days.remove(unit.getDay()) : null;
+        return dayFile != null ? dayFile.delete() : 0;
+    }
+
+    /**
+     * 扫描某客户端时间范围内的所有行组，对每个有命中的行组回调
+     */
+    private ScanStats scan(String clientId, ColumnarFilter filter, ScanVisitor visitor) throws IOException {
+        ScanStats stats = new ScanStats();
+        long startNanos = System.nanoTime();
+        NavigableMap<LocalDate, DayFile> days = clients.get(clientId);
+        if (days != null) {
+            LocalDate firstDay = Instant.ofEpochMilli(filter.getFrom()).atZone(zone).toLocalDate();
+            LocalDate lastDay = Instant.ofEpochMilli(filter.getTo() - 1).atZone(zone).toLocalDate();
+            for (DayFile dayFile : days.subMap(firstDay, true, lastDay, true).values()) {
+                if (!scan(dayFile, filter, visitor, stats)) {
+                    stats.stopped = true;
+                    break;
+                }
+            }
+        }
+        stats.elapsedNanos = System.nanoTime() - startNanos;
+        return stats;
+    }
+
+    private boolean scan(DayFile dayFile, ColumnarFilter filter, ScanVisitor visitor, ScanStats stats) throws IOException {
+        List<RowGroup> rowGroups = dayFile.getRowGroups();
+        if (rowGroups.isEmpty()) {
+            return true;
+        }
+        stats.files++;
+        stats.fileBytes += dayFile.size();
+        try (FileChannel channel = dayFile.openForRead()) {
+            for (RowGroup rowGroup : rowGroups) {
+                stats.rowGroups++;
+                if (!rowGroup.overlaps(filter.getFrom(), filter.getTo())
+                        || (rowGroup.levelMask & filter.getLevelMask()) == 0) {
+                    continue;
+                }
+                stats.rowGroupsScanned++;
+                stats.rowsScanned += rowGroup.rows;
+                RowGroupScan scan = new RowGroupScan(channel, rowGroup);
+                try {
+                    if (scan.select(filter) > 0 && !visitor.visit(scan)) {
+                        return false;
+                    }
+                } finally {
+                    stats.bytesRead += scan.getBytesRead();
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void addCounts(Map<String, Long> groups, boolean[] sel, int[] codes, String[] names) {
+        long[] counts = new long[names.length];
+        for (int i = 0; i < sel.length; i++) {
+            if (sel[i]) {
+                counts[codes[i]]++;
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                groups.merge(names[i], counts[i], Long::sum);
+            }
+        }
+    }
+
+    private static void addCounts(Map<String, Long> groups, boolean[] sel, byte[] codes, String[] names) {
+        long[] counts = new long[names.length];
+        for (int i = 0; i < sel.length; i++) {
+            if (sel[i]) {
+                counts[codes[i]]++;
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                groups.merge(names[i], counts[i], Long::sum);
+            }
+        }
+    }
+
+    private NavigableMap<LocalDate, DayFile> days(String clientId) {
+        return clients.computeIfAbsent(clientId, id -> new ConcurrentSkipListMap<>());
+    }
+
+    private DayFile dayFile(String clientId, LocalDate day) {
+        return days(clientId).computeIfAbsent(day, d -> {
+            Path file = Paths.get(columnarConfig.getDirectory(), clientId, d + SUFFIX);
+            try {
+                return DayFile.open(d, file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open columnar file " + file + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private static LocalDate parseDay(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一个上传文件的解析状态，同一文件的行在同一线程中按顺序回调
+     */
+    private class FileIngest implements IngestListener {
+
+        private final String clientId;
+        private final LogLineParser parser = new LogLineParser();
+        // 补传的文件可能跨天，每天一个未写出的行组
+        private final Map<LocalDate, RowGroupBuilder> builders = new HashMap<>();
+        // 最近一行所在的行组，续行并入该行
+        private RowGroupBuilder last;
+        private LocalDate day;
+        private long dayStart = Long.MAX_VALUE;
+        private long dayEnd = Long.MIN_VALUE;
+
+        FileIngest(String clientId) {
+            this.clientId = clientId;
+        }
+
+        @Override
+        public void onLine(String clientId, byte[] line, int offset, int length) {
+            if (!parser.parse(line, offset, length)) {
+                if (last != null) {
+                    last.appendToLastMessage(line, offset, length);
+                    continuationLines.increment();
+                } else {
+                    droppedLines.increment();
+                }
+                return;
+            }
+            LocalDate rowDay = dayOf(parser.getTimestamp());
+            RowGroupBuilder builder = builders.get(rowDay);
+            if (builder != null && builder.size() >= columnarConfig.getRowGroupSize()) {
+                // 行组写满时到下一条完整的行才写出，保证上一行的续行已并入
+                write(rowDay, builder);
+                builder = null;
+            }
+            if (builder == null) {
+                builder = new RowGroupBuilder();
+                builders.put(rowDay, builder);
+            }
+            builder.addRow(parser.getTimestamp(), parser.getLevel(), line, parser.getThreadStart(), parser.getThreadEnd(),
+                    parser.getLoggerStart(), parser.getLoggerEnd(), parser.getMessageStart(), offset + length);
+            rowsIngested.increment();
+            last = builder;
+        }
+
+        @Override
+        public void onFileComplete(String clientId, String fileName) {
+            for (Map.Entry<LocalDate, RowGroupBuilder> entry : builders.entrySet()) {
+                write(entry.getKey(), entry.getValue());
+            }
+            builders.clear();
+            last = null;
+        }
+
+        private void write(LocalDate rowDay, RowGroupBuilder builder) {
+            if (builder.size() == 0) {
+                return;
+            }
+            byte[] encoded = builder.encode(columnarConfig.isCompressMessages());
+            try {
+                // 当天的文件刚被保留清理删除时重新创建
+                if (!dayFile(clientId, rowDay).append(encoded)) {
+                    dayFile(clientId, rowDay).append(encoded);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write columnar row group: " + e.getMessage(), e);
+            }
+            rowGroupsWritten.increment();
+            rawMessageBytes.add(builder.messageBytes());
+            bytesWritten.add(encoded.length);
+        }
+
+        private LocalDate dayOf(long timestamp) {
+            if (timestamp < dayStart || timestamp >= dayEnd) {
+                day = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+                dayStart = day.atStartOfDay(zone).toInstant().toEpochMilli();
+                dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            return day;
+        }
+    }
+
+    private interface ScanVisitor {
+        /**
+         * @return false表示停止扫描
+         */
+        boolean visit(RowGroupScan scan) throws IOException;
+    }
+
+    /**
+     * 一次查询的扫描统计
+     */
+    private static class ScanStats {
+        int files;
+        long fileBytes;
+        int rowGroups;
+        int rowGroupsScanned;
+        long rowsScanned;
+        long bytesRead;
+        long elapsedNanos;
+        boolean stopped;
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("files", files);
+            map.put("fileBytes", fileBytes);
+            map.put("rowGroups", rowGroups);
+            map.put("rowGroupsScanned", rowGroupsScanned);
+            map.put("rowsScanned", rowsScanned);
+            map.put("bytesRead", bytesRead);
+            map.put("elapsedMillis", elapsedNanos / 1_000_000.0);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.roc.netty.server.columnar;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个客户端一天的列式数据文件，由依次追加的行组组成
+ * 内存中只保留各行组的头部；追加和读取时临时打开文件，不长期占用文件句柄
+ */
+@Slf4j
+class DayFile {
+
+    @Getter
+    private final LocalDate day;
+    private final Path file;
+    private volatile List<RowGroup> rowGroups = Collections.emptyList();
+    private long size;
+    // 已被保留清理删除，不再接受追加
+    private boolean deleted;
+
+    private DayFile(LocalDate day, Path file) {
+        this.day = day;
+        this.file = file;
+    }
+
+    /**
+     * 打开数据文件并读取所有行组头部，末尾不完整的行组（异常退出时写了一半）被截掉
+     */
+    static DayFile open(LocalDate day, Path file) throws IOException {
+        DayFile dayFile = new DayFile(day, file);
+        if (!Files.exists(file)) {
+            return dayFile;
+        }
+        List<RowGroup> rowGroups = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(RowGroupBuilder.HEADER_SIZE);
+            while (position + RowGroupBuilder.HEADER_SIZE <= fileSize) {
+                header.clear();
+                readFully(channel, header, position);
+                header.flip();
+                RowGroup rowGroup = RowGroup.parse(position, header, fileSize);
+                if (rowGroup == null) {
+                    break;
+                }
+                rowGroups.add(rowGroup);
+                position += rowGroup.length;
+            }
+            if (position < fileSize) {
+                log.warn("Truncating incomplete row group in {} at {} (file size {})", file, position, fileSize);
+                channel.truncate(position);
+            }
+            dayFile.size = position;
+        }
+        dayFile.rowGroups = Collections.unmodifiableList(rowGroups);
+        return dayFile;
+    }
+
+    /**
+     * 追加一个编码好的行组
+     *
+     * @return 文件已被删除时返回false，调用方应重新打开当天的文件
+     */
+    synchronized boolean append(byte[] rowGroup) throws IOException {
+        if (deleted) {
+            return false;
+        }
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(rowGroup);
+            long position = size;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        ByteBuffer header = ByteBuffer.wrap(rowGroup, 0, RowGroupBuilder.HEADER_SIZE);
+        List<RowGroup> updated = new ArrayList<>(rowGroups);
+        updated.add(RowGroup.parse(size, header.slice(), size + rowGroup.length));
+        size += rowGroup.length;
+        rowGroups = Collections.unmodifiableList(updated);
+        return true;
+    }
+
+    /**
+     * 删除数据文件，之后的追加返回false
+     *
+     * @return 释放的字节数
+     */
+    synchronized long delete() throws IOException {
+        deleted = true;
+        return Files.deleteIfExists(file) ? size : 0;
+    }
+
+    List<RowGroup> getRowGroups() {
+        return rowGroups;
+    }
+
+    long size() {
+        return size;
+    }
+
+    FileChannel openForRead() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * 读取一列的原始字节
+     */
+    static ByteBuffer readColumn(FileChannel channel, RowGroup rowGroup, int column) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(rowGroup.columnLength(column));
+        readFully(channel, buffer, rowGroup.columnOffset(column));
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of columnar file");
+            }
+        }
+    }
+}
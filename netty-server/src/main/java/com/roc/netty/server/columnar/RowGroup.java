@@ -0,0 +1,200 @@
+package com.roc.netty.server.columnar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 行组头部及各列解码，格式见 {@link RowGroupBuilder}
+ */
+class RowGroup {
+
+    final long offset;
+    final int length;
+    final int rows;
+    final long minTime;
+    final long maxTime;
+    final int levelMask;
+    private final long[] columnOffsets = new long[RowGroupBuilder.COLUMN_COUNT];
+    private final int[] columnLengths = new int[RowGroupBuilder.COLUMN_COUNT];
+
+    private RowGroup(long offset, ByteBuffer header) {
+        this.offset = offset;
+        header.getInt();
+        this.length = header.getInt();
+        this.rows = header.getInt();
+        this.minTime = header.getLong();
+        this.maxTime = header.getLong();
+        this.levelMask = header.getInt();
+        long position = offset + RowGroupBuilder.HEADER_SIZE;
+        for (int i = 0; i < RowGroupBuilder.COLUMN_COUNT; i++) {
+            columnOffsets[i] = position;
+            columnLengths[i] = header.getInt();
+            position += columnLengths[i];
+        }
+    }
+
+    /**
+     * 解析头部，头部无效（异常退出时写了一半）时返回null
+     */
+    static RowGroup parse(long offset, ByteBuffer header, long fileSize) {
+        if (header.getInt(0) != RowGroupBuilder.MAGIC) {
+            return null;
+        }
+        RowGroup rowGroup = new RowGroup(offset, header);
+        long columnsEnd = rowGroup.columnOffsets[RowGroupBuilder.COLUMN_COUNT - 1]
+                + rowGroup.columnLengths[RowGroupBuilder.COLUMN_COUNT - 1];
+        if (rowGroup.rows < 0 || offset + rowGroup.length > fileSize || columnsEnd != offset + rowGroup.length) {
+            return null;
+        }
+        return rowGroup;
+    }
+
+    long columnOffset(int column) {
+        return columnOffsets[column];
+    }
+
+    int columnLength(int column) {
+        return columnLengths[column];
+    }
+
+    boolean overlaps(long from, long to) {
+        return maxTime >= from && minTime < to;
+    }
+
+    long[] decodeTimes(ByteBuffer data) {
+        long[] times = new long[rows];
+        if (rows == 0) {
+            return times;
+        }
+        times[0] = data.getLong();
+        for (int i = 1; i < rows; i++) {
+            long zigzag = readVar(data);
+            times[i] = times[i - 1] + ((zigzag >>> 1) ^ -(zigzag & 1));
+        }
+        return times;
+    }
+
+    byte[] decodeLevels(ByteBuffer data) {
+        byte[] levels = new byte[rows];
+        data.get(levels);
+        return levels;
+    }
+
+    /**
+     * 解码字典列
+     *
+     * @param codes 输出每行的字典编码
+     * @return 字典
+     */
+    String[] decodeDictionary(ByteBuffer data, int[] codes) {
+        String[] names = new String[(int) readVar(data)];
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = new byte[(int) readVar(data)];
+            data.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        int width = data.get();
+        for (int i = 0; i < rows; i++) {
+            int code = 0;
+            for (int b = 0; b < width; b++) {
+                code = (code << 8) | (data.get() & 0xFF);
+            }
+            codes[i] = code;
+        }
+        return names;
+    }
+
+    /**
+     * 解码消息列，压缩的消息列整体解压
+     */
+    Messages decodeMessages(ByteBuffer data) throws IOException {
+        boolean compressed = data.get() == 1;
+        int rawLength = (int) readVar(data);
+        byte[] raw = new byte[rawLength];
+        if (compressed) {
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                int n = 0;
+                while (n < rawLength) {
+                    int inflated = inflater.inflate(raw, n, rawLength - n);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+                        throw new IOException("Truncated message column");
+                    }
+                    n += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted message column: " + e.getMessage(), e);
+            } finally {
+                inflater.end();
+            }
+        } else {
+            data.get(raw);
+        }
+        ByteBuffer payload = ByteBuffer.wrap(raw);
+        int[] ends = new int[rows];
+        int end = 0;
+        for (int i = 0; i < rows; i++) {
+            end += (int) readVar(payload);
+            ends[i] = end;
+        }
+        return new Messages(raw, payload.position(), ends);
+    }
+
+    static long readVar(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * 解码后的消息列
+     */
+    static class Messages {
+        final byte[] data;
+        final int base;
+        final int[] ends;
+
+        Messages(byte[] data, int base, int[] ends) {
+            this.data = data;
+            this.base = base;
+            this.ends = ends;
+        }
+
+        int start(int row) {
+            return base + (row == 0 ? 0 : ends[row - 1]);
+        }
+
+        int end(int row) {
+            return base + ends[row];
+        }
+
+        String get(int row) {
+            return new String(data, start(row), end(row) - start(row), StandardCharsets.UTF_8);
+        }
+
+        boolean contains(int row, byte[] needle) {
+            int start = start(row);
+            int last = end(row) - needle.length;
+            outer:
+            for (int i = start; i <= last; i++) {
+                for (int j = 0; j < needle.length; j++) {
+                    if (data[i + j] != needle[j]) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.roc.netty.server.columnar;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * 行组编码，一个行组的格式：
+ * <pre>
+ * [头部] magic(4) 总长度(4) 行数(4) 最小时间(8) 最大时间(8) 级别位图(4) 各列长度(4 x 5)
+ * [时间列]   首行时间(8) + 相邻行时间差（zigzag变长整数）
+ * [级别列]   每行1字节
+ * [线程列]   字典 + 定宽编码（1/2/4字节）
+ * [logger列] 同上
+ * [消息列]   是否压缩(1) + 原始长度(变长) + [各消息长度(变长) + 消息字节]，可整体deflate
+ * </pre>
+ * 单线程使用
+ */
+class RowGroupBuilder {
+
+    static final int MAGIC = 0x434C5247;
+    static final int COLUMN_COUNT = 5;
+    static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 4 + 4 * COLUMN_COUNT;
+    static final int TIME = 0;
+    static final int LEVEL = 1;
+    static final int THREAD = 2;
+    static final int LOGGER = 3;
+    static final int MESSAGE = 4;
+
+    private long[] times = new long[1024];
+    private byte[] levels = new byte[1024];
+    private int[] threadCodes = new int[1024];
+    private int[] loggerCodes = new int[1024];
+    private int[] messageEnds = new int[1024];
+    private byte[] messages = new byte[64 * 1024];
+    private int messagesLength;
+    private int rows;
+
+    private final Dictionary threads = new Dictionary();
+    private final Dictionary loggers = new Dictionary();
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private int levelMask;
+
+    void addRow(long time, byte level, byte[] line, int threadStart, int threadEnd,
+                int loggerStart, int loggerEnd, int messageStart, int messageEnd) {
+        if (rows == times.length) {
+            int capacity = rows * 2;
+            times = Arrays.copyOf(times, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            threadCodes = Arrays.copyOf(threadCodes, capacity);
+            loggerCodes = Arrays.copyOf(loggerCodes, capacity);
+            messageEnds = Arrays.copyOf(messageEnds, capacity);
+        }
+        times[rows] = time;
+        levels[rows] = level;
+        threadCodes[rows] = threads.code(line, threadStart, threadEnd);
+        loggerCodes[rows] = loggers.code(line, loggerStart, loggerEnd);
+        appendMessage(line, messageStart, messageEnd - messageStart);
+        messageEnds[rows] = messagesLength;
+        rows++;
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        levelMask |= 1 << level;
+    }
+
+    /**
+     * 不符合格式的行（如异常堆栈）并入上一行的消息
+     */
+    void appendToLastMessage(byte[] line, int offset, int length) {
+        appendMessage(new byte[]{'\n'}, 0, 1);
+        appendMessage(line, offset, length);
+        messageEnds[rows - 1] = messagesLength;
+    }
+
+    int size() {
+        return rows;
+    }
+
+    long messageBytes() {
+        return messagesLength;
+    }
+
+    byte[] encode(boolean compressMessages) {
+        byte[][] columns = new byte[COLUMN_COUNT][];
+        columns[TIME] = encodeTimes();
+        columns[LEVEL] = Arrays.copyOf(levels, rows);
+        columns[THREAD] = encodeCodes(threads, threadCodes);
+        columns[LOGGER] = encodeCodes(loggers, loggerCodes);
+        columns[MESSAGE] = encodeMessages(compressMessages);
+
+        int length = HEADER_SIZE;
+        for (byte[] column : columns) {
+            length += column.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        out.putInt(MAGIC).putInt(length).putInt(rows).putLong(minTime).putLong(maxTime).putInt(levelMask);
+        for (byte[] column : columns) {
+            out.putInt(column.length);
+        }
+        for (byte[] column : columns) {
+            out.put(column);
+        }
+        return out.array();
+    }
+
+    private byte[] encodeTimes() {
+        VarBuffer out = new VarBuffer(8 + rows * 2);
+        out.putLong(rows > 0 ? times[0] : 0);
+        for (int i = 1; i < rows; i++) {
+            long delta = times[i] - times[i - 1];
+            out.putVar((delta << 1) ^ (delta >> 63));
+        }
+        return out.toArray();
+    }
+
+    private byte[] encodeCodes(Dictionary dictionary, int[] codes) {
+        VarBuffer out = new VarBuffer(rows + 256);
+        out.putVar(dictionary.names.size());
+        for (byte[] name : dictionary.names) {
+            out.putVar(name.length);
+            out.put(name, 0, name.length);
+        }
+        int width = codeWidth(dictionary.names.size());
+        out.put(new byte[]{(byte) width}, 0, 1);
+        for (int i = 0; i < rows; i++) {
+            out.putFixed(codes[i], width);
+        }
+        return out.toArray();
+    }
+
+    private byte[] encodeMessages(boolean compress) {
+        VarBuffer payload = new VarBuffer(messagesLength + rows * 2);
+        int start = 0;
+        for (int i = 0; i < rows; i++) {
+            payload.putVar(messageEnds[i] - start);
+            start = messageEnds[i];
+        }
+        payload.put(messages, 0, messagesLength);
+        byte[] raw = payload.toArray();
+
+        VarBuffer out = new VarBuffer(16);
+        out.put(new byte[]{(byte) (compress ? 1 : 0)}, 0, 1);
+        out.putVar(raw.length);
+        if (!compress) {
+            out.put(raw, 0, raw.length);
+            return out.toArray();
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                compressed.write(buffer, 0, n);
+            }
+            byte[] data = compressed.toByteArray();
+            out.put(data, 0, data.length);
+            return out.toArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void appendMessage(byte[] data, int offset, int length) {
+        if (messagesLength + length > messages.length) {
+            messages = Arrays.copyOf(messages, Math.max(messages.length * 2, messagesLength + length));
+        }
+        System.arraycopy(data, offset, messages, messagesLength, length);
+        messagesLength += length;
+    }
+
+    static int codeWidth(int dictionarySize) {
+        return dictionarySize <= 256 ? 1 : dictionarySize <= 65536 ? 2 : 4;
+    }
+
+    /**
+     * 行组内的字典，按首次出现的顺序编码
+     */
+    private static class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<byte[]> names = new ArrayList<>();
+        // 上一行的值，线程和logger常常连续重复
+        private byte[] lastName = new byte[0];
+        private int lastCode = -1;
+
+        int code(byte[] line, int start, int end) {
+            int length = end - start;
+            if (lastCode >= 0 && lastName.length == length && regionEquals(line, start, lastName)) {
+                return lastCode;
+            }
+            String name = new String(line, start, length, StandardCharsets.UTF_8);
+            Integer code = codes.get(name);
+            if (code == null) {
+                code = names.size();
+                codes.put(name, code);
+                names.add(Arrays.copyOfRange(line, start, end));
+            }
+            lastName = names.get(code);
+            lastCode = code;
+            return code;
+        }
+
+        private static boolean regionEquals(byte[] line, int start, byte[] name) {
+            for (int i = 0; i < name.length; i++) {
+                if (line[start + i] != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 可增长的编码缓冲
+     */
+    static class VarBuffer {
+
+        private byte[] data;
+        private int length;
+
+        VarBuffer(int capacity) {
+            data = new byte[Math.max(16, capacity)];
+        }
+
+        void putVar(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                data[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void putFixed(int value, int width) {
+            ensure(width);
+            for (int shift = (width - 1) * 8; shift >= 0; shift -= 8) {
+                data[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void put(byte[] bytes, int offset, int count) {
+            ensure(count);
+            System.arraycopy(bytes, offset, data, length, count);
+            length += count;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(data, length);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+    }
+}
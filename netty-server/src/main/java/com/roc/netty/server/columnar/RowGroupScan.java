@@ -0,0 +1,154 @@
+package com.roc.netty.server.columnar;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 查询时对一个行组的扫描：各列按需读取和解码，过滤条件逐列在基本类型数组上求值，
+ * 结果保存在选择向量中，只有被条件或输出用到的列才会被读取
+ */
+class RowGroupScan {
+
+    final RowGroup rowGroup;
+    final boolean[] selected;
+    int selectedCount;
+
+    private final FileChannel channel;
+    private long bytesRead;
+    private long[] times;
+    private byte[] levels;
+    private int[] threadCodes;
+    private String[] threadNames;
+    private int[] loggerCodes;
+    private String[] loggerNames;
+    private RowGroup.Messages messages;
+
+    RowGroupScan(FileChannel channel, RowGroup rowGroup) {
+        this.channel = channel;
+        this.rowGroup = rowGroup;
+        this.selected = new boolean[rowGroup.rows];
+    }
+
+    /**
+     * 按条件计算选择向量，返回选中的行数
+     */
+    int select(ColumnarFilter filter) throws IOException {
+        int rows = rowGroup.rows;
+        boolean[] sel = selected;
+        Arrays.fill(sel, true);
+
+        boolean[] wanted = filter.getLevels();
+        if (wanted != null) {
+            byte[] lv = levels();
+            for (int i = 0; i < rows; i++) {
+                sel[i] = wanted[lv[i]];
+            }
+        }
+        // 行组时间范围完全在查询范围内时不读时间列
+        if (rowGroup.minTime < filter.getFrom() || rowGroup.maxTime >= filter.getTo()) {
+            long[] t = times();
+            long from = filter.getFrom();
+            long to = filter.getTo();
+            for (int i = 0; i < rows; i++) {
+                sel[i] &= t[i] >= from & t[i] < to;
+            }
+        }
+        if (filter.getLogger() != null) {
+            boolean[] matched = ColumnarFilter.match(filter.getLogger(), loggerNames());
+            int[] codes = loggerCodes;
+            for (int i = 0; i < rows; i++) {
+                sel[i] &= matched[codes[i]];
+            }
+        }
+        if (filter.getThread() != null) {
+            boolean[] matched = ColumnarFilter.match(filter.getThread(), threadNames());
+            int[] codes = threadCodes;
+            for (int i = 0; i < rows; i++) {
+                sel[i] &= matched[codes[i]];
+            }
+        }
+        int count = count(sel);
+        // 消息列最大，只在其余条件有命中时才读取
+        if (filter.getMessage() != null && count > 0) {
+            RowGroup.Messages msgs = messages();
+            byte[] needle = filter.getMessage();
+            for (int i = 0; i < rows; i++) {
+                if (sel[i] && !msgs.contains(i, needle)) {
+                    sel[i] = false;
+                }
+            }
+            count = count(sel);
+        }
+        selectedCount = count;
+        return count;
+    }
+
+    long[] times() throws IOException {
+        if (times == null) {
+            times = rowGroup.decodeTimes(DayFile.readColumn(channel, rowGroup, RowGroupBuilder.TIME));
+            bytesRead += rowGroup.columnLength(RowGroupBuilder.TIME);
+        }
+        return times;
+    }
+
+    byte[] levels() throws IOException {
+        if (levels == null) {
+            levels = rowGroup.decodeLevels(DayFile.readColumn(channel, rowGroup, RowGroupBuilder.LEVEL));
+            bytesRead += rowGroup.columnLength(RowGroupBuilder.LEVEL);
+        }
+        return levels;
+    }
+
+    String[] threadNames() throws IOException {
+        if (threadNames == null) {
+            threadCodes = new int[rowGroup.rows];
+            threadNames = rowGroup.decodeDictionary(
+                    DayFile.readColumn(channel, rowGroup, RowGroupBuilder.THREAD), threadCodes);
+            bytesRead += rowGroup.columnLength(RowGroupBuilder.THREAD);
+        }
+        return threadNames;
+    }
+
+    int[] threadCodes() throws IOException {
+        threadNames();
+        return threadCodes;
+    }
+
+    String[] loggerNames() throws IOException {
+        if (loggerNames == null) {
+            loggerCodes = new int[rowGroup.rows];
+            loggerNames = rowGroup.decodeDictionary(
+                    DayFile.readColumn(channel, rowGroup, RowGroupBuilder.LOGGER), loggerCodes);
+            bytesRead += rowGroup.columnLength(RowGroupBuilder.LOGGER);
+        }
+        return loggerNames;
+    }
+
+    int[] loggerCodes() throws IOException {
+        loggerNames();
+        return loggerCodes;
+    }
+
+    RowGroup.Messages messages() throws IOException {
+        if (messages == null) {
+            messages = rowGroup.decodeMessages(DayFile.readColumn(channel, rowGroup, RowGroupBuilder.MESSAGE));
+            bytesRead += rowGroup.columnLength(RowGroupBuilder.MESSAGE);
+        }
+        return messages;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    private static int count(boolean[] sel) {
+        int count = 0;
+        for (boolean b : sel) {
+            if (b) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
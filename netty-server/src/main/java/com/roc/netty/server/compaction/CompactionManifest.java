@@ -0,0 +1,65 @@
+package com.roc.netty.server.compaction;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个客户端上传目录的合并状态，保存在目录下的 .compaction.json
+ * 只记录经过合并或重压缩的文件，未记录的文件都是原始上传（第0层）。
+ */
+@Data
+public class CompactionManifest {
+
+    public static final String FILE_NAME = ".compaction.json";
+
+    // 第0层：原始上传；第1层：合并输出；第2层：冷数据重压缩
+    public static final int TIER_UPLOAD = 0;
+    public static final int TIER_MERGED = 1;
+    public static final int TIER_COLD = 2;
+
+    // 文件名（含.blk后缀） -> 状态
+    private Map<String, Entry> files = new LinkedHashMap<>();
+
+    /**
+     * 查找被合并进其他文件的原始上传，返回所在的合并文件名
+     */
+    public String findMember(String fileName) {
+        for (Map.Entry<String, Entry> file : files.entrySet()) {
+            if (file.getValue().member(fileName) != null) {
+                return file.getKey();
+            }
+        }
+        return null;
+    }
+
+    @Data
+    public static class Entry {
+        private int tier;
+        private int level;  // 压缩级别
+        private List<Member> members = new ArrayList<>();  // 合并输出中各原始上传的行范围，按写入顺序
+
+        public Member member(String fileName) {
+            for (Member member : members) {
+                if (member.getFileName().equals(fileName)) {
+                    return member;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 合并文件中的一个原始上传
+     */
+    @Data
+    public static class Member {
+        private String fileName;  // 原始文件名（不含.blk后缀）
+        private long firstLine;  // 在合并文件中的起始行号，从0开始
+        private long lines;
+        private long rawSize;
+    }
+}
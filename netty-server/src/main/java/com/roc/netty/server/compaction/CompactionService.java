@@ -0,0 +1,777 @@
+package com.roc.netty.server.compaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.server.config.CompactionConfig;
+import com.roc.netty.server.config.StorageConfig;
+import com.roc.netty.server.logstore.LogStore;
+import com.roc.netty.server.service.FileService;
+import com.roc.netty.server.storage.BlockCompressor;
+import com.roc.netty.server.storage.BlockFileReader;
+import com.roc.netty.server.storage.BlockFileWriter;
+import com.roc.netty.server.storage.StorageFile;
+import com.roc.netty.server.storage.StorageWriter;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 上传文件后台合并与保留
+ * 按客户端、日期分层整理 logs/uploaded：
+ * 1. 保留：删除超过保留天数的文件，客户端总大小超过上限时从最早的日期删除；
+ * 2. 合并：同一天的小块压缩文件合并为一个大文件（第1层），原文件名在合并状态中记录行范围，仍可按原名读取；
+ * 3. 冷数据：日期较早的文件以更高的压缩级别重写（第2层）。
+ * 分段存储、列式存储等派生存储（{@link RetentionTarget}）按相同的保留规则整段、整个日文件删除。
+ * 单线程执行，读写速率受限，有上传进行中时进一步降速。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CompactionService {
+
+    private static final Pattern FILE_DATE_PATTERN = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})");
+    private static final String MERGED_PREFIX = "merged-";
+    private static final String PART_SUFFIX = ".compaction.part";
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    private final CompactionConfig compactionConfig;
+    private final StorageConfig storageConfig;
+    private final StorageWriter storageWriter;
+    private final FileService fileService;
+    private final ObjectMapper objectMapper;
+    private final List<RetentionTarget> retentionTargets;
+
+    // 客户端 -> 合并状态，修改只在合并线程中进行，读写都对状态对象加锁
+    private final Map<String, CompactionManifest> manifests = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+    // 独立的单线程压缩，不占用上传的压缩线程
+    private BlockCompressor mergeCompressor;
+    private BlockCompressor coldCompressor;
+    private IoThrottle throttle;
+
+    // 进度
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile String currentTask;
+    private volatile int tasksDone;
+    private volatile int tasksTotal;
+    private volatile LocalDateTime lastRunStart;
+    private volatile long lastRunMillis;
+
+    // 统计
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder filesMerged = new LongAdder();
+    private final LongAdder mergedOutputs = new LongAdder();
+    private final LongAdder filesRecompressed = new LongAdder();
+    private final LongAdder filesDeleted = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        if (!compactionConfig.isEnabled()) {
+            return;
+        }
+        if (!storageConfig.isBlockFormat()) {
+            log.warn("Compaction only merges block format files, retention still applies");
+        }
+        mergeCompressor = newCompressor(compactionConfig.getMergeCompressionLevel());
+        coldCompressor = newCompressor(compactionConfig.getColdCompressionLevel());
+        throttle = new IoThrottle(compactionConfig.getIoBytesPerSecond(), compactionConfig.getIngestIoBytesPerSecond(),
+                fileService::hasActiveUploads);
+        executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("log-compaction"));
+        executor.scheduleWithFixedDelay(this::runSafely, compactionConfig.getInitialDelaySeconds(),
+                compactionConfig.getIntervalSeconds(), TimeUnit.SECONDS);
+        log.info("Compaction started - interval: {}s, small file: {}, cold after: {} days, retention: {} days, io: {} B/s",
+                compactionConfig.getIntervalSeconds(), compactionConfig.getSmallFileBytes(),
+                compactionConfig.getColdAfterDays(), compactionConfig.getRetentionDays(),
+                compactionConfig.getIoBytesPerSecond());
+    }
+
+    private BlockCompressor newCompressor(int level) {
+        StorageConfig config = new StorageConfig();
+        config.setBlockSize(storageConfig.getBlockSize());
+        config.setBlockCompressionLevel(level);
+        config.setCompressorThreads(1);
+        BlockCompressor compressor = new BlockCompressor(config);
+        compressor.start();
+        return compressor;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+        // 中断正在限速等待的任务，未提交的输出文件被丢弃
+        executor.shutdownNow();
+        executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        mergeCompressor.stop();
+        coldCompressor.stop();
+    }
+
+    /**
+     * 立即执行一次
+     *
+     * @return 已在执行中或未启用时返回false
+     */
+    public boolean runNow() {
+        if (executor == null || running.get()) {
+            return false;
+        }
+        executor.execute(this::runSafely);
+        return true;
+    }
+
+    /**
+     * 已被合并的原始上传所在的位置，不存在时返回null
+     *
+     * @param fileName 原始文件名（不含.blk后缀）
+     */
+    public MemberLocation findMember(String clientId, String fileName) {
+        CompactionManifest manifest = manifest(clientId);
+        synchronized (manifest) {
+            String merged = manifest.findMember(fileName);
+            if (merged == null) {
+                return null;
+            }
+            return new MemberLocation(uploadDir(clientId).resolve(merged),
+                    manifest.getFiles().get(merged).member(fileName));
+        }
+    }
+
+    /**
+     * 文件的合并状态，原始上传返回null
+     *
+     * @param storedName 存储的文件名（含.blk后缀）
+     */
+    public CompactionManifest.Entry getEntry(String clientId, String storedName) {
+        CompactionManifest manifest = manifest(clientId);
+        synchronized (manifest) {
+            return manifest.getFiles().get(storedName);
+        }
+    }
+
+    public Map<String, Object> getStats() throws IOException {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", executor != null);
+        stats.put("running", running.get());
+        stats.put("currentTask", currentTask);
+        stats.put("tasksDone", tasksDone);
+        stats.put("tasksTotal", tasksTotal);
+        stats.put("lastRunStart", lastRunStart != null ? lastRunStart.toString() : null);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("runs", runs.sum());
+        stats.put("filesMerged", filesMerged.sum());
+        stats.put("mergedOutputs", mergedOutputs.sum());
+        stats.put("filesRecompressed", filesRecompressed.sum());
+        stats.put("filesDeleted", filesDeleted.sum());
+        stats.put("bytesRead", bytesRead.sum());
+        stats.put("bytesWritten", bytesWritten.sum());
+        stats.put("reclaimedBytes", reclaimedBytes.sum());
+        stats.put("throttledMillis", throttle != null ? throttle.getThrottledMillis() : 0);
+        stats.put("failures", failures.sum());
+        stats.put("tiers", tierSummary());
+        return stats;
+    }
+
+    /**
+     * 各层的文件数和大小
+     */
+    private Map<String, Object> tierSummary() throws IOException {
+        long[] files = new long[3];
+        long[] bytes = new long[3];
+        for (String clientId : listClients()) {
+            for (StoredFile file : listFiles(clientId)) {
+                CompactionManifest.Entry entry = getEntry(clientId, file.name);
+                int tier = entry != null ? entry.getTier() : CompactionManifest.TIER_UPLOAD;
+                files[tier]++;
+                bytes[tier] += file.size;
+            }
+        }
+        Map<String, Object> tiers = new LinkedHashMap<>();
+        String[] names = {"upload", "merged", "cold"};
+        for (int i = 0; i < names.length; i++) {
+            Map<String, Object> tier = new LinkedHashMap<>();
+            tier.put("files", files[i]);
+            tier.put("bytes", bytes[i]);
+            tiers.put(names[i], tier);
+        }
+        return tiers;
+    }
+
+    private void runSafely() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        lastRunStart = LocalDateTime.now();
+        long start = System.nanoTime();
+        try {
+            runOnce();
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            log.error("Compaction failed: {}", e.getMessage(), e);
+        } finally {
+            currentTask = null;
+            lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+            runs.increment();
+            running.set(false);
+        }
+    }
+
+    private void runOnce() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        for (String clientId : listClients()) {
+            plan(clientId, tasks);
+        }
+        for (RetentionTarget target : retentionTargets) {
+            for (String clientId : target.retentionClients()) {
+                planRetention(target, clientId, tasks);
+            }
+        }
+        tasksTotal = tasks.size();
+        tasksDone = 0;
+        long reclaimedBefore = reclaimedBytes.sum();
+        for (Task task : tasks) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            currentTask = task.description;
+            try {
+                task.action.run();
+            } catch (InterruptedIOException e) {
+                log.info("Compaction interrupted - task: {}", task.description);
+                break;
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                log.error("Compaction task failed - {}: {}", task.description, e.getMessage(), e);
+            }
+            tasksDone++;
+        }
+        if (!tasks.isEmpty()) {
+            log.info("Compaction finished - tasks: {}/{}, reclaimed: {} bytes",
+                    tasksDone, tasks.size(), reclaimedBytes.sum() - reclaimedBefore);
+        }
+    }
+
+    /**
+     * 为一个客户端生成本轮的任务：保留 -> 合并 -> 冷数据重压缩，同一文件只参与一个任务
+     */
+    private void plan(String clientId, List<Task> tasks) throws IOException {
+        CompactionManifest manifest = manifest(clientId);
+        List<StoredFile> files = listFiles(clientId);
+        LocalDate today = LocalDate.now();
+        long settledBefore = System.currentTimeMillis() - compactionConfig.getMinFileAgeMinutes() * 60_000L;
+        Set<String> planned = new HashSet<>();
+
+        synchronized (manifest) {
+            Set<String> names = files.stream().map(file -> file.name).collect(Collectors.toSet());
+            if (manifest.getFiles().keySet().retainAll(names)) {
+                saveManifest(clientId, manifest);
+            }
+            for (StoredFile file : files) {
+                file.entry = manifest.getFiles().get(file.name);
+            }
+            // 合并后、删除原文件前中断留下的原文件：已在合并文件中且不比合并文件新
+            for (StoredFile file : files) {
+                String merged = file.entry == null && file.blockFormat ? manifest.findMember(file.memberName()) : null;
+                if (merged != null && !merged.equals(file.name) && names.contains(merged)
+                        && file.modified <= Files.getLastModifiedTime(uploadDir(clientId).resolve(merged)).toMillis()) {
+                    planned.add(file.name);
+                    tasks.add(new Task("delete " + clientId + "/" + file.name + " (merged into " + merged + ")",
+                            () -> delete(clientId, file)));
+                }
+            }
+        }
+
+        // 保留：按日期
+        if (compactionConfig.getRetentionDays() > 0) {
+            LocalDate cutoff = today.minusDays(compactionConfig.getRetentionDays());
+            for (StoredFile file : files) {
+                if (file.day.isBefore(cutoff) && !fileService.isUploading(file.path)) {
+                    planned.add(file.name);
+                    tasks.add(new Task("delete " + clientId + "/" + file.name + " (expired)", () -> delete(clientId, file)));
+                }
+            }
+        }
+        // 保留：按总大小，从最早的日期删除，不删除当天的文件
+        if (compactionConfig.getMaxClientBytes() > 0) {
+            List<StoredFile> remaining = files.stream()
+                    .filter(file -> !planned.contains(file.name))
+                    .sorted(Comparator.comparing((StoredFile file) -> file.day).thenComparing(file -> file.name))
+                    .collect(Collectors.toList());
+            long total = remaining.stream().mapToLong(file -> file.size).sum();
+            for (StoredFile file : remaining) {
+                if (total <= compactionConfig.getMaxClientBytes() || !file.day.isBefore(today)) {
+                    break;
+                }
+                total -= file.size;
+                planned.add(file.name);
+                tasks.add(new Task("delete " + clientId + "/" + file.name + " (over size)", () -> delete(clientId, file)));
+            }
+        }
+
+        // 合并与重压缩只处理已稳定的块压缩文件
+        Map<LocalDate, List<StoredFile>> byDay = new TreeMap<>();
+        for (StoredFile file : files) {
+            if (!planned.contains(file.name) && file.blockFormat && file.dated
+                    && file.modified < settledBefore && !fileService.isUploading(file.path)) {
+                byDay.computeIfAbsent(file.day, day -> new ArrayList<>()).add(file);
+            }
+        }
+        for (Map.Entry<LocalDate, List<StoredFile>> day : byDay.entrySet()) {
+            List<StoredFile> sources = mergeCandidates(day.getValue());
+            if (sources != null) {
+                boolean cold = isCold(day.getKey(), today);
+                Path target = sources.get(0).entry != null
+                        ? sources.get(0).path : newMergedPath(clientId, day.getKey(), files);
+                sources.forEach(file -> planned.add(file.name));
+                tasks.add(new Task("merge " + sources.size() + " files into " + clientId + "/" + target.getFileName(),
+                        () -> merge(clientId, target, sources, cold)));
+            }
+        }
+        for (Map.Entry<LocalDate, List<StoredFile>> day : byDay.entrySet()) {
+            if (!isCold(day.getKey(), today)) {
+                continue;
+            }
+            for (StoredFile file : day.getValue()) {
+                int level = file.entry != null ? file.entry.getLevel() : storageConfig.getBlockCompressionLevel();
+                if (!planned.contains(file.name) && level < compactionConfig.getColdCompressionLevel()) {
+                    planned.add(file.name);
+                    tasks.add(new Task("recompress " + clientId + "/" + file.name, () -> recompress(clientId, file)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 派生存储的保留：删除超过保留天数的单元，客户端在该存储中的总大小超过上限时从最早的日期删除，
+     * 不删除写入中的单元和当天的单元
+     */
+    private void planRetention(RetentionTarget target, String clientId, List<Task> tasks) throws IOException {
+        List<RetentionTarget.Unit> units = new ArrayList<>(target.retentionUnits(clientId));
+        units.sort(Comparator.comparing(RetentionTarget.Unit::getDay));
+        LocalDate today = LocalDate.now();
+        LocalDate cutoff = compactionConfig.getRetentionDays() > 0
+                ? today.minusDays(compactionConfig.getRetentionDays()) : null;
+        long maxBytes = compactionConfig.getMaxClientBytes();
+        long total = units.stream().mapToLong(RetentionTarget.Unit::getSize).sum();
+        for (RetentionTarget.Unit unit : units) {
+            if (unit.isWritable() || !unit.getDay().isBefore(today)) {
+                continue;
+            }
+            String reason;
+            if (cutoff != null && unit.getDay().isBefore(cutoff)) {
+                reason = "expired";
+            } else if (maxBytes > 0 && total > maxBytes) {
+                reason = "over size";
+            } else {
+                continue;
+            }
+            total -= unit.getSize();
+            tasks.add(new Task("delete " + target.getRetentionName() + " " + clientId + "/" + unit.getName()
+                    + " (" + reason + ")", () -> deleteUnit(target, clientId, unit)));
+        }
+    }
+
+    /**
+     * 同一天的合并输入：未满的合并文件在前（输出沿用其文件名），之后是小的原始上传，总大小不超过目标大小
+     *
+     * @return 原始上传数不足时返回null
+     */
+    private List<StoredFile> mergeCandidates(List<StoredFile> files) {
+        List<StoredFile> sources = new ArrayList<>();
+        long total = 0;
+        for (StoredFile file : files) {
+            if (file.entry != null && file.entry.getTier() == CompactionManifest.TIER_MERGED
+                    && file.size < compactionConfig.getTargetFileBytes()) {
+                sources.add(file);
+                total = file.size;
+                break;
+            }
+        }
+        int uploads = 0;
+        for (StoredFile file : files) {
+            if (file.entry == null && file.size < compactionConfig.getSmallFileBytes()
+                    && total + file.size <= compactionConfig.getTargetFileBytes()) {
+                sources.add(file);
+                total += file.size;
+                uploads++;
+            }
+        }
+        return uploads >= compactionConfig.getMinMergeFiles() ? sources : null;
+    }
+
+    private boolean isCold(LocalDate day, LocalDate today) {
+        return !day.isAfter(today.minusDays(compactionConfig.getColdAfterDays()));
+    }
+
+    private Path newMergedPath(String clientId, LocalDate day, List<StoredFile> files) {
+        Set<String> names = files.stream().map(file -> file.name).collect(Collectors.toSet());
+        for (int sequence = 1; ; sequence++) {
+            String name = MERGED_PREFIX + day + "-" + sequence + ".log" + BlockFileWriter.SUFFIX;
+            if (!names.contains(name)) {
+                return uploadDir(clientId).resolve(name);
+            }
+        }
+    }
+
+    private void merge(String clientId, Path target, List<StoredFile> sources, boolean cold) throws IOException {
+        int level = cold ? compactionConfig.getColdCompressionLevel() : compactionConfig.getMergeCompressionLevel();
+        CompactionManifest.Entry entry = rewrite(target, sources, cold ? coldCompressor : mergeCompressor);
+        entry.setTier(cold ? CompactionManifest.TIER_COLD : CompactionManifest.TIER_MERGED);
+        entry.setLevel(level);
+        long outputSize = Files.size(target);
+        long inputSize = sources.stream().mapToLong(file -> file.size).sum();
+
+        CompactionManifest manifest = manifest(clientId);
+        synchronized (manifest) {
+            for (StoredFile source : sources) {
+                manifest.getFiles().remove(source.name);
+            }
+            manifest.getFiles().put(target.getFileName().toString(), entry);
+            saveManifest(clientId, manifest);
+        }
+        // 状态保存后再删除原文件；合并期间被重新上传的文件保留
+        for (StoredFile source : sources) {
+            if (source.path.equals(target)) {
+                continue;
+            }
+            if (Files.getLastModifiedTime(source.path).toMillis() != source.modified) {
+                log.warn("File {} changed during compaction, kept", source.path);
+                continue;
+            }
+            Files.deleteIfExists(source.path);
+            filesMerged.increment();
+        }
+        mergedOutputs.increment();
+        reclaimedBytes.add(inputSize - outputSize);
+        log.info("Merged {} files into {} - {} -> {} bytes, level: {}",
+                sources.size(), target, inputSize, outputSize, level);
+    }
+
+    private void recompress(String clientId, StoredFile file) throws IOException {
+        CompactionManifest.Entry entry = rewrite(file.path, Collections.singletonList(file), coldCompressor);
+        entry.setTier(CompactionManifest.TIER_COLD);
+        entry.setLevel(compactionConfig.getColdCompressionLevel());
+        long outputSize = Files.size(file.path);
+
+        CompactionManifest manifest = manifest(clientId);
+        synchronized (manifest) {
+            manifest.getFiles().put(file.name, entry);
+            saveManifest(clientId, manifest);
+        }
+        filesRecompressed.increment();
+        reclaimedBytes.add(file.size - outputSize);
+        log.info("Recompressed {} - {} -> {} bytes, level: {}",
+                file.path, file.size, outputSize, compactionConfig.getColdCompressionLevel());
+    }
+
+    private void delete(String clientId, StoredFile file) throws IOException {
+        if (Files.deleteIfExists(file.path)) {
+            filesDeleted.increment();
+            reclaimedBytes.add(file.size);
+        }
+        CompactionManifest manifest = manifest(clientId);
+        synchronized (manifest) {
+            if (manifest.getFiles().remove(file.name) != null) {
+                saveManifest(clientId, manifest);
+            }
+        }
+        log.info("Deleted {} - {} bytes, day: {}", file.path, file.size, file.day);
+    }
+
+    private void deleteUnit(RetentionTarget target, String clientId, RetentionTarget.Unit unit) throws IOException {
+        long freed = target.deleteUnit(clientId, unit);
+        if (freed > 0) {
+            filesDeleted.increment();
+            reclaimedBytes.add(freed);
+            log.info("Deleted {} {}/{} - {} bytes, day: {}",
+                    target.getRetentionName(), clientId, unit.getName(), freed, unit.getDay());
+        }
+    }
+
+    /**
+     * 把各输入文件依次解压写入一个新的块压缩文件，提交后原子替换目标文件
+     *
+     * @return 新文件的状态，记录各原始上传的行范围
+     */
+    private CompactionManifest.Entry rewrite(Path target, List<StoredFile> sources, BlockCompressor compressor)
+            throws IOException {
+        CompactionManifest.Entry entry = new CompactionManifest.Entry();
+        StorageFile storageFile = storageWriter.open(target, target.resolveSibling(target.getFileName() + PART_SUFFIX));
+        BlockFileWriter writer = new BlockFileWriter(storageFile, compressor, storageConfig.getBlockSize());
+        RewriteStream out = new RewriteStream(writer, storageFile);
+        try {
+            for (StoredFile source : sources) {
+                long firstLine = out.lines;
+                try (BlockFileReader reader = BlockFileReader.open(source.path)) {
+                    if (source.entry != null && !source.entry.getMembers().isEmpty()) {
+                        for (CompactionManifest.Member member : source.entry.getMembers()) {
+                            CompactionManifest.Member moved = new CompactionManifest.Member();
+                            moved.setFileName(member.getFileName());
+                            moved.setFirstLine(firstLine + member.getFirstLine());
+                            moved.setLines(member.getLines());
+                            moved.setRawSize(member.getRawSize());
+                            entry.getMembers().add(moved);
+                        }
+                    } else if (sources.size() > 1) {
+                        // 同名文件重新上传后再次合并时，按原名读取新的内容
+                        entry.getMembers().removeIf(member -> member.getFileName().equals(source.memberName()));
+                        CompactionManifest.Member member = new CompactionManifest.Member();
+                        member.setFileName(source.memberName());
+                        member.setFirstLine(firstLine);
+                        member.setLines(reader.getLineCount());
+                        member.setRawSize(reader.getRawSize());
+                        entry.getMembers().add(member);
+                    }
+                    reader.readAll(out);
+                    out.endFile(reader.getLineCount());
+                }
+                bytesRead.add(source.size);
+            }
+            writer.finish();
+            storageFile.commit().get();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            storageFile.abort();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.abort();
+            throw new InterruptedIOException("Interrupted while committing " + target);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to write " + target, e.getCause());
+        }
+        bytesWritten.add(Files.size(target));
+        return entry;
+    }
+
+    private List<String> listClients() throws IOException {
+        Path root = Paths.get(FileService.UPLOAD_DIR);
+        if (!Files.isDirectory(root)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> dirs = Files.list(root)) {
+            return dirs.filter(Files::isDirectory)
+                    .map(dir -> dir.getFileName().toString())
+                    .filter(LogStore::isValidClientId)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 客户端目录下已完成上传的文件，不含临时文件和合并状态文件
+     */
+    private List<StoredFile> listFiles(String clientId) throws IOException {
+        List<StoredFile> files = new ArrayList<>();
+        Path dir = uploadDir(clientId);
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        List<Path> paths;
+        try (Stream<Path> stream = Files.list(dir)) {
+            paths = stream.filter(path -> {
+                String name = path.getFileName().toString();
+                return !name.startsWith(".") && !name.endsWith(".part") && Files.isRegularFile(path);
+            }).sorted().collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            try {
+                files.add(new StoredFile(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+            } catch (IOException e) {
+                // 列出后被删除或替换
+                log.debug("Skip file {}: {}", path, e.getMessage());
+            }
+        }
+        return files;
+    }
+
+    private CompactionManifest manifest(String clientId) {
+        return manifests.computeIfAbsent(clientId, id -> {
+            Path file = uploadDir(id).resolve(CompactionManifest.FILE_NAME);
+            if (!Files.isRegularFile(file)) {
+                return new CompactionManifest();
+            }
+            try {
+                return objectMapper.readValue(file.toFile(), CompactionManifest.class);
+            } catch (IOException e) {
+                // 状态丢失只影响按原文件名读取已合并的文件
+                log.error("Failed to load compaction manifest {}: {}", file, e.getMessage(), e);
+                return new CompactionManifest();
+            }
+        });
+    }
+
+    /**
+     * 先写临时文件再原子替换，调用方持有状态对象的锁
+     */
+    private void saveManifest(String clientId, CompactionManifest manifest) throws IOException {
+        Path file = uploadDir(clientId).resolve(CompactionManifest.FILE_NAME);
+        Path temp = file.resolveSibling(CompactionManifest.FILE_NAME + ".tmp");
+        objectMapper.writeValue(temp.toFile(), manifest);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path uploadDir(String clientId) {
+        if (!LogStore.isValidClientId(clientId)) {
+            throw new IllegalArgumentException("Invalid client id: " + clientId);
+        }
+        return Paths.get(FileService.UPLOAD_DIR, clientId);
+    }
+
+    /**
+     * 已合并的原始上传：所在的合并文件及行范围
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class MemberLocation {
+        private final Path path;
+        private final CompactionManifest.Member member;
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    @AllArgsConstructor
+    private static class Task {
+        private final String description;
+        private final IoAction action;
+    }
+
+    /**
+     * 目录中的一个文件，日期取文件名中的日期，没有时取修改日期
+     */
+    private static class StoredFile {
+        final Path path;
+        final String name;
+        final long size;
+        final long modified;
+        final LocalDate day;
+        final boolean dated;
+        final boolean blockFormat;
+        CompactionManifest.Entry entry;
+
+        StoredFile(Path path, long size, long modified) {
+            this.path = path;
+            this.name = path.getFileName().toString();
+            this.size = size;
+            this.modified = modified;
+            this.blockFormat = name.endsWith(BlockFileWriter.SUFFIX);
+            LocalDate parsed = null;
+            Matcher matcher = FILE_DATE_PATTERN.matcher(name);
+            if (matcher.find()) {
+                try {
+                    parsed = LocalDate.parse(matcher.group(1));
+                } catch (DateTimeParseException e) {
+                    // 不是合法日期
+                }
+            }
+            this.dated = parsed != null;
+            this.day = parsed != null ? parsed : Instant.ofEpochMilli(modified).atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+
+        /**
+         * 原始文件名，即上传时的文件名
+         */
+        String memberName() {
+            return blockFormat ? name.substring(0, name.length() - BlockFileWriter.SUFFIX.length()) : name;
+        }
+    }
+
+    /**
+     * 把解压出的数据写入块压缩文件，按限速读取；每个输入文件的最后一行补齐换行，保证行不跨文件
+     */
+    private class RewriteStream extends OutputStream {
+
+        private final BlockFileWriter writer;
+        private final StorageFile storageFile;
+        private long lines;
+        private long fileBytes;
+        private byte last = '\n';
+
+        RewriteStream(BlockFileWriter writer, StorageFile storageFile) {
+            this.writer = writer;
+            this.storageFile = storageFile;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            throttle.acquire(len);
+            writer.write(Unpooled.wrappedBuffer(b, off, len));
+            last = b[off + len - 1];
+            fileBytes += len;
+            if (storageFile.isBackedUp()) {
+                // 合并在独立线程中执行，写盘积压时等待排空
+                CountDownLatch drained = new CountDownLatch(1);
+                storageFile.whenDrained(drained::countDown);
+                try {
+                    drained.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for storage writer");
+                }
+            }
+        }
+
+        void endFile(long fileLines) throws IOException {
+            if (fileBytes > 0 && last != '\n') {
+                writer.write(Unpooled.wrappedBuffer(new byte[]{'\n'}));
+                last = '\n';
+            }
+            lines += fileLines;
+            fileBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.roc.netty.server.compaction;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 后台IO限速：按字节数推进下一次允许读取的时间，超前时休眠
+ * 有上传进行中时使用更低的速率，保证合并始终有进展又不与上传争抢磁盘。只在合并线程中使用。
+ */
+class IoThrottle {
+
+    private final long bytesPerSecond;
+    private final long busyBytesPerSecond;
+    private final BooleanSupplier busy;
+
+    private long nextNanos = System.nanoTime();
+    private long throttledNanos;
+
+    IoThrottle(long bytesPerSecond, long busyBytesPerSecond, BooleanSupplier busy) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.busyBytesPerSecond = busyBytesPerSecond;
+        this.busy = busy;
+    }
+
+    void acquire(int bytes) throws InterruptedIOException {
+        long rate = busy.getAsBoolean() ? busyBytesPerSecond : bytesPerSecond;
+        long now = System.nanoTime();
+        // 空闲一段时间后不积累额度，避免随后突发
+        nextNanos = Math.max(nextNanos, now) + bytes * 1_000_000_000L / rate;
+        long wait = nextNanos - now;
+        if (wait > 0) {
+            throttledNanos += wait;
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+    }
+
+    long getThrottledMillis() {
+        return throttledNanos / 1_000_000;
+    }
+}
@@ -0,0 +1,48 @@
+package com.roc.netty.server.compaction;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * logs/uploaded 之外按客户端保存的存储（分段存储、列式存储等）
+ * 由合并服务按相同的保留天数和客户端大小上限整单元删除，各存储分别计算大小。
+ */
+public interface RetentionTarget {
+
+    /**
+     * 存储名称，用于日志和统计
+     */
+    String getRetentionName();
+
+    /**
+     * 有数据的客户端
+     */
+    List<String> retentionClients();
+
+    /**
+     * 客户端的所有存储单元（段、日文件），写入中的单元标记为不可删除
+     */
+    List<Unit> retentionUnits(String clientId) throws IOException;
+
+    /**
+     * 删除一个单元，单元已不存在或已变为写入中时返回0
+     *
+     * @return 释放的字节数
+     */
+    long deleteUnit(String clientId, Unit unit) throws IOException;
+
+    @Getter
+    @RequiredArgsConstructor
+    class Unit {
+        // 存储内的单元标识
+        private final String name;
+        // 单元中最新数据的日期，保留按该日期判断
+        private final LocalDate day;
+        private final long size;
+        private final boolean writable;
+    }
+}
@@ -0,0 +1,259 @@
+package com.roc.netty.server.compress;
+
+import com.roc.netty.server.config.NettyConfig;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 业务消息压缩字典训练
+ * 对经过的业务消息做蓄水池采样，采样在各连接的IO线程中进行，不加锁；训练线程定期取样本快照，用类似COVER的方法训练字典：
+ * 统计每个k-gram出现在多少条消息中，把样本切成若干段区间，每个区间选出覆盖高频k-gram最多的片段，
+ * 选中片段的k-gram不再计分，最后按得分升序拼接，得分最高的片段离待压缩数据最近。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DictionaryTrainer {
+
+    private static final int KMER_LENGTH = 8;
+    private static final int SEGMENT_LENGTH = 64;
+    // 保留的字典版本数，客户端可能仍在使用旧版本
+    private static final int MAX_VERSIONS = 8;
+    private static final long CHECK_INTERVAL_SECONDS = 5;
+
+    private final NettyConfig nettyConfig;
+
+    // 蓄水池，槽位按原子引用替换，训练时取快照
+    private AtomicReferenceArray<byte[]> samples;
+    private final AtomicLong seenSamples = new AtomicLong();
+    // 上次训练时已采样的消息数，只由训练线程访问
+    private long trainedSeenSamples;
+
+    private final Map<Short, byte[]> dictionaries = new LinkedHashMap<Short, byte[]>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Short, byte[]> eldest) {
+            return size() > MAX_VERSIONS;
+        }
+    };
+    private volatile Dictionary current;
+    private short lastVersion;
+    private long lastTrainNanos;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        samples = new AtomicReferenceArray<>(nettyConfig.getMessageCompression().getMaxSamples());
+        if (!nettyConfig.getMessageCompression().isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("dict-trainer"));
+        scheduler.scheduleWithFixedDelay(this::retrainIfDue, CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 采样一条业务消息内容，内容数组不会被修改；在IO线程中调用，不加锁
+     */
+    public void sample(byte[] content) {
+        NettyConfig.MessageCompressionConfig config = nettyConfig.getMessageCompression();
+        if (content == null || content.length < config.getMinSize() || content.length > config.getMaxSampleSize()) {
+            return;
+        }
+        long seen = seenSamples.getAndIncrement();
+        if (seen < samples.length()) {
+            samples.set((int) seen, content);
+            return;
+        }
+        long index = ThreadLocalRandom.current().nextLong(seen + 1);
+        if (index < samples.length()) {
+            samples.set((int) index, content);
+        }
+    }
+
+    /**
+     * 当前字典，尚未训练时返回null
+     */
+    public Dictionary current() {
+        return current;
+    }
+
+    /**
+     * 按版本查找字典，已淘汰或不存在时返回null
+     */
+    public byte[] get(short version) {
+        synchronized (dictionaries) {
+            return dictionaries.get(version);
+        }
+    }
+
+    private void retrainIfDue() {
+        try {
+            NettyConfig.MessageCompressionConfig config = nettyConfig.getMessageCompression();
+            boolean intervalElapsed = current == null || System.nanoTime() - lastTrainNanos
+                    >= TimeUnit.SECONDS.toNanos(config.getRetrainIntervalSeconds());
+            long seen = seenSamples.get();
+            if (seen - trainedSeenSamples < config.getMinSamples() || !intervalElapsed) {
+                return;
+            }
+            trainedSeenSamples = seen;
+            List<byte[]> snapshot = snapshot();
+            lastTrainNanos = System.nanoTime();
+
+            long start = System.nanoTime();
+            byte[] content = train(snapshot, config.getDictionarySize());
+            if (content.length == 0) {
+                return;
+            }
+            // 版本0表示未压缩，跳过
+            short version = (short) (lastVersion + 1 == 0 ? 1 : lastVersion + 1);
+            lastVersion = version;
+            synchronized (dictionaries) {
+                dictionaries.put(version, content);
+            }
+            current = new Dictionary(version, content);
+            log.info("Message dictionary trained - version: {}, size: {} bytes, samples: {}, took: {} ms",
+                    version, content.length, snapshot.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.error("Failed to train message dictionary: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 当前蓄水池中的样本，与采样并发时可能混有快照期间替换进来的新样本
+     */
+    List<byte[]> snapshot() {
+        List<byte[]> snapshot = new ArrayList<>(samples.length());
+        for (int i = 0; i < samples.length(); i++) {
+            byte[] sample = samples.get(i);
+            if (sample != null) {
+                snapshot.add(sample);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 从样本训练字典
+     *
+     * @param samples        样本消息
+     * @param dictionarySize 字典最大长度
+     */
+    static byte[] train(List<byte[]> samples, int dictionarySize) {
+        // 每个k-gram出现在多少条样本中，同一条样本内重复出现只计一次
+        Map<Long, Integer> frequencies = new HashMap<>();
+        Set<Long> seen = new HashSet<>();
+        int corpusLength = 0;
+        for (byte[] sample : samples) {
+            seen.clear();
+            for (int i = 0; i + KMER_LENGTH <= sample.length; i++) {
+                Long kmer = kmer(sample, i);
+                if (seen.add(kmer)) {
+                    frequencies.merge(kmer, 1, Integer::sum);
+                }
+            }
+            corpusLength += sample.length;
+        }
+        byte[] corpus = new byte[corpusLength];
+        int position = 0;
+        for (byte[] sample : samples) {
+            System.arraycopy(sample, 0, corpus, position, sample.length);
+            position += sample.length;
+        }
+        if (corpusLength < SEGMENT_LENGTH) {
+            return corpus;
+        }
+
+        // 样本拼接后均分为若干区间，每个区间选出得分最高的片段
+        int segmentCount = Math.max(1, dictionarySize / SEGMENT_LENGTH);
+        int epochLength = Math.max(SEGMENT_LENGTH, corpusLength / segmentCount);
+        List<int[]> selected = new ArrayList<>();
+        for (int epochStart = 0; epochStart + SEGMENT_LENGTH <= corpusLength
+                && selected.size() < segmentCount; epochStart += epochLength) {
+            int epochEnd = Math.min(corpusLength, epochStart + epochLength);
+            int bestStart = -1;
+            int bestScore = 0;
+            // 滑动窗口计算片段内k-gram频次之和
+            int windowKmers = SEGMENT_LENGTH - KMER_LENGTH + 1;
+            int score = 0;
+            for (int i = epochStart; i + KMER_LENGTH <= epochEnd; i++) {
+                score += frequency(frequencies, corpus, i);
+                int windowStart = i - windowKmers + 1;
+                if (windowStart > epochStart) {
+                    score -= frequency(frequencies, corpus, windowStart - 1);
+                }
+                if (windowStart >= epochStart && score > bestScore) {
+                    bestScore = score;
+                    bestStart = windowStart;
+                }
+            }
+            if (bestStart < 0) {
+                continue;
+            }
+            // 已选片段中的k-gram不再计分，避免字典中出现重复内容
+            for (int i = bestStart; i + KMER_LENGTH <= bestStart + SEGMENT_LENGTH; i++) {
+                frequencies.remove(kmer(corpus, i));
+            }
+            selected.add(new int[]{bestStart, bestScore});
+        }
+
+        // 得分低的放前面，得分高的放末尾，离待压缩数据最近，引用距离最短
+        selected.sort(Comparator.comparingInt(segment -> segment[1]));
+        byte[] dictionary = new byte[selected.size() * SEGMENT_LENGTH];
+        for (int i = 0; i < selected.size(); i++) {
+            System.arraycopy(corpus, selected.get(i)[0], dictionary, i * SEGMENT_LENGTH, SEGMENT_LENGTH);
+        }
+        return dictionary;
+    }
+
+    private static int frequency(Map<Long, Integer> frequencies, byte[] data, int offset) {
+        Integer frequency = frequencies.get(kmer(data, offset));
+        // 只出现在一条样本中的k-gram对其他消息没有帮助
+        return frequency != null && frequency > 1 ? frequency : 0;
+    }
+
+    private static long kmer(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 0; i < KMER_LENGTH; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 一个版本的字典
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Dictionary {
+        private final short version;
+        private final byte[] content;
+    }
+}
@@ -0,0 +1,53 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * 上传准入配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "upload-admission", ignoreUnknownFields = false)
+public class AdmissionConfig {
+
+    private boolean enabled = true;  // 是否由服务端调度上传，关闭时收到申报立即授予
+
+    @Min(1)
+    private int maxActiveUploads = 8;  // 同时进行的上传数上限
+
+    @Min(1)
+    private int maxActivePerClient = 1;  // 每个客户端同时进行的上传数上限
+
+    @Min(1024 * 1024)
+    private long minInFlightBytes = 64L * 1024 * 1024;  // 在途上传（已授予未落盘）的申报大小下限(字节)，写盘吞吐未测得时使用
+
+    @Min(1)
+    private int inFlightWindowSeconds = 10;  // 在途上传申报大小上限为 写盘吞吐 × 该秒数
+
+    @Min(1024 * 1024)
+    private long maxQueuedBytes = 64L * 1024 * 1024;  // 写盘队列积压超过该值时暂停授予(字节)
+
+    @Min(1)
+    private int maxBusinessPendingTasks = 1000;  // 业务线程池排队任务数超过该值时暂停授予
+
+    @DecimalMin("0.1")
+    @DecimalMax("1.0")
+    private double maxCpuLoad = 0.9;  // 系统CPU使用率超过该值时只保留1个进行中的上传
+
+    @Min(1)
+    private int grantTimeoutSeconds = 30;  // 授予后未开始上传的名额在该时间后收回(秒)
+
+    @Min(1)
+    private int maxPendingSeconds = 600;  // 申报最长排队时间(秒)，客户端未声明等待时间时使用，超过后丢弃
+
+    @Min(10)
+    private int scheduleIntervalMillis = 100;  // 调度间隔(毫秒)
+}
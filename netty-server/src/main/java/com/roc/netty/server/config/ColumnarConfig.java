@@ -0,0 +1,34 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
+/**
+ * 结构化日志列式存储配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "columnar", ignoreUnknownFields = false)
+public class ColumnarConfig {
+
+    private boolean enabled = true;  // 是否按logback格式把上传的日志解析为列式存储
+
+    @NotBlank
+    private String directory = "logs/columnar";  // 存储根目录，按 客户端/日期 分文件
+
+    @Min(1024)
+    @Max(1024 * 1024)
+    private int rowGroupSize = 65536;  // 行组行数，每个行组独立编码并记录时间范围和级别统计
+
+    private boolean compressMessages = true;  // 消息列是否压缩
+
+    @Min(1)
+    private int maxQueryRows = 10000;  // 单次查询返回的最大行数
+}
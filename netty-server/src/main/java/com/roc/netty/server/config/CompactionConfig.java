@@ -0,0 +1,62 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * 上传文件后台合并与保留配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "compaction", ignoreUnknownFields = false)
+public class CompactionConfig {
+
+    private boolean enabled = true;  // 是否在后台合并、重压缩和清理 logs/uploaded 下的文件，并按保留规则清理分段存储、索引和列式存储
+
+    @Min(0)
+    private int initialDelaySeconds = 60;  // 启动后首次执行的延迟(秒)
+
+    @Min(1)
+    private int intervalSeconds = 600;  // 两次执行之间的间隔(秒)
+
+    @Min(1)
+    private long smallFileBytes = 8L * 1024 * 1024;  // 小于该大小的块压缩文件参与合并(字节)
+
+    @Min(1024 * 1024)
+    private long targetFileBytes = 256L * 1024 * 1024;  // 合并输出的大小上限(字节)，已合并文件小于该值时可继续并入
+
+    @Min(2)
+    private int minMergeFiles = 4;  // 同一客户端同一天的候选文件数达到该值才合并
+
+    @Min(0)
+    private int minFileAgeMinutes = 10;  // 最近修改时间在该时长内的文件不处理，避开刚上传或正在重传的文件
+
+    @Min(1)
+    @Max(9)
+    private int mergeCompressionLevel = 6;  // 合并输出的压缩级别(Deflate 1-9)
+
+    @Min(1)
+    private int coldAfterDays = 7;  // 日志日期早于该天数的文件重压缩为冷数据
+
+    @Min(1)
+    @Max(9)
+    private int coldCompressionLevel = 9;  // 冷数据压缩级别(Deflate 1-9)
+
+    @Min(0)
+    private int retentionDays = 30;  // 保留天数，按文件名中的日期（没有时按修改时间），分段存储和列式存储按数据日期，0表示不按时间清理
+
+    @Min(0)
+    private long maxClientBytes = 0;  // 每个客户端在每个存储中保留的总大小上限(字节)，超过时从最早的日期删除，0表示不限
+
+    @Min(64 * 1024)
+    private long ioBytesPerSecond = 32L * 1024 * 1024;  // 合并与重压缩的处理速率上限(解压后字节/秒)
+
+    @Min(64 * 1024)
+    private long ingestIoBytesPerSecond = 4L * 1024 * 1024;  // 有上传进行中时的处理速率上限(解压后字节/秒)
+}
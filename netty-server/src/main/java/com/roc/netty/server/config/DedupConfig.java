@@ -0,0 +1,32 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * 上传内容去重配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "upload-dedup", ignoreUnknownFields = false)
+public class DedupConfig {
+
+    private boolean enabled = true;  // 是否按客户端发送的内容清单只接收缺失的块，关闭时客户端整文件上传
+
+    @Min(4 * 1024)
+    private int minChunkSize = 64 * 1024;  // 接受的清单块大小下限(字节)
+
+    @Min(4 * 1024)
+    private int maxChunkSize = 16 * 1024 * 1024;  // 接受的清单块大小上限(字节)，还原时每个上传占用一个块大小的缓冲
+
+    @Min(1)
+    private int maxChunks = 65536;  // 单个清单的块数上限
+
+    @Min(1)
+    private int pendingTimeoutSeconds = 3600;  // 已回复清单但未开始上传的记录保留时长(秒)
+}
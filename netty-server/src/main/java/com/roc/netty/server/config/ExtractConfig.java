@@ -0,0 +1,27 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * 客户端过滤提取配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "extract", ignoreUnknownFields = false)
+public class ExtractConfig {
+
+    @Min(1)
+    private int maxLines = 100000;  // 一次提取合并后的最大行数，达到后取消各客户端的扫描
+
+    @Min(1)
+    private int timeoutSeconds = 60;  // 默认等待客户端返回结果的时间(秒)
+
+    @Min(1)
+    private int maxTimeoutSeconds = 600;  // 请求可指定的最长等待时间(秒)
+}
@@ -0,0 +1,43 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * 流量最大的客户端与消息类型统计配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "heavy-hitters", ignoreUnknownFields = false)
+public class HeavyHitterConfig {
+
+    private boolean enabled = true;  // 是否按时间窗口统计消息数、字节数、错误数最多的客户端和消息类型
+
+    @Min(16)
+    private int capacity = 256;  // 每个统计保留的key个数，计数超过 总量/该值 的key一定能统计到
+
+    @Min(1)
+    private int windowSeconds = 60;  // 时间窗口长度(秒)
+
+    @Min(1)
+    private int retainWindows = 15;  // 保留的窗口数
+
+    @Min(4)
+    @Max(16)
+    private int hllPrecision = 12;  // 客户端数估计的精度，寄存器数为2的该值次方，误差约 1.04/sqrt(寄存器数)
+
+    @Min(1)
+    private int defaultTop = 10;  // 查询默认返回的key个数
+
+    @Min(1024)
+    private int ringSize = 16384;  // 每个IO线程的收帧缓冲大小(帧)，统计线程来不及读取时丢弃新帧
+
+    @Min(10)
+    private int drainIntervalMillis = 100;  // 统计线程读取收帧缓冲的间隔(毫秒)
+}
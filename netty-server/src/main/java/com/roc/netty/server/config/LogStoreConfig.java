@@ -0,0 +1,38 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
+/**
+ * 日志分段存储配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "log-store", ignoreUnknownFields = false)
+public class LogStoreConfig {
+
+    private boolean enabled = true;  // 是否把上传的日志行追加到按客户端分区的分段存储
+
+    @NotBlank
+    private String directory = "logs/store";  // 存储根目录，每个客户端一个子目录
+
+    @Min(1024 * 1024)
+    @Max(1024 * 1024 * 1024)
+    private long segmentMaxBytes = 64L * 1024 * 1024;  // 段文件大小上限(字节)，超过后滚动
+
+    @Min(1)
+    private int segmentMaxAgeMinutes = 60;  // 段文件最长写入时间(分钟)，超过后滚动
+
+    @Min(512)
+    private int indexIntervalBytes = 4096;  // 稀疏索引间隔(字节)，每个块记录一条时间范围索引
+
+    @Min(4096)
+    private int writeBufferSize = 64 * 1024;  // 写缓冲大小(字节)
+}
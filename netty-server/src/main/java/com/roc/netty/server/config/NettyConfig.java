@@ -36,6 +36,8 @@ public class NettyConfig {
 
     private boolean keepAlive = true;  // 是否保持长连接
 
+    private boolean epoll = true;  // Linux 上可用时使用 epoll 传输（可读取 TCP_INFO），否则使用 NIO
+
     @Min(128)
     private int backlog = 128;  // 最大等待连接数
 
@@ -55,4 +57,37 @@ public class NettyConfig {
 
     private String workerNamePrefix = "netty-worker-";
 
+    private boolean metrics = true;  // 是否按消息类型统计收发帧数、字节数和处理延迟
+
+    private boolean latencyProbe = true;  // 是否回复客户端的往返延迟探测
+
+    @Valid
+    private MessageCompressionConfig messageCompression = new MessageCompressionConfig();
+
+    /**
+     * 业务消息预置字典压缩配置
+     */
+    @Data
+    public static class MessageCompressionConfig {
+        private boolean enabled = false;  // 是否启用，启用后向客户端下发字典，客户端确认后双向压缩
+
+        @Min(1)
+        private int minSize = 32;  // 小于该大小的消息不压缩(字节)
+
+        @Min(256)
+        @Max(32768)
+        private int dictionarySize = 8192;  // 字典大小(字节)，不超过Deflate窗口32KB
+
+        @Min(1)
+        private int maxSamples = 2000;  // 保留的采样消息数
+
+        @Min(1)
+        private int maxSampleSize = 4096;  // 超过该大小的消息不参与采样(字节)
+
+        @Min(1)
+        private int minSamples = 100;  // 新采样数达到该值才训练新字典
+
+        @Min(1)
+        private int retrainIntervalSeconds = 300;  // 重新训练间隔(秒)
+    }
 }
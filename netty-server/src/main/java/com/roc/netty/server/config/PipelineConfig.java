@@ -0,0 +1,38 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上传日志流式处理管道配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "pipeline", ignoreUnknownFields = false)
+public class PipelineConfig {
+
+    private boolean enabled = true;  // 是否在上传解压时逐行执行 过滤→转换→聚合→输出 管道
+
+    @Min(1)
+    @Max(86400)
+    private int bucketSeconds = 60;  // 聚合时间窗口长度(秒)，按日志时间分桶
+
+    @Min(1)
+    private int maxBuckets = 1440;  // 每个客户端每个聚合保留的窗口数，超过后丢弃最早的窗口
+
+    private List<String> excludeLoggers = new ArrayList<>();  // 不参与处理的logger前缀
+
+    @Min(1)
+    private int recentErrors = 100;  // 每个客户端保留的最近ERROR条数
+
+    @Min(1)
+    private int defaultTop = 10;  // 聚合查询默认返回的key个数
+}
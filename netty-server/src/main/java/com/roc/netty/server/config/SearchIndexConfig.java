@@ -0,0 +1,49 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
+/**
+ * 日志关键词倒排索引配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "search-index", ignoreUnknownFields = false)
+public class SearchIndexConfig {
+
+    private boolean enabled = true;  // 是否为日志存储中的行建立关键词索引，依赖日志存储
+
+    @NotBlank
+    private String directory = "logs/index";  // 索引根目录，每个客户端一个子目录
+
+    @Min(1024 * 1024)
+    private long bufferBytes = 32L * 1024 * 1024;  // 内存索引段大小上限(字节)，超过后写成磁盘段
+
+    @Min(1)
+    private int flushIntervalSeconds = 60;  // 内存索引段最长停留时间(秒)，超过后写盘，限制重启时的回放量
+
+    @Min(2)
+    private int mergeFactor = 8;  // 磁盘段数达到该值时合并相邻的段
+
+    @Min(1024 * 1024)
+    @Max(Integer.MAX_VALUE)
+    private long maxSegmentBytes = 1024L * 1024 * 1024;  // 合并后段文件大小上限(字节)
+
+    @Min(1)
+    private int minTokenLength = 2;  // 最短索引词长度
+
+    @Max(255)
+    private int maxTokenLength = 64;  // 最长索引词长度，更长的复合词只索引其组成部分
+
+    private boolean indexNumbers = false;  // 是否索引纯数字的词，行号、耗时等数字会显著增大词典
+
+    @Min(1)
+    private int maxResults = 1000;  // 单次查询返回的最大行数
+}
@@ -0,0 +1,45 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * 上传文件写盘配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "storage", ignoreUnknownFields = false)
+public class StorageConfig {
+
+    @Min(1)
+    private int writerThreads = 2;  // 写盘线程数，每个文件固定由一个线程写入
+
+    @Min(1)
+    private int queueCapacity = 1024;  // 每个写盘线程的任务积压上限，超过时暂停读取上传连接，排空到一半以下时恢复
+
+    @Min(4096)
+    private int batchSize = 1024 * 1024;  // 合并写入的批大小(字节)，向上取整到4KB的整数倍
+
+    private boolean fsync = true;  // 提交文件时是否刷盘
+
+    @Min(0)
+    private int groupCommitMillis = 5;  // 组提交最长等待时间(毫秒)，期间到达的提交共用一次目录刷盘
+
+    private boolean blockFormat = true;  // 文本日志是否按块压缩存储(.blk)，可按行号/时间只解压需要的块
+
+    @Min(4096)
+    private int blockSize = 64 * 1024;  // 压缩块大小(字节)，块在换行处截断
+
+    @Min(1)
+    @Max(9)
+    private int blockCompressionLevel = 6;  // 块压缩级别(Deflate 1-9)
+
+    @Min(0)
+    private int compressorThreads = 0;  // 块压缩线程数，0表示CPU核数
+}
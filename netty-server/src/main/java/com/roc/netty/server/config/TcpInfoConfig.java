@@ -0,0 +1,32 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * 连接 TCP_INFO 采样配置，需使用 epoll 传输
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "tcp-info", ignoreUnknownFields = false)
+public class TcpInfoConfig {
+
+    private boolean enabled = true;  // 是否定时读取各连接的 RTT、重传、拥塞窗口和未确认分段
+
+    @Min(1)
+    private int intervalSeconds = 10;  // 采样间隔(秒)
+
+    @Min(1)
+    private int windowSamples = 30;  // 滚动统计保留的采样次数
+
+    @Min(1)
+    private int degradedRttMillis = 200;  // RTT 超过该值标记为网络状况变差(毫秒)
+
+    @Min(1)
+    private int degradedRetransmits = 10;  // 滚动窗口内重传分段数达到该值标记为网络状况变差
+}
@@ -0,0 +1,40 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
+/**
+ * 消息追踪配置：帧头携带追踪ID与跨度ID，各跳记录跨度并定时导出为 Zipkin v2 JSON
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "trace", ignoreUnknownFields = false)
+public class TraceConfig {
+
+    private boolean enabled = true;  // 是否记录跨度，关闭后收到带追踪上下文的消息也不记录
+
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private double sampleRate = 0.01;  // 本端发起的消息被追踪的比例
+
+    @Min(64)
+    private int ringSize = 8192;  // 跨度环形缓冲大小，取不小于该值的2的幂，导出跟不上时覆盖最早的跨度
+
+    @Min(100)
+    private int exportIntervalMillis = 1000;  // 导出间隔(毫秒)
+
+    private String exportFile = "";  // 导出文件，每行一个 Zipkin v2 JSON 跨度，为空不导出到文件
+
+    private String exportUrl = "";  // 导出地址，如 Zipkin 的 http://host:9411/api/v2/spans，为空不导出到HTTP
+
+    @NotBlank
+    private String serviceName = "netty-server";  // 导出跨度中的服务名
+}
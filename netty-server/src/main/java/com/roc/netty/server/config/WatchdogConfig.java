@@ -0,0 +1,32 @@
+package com.roc.netty.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+
+/**
+ * IO线程与业务线程卡顿检测配置
+ */
+@Data
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "event-loop-watchdog", ignoreUnknownFields = false)
+public class WatchdogConfig {
+
+    private boolean enabled = true;  // 是否定时向各IO线程、业务线程投递探测任务，统计调度延迟
+
+    @Min(10)
+    private int intervalMillis = 100;  // 探测间隔(毫秒)
+
+    @Min(10)
+    private int stallThresholdMillis = 200;  // 探测任务等待超过该时间视为卡顿，记录线程堆栈(毫秒)
+
+    @Min(1)
+    private int maxStackDepth = 32;  // 卡顿时记录的堆栈深度
+
+    @Min(1)
+    private int maxRecentStalls = 20;  // 保留的最近卡顿记录数
+}
@@ -16,4 +16,34 @@ public class Constants {
     public static final byte FILE_SEND_TO_SERVER_RESPONSE = 6;
     public static final byte FILE_SEND_TO_CLIENT_REQUEST = 7;
     public static final byte FILE_SEND_TO_CLIENT_RESPONSE = 8;
+    // 分块流式上传：开始(JSON头) -> 数据块(transferId + 数据) -> 结束(JSON尾)
+    public static final byte FILE_UPLOAD_BEGIN = 10;
+    public static final byte FILE_UPLOAD_CHUNK = 11;
+    public static final byte FILE_UPLOAD_END = 12;
+    // 预置字典压缩：服务端下发字典(版本2字节 + 字典内容) -> 客户端确认(版本2字节)
+    public static final byte DICTIONARY = 13;
+    public static final byte DICTIONARY_ACK = 14;
+    // 服务端下发的过滤提取：请求(JSON) -> 匹配行数据块(extractId + 行) -> 结束(JSON统计)，服务端可中途取消(JSON)
+    public static final byte EXTRACT_REQUEST = 15;
+    public static final byte EXTRACT_DATA = 16;
+    public static final byte EXTRACT_END = 17;
+    public static final byte EXTRACT_CANCEL = 18;
+    // 上传准入：客户端申报待上传文件(JSON) -> 服务端确认已排队(JSON) -> 服务端按容量授予上传名额(JSON)，收到授予后才开始FILE_UPLOAD_BEGIN
+    public static final byte UPLOAD_ANNOUNCE = 19;
+    public static final byte UPLOAD_GRANT = 20;
+    // 内容去重上传：客户端发送文件清单(JSON：整文件与固定大小块的哈希) -> 服务端回复需要上传的块(JSON)，之后只上传这些块
+    public static final byte UPLOAD_MANIFEST = 21;
+    public static final byte UPLOAD_MANIFEST_REPLY = 22;
+    // 往返延迟探测：客户端发送探测(序号8字节 + 发送时间8字节 + 上次IO线程与业务线程往返时间各8字节)
+    // -> 服务端在IO线程和业务线程处理完后各回复一次(序号 + 发送时间 + 阶段1字节 + 服务端停留时间8字节)
+    public static final byte LATENCY_PROBE = 23;
+    public static final byte LATENCY_PROBE_REPLY = 24;
+    // 上传准入的排队确认，见 UPLOAD_ANNOUNCE
+    public static final byte UPLOAD_QUEUED = 25;
+
+    // 帧扩展头：类型字节最高位为1时，其后跟1字节标志；带字典压缩标志时再跟2字节字典版本，
+    // 带追踪标志时再跟8字节追踪ID和8字节上游跨度ID
+    public static final byte TYPE_EXTENDED = (byte) 0x80;
+    public static final byte FLAG_DICT_COMPRESSED = 0x01;
+    public static final byte FLAG_TRACED = 0x02;
 }
@@ -0,0 +1,72 @@
+package com.roc.netty.server.controller;
+
+import com.roc.netty.server.columnar.ColumnarFilter;
+import com.roc.netty.server.columnar.ColumnarStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 结构化日志列式查询控制器
+ * 时间格式同 {@link LogStoreController}；logger/thread 支持LIKE语法（% 任意个字符，_ 一个字符）
+ */
+@RestController
+@RequestMapping("/api/columnar")
+@RequiredArgsConstructor
+public class ColumnarController {
+
+    private final ColumnarStore columnarStore;
+
+    /**
+     * 各客户端的列式存储概况
+     */
+    @GetMapping
+    public Map<String, Object> getStats() {
+        return columnarStore.getStats();
+    }
+
+    /**
+     * 查询符合条件的行
+     *
+     * @param level   级别，逗号分隔，如 WARN,ERROR
+     * @param message 消息中包含的文本
+     */
+    @GetMapping("/{clientId}/rows")
+    public Map<String, Object> rows(@PathVariable String clientId,
+                                    @RequestParam String from,
+                                    @RequestParam String to,
+                                    @RequestParam(required = false) String level,
+                                    @RequestParam(required = false) String logger,
+                                    @RequestParam(required = false) String thread,
+                                    @RequestParam(required = false) String message,
+                                    @RequestParam(defaultValue = "100") int limit) throws IOException {
+        ColumnarFilter filter = new ColumnarFilter(LogStoreController.parseTime(from),
+                LogStoreController.parseTime(to), level, logger, thread, message);
+        return columnarStore.query(clientId, filter, limit);
+    }
+
+    /**
+     * 统计符合条件的行数
+     *
+     * @param groupBy 分组方式：level / logger / thread / minute，不指定时只返回总数
+     */
+    @GetMapping("/{clientId}/count")
+    public Map<String, Object> count(@PathVariable String clientId,
+                                     @RequestParam String from,
+                                     @RequestParam String to,
+                                     @RequestParam(required = false) String level,
+                                     @RequestParam(required = false) String logger,
+                                     @RequestParam(required = false) String thread,
+                                     @RequestParam(required = false) String message,
+                                     @RequestParam(required = false) String groupBy) throws IOException {
+        ColumnarFilter filter = new ColumnarFilter(LogStoreController.parseTime(from),
+                LogStoreController.parseTime(to), level, logger, thread, message);
+        return columnarStore.count(clientId, filter, groupBy);
+    }
+}
@@ -0,0 +1,35 @@
+package com.roc.netty.server.controller;
+
+import com.roc.netty.server.dto.ExtractRequest;
+import com.roc.netty.server.service.ExtractService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 客户端过滤提取控制器
+ */
+@RestController
+@RequestMapping("/api/extract")
+@RequiredArgsConstructor
+@Validated
+public class ExtractController {
+
+    private final ExtractService extractService;
+
+    /**
+     * 在目标客户端上按条件提取日志行，所有客户端返回（或超时）后响应按时间合并的结果
+     */
+    @PostMapping
+    public CompletableFuture<Map<String, Object>> extract(@Valid @RequestBody ExtractRequest request) throws IOException {
+        return extractService.extract(request);
+    }
+}
@@ -0,0 +1,106 @@
+package com.roc.netty.server.controller;
+
+import com.roc.netty.server.logstore.LogStore;
+import com.roc.netty.server.search.KeywordIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * 日志存储查询控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/logs")
+@RequiredArgsConstructor
+public class LogStoreController {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final LogStore logStore;
+    private final KeywordIndex keywordIndex;
+
+    /**
+     * 各客户端的存储概况
+     */
+    @GetMapping
+    public Map<String, Object> getStats() {
+        return logStore.getStats();
+    }
+
+    /**
+     * 关键词查询，返回同时包含所有关键词的行，按客户端、位置排序
+     *
+     * @param q        关键词，空格分隔；trace id、类名等带 . - 的词整体匹配
+     * @param clientId 只查询该客户端，不指定时查询所有客户端
+     * @param cursor   翻页游标，取上一页返回的nextCursor
+     * @param limit    每页行数
+     */
+    @GetMapping("/search")
+    public Map<String, Object> search(@RequestParam String q,
+                                      @RequestParam(required = false) String clientId,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "100") int limit) throws IOException {
+        return keywordIndex.search(q, clientId, cursor, limit);
+    }
+
+    /**
+     * 各客户端的关键词索引概况
+     */
+    @GetMapping("/index")
+    public Map<String, Object> getIndexStats() {
+        return keywordIndex.getStats();
+    }
+
+    /**
+     * 按时间范围流式读取某个客户端的日志，时间范围为 [from, to)
+     *
+     * @param from 开始时间，格式 yyyy-MM-dd HH:mm:ss 或毫秒时间戳
+     * @param to   结束时间，格式同上
+     */
+    @GetMapping("/{clientId}")
+    public ResponseEntity<StreamingResponseBody> read(@PathVariable String clientId,
+                                                      @RequestParam String from,
+                                                      @RequestParam String to) {
+        if (!logStore.contains(clientId)) {
+            return ResponseEntity.notFound().build();
+        }
+        long fromMillis = parseTime(from);
+        long toMillis = parseTime(to);
+        if (fromMillis >= toMillis) {
+            throw new IllegalArgumentException("'from' must be earlier than 'to'");
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, STREAM_BUFFER_SIZE);
+            logStore.read(clientId, fromMillis, toMillis, out);
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(body);
+    }
+
+    static long parseTime(String value) {
+        String text = value.trim();
+        if (text.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(text);
+        }
+        return LocalDateTime.parse(text.replace('T', ' '), TIME_FORMAT)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -4,6 +4,7 @@ import com.roc.netty.server.dto.ApiResponse;
 import com.roc.netty.server.dto.MessageRequest;
 import com.roc.netty.server.protocol.MessageProtocol;
 import com.roc.netty.server.service.ClientConnectionService;
+import com.roc.netty.server.trace.Tracer;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.util.CharsetUtil;
@@ -35,6 +36,7 @@ import java.util.concurrent.TimeUnit;
 public class MessageController {
 
     private final ClientConnectionService clientConnectionService;
+    private final Tracer tracer;
 
 
     /**
@@ -64,7 +66,7 @@ public class MessageController {
 
                         // 发送消息
                         Thread.sleep(100);
-                        clientConnectionService.getChannel(clientId).writeAndFlush(message);
+                        tracer.send(clientConnectionService.getChannel(clientId), message, "send concurrently", clientId);
                         log.info("向客户端 {} 发送消息: {}", clientId, messageContent);
                     } catch (Exception e) {
                         log.error("发送消息时发生异常", e);
@@ -121,7 +123,7 @@ public class MessageController {
                         message.setContent(contentBytes);
 
                         // 发送消息并等待发送完成
-                        ChannelFuture future = channel.writeAndFlush(message).sync();
+                        ChannelFuture future = tracer.send(channel, message, "send sequentially", clientId).sync();
                         if (future.isSuccess()) {
                             log.info("向客户端 {} 发送消息: {}", clientId, messageContent);
                         } else {
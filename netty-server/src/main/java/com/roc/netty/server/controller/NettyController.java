@@ -1,9 +1,28 @@
 package com.roc.netty.server.controller;
 
+import com.roc.netty.server.compaction.CompactionService;
+import com.roc.netty.server.config.HeavyHitterConfig;
+import com.roc.netty.server.config.PipelineConfig;
+import com.roc.netty.server.metrics.ConnectionMemory;
+import com.roc.netty.server.metrics.EventLoopWatchdog;
+import com.roc.netty.server.metrics.HeavyHitters;
+import com.roc.netty.server.metrics.MessageMetrics;
+import com.roc.netty.server.metrics.TcpInfoSampler;
+import com.roc.netty.server.pipeline.LogAggregator;
+import com.roc.netty.server.pipeline.ProcessingPipeline;
+import com.roc.netty.server.pipeline.RecentErrorsSink;
 import com.roc.netty.server.service.ClientConnectionService;
+import com.roc.netty.server.service.LatencyProbeService;
+import com.roc.netty.server.service.UploadAdmissionService;
+import com.roc.netty.server.service.UploadDedupService;
+import com.roc.netty.server.storage.StorageWriter;
+import com.roc.netty.server.trace.SpanExporter;
+import com.roc.netty.server.trace.Tracer;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,15 +37,223 @@ public class NettyController {
     @Resource
     private ClientConnectionService service;
 
+    @Resource
+    private StorageWriter storageWriter;
+
+    @Resource
+    private ProcessingPipeline processingPipeline;
+
+    @Resource
+    private RecentErrorsSink recentErrorsSink;
+
+    @Resource
+    private PipelineConfig pipelineConfig;
+
+    @Resource
+    private CompactionService compactionService;
+
+    @Resource
+    private UploadAdmissionService uploadAdmissionService;
+
+    @Resource
+    private UploadDedupService uploadDedupService;
+
+    @Resource
+    private MessageMetrics messageMetrics;
+
+    @Resource
+    private LatencyProbeService latencyProbeService;
+
+    @Resource
+    private EventLoopWatchdog eventLoopWatchdog;
+
+    @Resource
+    private HeavyHitters heavyHitters;
+
+    @Resource
+    private HeavyHitterConfig heavyHitterConfig;
+
+    @Resource
+    private ConnectionMemory connectionMemory;
+
+    @Resource
+    private Tracer tracer;
+
+    @Resource
+    private SpanExporter spanExporter;
+
+    @Resource
+    private TcpInfoSampler tcpInfoSampler;
+
     
     @GetMapping("/status")
     public Map<String, Object> getStatus() {
         Map<String, Object> result = new HashMap<>();
         result.put("status", "Netty server is running");
         result.put("activeConnections", service.getConnectionCount());
+        result.put("degradedConnections", service.getDegradedLinks().size());
         return result;
     }
     
+    /**
+     * 各消息类型的收发帧数、字节数和处理延迟直方图，以及各线程的调度延迟，Prometheus 文本格式
+     */
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String getMetrics() {
+        return messageMetrics.prometheus() + eventLoopWatchdog.prometheus();
+    }
+
+    /**
+     * IO线程与业务线程的调度延迟、排队任务数和最近的卡顿堆栈
+     */
+    @GetMapping("/event-loops")
+    public Map<String, Object> getEventLoopStats() {
+        return eventLoopWatchdog.getStats();
+    }
+
+    /**
+     * 各客户端的延迟探测汇总：业务线程池排队时间，客户端测得的IO线程与业务线程往返时间
+     */
+    @GetMapping("/latency")
+    public Map<String, Object> getLatencyStats() {
+        return latencyProbeService.getStats();
+    }
+
+    /**
+     * 最近若干时间窗口内消息数、字节数、ERROR数、上传文件数最多的客户端和消息类型，以及活跃客户端数（估计值）
+     *
+     * @param windows 合并的窗口数，含当前未结束的窗口
+     * @param top     每项返回的key个数
+     */
+    @GetMapping("/heavy-hitters")
+    public Map<String, Object> getHeavyHitters(@RequestParam(defaultValue = "1") int windows,
+                                               @RequestParam(required = false) Integer top) {
+        return heavyHitters.query(windows, top == null ? heavyHitterConfig.getDefaultTop() : top);
+    }
+
+    /**
+     * 单个连接的内存估计：按用途和堆/直接/本地内存汇总、每连接分布、占用最多的连接，以及按平均值推算的内存需求
+     *
+     * @param top         列出占用最多的连接数
+     * @param connections 推算内存需求的连接数
+     */
+    @GetMapping("/memory")
+    public Map<String, Object> getConnectionMemory(@RequestParam(defaultValue = "10") int top,
+                                                   @RequestParam(defaultValue = "500000") long connections)
+            throws InterruptedException {
+        return connectionMemory.report(top, connections);
+    }
+
+    /**
+     * 各连接内核 TCP_INFO 采样：RTT、重传、拥塞窗口分布，网络状况变差的连接，RTT最大的连接
+     */
+    @GetMapping("/tcp-info")
+    public Map<String, Object> getTcpInfo(@RequestParam(defaultValue = "10") int top) {
+        return tcpInfoSampler.getStats(top);
+    }
+
+    /**
+     * 消息追踪：跨度记录与导出统计，以及最近记录的跨度
+     */
+    @GetMapping("/traces")
+    public Map<String, Object> getTraces(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("'limit' must be positive");
+        }
+        Map<String, Object> result = spanExporter.getStats();
+        result.put("recent", tracer.recent(limit));
+        return result;
+    }
+
+    /**
+     * 上传文件写盘统计：队列积压、写入吞吐、刷盘次数
+     */
+    @GetMapping("/storage")
+    public Map<String, Object> getStorageStats() {
+        return storageWriter.getStats();
+    }
+
+    /**
+     * 上传准入：等待与进行中的上传、在途数据量、暂停授予的原因
+     */
+    @GetMapping("/admission")
+    public Map<String, Object> getAdmissionStats() {
+        return uploadAdmissionService.getStats();
+    }
+
+    /**
+     * 上传内容去重：索引的文件与块数、跳过的上传和复用的数据量
+     */
+    @GetMapping("/dedup")
+    public Map<String, Object> getDedupStats() {
+        return uploadDedupService.getStats();
+    }
+
+    /**
+     * 上传文件后台合并：执行进度、各层文件数和回收的空间
+     */
+    @GetMapping("/compaction")
+    public Map<String, Object> getCompactionStats() throws IOException {
+        return compactionService.getStats();
+    }
+
+    /**
+     * 立即执行一次后台合并
+     */
+    @PostMapping("/compaction/run")
+    public Map<String, Object> runCompaction() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("started", compactionService.runNow());
+        return result;
+    }
+
+    /**
+     * 上传处理管道各阶段及处理统计
+     */
+    @GetMapping("/pipeline")
+    public Map<String, Object> getPipelineStats() {
+        return processingPipeline.getStats();
+    }
+
+    /**
+     * 管道中的窗口聚合结果，如 levels（各级别行数）、exceptions（异常类型）
+     *
+     * @param clientId 只查询该客户端，不指定时合并所有客户端
+     * @param from     开始时间，格式 yyyy-MM-dd HH:mm:ss 或毫秒时间戳，不指定时不限
+     * @param to       结束时间，格式同上
+     * @param top      返回计数最多的key个数
+     */
+    @GetMapping("/pipeline/aggregates/{name}")
+    public ResponseEntity<Map<String, Object>> getAggregate(@PathVariable String name,
+                                                            @RequestParam(required = false) String clientId,
+                                                            @RequestParam(required = false) String from,
+                                                            @RequestParam(required = false) String to,
+                                                            @RequestParam(required = false) Integer top) {
+        LogAggregator aggregator = processingPipeline.getAggregator(name);
+        if (aggregator == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long fromMillis = from == null ? Long.MIN_VALUE / 2 : LogStoreController.parseTime(from);
+        long toMillis = to == null ? Long.MAX_VALUE / 2 : LogStoreController.parseTime(to);
+        if (fromMillis >= toMillis) {
+            throw new IllegalArgumentException("'from' must be earlier than 'to'");
+        }
+        return ResponseEntity.ok(aggregator.query(clientId, fromMillis, toMillis,
+                top == null ? pipelineConfig.getDefaultTop() : top));
+    }
+
+    /**
+     * 某个客户端最近的ERROR行，新的在前
+     */
+    @GetMapping("/pipeline/errors/{clientId}")
+    public Map<String, Object> getRecentErrors(@PathVariable String clientId,
+                                               @RequestParam(defaultValue = "20") int limit) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("clientId", clientId);
+        result.put("errors", recentErrorsSink.query(clientId, limit));
+        return result;
+    }
+
     @PostMapping("/broadcast")
     public Map<String, Object> broadcastMessage(@RequestBody Map<String, String> message) {
         String content = message.get("message");
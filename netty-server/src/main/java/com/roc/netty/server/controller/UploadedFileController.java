@@ -0,0 +1,144 @@
+package com.roc.netty.server.controller;
+
+import com.roc.netty.server.compaction.CompactionManifest;
+import com.roc.netty.server.compaction.CompactionService;
+import com.roc.netty.server.service.FileService;
+import com.roc.netty.server.storage.BlockFileReader;
+import com.roc.netty.server.storage.BlockFileWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 上传文件读取控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/files")
+@RequiredArgsConstructor
+public class UploadedFileController {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final FileService fileService;
+    private final CompactionService compactionService;
+
+    /**
+     * 客户端上传的文件列表，合并或重压缩过的文件带上所在层和包含的原始文件
+     */
+    @GetMapping("/{clientId}")
+    public List<Map<String, Object>> list(@PathVariable String clientId) throws IOException {
+        List<Map<String, Object>> files = fileService.listUploaded(clientId);
+        for (Map<String, Object> file : files) {
+            String storedName = file.get("fileName") + ("block".equals(file.get("format")) ? BlockFileWriter.SUFFIX : "");
+            CompactionManifest.Entry entry = compactionService.getEntry(clientId, storedName);
+            if (entry != null) {
+                file.put("tier", entry.getTier());
+                file.put("compressionLevel", entry.getLevel());
+                if (!entry.getMembers().isEmpty()) {
+                    file.put("members", entry.getMembers().stream()
+                            .map(CompactionManifest.Member::getFileName).collect(Collectors.toList()));
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 读取上传的文件，块压缩格式的文件只解压需要的块
+     * 已被合并的文件按原文件名读取时只输出其在合并文件中的行，不支持按时间读取
+     *
+     * @param fromLine 起始行号（从1开始），与lines一起使用
+     * @param lines    读取的行数
+     * @param from     开始时间，格式 yyyy-MM-dd HH:mm:ss 或毫秒时间戳，与to一起使用，范围为 [from, to)
+     * @param to       结束时间
+     */
+    @GetMapping("/{clientId}/{fileName:.+}")
+    public ResponseEntity<StreamingResponseBody> read(@PathVariable String clientId,
+                                                      @PathVariable String fileName,
+                                                      @RequestParam(required = false) Long fromLine,
+                                                      @RequestParam(defaultValue = "1000") long lines,
+                                                      @RequestParam(required = false) String from,
+                                                      @RequestParam(required = false) String to) {
+        Path path = fileService.resolveUploaded(clientId, fileName);
+        if (path == null) {
+            CompactionService.MemberLocation member = compactionService.findMember(clientId, fileName);
+            if (member == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return readMember(member, fromLine, lines, from != null || to != null);
+        }
+        boolean blockFormat = path.getFileName().toString().endsWith(BlockFileWriter.SUFFIX);
+        boolean timeRange = from != null || to != null;
+        if ((fromLine != null || timeRange) && !blockFormat) {
+            throw new IllegalArgumentException("Line and time queries are only supported for block format files");
+        }
+        if (fromLine != null && fromLine < 1) {
+            throw new IllegalArgumentException("'fromLine' starts from 1");
+        }
+        long fromMillis = from != null ? LogStoreController.parseTime(from) : Long.MIN_VALUE;
+        long toMillis = to != null ? LogStoreController.parseTime(to) : Long.MAX_VALUE;
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, STREAM_BUFFER_SIZE);
+            if (!blockFormat) {
+                Files.copy(path, out);
+            } else {
+                try (BlockFileReader reader = BlockFileReader.open(path)) {
+                    if (fromLine != null) {
+                        reader.readLines(fromLine - 1, lines, out);
+                    } else if (timeRange) {
+                        reader.readTimeRange(fromMillis, toMillis, out);
+                    } else {
+                        reader.readAll(out);
+                    }
+                }
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(body);
+    }
+
+    /**
+     * 读取合并文件中的一个原始文件
+     */
+    private ResponseEntity<StreamingResponseBody> readMember(CompactionService.MemberLocation location, Long fromLine,
+                                                             long lines, boolean timeRange) {
+        if (timeRange) {
+            throw new IllegalArgumentException("Time queries on a compacted file are only supported on "
+                    + location.getPath().getFileName());
+        }
+        if (fromLine != null && fromLine < 1) {
+            throw new IllegalArgumentException("'fromLine' starts from 1");
+        }
+        CompactionManifest.Member member = location.getMember();
+        long skip = fromLine != null ? fromLine - 1 : 0;
+        long count = fromLine != null ? Math.min(lines, member.getLines() - skip) : member.getLines();
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, STREAM_BUFFER_SIZE);
+            if (count > 0) {
+                try (BlockFileReader reader = BlockFileReader.open(location.getPath())) {
+                    reader.readLines(member.getFirstLine() + skip, count, out);
+                }
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(body);
+    }
+}
@@ -0,0 +1,162 @@
+package com.roc.netty.server.dedup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 按清单还原上传的文件内容
+ * 清单中服务端已有的块从已存储的文件读取，其余块按顺序取自客户端上传的数据，两者按块序号交错输出。
+ * 输出的每块都计算哈希：按清单还原时与清单比对，整文件上传时只记录，落盘后作为该文件的新清单。
+ * 只在上传处理线程中使用。
+ */
+public class ChunkAssembler implements Closeable {
+
+    private final int chunkSize;
+    // 客户端的清单，整文件上传（不比对）时为null
+    private final FileManifest expected;
+    // 各块来源，为null的块由客户端上传
+    private final Source[] sources;
+    private final ChunkSources chunkSources;
+
+    private long[] hashes = new long[16];
+    private int count;
+    private long size;
+    private byte[] buffer;
+    private int bufferLength;
+    @Getter
+    private long reusedBytes;
+    @Getter
+    private FileManifest result;
+
+    /**
+     * 整文件上传：按块计算哈希
+     */
+    public ChunkAssembler(int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.expected = null;
+        this.sources = null;
+        this.chunkSources = null;
+    }
+
+    /**
+     * 按清单还原
+     */
+    public ChunkAssembler(FileManifest expected, Source[] sources, ChunkSources chunkSources) {
+        this.chunkSize = expected.getChunkSize();
+        this.expected = expected;
+        this.sources = sources;
+        this.chunkSources = chunkSources;
+    }
+
+    /**
+     * 写入客户端上传的（解压后）数据，还原出的整块交给sink；data由本方法释放
+     */
+    public void write(ByteBuf data, Consumer<ByteBuf> sink) throws IOException {
+        try {
+            while (data.isReadable()) {
+                emitStored(sink);
+                int length;
+                if (expected == null) {
+                    length = chunkSize;
+                } else if (count < expected.getChunks().length) {
+                    length = expected.chunkLength(count);
+                } else {
+                    throw new IOException("Upload exceeds manifest size " + expected.getSize());
+                }
+                if (buffer == null) {
+                    buffer = new byte[length];
+                }
+                int n = Math.min(data.readableBytes(), length - bufferLength);
+                data.readBytes(buffer, bufferLength, n);
+                bufferLength += n;
+                if (bufferLength == length) {
+                    complete(sink);
+                }
+            }
+        } finally {
+            data.release();
+        }
+    }
+
+    /**
+     * 上传数据结束，输出剩余的已存储块
+     */
+    public void finish(Consumer<ByteBuf> sink) throws IOException {
+        try {
+            emitStored(sink);
+            if (expected != null && (bufferLength > 0 || count != expected.getChunks().length)) {
+                throw new IOException("Upload ended at chunk " + count + " of " + expected.getChunks().length);
+            }
+            if (bufferLength > 0) {
+                complete(sink);
+            }
+            long[] chunks = Arrays.copyOf(hashes, count);
+            result = new FileManifest(size, chunkSize, XxHash64.combine(chunks), chunks);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (chunkSources != null) {
+            chunkSources.close();
+        }
+    }
+
+    private void emitStored(Consumer<ByteBuf> sink) throws IOException {
+        if (expected == null) {
+            return;
+        }
+        while (count < sources.length && sources[count] != null) {
+            Source source = sources[count];
+            int length = expected.chunkLength(count);
+            byte[] data = new byte[length];
+            chunkSources.read(source.getKey(), source.getPosition(), data, 0, length);
+            long hash = XxHash64.hash(data, 0, length);
+            if (hash != expected.getChunks()[count]) {
+                throw new IOException("Stored chunk " + count + " in " + source.getKey() + " has changed");
+            }
+            add(hash, length);
+            reusedBytes += length;
+            sink.accept(Unpooled.wrappedBuffer(data));
+        }
+    }
+
+    private void complete(Consumer<ByteBuf> sink) throws IOException {
+        long hash = XxHash64.hash(buffer, 0, bufferLength);
+        if (expected != null && hash != expected.getChunks()[count]) {
+            throw new IOException("Uploaded chunk " + count + " does not match manifest");
+        }
+        add(hash, bufferLength);
+        sink.accept(Unpooled.wrappedBuffer(buffer, 0, bufferLength));
+        // 数组已交给写盘，下一块重新分配
+        buffer = null;
+        bufferLength = 0;
+    }
+
+    private void add(long hash, int length) {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        hashes[count++] = hash;
+        size += length;
+    }
+
+    /**
+     * 已存储的块：所在文件（客户端/原始文件名）与原始数据中的偏移
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Source {
+        private final String key;
+        private final long position;
+    }
+}
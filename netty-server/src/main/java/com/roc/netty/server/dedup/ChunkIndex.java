@@ -0,0 +1,170 @@
+package com.roc.netty.server.dedup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 内容寻址的块索引：块哈希 -> 包含该块的已存储文件与块序号
+ * 按文件（客户端/原始文件名）记录内容清单，每次增删以一行JSON追加到日志文件，启动时回放后重写为快照。
+ * 索引只用于减少传输：丢失或过期时相应的块会被要求重新上传，块被复用前按哈希校验内容。
+ */
+@Slf4j
+public class ChunkIndex implements Closeable {
+
+    private final Path journal;
+    private final ObjectMapper objectMapper;
+    private final Map<String, FileManifest> files = new HashMap<>();
+    private final Map<Long, ChunkRef> chunks = new HashMap<>();
+    private BufferedWriter writer;
+
+    public ChunkIndex(Path journal, ObjectMapper objectMapper) {
+        this.journal = journal;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 回放日志并重写为只包含现存文件的快照
+     */
+    public synchronized void load() throws IOException {
+        Files.createDirectories(journal.toAbsolutePath().getParent());
+        if (Files.exists(journal)) {
+            int lineNumber = 0;
+            try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    Record record;
+                    try {
+                        record = objectMapper.readValue(line, Record.class);
+                    } catch (IOException e) {
+                        // 写入中断留下的不完整行，之后的内容不可信
+                        log.warn("Chunk index truncated at line {}: {}", lineNumber, e.getMessage());
+                        break;
+                    }
+                    apply(record.getKey(), record.getManifest());
+                }
+            }
+        }
+        Path temp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, FileManifest> file : files.entrySet()) {
+                out.write(objectMapper.writeValueAsString(new Record(file.getKey(), file.getValue())));
+                out.newLine();
+            }
+        }
+        Files.move(temp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        log.info("Chunk index loaded - files: {}, chunks: {}", files.size(), chunks.size());
+    }
+
+    public synchronized FileManifest get(String key) {
+        return files.get(key);
+    }
+
+    public synchronized ChunkRef find(long hash) {
+        return chunks.get(hash);
+    }
+
+    /**
+     * 记录文件的新内容，替换该文件之前的清单
+     */
+    public synchronized void put(String key, FileManifest manifest) {
+        apply(key, manifest);
+        append(new Record(key, manifest));
+    }
+
+    /**
+     * 文件已删除或内容未知
+     */
+    public synchronized void remove(String key) {
+        if (files.containsKey(key)) {
+            apply(key, null);
+            append(new Record(key, null));
+        }
+    }
+
+    public synchronized int fileCount() {
+        return files.size();
+    }
+
+    public synchronized int chunkCount() {
+        return chunks.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void apply(String key, FileManifest manifest) {
+        FileManifest previous = manifest != null ? files.put(key, manifest) : files.remove(key);
+        if (previous != null) {
+            // 其他文件中相同的块不再可查，直到它们被重新记录
+            for (long hash : previous.getChunks()) {
+                ChunkRef ref = chunks.get(hash);
+                if (ref != null && ref.getKey().equals(key)) {
+                    chunks.remove(hash);
+                }
+            }
+        }
+        if (manifest != null) {
+            long[] hashes = manifest.getChunks();
+            for (int i = 0; i < hashes.length; i++) {
+                chunks.put(hashes[i], new ChunkRef(key, i));
+            }
+        }
+    }
+
+    private void append(Record record) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(objectMapper.writeValueAsString(record));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Failed to append chunk index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 块所在的文件与块序号
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ChunkRef {
+        private final String key;
+        private final int index;
+    }
+
+    /**
+     * 日志中的一条记录，manifest为null表示删除
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Record {
+        private String key;
+        private FileManifest manifest;
+    }
+}
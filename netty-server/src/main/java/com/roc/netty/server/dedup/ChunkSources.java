@@ -0,0 +1,87 @@
+package com.roc.netty.server.dedup;
+
+import com.roc.netty.server.storage.BlockFileReader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一次还原所复用的已存储文件，开始上传时全部打开：
+ * 之后即使文件被合并、重压缩或清理，已打开的文件仍可读取原内容。非线程安全。
+ */
+@Slf4j
+public class ChunkSources implements Closeable {
+
+    private final Map<String, StoredLocation> locations;
+    private final Map<String, BlockFileReader> blockReaders = new HashMap<>();
+    private final Map<String, FileChannel> plainChannels = new HashMap<>();
+
+    /**
+     * @param locations 文件（客户端/原始文件名） -> 存储位置
+     */
+    public ChunkSources(Map<String, StoredLocation> locations) throws IOException {
+        this.locations = locations;
+        try {
+            for (Map.Entry<String, StoredLocation> entry : locations.entrySet()) {
+                StoredLocation location = entry.getValue();
+                if (location.isBlockFormat()) {
+                    blockReaders.put(entry.getKey(), BlockFileReader.open(location.getPath()));
+                } else {
+                    plainChannels.put(entry.getKey(), FileChannel.open(location.getPath(), StandardOpenOption.READ));
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取文件原始内容中 [position, position + length) 的数据
+     */
+    public void read(String key, long position, byte[] dest, int offset, int length) throws IOException {
+        StoredLocation location = locations.get(key);
+        if (location == null || position + length > location.getSize()) {
+            throw new IOException("Stored range unavailable: " + key + " @" + position);
+        }
+        BlockFileReader reader = blockReaders.get(key);
+        if (reader != null) {
+            reader.read(location.getOffset() + position, dest, offset, length);
+            return;
+        }
+        FileChannel channel = plainChannels.get(key);
+        ByteBuffer buffer = ByteBuffer.wrap(dest, offset, length);
+        long start = location.getOffset() + position;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position() - offset) < 0) {
+                throw new IOException("Unexpected end of stored file " + location.getPath());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<String, BlockFileReader> entry : blockReaders.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                log.warn("Failed to close stored file {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        for (Map.Entry<String, FileChannel> entry : plainChannels.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                log.warn("Failed to close stored file {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        blockReaders.clear();
+        plainChannels.clear();
+    }
+}
@@ -0,0 +1,35 @@
+package com.roc.netty.server.dedup;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一个上传文件的内容清单：按固定大小切块的各块哈希与整文件哈希
+ * 内容指服务端存储的原始数据（客户端脱敏后、压缩前）。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileManifest {
+
+    private long size;
+    private int chunkSize;
+    private long fileHash;
+    private long[] chunks;
+
+    /**
+     * 第index块的长度，最后一块可能不满
+     */
+    public int chunkLength(int index) {
+        return (int) Math.min(chunkSize, size - (long) index * chunkSize);
+    }
+
+    /**
+     * 块数与文件大小一致
+     */
+    public boolean matchesSize() {
+        return chunkSize > 0 && size >= 0 && chunks != null
+                && chunks.length == (size + chunkSize - 1) / chunkSize;
+    }
+}
@@ -0,0 +1,18 @@
+package com.roc.netty.server.dedup;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * 上传文件内容当前的存储位置：单独的文件，或合并文件中的一段
+ */
+@Getter
+@AllArgsConstructor
+public class StoredLocation {
+    private final Path path;
+    private final boolean blockFormat;
+    private final long offset;  // 在原始数据中的起始偏移
+    private final long size;  // 原始数据大小
+}
@@ -0,0 +1,33 @@
+package com.roc.netty.server.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import java.util.List;
+
+/**
+ * 客户端过滤提取请求DTO
+ */
+@Data
+public class ExtractRequest {
+    private List<String> clients;  // 目标客户端连接ID，为空时发给所有已连接的客户端
+
+    @NotBlank(message = "开始日期不能为空")
+    private String startDay;  // 开始日期 yyyy-MM-dd，按日志文件名中的日期筛选
+
+    @NotBlank(message = "结束日期不能为空")
+    private String endDay;  // 结束日期 yyyy-MM-dd（包含）
+
+    private List<String> levels;  // 级别，为空时不限
+
+    private List<String> literals;  // 行中必须包含的文本，全部包含才匹配
+
+    private String regex;  // 行需匹配的正则
+
+    @Min(1)
+    private Integer maxLines;  // 最多返回的行数
+
+    @Min(1)
+    private Integer timeoutSeconds;  // 等待客户端返回结果的时间(秒)
+}
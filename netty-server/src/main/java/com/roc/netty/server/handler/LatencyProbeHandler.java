@@ -0,0 +1,34 @@
+package com.roc.netty.server.handler;
+
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.protocol.MessageProtocol;
+import com.roc.netty.server.service.LatencyProbeService;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.springframework.stereotype.Component;
+
+/**
+ * 在IO线程中立即回复延迟探测，再交给业务处理器回复第二次
+ */
+@Component
+@ChannelHandler.Sharable
+public class LatencyProbeHandler extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof MessageProtocol && ((MessageProtocol) msg).getType() == Constants.LATENCY_PROBE) {
+            MessageProtocol probe = (MessageProtocol) msg;
+            long now = System.nanoTime();
+            // 未启用消息统计时没有解码时间，从这里开始计时
+            if (probe.getReceivedNanos() == 0) {
+                probe.setReceivedNanos(now);
+            }
+            if (probe.getContent() != null && probe.getContent().length >= 16) {
+                ctx.writeAndFlush(LatencyProbeService.reply(probe.getContent(), LatencyProbeService.STAGE_IO,
+                        now - probe.getReceivedNanos()));
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+}
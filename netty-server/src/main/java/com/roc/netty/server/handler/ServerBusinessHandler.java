@@ -1,9 +1,19 @@
 package com.roc.netty.server.handler;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.jfr.HandlerDispatchEvent;
+import com.roc.netty.server.metrics.MessageMetrics;
 import com.roc.netty.server.protocol.MessageProtocol;
 import com.roc.netty.server.service.ClientConnectionService;
+import com.roc.netty.server.service.ExtractService;
 import com.roc.netty.server.service.FileService;
+import com.roc.netty.server.service.LatencyProbeService;
+import com.roc.netty.server.service.UploadAdmissionService;
+import com.roc.netty.server.service.UploadDedupService;
+import com.roc.netty.server.trace.Span;
+import com.roc.netty.server.trace.Tracer;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -13,8 +23,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
 /**
  * 服务端业务处理器
@@ -27,13 +42,58 @@ public class ServerBusinessHandler extends SimpleChannelInboundHandler<MessagePr
 
     private final ClientConnectionService clientConnectionService;
     private final FileService fileService;
+    private final ExtractService extractService;
+    private final UploadAdmissionService uploadAdmissionService;
+    private final UploadDedupService uploadDedupService;
+    private final LatencyProbeService latencyProbeService;
+    private final Tracer tracer;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        HandlerDispatchEvent event = new HandlerDispatchEvent();
+        event.begin();
+        byte type = 0;
+        int length = 0;
+        long traceId = 0;
+        long parentId = 0;
+        long spanId = 0;
+        long startNanos = 0;
+        if (msg instanceof MessageProtocol) {
+            // super.channelRead 之后消息已被释放，先取出类型和长度
+            MessageProtocol message = (MessageProtocol) msg;
+            type = message.getType();
+            length = message.getLength();
+            if (message.isTraced() && tracer.isEnabled()) {
+                // 本跳的跨度从解码完成开始，回复的消息以本跨度为上游
+                traceId = message.getTraceId();
+                parentId = message.getSpanId();
+                spanId = Tracer.nextId();
+                startNanos = message.getReceivedNanos() != 0 ? message.getReceivedNanos() : System.nanoTime();
+                message.setSpanId(spanId);
+            }
+        }
+        try {
+            super.channelRead(ctx, msg);
+        } finally {
+            if (event.finish()) {
+                event.record(type, length, clientConnectionService.getClientId(ctx.channel()), ctx.channel().remoteAddress());
+            }
+            if (spanId != 0) {
+                tracer.record(traceId, spanId, parentId, "handle " + MessageMetrics.typeName(type), Span.CONSUMER, type,
+                        clientConnectionService.getClientId(ctx.channel()), startNanos, System.nanoTime());
+            }
+        }
+    }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, MessageProtocol msg) throws IOException {
         MessageProtocol response = new MessageProtocol();
         String responseContent = "";
         String content = "";
-        if (msg.getContent() != null && msg.getType() != 8) {
+        if (msg.getContent() != null && msg.getType() != 8 && msg.getType() != Constants.FILE_UPLOAD_CHUNK
+                && msg.getType() != Constants.EXTRACT_DATA && msg.getType() != Constants.UPLOAD_MANIFEST
+                && msg.getType() != Constants.LATENCY_PROBE) {
             content = new String(msg.getContent(), StandardCharsets.UTF_8);
         }
         // 只处理业务消息类型
@@ -51,6 +111,9 @@ public class ServerBusinessHandler extends SimpleChannelInboundHandler<MessagePr
                 response.setType(Constants.BUSINESS_MESSAGE_RESPONSE);  // 业务消息类型
                 response.setLength(1 + responseBytes.length);  // 类型字段(1字节) + 内容长度
                 response.setContent(responseBytes);
+                if (msg.isTraced()) {
+                    response.setTrace(msg.getTraceId(), msg.getSpanId());
+                }
 
                 log.info("准备发送消息到客户端 - 类型: {}, 消息ID: {}, 长度: {}, 内容: {}",
                         response.getType(), response.getMsgId(), response.getLength(), responseContent);
@@ -62,24 +125,65 @@ public class ServerBusinessHandler extends SimpleChannelInboundHandler<MessagePr
                 log.info("服务端收到文件 - 类型: {}, 消息ID: {}, 长度: {}",
                         response.getType(), response.getMsgId(), response.getLength());
                 try {
-                    // 使用FileService处理文件上传
-                    String result = fileService.processUploadedFile(msg.getContent());
-
-                    // 发送成功响应
-                    response.setType(Constants.FILE_SEND_TO_SERVER_RESPONSE);
-                    response.setContent(result.getBytes(StandardCharsets.UTF_8));
-                    response.setLength(1 + result.getBytes(StandardCharsets.UTF_8).length);
-                    ctx.writeAndFlush(response);
+                    // 使用FileService处理文件上传，落盘后发送成功响应
+                    fileService.processUploadedFile(msg.getContent())
+                            .whenComplete((result, e) -> sendFileResult(ctx, result, e));
 
                 } catch (Exception e) {
                     log.error("Error processing uploaded file: {}", e.getMessage(), e);
-                    String errorResponse = "Error processing file: " + e.getMessage();
-                    response.setType((byte) 8);
-                    response.setContent(errorResponse.getBytes(StandardCharsets.UTF_8));
-                    response.setLength(1 + errorResponse.getBytes(StandardCharsets.UTF_8).length);
-                    ctx.writeAndFlush(response);
+                    sendFileError(ctx, e);
+                }
+                break;
+            case Constants.UPLOAD_ANNOUNCE:
+                log.info("服务端收到上传申报 - 内容: {}", content);
+                uploadAdmissionService.announce(ctx.channel(), msg.getContent());
+                break;
+            case Constants.UPLOAD_MANIFEST:
+                log.info("服务端收到上传清单 - 长度: {}", msg.getLength());
+                uploadDedupService.onManifest(ctx.channel(), msg.getContent());
+                break;
+            case Constants.LATENCY_PROBE:
+                latencyProbeService.onBusiness(ctx.channel(), msg);
+                break;
+            case Constants.FILE_UPLOAD_BEGIN:
+                try {
+                    fileService.beginUpload(ctx.channel(), msg.getContent());
+                } catch (Exception e) {
+                    log.error("Error starting file upload: {}", e.getMessage(), e);
+                    sendUploadError(ctx, uploadTransferId(msg.getContent()), e);
+                }
+                break;
+            case Constants.FILE_UPLOAD_CHUNK:
+                if (log.isDebugEnabled()) {
+                    log.debug("服务端收到文件数据块 - 长度: {}", msg.getLength());
+                }
+                try {
+                    fileService.appendChunk(ctx.channel(), msg.getContent());
+                } catch (Exception e) {
+                    // 每次传输只会失败一次，之后的数据块由FileService丢弃
+                    int transferId = FileService.transferId(msg.getContent());
+                    log.error("Error writing chunk of transfer {}: {}", transferId, e.getMessage(), e);
+                    sendUploadError(ctx, transferId, e);
+                }
+                break;
+            case Constants.FILE_UPLOAD_END:
+                int transferId = uploadTransferId(msg.getContent());
+                try {
+                    // 写盘线程落盘后回复，不占用业务线程等待IO
+                    fileService.completeUpload(ctx.channel(), msg.getContent())
+                            .whenComplete((result, e) -> sendUploadResult(ctx, transferId, result, e));
+                } catch (Exception e) {
+                    log.error("Error completing file upload: {}", e.getMessage(), e);
+                    sendUploadError(ctx, transferId, e);
                 }
                 break;
+            case Constants.EXTRACT_DATA:
+                extractService.onData(ctx.channel(), msg.getContent());
+                break;
+            case Constants.EXTRACT_END:
+                log.info("服务端收到提取结果 - 内容: {}", content);
+                extractService.onEnd(ctx.channel(), msg.getContent());
+                break;
             case Constants.FILE_SEND_TO_CLIENT_REQUEST:
                 log.info("服务端发送文件到客户端 - 类型: {}, 消息ID: {}, 长度: {}",
                         msg.getType(), msg.getMsgId(), msg.getLength());
@@ -93,6 +197,91 @@ public class ServerBusinessHandler extends SimpleChannelInboundHandler<MessagePr
         }
     }
 
+    /**
+     * 文件落盘完成后回复结果，result为null表示客户端已放弃传输，无需回复
+     */
+    private void sendFileResult(ChannelHandlerContext ctx, String result, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                log.error("Error saving uploaded file: {}", cause.getMessage(), cause);
+                sendFileError(ctx, cause);
+            }
+            return;
+        }
+        if (result == null) {
+            return;
+        }
+        byte[] resultBytes = result.getBytes(StandardCharsets.UTF_8);
+        MessageProtocol response = new MessageProtocol();
+        response.setType(Constants.FILE_SEND_TO_SERVER_RESPONSE);
+        response.setContent(resultBytes);
+        response.setLength(1 + resultBytes.length);
+        ctx.writeAndFlush(response);
+    }
+
+    /**
+     * 分块上传落盘完成后回复结果，内容（JSON）：transferId, message；result为null表示客户端已放弃传输或已回复过错误
+     */
+    private void sendUploadResult(ChannelHandlerContext ctx, int transferId, String result, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                log.error("Error saving uploaded file: {}", cause.getMessage(), cause);
+                sendUploadError(ctx, transferId, cause);
+            }
+            return;
+        }
+        if (result != null) {
+            sendUploadReply(ctx, Constants.FILE_SEND_TO_SERVER_RESPONSE, transferId, result);
+        }
+    }
+
+    /**
+     * 分块上传出错，回复内容带传输ID，客户端据此结束对应的上传
+     */
+    private void sendUploadError(ChannelHandlerContext ctx, int transferId, Throwable e) {
+        sendUploadReply(ctx, (byte) 8, transferId, "Error processing file: " + e.getMessage());
+    }
+
+    private void sendUploadReply(ChannelHandlerContext ctx, byte type, int transferId, String message) {
+        Map<String, Object> reply = new LinkedHashMap<>();
+        reply.put("transferId", transferId);
+        reply.put("message", message);
+        byte[] replyBytes;
+        try {
+            replyBytes = objectMapper.writeValueAsBytes(reply);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        MessageProtocol response = new MessageProtocol();
+        response.setType(type);
+        response.setContent(replyBytes);
+        response.setLength(1 + replyBytes.length);
+        ctx.writeAndFlush(response);
+    }
+
+    /**
+     * 传输头/尾中的传输ID，无法解析时返回-1
+     */
+    private int uploadTransferId(byte[] content) {
+        try {
+            return objectMapper.readTree(content).path("transferId").asInt(-1);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void sendFileError(ChannelHandlerContext ctx, Throwable e) {
+        String errorResponse = "Error processing file: " + e.getMessage();
+        byte[] errorBytes = errorResponse.getBytes(StandardCharsets.UTF_8);
+        MessageProtocol response = new MessageProtocol();
+        response.setType((byte) 8);
+        response.setContent(errorBytes);
+        response.setLength(1 + errorBytes.length);
+        ctx.writeAndFlush(response);
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         Channel channel = ctx.channel();
@@ -121,7 +310,11 @@ public class ServerBusinessHandler extends SimpleChannelInboundHandler<MessagePr
         log.info("客户端断开连接: {}", channel.remoteAddress());
 
         // 从连接服务中移除
+        String clientId = clientConnectionService.getClientId(channel);
         clientConnectionService.removeConnection(channel);
+        extractService.channelClosed(clientId);
+        fileService.abortUploads(channel);
+        latencyProbeService.channelClosed(channel);
         log.info("当前连接数: {}", clientConnectionService.getConnectionCount());
     }
 
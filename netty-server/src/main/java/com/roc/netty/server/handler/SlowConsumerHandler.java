@@ -0,0 +1,41 @@
+package com.roc.netty.server.handler;
+
+import com.roc.netty.server.jfr.SlowConsumerEvent;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundBuffer;
+
+/**
+ * 慢消费者检测：连接出站缓冲超过高水位变为不可写时开始计时，恢复可写或断开时记录JFR事件
+ * 每个连接一个实例，只在IO线程中执行。
+ */
+public class SlowConsumerHandler extends ChannelInboundHandlerAdapter {
+
+    private SlowConsumerEvent event;
+    private long pendingBytes;
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            if (event == null) {
+                event = new SlowConsumerEvent();
+                event.begin();
+                ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+                pendingBytes = buffer != null ? buffer.totalPendingWriteBytes() : 0;
+            }
+        } else if (event != null) {
+            event.record(ctx.channel().remoteAddress(), pendingBytes, true);
+            event = null;
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (event != null) {
+            event.record(ctx.channel().remoteAddress(), pendingBytes, false);
+            event = null;
+        }
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,33 @@
+package com.roc.netty.server.ingest;
+
+/**
+ * 上传日志的逐行消费者
+ * 上传的文件落盘后按行切分回调，只回调本次上传新增的内容，放弃或失败的上传不回调；
+ * 所有上传的回调在同一线程中按落盘顺序执行。
+ */
+public interface IngestListener {
+
+    /**
+     * 收到一行日志
+     *
+     * @param clientId 上传的客户端标识
+     * @param line     行数据所在数组，回调返回后可能被复用，需要保留时应复制
+     * @param offset   行起始位置
+     * @param length   行长度，不含行尾换行符
+     */
+    void onLine(String clientId, byte[] line, int offset, int length);
+
+    /**
+     * 为一个上传文件创建逐行消费者，该文件的行和完成通知都交给返回的对象；
+     * 默认返回自身，需要按文件保存状态（如把异常堆栈并入上一行）的消费者可以覆盖
+     */
+    default IngestListener forFile(String clientId, String fileName) {
+        return this;
+    }
+
+    /**
+     * 一个文件的所有行已回调完毕
+     */
+    default void onFileComplete(String clientId, String fileName) {
+    }
+}
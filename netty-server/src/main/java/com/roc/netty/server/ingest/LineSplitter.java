@@ -0,0 +1,100 @@
+package com.roc.netty.server.ingest;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 把一次上传的数据流切分成行，逐行交给所有IngestListener
+ * 跨数据块的不完整行暂存，下一块到达后拼接
+ */
+public class LineSplitter {
+
+    private final String clientId;
+    private final String fileName;
+    private final List<IngestListener> listeners;
+
+    private byte[] pending = new byte[256];
+    private int pendingLength;
+    // 非数组支持的ByteBuf先复制到这里
+    private byte[] copyBuffer = new byte[0];
+
+    public LineSplitter(String clientId, String fileName, List<IngestListener> listeners) {
+        this.clientId = clientId;
+        this.fileName = fileName;
+        this.listeners = new ArrayList<>(listeners.size());
+        for (IngestListener listener : listeners) {
+            this.listeners.add(listener.forFile(clientId, fileName));
+        }
+    }
+
+    /**
+     * 切分一块数据，不改变buf的读索引
+     */
+    public void feed(ByteBuf buf) {
+        int length = buf.readableBytes();
+        if (buf.hasArray()) {
+            feed(buf.array(), buf.arrayOffset() + buf.readerIndex(), length);
+        } else {
+            if (copyBuffer.length < length) {
+                copyBuffer = new byte[length];
+            }
+            buf.getBytes(buf.readerIndex(), copyBuffer, 0, length);
+            feed(copyBuffer, 0, length);
+        }
+    }
+
+    public void feed(byte[] data, int offset, int length) {
+        int end = offset + length;
+        int lineStart = offset;
+        for (int i = offset; i < end; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            if (pendingLength > 0) {
+                append(data, lineStart, i - lineStart);
+                emit(pending, 0, pendingLength);
+                pendingLength = 0;
+            } else {
+                emit(data, lineStart, i - lineStart);
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart < end) {
+            append(data, lineStart, end - lineStart);
+        }
+    }
+
+    /**
+     * 数据结束，输出最后一个不完整行并通知文件完成
+     */
+    public void finish() {
+        if (pendingLength > 0) {
+            emit(pending, 0, pendingLength);
+            pendingLength = 0;
+        }
+        for (IngestListener listener : listeners) {
+            listener.onFileComplete(clientId, fileName);
+        }
+    }
+
+    private void emit(byte[] line, int offset, int length) {
+        // 去掉Windows换行的\r
+        if (length > 0 && line[offset + length - 1] == '\r') {
+            length--;
+        }
+        for (IngestListener listener : listeners) {
+            listener.onLine(clientId, line, offset, length);
+        }
+    }
+
+    private void append(byte[] data, int offset, int length) {
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        }
+        System.arraycopy(data, offset, pending, pendingLength, length);
+        pendingLength += length;
+    }
+}
@@ -0,0 +1,130 @@
+package com.roc.netty.server.ingest;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.ZoneId;
+
+/**
+ * 按三个模块统一的logback格式解析日志行：
+ * %d{yyyy-MM-dd HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg
+ * 直接在字节上解析，结果保存在字段中，非线程安全
+ */
+@Getter
+public class LogLineParser {
+
+    public static final byte TRACE = 0;
+    public static final byte DEBUG = 1;
+    public static final byte INFO = 2;
+    public static final byte WARN = 3;
+    public static final byte ERROR = 4;
+    public static final byte OTHER = 5;
+    public static final String[] LEVEL_NAMES = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "OTHER"};
+
+    private static final int TIMESTAMP_LENGTH = 23;
+
+    @Getter(AccessLevel.NONE)
+    private final LogTimestamps timestamps = new LogTimestamps(ZoneId.systemDefault());
+
+    private long timestamp;
+    private byte level;
+    private int threadStart;
+    private int threadEnd;
+    private int loggerStart;
+    private int loggerEnd;
+    private int messageStart;
+
+    /**
+     * 解析一行，不符合格式（如异常堆栈）时返回false
+     */
+    public boolean parse(byte[] line, int offset, int length) {
+        int end = offset + length;
+        if (length < TIMESTAMP_LENGTH + 3 || line[offset + TIMESTAMP_LENGTH] != ' '
+                || line[offset + TIMESTAMP_LENGTH + 1] != '[') {
+            return false;
+        }
+        timestamp = timestamps.parse(line, offset, length);
+        if (timestamp < 0) {
+            return false;
+        }
+        // 线程名到 "] " 为止
+        threadStart = offset + TIMESTAMP_LENGTH + 2;
+        int p = threadStart;
+        while (p + 1 < end && !(line[p] == ']' && line[p + 1] == ' ')) {
+            p++;
+        }
+        if (p + 1 >= end) {
+            return false;
+        }
+        threadEnd = p;
+        p += 2;
+
+        int levelStart = p;
+        while (p < end && line[p] != ' ') {
+            p++;
+        }
+        level = level(line, levelStart, p - levelStart);
+        while (p < end && line[p] == ' ') {
+            p++;
+        }
+
+        // logger到 " - " 为止
+        loggerStart = p;
+        while (p + 2 < end && !(line[p] == ' ' && line[p + 1] == '-' && line[p + 2] == ' ')) {
+            p++;
+        }
+        if (p + 2 >= end) {
+            return false;
+        }
+        loggerEnd = p;
+        messageStart = p + 3;
+        return true;
+    }
+
+    public static byte level(byte[] data, int offset, int length) {
+        switch (length) {
+            case 4:
+                if (matches(data, offset, "INFO")) {
+                    return INFO;
+                }
+                if (matches(data, offset, "WARN")) {
+                    return WARN;
+                }
+                return OTHER;
+            case 5:
+                if (matches(data, offset, "ERROR")) {
+                    return ERROR;
+                }
+                if (matches(data, offset, "DEBUG")) {
+                    return DEBUG;
+                }
+                if (matches(data, offset, "TRACE")) {
+                    return TRACE;
+                }
+                return OTHER;
+            default:
+                return OTHER;
+        }
+    }
+
+    /**
+     * 级别名转编码，不区分大小写，未知级别返回-1
+     */
+    public static int levelOf(String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equalsIgnoreCase(name.trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] data, int offset, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (data[offset + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
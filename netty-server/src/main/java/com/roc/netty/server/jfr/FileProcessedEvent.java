@@ -0,0 +1,56 @@
+package com.roc.netty.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR事件：一个上传文件从开始接收到落盘（或失败）
+ */
+@Name("com.roc.netty.FileProcessed")
+@Label("File Processed")
+@Category({"Netty Server", "Upload"})
+@Description("Upload of one file, from the first byte received until it is durable on disk or failed")
+@StackTrace(false)
+public class FileProcessedEvent extends Event {
+
+    @Label("Client Id")
+    String clientId;
+
+    @Label("File Name")
+    String fileName;
+
+    @Label("Codec")
+    String codec;
+
+    @Label("Received")
+    @Description("Bytes received over the connection, before decompression")
+    @DataAmount
+    long receivedBytes;
+
+    @Label("Written")
+    @Description("Uncompressed bytes written to storage")
+    @DataAmount
+    long writtenBytes;
+
+    @Label("Success")
+    boolean success;
+
+    public void record(String clientId, String fileName, String codec, long receivedBytes, long writtenBytes,
+                       boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.clientId = clientId;
+            this.fileName = fileName;
+            this.codec = codec;
+            this.receivedBytes = receivedBytes;
+            this.writtenBytes = writtenBytes;
+            this.success = success;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.roc.netty.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR事件：解码一帧，耗时超过阈值（默认100us）时记录
+ */
+@Name("com.roc.netty.FrameDecoded")
+@Label("Frame Decoded")
+@Category({"Netty Server", "Frames"})
+@Description("Decoding of one message frame by MessageDecoder")
+@Threshold("100 us")
+@StackTrace(false)
+public class FrameDecodedEvent extends Event {
+
+    @Label("Message Type")
+    byte messageType;
+
+    @Label("Length")
+    @DataAmount
+    int length;
+
+    @Label("Remote Address")
+    String remoteAddress;
+
+    /**
+     * 结束计时，需要记录时填充字段并提交
+     */
+    public void record(byte messageType, int length, Object remoteAddress) {
+        end();
+        if (shouldCommit()) {
+            this.messageType = messageType;
+            this.length = length;
+            this.remoteAddress = String.valueOf(remoteAddress);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.roc.netty.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR事件：编码一帧，耗时超过阈值（默认100us）时记录
+ */
+@Name("com.roc.netty.FrameEncoded")
+@Label("Frame Encoded")
+@Category({"Netty Server", "Frames"})
+@Description("Encoding of one message frame by MessageEncoder")
+@Threshold("100 us")
+@StackTrace(false)
+public class FrameEncodedEvent extends Event {
+
+    @Label("Message Type")
+    byte messageType;
+
+    @Label("Length")
+    @DataAmount
+    int length;
+
+    @Label("Remote Address")
+    String remoteAddress;
+
+    /**
+     * 结束计时，需要记录时填充字段并提交
+     */
+    public void record(byte messageType, int length, Object remoteAddress) {
+        end();
+        if (shouldCommit()) {
+            this.messageType = messageType;
+            this.length = length;
+            this.remoteAddress = String.valueOf(remoteAddress);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.roc.netty.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR事件：业务处理器处理一条消息，耗时超过阈值（默认1ms）时记录
+ */
+@Name("com.roc.netty.HandlerDispatch")
+@Label("Handler Dispatch")
+@Category({"Netty Server", "Handlers"})
+@Description("Processing of one message by ServerBusinessHandler on a business thread")
+@Threshold("1 ms")
+@StackTrace(false)
+public class HandlerDispatchEvent extends Event {
+
+    @Label("Message Type")
+    byte messageType;
+
+    @Label("Length")
+    @DataAmount
+    int length;
+
+    @Label("Client Id")
+    String clientId;
+
+    @Label("Remote Address")
+    String remoteAddress;
+
+    /**
+     * 是否需要记录，需要时再查询客户端标识
+     */
+    public boolean finish() {
+        end();
+        return shouldCommit();
+    }
+
+    public void record(byte messageType, int length, String clientId, Object remoteAddress) {
+        this.messageType = messageType;
+        this.length = length;
+        this.clientId = clientId;
+        this.remoteAddress = String.valueOf(remoteAddress);
+        commit();
+    }
+}
@@ -0,0 +1,44 @@
+package com.roc.netty.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR事件：客户端读取过慢，连接出站缓冲超过高水位不可写，持续超过阈值（默认100ms）时记录
+ */
+@Name("com.roc.netty.SlowConsumer")
+@Label("Slow Consumer")
+@Category({"Netty Server", "Connections"})
+@Description("Period during which a connection was not writable because the peer did not read fast enough")
+@Threshold("100 ms")
+@StackTrace(false)
+public class SlowConsumerEvent extends Event {
+
+    @Label("Remote Address")
+    String remoteAddress;
+
+    @Label("Pending Bytes")
+    @Description("Bytes waiting in the outbound buffer when the connection became unwritable")
+    @DataAmount
+    long pendingBytes;
+
+    @Label("Recovered")
+    @Description("False if the connection closed before it became writable again")
+    boolean recovered;
+
+    public void record(Object remoteAddress, long pendingBytes, boolean recovered) {
+        end();
+        if (shouldCommit()) {
+            this.remoteAddress = String.valueOf(remoteAddress);
+            this.pendingBytes = pendingBytes;
+            this.recovered = recovered;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.roc.netty.server.logstore;
+
+/**
+ * 日志存储的追加监听，回调时持有分区锁，同一客户端的行按位置递增的顺序回调
+ */
+public interface AppendListener {
+
+    /**
+     * 一行已追加到存储
+     *
+     * @param clientId 客户端标识
+     * @param position 行在分区中的位置，见 {@link LogStore#position(long, long)}
+     * @param line     行数据所在数组，回调返回后可能被复用，需要保留时应复制
+     * @param offset   行起始位置
+     * @param length   行长度，不含换行符
+     */
+    void onAppend(String clientId, long position, byte[] line, int offset, int length);
+
+    /**
+     * 保留清理删除了分区中的段，这些段中的行位置不再可读，剩余的段见 {@link LogStore#segmentIds(String)}
+     */
+    default void onSegmentsDropped(String clientId) {
+    }
+}
@@ -0,0 +1,184 @@
+package com.roc.netty.server.logstore;
+
+import com.roc.netty.server.config.LogStoreConfig;
+import com.roc.netty.server.ingest.LogTimestamps;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 一个客户端的日志分区：按大小或时间滚动的段序列，只有最后一个段可写
+ */
+class LogPartition {
+
+    @Getter
+    private final String clientId;
+    private final Path directory;
+    private final LogStoreConfig config;
+    // 只在持有分区锁时使用
+    private final LogTimestamps timestamps = new LogTimestamps(ZoneId.systemDefault());
+
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long nextSegmentId;
+    // 无时间戳的行沿用上一行的时间
+    private long lastTimestamp = -1;
+    private final List<AppendListener> listeners = new CopyOnWriteArrayList<>();
+
+    LogPartition(String clientId, Path directory, LogStoreConfig config, List<AppendListener> listeners) {
+        this.clientId = clientId;
+        this.directory = directory;
+        this.config = config;
+        this.listeners.addAll(listeners);
+    }
+
+    /**
+     * 加载目录中已有的段，全部作为只读段，新数据写入新段
+     */
+    static LogPartition load(String clientId, Path directory, LogStoreConfig config) throws IOException {
+        LogPartition partition = new LogPartition(clientId, directory, config, Collections.emptyList());
+        List<Long> ids;
+        try (Stream<Path> files = Files.list(directory)) {
+            ids = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(Segment.LOG_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - Segment.LOG_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (long id : ids) {
+            partition.segments.add(Segment.load(id, directory, partition.timestamps));
+            partition.nextSegmentId = id + 1;
+        }
+        return partition;
+    }
+
+    synchronized void append(byte[] line, int offset, int length) throws IOException {
+        long timestamp = timestamps.parse(line, offset, length);
+        boolean startsWithTimestamp = timestamp >= 0;
+        if (!startsWithTimestamp) {
+            timestamp = lastTimestamp >= 0 ? lastTimestamp : System.currentTimeMillis();
+        }
+        lastTimestamp = timestamp;
+
+        // 只在以时间戳开头的行处滚动，避免把异常堆栈拆到两个段
+        if (active == null || (startsWithTimestamp && shouldRoll())) {
+            roll();
+        }
+        long position = LogStore.position(active.getId(), active.getSize());
+        active.append(line, offset, length, timestamp, startsWithTimestamp, config.getIndexIntervalBytes());
+        for (AppendListener listener : listeners) {
+            listener.onAppend(clientId, position, line, offset, length);
+        }
+    }
+
+    /**
+     * 注册追加监听，先回放位置在 after 之后的已有行，回放期间持有分区锁，不会漏掉或重复并发追加的行
+     *
+     * @param after 监听方已处理到的位置，-1表示从头回放
+     * @return 回放的行数
+     */
+    synchronized long subscribe(AppendListener listener, long after) throws IOException {
+        if (listeners.contains(listener)) {
+            return 0;
+        }
+        long replayed = 0;
+        long afterSegment = after < 0 ? -1 : LogStore.segmentId(after);
+        for (SegmentSnapshot snapshot : snapshot()) {
+            long segmentId = snapshot.getSegment().getId();
+            if (segmentId < afterSegment) {
+                continue;
+            }
+            replayed += segmentId == afterSegment
+                    ? snapshot.replay(clientId, LogStore.segmentOffset(after), true, listener)
+                    : snapshot.replay(clientId, 0, false, listener);
+        }
+        listeners.add(listener);
+        return replayed;
+    }
+
+    synchronized void flush() throws IOException {
+        if (active != null) {
+            active.flush();
+        }
+    }
+
+    /**
+     * 所有段的索引快照，可写段先刷出写缓冲
+     */
+    synchronized List<SegmentSnapshot> snapshot() throws IOException {
+        flush();
+        List<SegmentSnapshot> snapshots = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            snapshots.add(segment.snapshot());
+        }
+        return snapshots;
+    }
+
+    synchronized List<Segment> getSegments() {
+        return Collections.unmodifiableList(new ArrayList<>(segments));
+    }
+
+    synchronized boolean isWritable(Segment segment) {
+        return segment == active;
+    }
+
+    /**
+     * 删除一个只读段的文件，正在进行的查询仍持有映射，不受影响
+     *
+     * @return 释放的字节数，段不存在或可写时返回0
+     */
+    synchronized long drop(long segmentId) throws IOException {
+        Segment segment = null;
+        for (Segment each : segments) {
+            if (each.getId() == segmentId && each != active) {
+                segment = each;
+                break;
+            }
+        }
+        if (segment == null) {
+            return 0;
+        }
+        segments.remove(segment);
+        long freed = Files.size(segment.getLogFile());
+        Files.deleteIfExists(segment.getLogFile());
+        if (Files.exists(segment.getIndexFile())) {
+            freed += Files.size(segment.getIndexFile());
+            Files.deleteIfExists(segment.getIndexFile());
+        }
+        for (AppendListener listener : listeners) {
+            listener.onSegmentsDropped(clientId);
+        }
+        return freed;
+    }
+
+    synchronized void close() throws IOException {
+        if (active != null) {
+            active.seal();
+            active = null;
+        }
+    }
+
+    private boolean shouldRoll() {
+        return active.getSize() >= config.getSegmentMaxBytes()
+                || System.currentTimeMillis() - active.getCreatedMillis() >= config.getSegmentMaxAgeMinutes() * 60_000L;
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.seal();
+        } else {
+            Files.createDirectories(directory);
+        }
+        active = Segment.create(nextSegmentId++, directory, config.getWriteBufferSize());
+        segments.add(active);
+    }
+}
@@ -0,0 +1,277 @@
+package com.roc.netty.server.logstore;
+
+import com.roc.netty.server.compaction.RetentionTarget;
+import com.roc.netty.server.config.LogStoreConfig;
+import com.roc.netty.server.ingest.IngestListener;
+import com.roc.netty.server.ingest.LogTimestamps;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 上传日志的分段存储
+ * 按客户端分区，每个分区由按大小/时间滚动的段组成，段内带稀疏时间索引；
+ * 按时间范围查询时只映射并读取时间范围相交的段和块。
+ * 保留清理按段删除，段的日期取段内最新的日志时间。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LogStore implements IngestListener, RetentionTarget {
+
+    // 客户端标识同时作为目录名，只允许安全字符
+    private static final Pattern CLIENT_ID_PATTERN = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // 行位置的低40位为段内偏移，高位为段编号
+    private static final int OFFSET_BITS = 40;
+
+    private final LogStoreConfig logStoreConfig;
+    private final Map<String, LogPartition> partitions = new ConcurrentHashMap<>();
+    private final List<AppendListener> appendListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (!logStoreConfig.isEnabled()) {
+            return;
+        }
+        Path root = Paths.get(logStoreConfig.getDirectory());
+        Files.createDirectories(root);
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                String clientId = dir.getFileName().toString();
+                partitions.put(clientId, LogPartition.load(clientId, dir, logStoreConfig));
+            }
+        }
+        log.info("Log store loaded - directory: {}, clients: {}", root.toAbsolutePath(), partitions.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        for (LogPartition partition : partitions.values()) {
+            try {
+                partition.close();
+            } catch (IOException e) {
+                log.error("Failed to close log partition {}: {}", partition.getClientId(), e.getMessage());
+            }
+        }
+    }
+
+    public static boolean isValidClientId(String clientId) {
+        return clientId != null && CLIENT_ID_PATTERN.matcher(clientId).matches();
+    }
+
+    /**
+     * 行在分区中的位置：段编号 + 段内偏移，同一分区内随追加顺序递增
+     */
+    public static long position(long segmentId, long offset) {
+        return segmentId << OFFSET_BITS | offset;
+    }
+
+    public static long segmentId(long position) {
+        return position >>> OFFSET_BITS;
+    }
+
+    public static long segmentOffset(long position) {
+        return position & ((1L << OFFSET_BITS) - 1);
+    }
+
+    public boolean isEnabled() {
+        return logStoreConfig.isEnabled();
+    }
+
+    /**
+     * 注册追加监听，每个已有分区先回放监听方尚未处理的行
+     *
+     * @param processed 返回监听方在某个客户端分区已处理到的位置，-1表示从头回放
+     * @return 回放的总行数
+     */
+    public long subscribe(AppendListener listener, ToLongFunction<String> processed) throws IOException {
+        // 先加入全局列表，之后新建的分区自带该监听
+        appendListeners.add(listener);
+        long replayed = 0;
+        for (LogPartition partition : partitions.values()) {
+            replayed += partition.subscribe(listener, processed.applyAsLong(partition.getClientId()));
+        }
+        return replayed;
+    }
+
+    @Override
+    public void onLine(String clientId, byte[] line, int offset, int length) {
+        if (!logStoreConfig.isEnabled()) {
+            return;
+        }
+        try {
+            partition(clientId).append(line, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to log store: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onFileComplete(String clientId, String fileName) {
+        LogPartition partition = partitions.get(clientId);
+        if (partition == null) {
+            return;
+        }
+        try {
+            // 文件传完后刷出写缓冲，使其内容可被查询
+            partition.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush log store: " + e.getMessage(), e);
+        }
+    }
+
+    public boolean contains(String clientId) {
+        return partitions.containsKey(clientId);
+    }
+
+    /**
+     * 按位置批量读取行，位置所在的段已不存在时对应结果为null
+     */
+    public List<byte[]> readLines(String clientId, long[] positions, int count) throws IOException {
+        List<byte[]> lines = new ArrayList<>(count);
+        LogPartition partition = partitions.get(clientId);
+        Map<Long, SegmentSnapshot> snapshots = new HashMap<>();
+        if (partition != null) {
+            for (SegmentSnapshot snapshot : partition.snapshot()) {
+                snapshots.put(snapshot.getSegment().getId(), snapshot);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            SegmentSnapshot snapshot = snapshots.get(segmentId(positions[i]));
+            lines.add(snapshot != null ? snapshot.readLine(segmentOffset(positions[i])) : null);
+        }
+        return lines;
+    }
+
+    /**
+     * 读取客户端在 [from, to) 时间范围内的日志行
+     *
+     * @return 匹配的行数
+     */
+    public long read(String clientId, long from, long to, OutputStream out) throws IOException {
+        LogPartition partition = partitions.get(clientId);
+        if (partition == null) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<SegmentSnapshot> snapshots = partition.snapshot();
+        SegmentSnapshot.ReadStats stats = new SegmentSnapshot.ReadStats();
+        LogTimestamps timestamps = new LogTimestamps(ZoneId.systemDefault());
+        byte[] scratch = new byte[READ_BUFFER_SIZE];
+        for (SegmentSnapshot snapshot : snapshots) {
+            if (!snapshot.overlaps(from, to)) {
+                continue;
+            }
+            stats.segmentsRead++;
+            scratch = snapshot.read(from, to, out, timestamps, stats, scratch);
+        }
+        log.info("Log store read - client: {}, segments: {}/{}, blocks: {}, scanned: {} bytes, lines: {}, took: {} ms",
+                clientId, stats.segmentsRead, snapshots.size(), stats.blocksRead, stats.bytesScanned,
+                stats.linesMatched, (System.nanoTime() - start) / 1_000_000);
+        return stats.linesMatched;
+    }
+
+    /**
+     * 客户端分区现有段的编号，升序
+     */
+    public long[] segmentIds(String clientId) {
+        LogPartition partition = partitions.get(clientId);
+        if (partition == null) {
+            return new long[0];
+        }
+        return partition.getSegments().stream().mapToLong(Segment::getId).toArray();
+    }
+
+    @Override
+    public String getRetentionName() {
+        return "store";
+    }
+
+    @Override
+    public List<String> retentionClients() {
+        return new ArrayList<>(partitions.keySet());
+    }
+
+    @Override
+    public List<Unit> retentionUnits(String clientId) {
+        LogPartition partition = partitions.get(clientId);
+        List<Unit> units = new ArrayList<>();
+        if (partition == null) {
+            return units;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        for (Segment segment : partition.getSegments()) {
+            long time = segment.getMaxTime() != Long.MIN_VALUE ? segment.getMaxTime() : segment.getCreatedMillis();
+            LocalDate day = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+            long size = segment.getSize() + (long) segment.getBlockCount() * Segment.INDEX_ENTRY_SIZE;
+            units.add(new Unit(String.valueOf(segment.getId()), day, size, partition.isWritable(segment)));
+        }
+        return units;
+    }
+
+    @Override
+    public long deleteUnit(String clientId, Unit unit) throws IOException {
+        LogPartition partition = partitions.get(clientId);
+        return partition != null ? partition.drop(Long.parseLong(unit.getName())) : 0;
+    }
+
+    /**
+     * 各客户端分区的段信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        for (LogPartition partition : partitions.values()) {
+            List<Segment> segments = partition.getSegments();
+            long bytes = 0;
+            long blocks = 0;
+            long minTime = Long.MAX_VALUE;
+            long maxTime = Long.MIN_VALUE;
+            for (Segment segment : segments) {
+                bytes += segment.getSize();
+                blocks += segment.getBlockCount();
+                minTime = Math.min(minTime, segment.getMinTime());
+                maxTime = Math.max(maxTime, segment.getMaxTime());
+            }
+            Map<String, Object> partitionStats = new LinkedHashMap<>();
+            partitionStats.put("segments", segments.size());
+            partitionStats.put("bytes", bytes);
+            partitionStats.put("indexedBlocks", blocks);
+            partitionStats.put("minTime", minTime == Long.MAX_VALUE ? null : minTime);
+            partitionStats.put("maxTime", maxTime == Long.MIN_VALUE ? null : maxTime);
+            stats.put(partition.getClientId(), partitionStats);
+        }
+        return stats;
+    }
+
+    private LogPartition partition(String clientId) {
+        if (!isValidClientId(clientId)) {
+            throw new IllegalArgumentException("Invalid client id: " + clientId);
+        }
+        return partitions.computeIfAbsent(clientId, id ->
+                new LogPartition(id, Paths.get(logStoreConfig.getDirectory()).resolve(id), logStoreConfig, appendListeners));
+    }
+}
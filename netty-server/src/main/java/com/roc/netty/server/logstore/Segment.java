@@ -0,0 +1,290 @@
+package com.roc.netty.server.logstore;
+
+import com.roc.netty.server.ingest.LogTimestamps;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 分段存储中的一个段：日志文件(.log) + 稀疏时间索引(.idx)
+ * 日志按行追加，每写满约 indexIntervalBytes 字节在以时间戳开头的行处切一个块，
+ * 块关闭时向索引追加一条：起始位置、结束位置、块内最小/最大时间戳（各8字节）。
+ * 日志时间不保证单调（补传旧文件），因此按块记录时间范围，查询时只读取范围相交的块。
+ * 写入方法由所属分区加锁调用；封存后只读，映射缓存供并发读取。
+ */
+public class Segment {
+
+    static final int INDEX_ENTRY_SIZE = 32;
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+    private static final byte[] NEWLINE = {'\n'};
+
+    @Getter
+    private final long id;
+    @Getter
+    private final Path logFile;
+    @Getter
+    private final Path indexFile;
+    @Getter
+    private final long createdMillis;
+
+    // 已关闭块的索引
+    private long[] blockStarts = new long[16];
+    private long[] blockEnds = new long[16];
+    private long[] blockMinTimes = new long[16];
+    private long[] blockMaxTimes = new long[16];
+    @Getter
+    private int blockCount;
+
+    // 当前块
+    private long activeBlockStart;
+    private long activeMinTime = Long.MAX_VALUE;
+    private long activeMaxTime = Long.MIN_VALUE;
+
+    @Getter
+    private long minTime = Long.MAX_VALUE;
+    @Getter
+    private long maxTime = Long.MIN_VALUE;
+    // 逻辑大小，包括写缓冲中的数据
+    @Getter
+    private long size;
+    // 已写入文件的大小
+    private long flushedSize;
+
+    private FileChannel logChannel;
+    private FileChannel indexChannel;
+    private byte[] writeBuffer;
+    private int bufferLength;
+    private volatile boolean sealed;
+    private volatile MappedByteBuffer mapped;
+
+    private Segment(long id, Path directory, long createdMillis) {
+        this.id = id;
+        this.logFile = directory.resolve(fileName(id, LOG_SUFFIX));
+        this.indexFile = directory.resolve(fileName(id, INDEX_SUFFIX));
+        this.createdMillis = createdMillis;
+    }
+
+    /**
+     * 创建新的可写段
+     */
+    static Segment create(long id, Path directory, int writeBufferSize) throws IOException {
+        Segment segment = new Segment(id, directory, System.currentTimeMillis());
+        segment.logChannel = FileChannel.open(segment.logFile,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment.indexChannel = FileChannel.open(segment.indexFile,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment.writeBuffer = new byte[writeBufferSize];
+        return segment;
+    }
+
+    /**
+     * 加载已有的段，作为只读段。索引未覆盖的尾部（异常退出时未关闭的块）重新扫描补齐
+     */
+    static Segment load(long id, Path directory, LogTimestamps timestamps) throws IOException {
+        Segment segment = new Segment(id, directory, Files.getLastModifiedTime(directory.resolve(fileName(id, LOG_SUFFIX))).toMillis());
+        segment.size = Files.size(segment.logFile);
+        segment.flushedSize = segment.size;
+
+        if (Files.exists(segment.indexFile)) {
+            byte[] index = Files.readAllBytes(segment.indexFile);
+            ByteBuffer entries = ByteBuffer.wrap(index);
+            for (int i = 0; i + INDEX_ENTRY_SIZE <= index.length; i += INDEX_ENTRY_SIZE) {
+                long start = entries.getLong(i);
+                long end = entries.getLong(i + 8);
+                if (end > segment.size || start > end) {
+                    break;
+                }
+                segment.addBlock(start, end, entries.getLong(i + 16), entries.getLong(i + 24));
+            }
+        }
+        long indexedEnd = segment.blockCount > 0 ? segment.blockEnds[segment.blockCount - 1] : 0;
+        if (indexedEnd < segment.size) {
+            segment.recoverTail(indexedEnd, timestamps);
+        }
+        segment.sealed = true;
+        return segment;
+    }
+
+    /**
+     * 追加一行（不含换行符），timestamp为该行时间（无时间戳的行沿用上一行的时间）
+     *
+     * @param startsWithTimestamp 行首是否为时间戳，只在这样的行前切块，保证块首行有时间
+     */
+    void append(byte[] line, int offset, int length, long timestamp, boolean startsWithTimestamp,
+                int indexIntervalBytes) throws IOException {
+        if (startsWithTimestamp && size - activeBlockStart >= indexIntervalBytes) {
+            closeActiveBlock();
+        }
+        write(line, offset, length);
+        write(NEWLINE, 0, 1);
+        activeMinTime = Math.min(activeMinTime, timestamp);
+        activeMaxTime = Math.max(activeMaxTime, timestamp);
+        minTime = Math.min(minTime, timestamp);
+        maxTime = Math.max(maxTime, timestamp);
+    }
+
+    /**
+     * 写缓冲中的数据写入文件
+     */
+    void flush() throws IOException {
+        if (bufferLength == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(writeBuffer, 0, bufferLength);
+        while (buffer.hasRemaining()) {
+            flushedSize += logChannel.write(buffer, flushedSize);
+        }
+        bufferLength = 0;
+    }
+
+    /**
+     * 封存：关闭当前块、刷出数据并关闭文件，之后只读
+     */
+    void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        closeActiveBlock();
+        flush();
+        logChannel.force(false);
+        indexChannel.force(false);
+        logChannel.close();
+        indexChannel.close();
+        writeBuffer = null;
+        sealed = true;
+    }
+
+    /**
+     * 当前所有块（含未关闭的当前块）的快照，只含已写入文件的数据，由分区加锁调用
+     */
+    SegmentSnapshot snapshot() {
+        int count = blockCount;
+        long[] starts = Arrays.copyOf(blockStarts, count + 1);
+        long[] ends = Arrays.copyOf(blockEnds, count + 1);
+        long[] mins = Arrays.copyOf(blockMinTimes, count + 1);
+        long[] maxs = Arrays.copyOf(blockMaxTimes, count + 1);
+        if (!sealed && flushedSize > activeBlockStart) {
+            starts[count] = activeBlockStart;
+            ends[count] = flushedSize;
+            mins[count] = activeMinTime;
+            maxs[count] = activeMaxTime;
+            count++;
+        }
+        return new SegmentSnapshot(this, starts, ends, mins, maxs, count, flushedSize);
+    }
+
+    /**
+     * 只读映射，封存段的映射缓存复用；可写段按当前已写入大小临时映射
+     */
+    MappedByteBuffer map(long length) throws IOException {
+        MappedByteBuffer cached = mapped;
+        if (cached != null) {
+            return cached;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        if (sealed && length == size) {
+            mapped = buffer;
+        }
+        return buffer;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    private void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (bufferLength == writeBuffer.length) {
+                flush();
+            }
+            int n = Math.min(length, writeBuffer.length - bufferLength);
+            System.arraycopy(data, offset, writeBuffer, bufferLength, n);
+            bufferLength += n;
+            offset += n;
+            length -= n;
+            size += n;
+        }
+    }
+
+    private void closeActiveBlock() throws IOException {
+        if (size == activeBlockStart) {
+            return;
+        }
+        addBlock(activeBlockStart, size, activeMinTime, activeMaxTime);
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putLong(0, activeBlockStart);
+        entry.putLong(8, size);
+        entry.putLong(16, activeMinTime);
+        entry.putLong(24, activeMaxTime);
+        while (entry.hasRemaining()) {
+            indexChannel.write(entry);
+        }
+        activeBlockStart = size;
+        activeMinTime = Long.MAX_VALUE;
+        activeMaxTime = Long.MIN_VALUE;
+    }
+
+    private void addBlock(long start, long end, long min, long max) {
+        if (blockCount == blockStarts.length) {
+            int capacity = blockCount * 2;
+            blockStarts = Arrays.copyOf(blockStarts, capacity);
+            blockEnds = Arrays.copyOf(blockEnds, capacity);
+            blockMinTimes = Arrays.copyOf(blockMinTimes, capacity);
+            blockMaxTimes = Arrays.copyOf(blockMaxTimes, capacity);
+        }
+        blockStarts[blockCount] = start;
+        blockEnds[blockCount] = end;
+        blockMinTimes[blockCount] = min;
+        blockMaxTimes[blockCount] = max;
+        blockCount++;
+        minTime = Math.min(minTime, min);
+        maxTime = Math.max(maxTime, max);
+    }
+
+    /**
+     * 扫描索引未覆盖的尾部，作为一个块补充到内存索引
+     */
+    private void recoverTail(long start, LogTimestamps timestamps) throws IOException {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size - start);
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b != '\n') {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                    continue;
+                }
+                long timestamp = timestamps.parse(line, 0, lineLength);
+                if (timestamp >= 0) {
+                    min = Math.min(min, timestamp);
+                    max = Math.max(max, timestamp);
+                }
+                lineLength = 0;
+            }
+        }
+        if (min <= max) {
+            addBlock(start, size, min, max);
+        }
+    }
+
+    static String fileName(long id, String suffix) {
+        return String.format("%020d%s", id, suffix);
+    }
+}
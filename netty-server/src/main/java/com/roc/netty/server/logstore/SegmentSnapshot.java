@@ -0,0 +1,170 @@
+package com.roc.netty.server.logstore;
+
+import com.roc.netty.server.ingest.LogTimestamps;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 查询时某个段的索引快照，在分区锁外读取
+ */
+class SegmentSnapshot {
+
+    @Getter
+    private final Segment segment;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] minTimes;
+    private final long[] maxTimes;
+    private final int blockCount;
+    private final long length;
+    // 一次查询内复用的映射
+    private ByteBuffer mapped;
+
+    SegmentSnapshot(Segment segment, long[] starts, long[] ends, long[] minTimes, long[] maxTimes,
+                    int blockCount, long length) {
+        this.segment = segment;
+        this.starts = starts;
+        this.ends = ends;
+        this.minTimes = minTimes;
+        this.maxTimes = maxTimes;
+        this.blockCount = blockCount;
+        this.length = length;
+    }
+
+    /**
+     * 时间范围 [from, to) 是否与任一块相交
+     */
+    boolean overlaps(long from, long to) {
+        for (int i = 0; i < blockCount; i++) {
+            if (maxTimes[i] >= from && minTimes[i] < to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取时间范围 [from, to) 内的行写入输出流，只访问时间范围相交的块
+     *
+     * @param scratch 复用的读缓冲，不够大时返回扩容后的数组
+     * @return 扩容后的读缓冲
+     */
+    byte[] read(long from, long to, OutputStream out, LogTimestamps timestamps, ReadStats stats,
+                byte[] scratch) throws IOException {
+        if (length == 0) {
+            return scratch;
+        }
+        ByteBuffer mapped = mapped();
+        for (int i = 0; i < blockCount; i++) {
+            if (maxTimes[i] < from || minTimes[i] >= to) {
+                continue;
+            }
+            int blockLength = (int) (ends[i] - starts[i]);
+            if (scratch.length < blockLength) {
+                scratch = new byte[blockLength];
+            }
+            ((Buffer) mapped).position((int) starts[i]);
+            mapped.get(scratch, 0, blockLength);
+            stats.blocksRead++;
+            stats.bytesScanned += blockLength;
+
+            // 块首行一定带时间戳；续行（如异常堆栈）沿用上一行时间
+            long lineTime = minTimes[i];
+            int lineStart = 0;
+            for (int p = 0; p < blockLength; p++) {
+                if (scratch[p] != '\n') {
+                    continue;
+                }
+                long parsed = timestamps.parse(scratch, lineStart, p - lineStart);
+                if (parsed >= 0) {
+                    lineTime = parsed;
+                }
+                if (lineTime >= from && lineTime < to) {
+                    out.write(scratch, lineStart, p + 1 - lineStart);
+                    stats.linesMatched++;
+                }
+                lineStart = p + 1;
+            }
+        }
+        return scratch;
+    }
+
+    /**
+     * 读取从offset开始的一行，不含换行符；offset超出快照范围时返回null
+     */
+    byte[] readLine(long offset) throws IOException {
+        if (offset < 0 || offset >= length) {
+            return null;
+        }
+        ByteBuffer mapped = mapped();
+        int start = (int) offset;
+        int end = start;
+        while (end < length && mapped.get(end) != '\n') {
+            end++;
+        }
+        byte[] line = new byte[end - start];
+        ((Buffer) mapped).position(start);
+        mapped.get(line);
+        return line;
+    }
+
+    /**
+     * 从offset开始逐行回放给监听方
+     *
+     * @param skipFirst 是否跳过offset处的第一行（监听方已处理过）
+     * @return 回放的行数
+     */
+    long replay(String clientId, long offset, boolean skipFirst, AppendListener listener) throws IOException {
+        if (offset >= length) {
+            return 0;
+        }
+        ByteBuffer mapped = mapped();
+        ((Buffer) mapped).position((int) offset);
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long lineStart = offset;
+        long lines = 0;
+        boolean skip = skipFirst;
+        while (mapped.position() < length) {
+            byte b = mapped.get();
+            if (b != '\n') {
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLength++] = b;
+                continue;
+            }
+            if (skip) {
+                skip = false;
+            } else {
+                listener.onAppend(clientId, LogStore.position(segment.getId(), lineStart), line, 0, lineLength);
+                lines++;
+            }
+            lineLength = 0;
+            lineStart = mapped.position();
+        }
+        return lines;
+    }
+
+    private ByteBuffer mapped() throws IOException {
+        if (mapped == null) {
+            mapped = segment.map(length).duplicate();
+        }
+        return mapped;
+    }
+
+    /**
+     * 一次查询的读取统计
+     */
+    static class ReadStats {
+        int segmentsRead;
+        int blocksRead;
+        long bytesScanned;
+        long linesMatched;
+    }
+}
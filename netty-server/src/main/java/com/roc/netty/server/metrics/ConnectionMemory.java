@@ -0,0 +1,301 @@
+package com.roc.netty.server.metrics;
+
+import com.roc.netty.server.service.ClientConnectionService;
+import com.roc.netty.server.service.LatencyProbeService;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.EventLoop;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.internal.PlatformDependent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToLongFunction;
+
+/**
+ * 单个连接的内存估计：解码器累积缓冲、待发送数据、压缩器、处理器与登记表开销
+ * 缓冲按实际容量统计，对象开销按估计值（64位JVM、压缩指针）统计；汇总为分布并列出占用最多的连接，
+ * 可按平均值推算更多连接时的内存需求。
+ * 统计在各连接的IO线程中执行，与读写缓冲的线程相同。
+ */
+@Component
+@RequiredArgsConstructor
+public class ConnectionMemory {
+
+    /**
+     * 内存的用途
+     */
+    public enum Purpose {
+        CHANNEL, PIPELINE, CUMULATION, OUTBOUND, COMPRESSION, REGISTRY, LATENCY_PROBE
+    }
+
+    /**
+     * 内存的类型
+     */
+    public enum Kind {
+        HEAP, DIRECT, NATIVE
+    }
+
+    // SocketChannel 实现及其配置、Unsafe、出站缓冲对象、SocketChannelImpl、SelectionKey、ChannelId
+    private static final int CHANNEL_HEAP_BYTES = 1536;
+    // 每个处理器上下文，含名称字符串
+    private static final int CONTEXT_HEAP_BYTES = 128;
+    // 每个连接独有（非 @Sharable）的处理器实例
+    private static final int HANDLER_HEAP_BYTES = 64;
+    // IdleStateHandler 的字段和定时任务
+    private static final int IDLE_HANDLER_HEAP_BYTES = 256;
+    // ClientConnectionService 中的三个映射项与关闭监听器，不含客户端ID字符串
+    private static final int REGISTRY_HEAP_BYTES = 160;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final long MEASURE_TIMEOUT_MILLIS = 5000;
+
+    private final ClientConnectionService clientConnectionService;
+    private final LatencyProbeService latencyProbeService;
+
+    /**
+     * 连接内存报告
+     *
+     * @param top                  列出占用最多的连接数
+     * @param projectedConnections 按平均值推算该连接数时的内存
+     */
+    public Map<String, Object> report(int top, long projectedConnections) throws InterruptedException {
+        // 按IO线程分组，每个IO线程执行一个任务统计它的所有连接
+        Map<EventLoop, List<Channel>> byLoop = new HashMap<>();
+        for (Channel channel : clientConnectionService.getChannels()) {
+            byLoop.computeIfAbsent(channel.eventLoop(), loop -> new ArrayList<>()).add(channel);
+        }
+        List<Future<List<Usage>>> futures = new ArrayList<>();
+        for (Map.Entry<EventLoop, List<Channel>> entry : byLoop.entrySet()) {
+            futures.add(entry.getKey().submit(() -> measure(entry.getValue())));
+        }
+        List<Usage> usages = new ArrayList<>();
+        int timedOutLoops = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MEASURE_TIMEOUT_MILLIS);
+        for (Future<List<Usage>> future : futures) {
+            try {
+                usages.addAll(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // IO线程卡顿时不等待，报告中注明
+                future.cancel(false);
+                timedOutLoops++;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to measure connection memory", e.getCause());
+            }
+        }
+
+        long[] totals = new long[Purpose.values().length * Kind.values().length];
+        for (Usage usage : usages) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += usage.bytes[i];
+            }
+        }
+        int count = usages.size();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("connections", count);
+        result.put("timedOutLoops", timedOutLoops);
+        result.put("total", kinds(totals, null));
+        Map<String, Object> components = new LinkedHashMap<>();
+        for (Purpose purpose : Purpose.values()) {
+            components.put(name(purpose), kinds(totals, purpose));
+        }
+        result.put("components", components);
+
+        Map<String, Object> perConnection = new LinkedHashMap<>();
+        for (Kind kind : Kind.values()) {
+            perConnection.put(name(kind), distribution(usages, usage -> usage.total(kind)));
+        }
+        perConnection.put("total", distribution(usages, Usage::total));
+        result.put("perConnection", perConnection);
+
+        Map<String, Object> projection = new LinkedHashMap<>();
+        projection.put("connections", projectedConnections);
+        long all = 0;
+        for (Kind kind : Kind.values()) {
+            long sum = 0;
+            for (Usage usage : usages) {
+                sum += usage.total(kind);
+            }
+            all += sum;
+            projection.put(name(kind) + "Bytes", count == 0 ? 0 : sum * projectedConnections / count);
+        }
+        projection.put("totalBytes", count == 0 ? 0 : all * projectedConnections / count);
+        result.put("projection", projection);
+
+        // 分配器的实际用量，可与上面的估计对照
+        Map<String, Object> allocator = new LinkedHashMap<>();
+        if (ByteBufAllocator.DEFAULT instanceof ByteBufAllocatorMetricProvider) {
+            ByteBufAllocatorMetric metric = ((ByteBufAllocatorMetricProvider) ByteBufAllocator.DEFAULT).metric();
+            allocator.put("usedHeapMemory", metric.usedHeapMemory());
+            allocator.put("usedDirectMemory", metric.usedDirectMemory());
+        }
+        allocator.put("nettyDirectMemory", PlatformDependent.usedDirectMemory());
+        result.put("allocator", allocator);
+
+        usages.sort(Comparator.comparingLong((Usage usage) -> usage.total()).reversed());
+        List<Map<String, Object>> topUsages = new ArrayList<>();
+        for (Usage usage : usages.subList(0, Math.min(top, usages.size()))) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("clientId", usage.clientId);
+            item.put("remoteAddress", usage.remoteAddress);
+            item.put("totalBytes", usage.total());
+            Map<String, Object> bytes = new LinkedHashMap<>();
+            for (Purpose purpose : Purpose.values()) {
+                long sum = 0;
+                for (Kind kind : Kind.values()) {
+                    sum += usage.bytes[Usage.index(purpose, kind)];
+                }
+                if (sum > 0) {
+                    bytes.put(name(purpose), sum);
+                }
+            }
+            item.put("components", bytes);
+            topUsages.add(item);
+        }
+        result.put("top", topUsages);
+        return result;
+    }
+
+    private List<Usage> measure(List<Channel> channels) {
+        List<Usage> usages = new ArrayList<>(channels.size());
+        for (Channel channel : channels) {
+            if (!channel.isActive()) {
+                continue;
+            }
+            String clientId = clientConnectionService.getClientId(channel);
+            Usage usage = new Usage(clientId, String.valueOf(channel.remoteAddress()));
+            usage.add(Purpose.CHANNEL, Kind.HEAP, CHANNEL_HEAP_BYTES);
+            for (Map.Entry<String, ChannelHandler> entry : channel.pipeline()) {
+                ChannelHandler handler = entry.getValue();
+                usage.add(Purpose.PIPELINE, Kind.HEAP, CONTEXT_HEAP_BYTES);
+                if (handler instanceof IdleStateHandler) {
+                    usage.add(Purpose.PIPELINE, Kind.HEAP, IDLE_HANDLER_HEAP_BYTES);
+                } else if (!(handler instanceof ChannelHandlerAdapter) || !((ChannelHandlerAdapter) handler).isSharable()) {
+                    usage.add(Purpose.PIPELINE, Kind.HEAP, HANDLER_HEAP_BYTES);
+                }
+                if (handler instanceof MemoryAccountable) {
+                    ((MemoryAccountable) handler).account(usage);
+                }
+            }
+            ChannelOutboundBuffer outbound = channel.unsafe().outboundBuffer();
+            if (outbound != null) {
+                usage.add(Purpose.OUTBOUND, Kind.DIRECT, outbound.totalPendingWriteBytes());
+            }
+            if (clientId != null) {
+                usage.add(Purpose.REGISTRY, Kind.HEAP, REGISTRY_HEAP_BYTES + clientId.length());
+            }
+            usage.add(Purpose.LATENCY_PROBE, Kind.HEAP, latencyProbeService.heapBytes(channel));
+            usages.add(usage);
+        }
+        return usages;
+    }
+
+    private static Map<String, Object> kinds(long[] totals, Purpose purpose) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long all = 0;
+        for (Kind kind : Kind.values()) {
+            long sum = 0;
+            for (Purpose each : Purpose.values()) {
+                if (purpose == null || each == purpose) {
+                    sum += totals[Usage.index(each, kind)];
+                }
+            }
+            result.put(name(kind) + "Bytes", sum);
+            all += sum;
+        }
+        result.put("totalBytes", all);
+        return result;
+    }
+
+    private static Map<String, Object> distribution(List<Usage> usages, ToLongFunction<Usage> value) {
+        long[] values = new long[usages.size()];
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value.applyAsLong(usages.get(i));
+            sum += values[i];
+        }
+        Arrays.sort(values);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mean", values.length == 0 ? 0 : sum / values.length);
+        for (double quantile : QUANTILES) {
+            int index = (int) Math.ceil(quantile * values.length) - 1;
+            result.put("p" + Math.round(quantile * 100), values.length == 0 ? 0 : values[Math.max(0, index)]);
+        }
+        result.put("max", values.length == 0 ? 0 : values[values.length - 1]);
+        return result;
+    }
+
+    private static String name(Enum<?> value) {
+        // LATENCY_PROBE -> latencyProbe
+        String[] words = value.name().toLowerCase(Locale.ROOT).split("_");
+        StringBuilder name = new StringBuilder(words[0]);
+        for (int i = 1; i < words.length; i++) {
+            name.append(Character.toUpperCase(words[i].charAt(0))).append(words[i].substring(1));
+        }
+        return name.toString();
+    }
+
+    /**
+     * 单个连接按用途和类型的内存
+     */
+    public static class Usage {
+        private final String clientId;
+        private final String remoteAddress;
+        private final long[] bytes = new long[Purpose.values().length * Kind.values().length];
+
+        Usage(String clientId, String remoteAddress) {
+            this.clientId = clientId;
+            this.remoteAddress = remoteAddress;
+        }
+
+        public void add(Purpose purpose, Kind kind, long size) {
+            bytes[index(purpose, kind)] += size;
+        }
+
+        /**
+         * 按缓冲的容量和是否直接内存计入
+         */
+        public void buffer(Purpose purpose, ByteBuf buffer) {
+            add(purpose, buffer.isDirect() ? Kind.DIRECT : Kind.HEAP, buffer.capacity());
+        }
+
+        long total(Kind kind) {
+            long sum = 0;
+            for (Purpose purpose : Purpose.values()) {
+                sum += bytes[index(purpose, kind)];
+            }
+            return sum;
+        }
+
+        long total() {
+            long sum = 0;
+            for (long each : bytes) {
+                sum += each;
+            }
+            return sum;
+        }
+
+        static int index(Purpose purpose, Kind kind) {
+            return purpose.ordinal() * Kind.values().length + kind.ordinal();
+        }
+    }
+}
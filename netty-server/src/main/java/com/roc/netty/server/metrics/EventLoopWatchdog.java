@@ -0,0 +1,245 @@
+package com.roc.netty.server.metrics;
+
+import com.roc.netty.server.config.WatchdogConfig;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IO线程与业务线程卡顿检测
+ * 定时向每个线程投递一个带时间戳的探测任务，任务开始执行时记录调度延迟；
+ * 上一个探测任务等待超过阈值仍未执行时视为卡顿，记录该线程当前的堆栈。
+ * 每个线程同一时间只有一个探测任务在排队，卡顿期间不会堆积探测任务。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventLoopWatchdog {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final WatchdogConfig watchdogConfig;
+
+    private final List<Loop> loops = new CopyOnWriteArrayList<>();
+    private final Deque<Map<String, Object>> recentStalls = new ArrayDeque<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!watchdogConfig.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("event-loop-watchdog", true));
+        scheduler.scheduleWithFixedDelay(this::tick, watchdogConfig.getIntervalMillis(),
+                watchdogConfig.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        log.info("Event loop watchdog enabled - interval: {}ms, stall threshold: {}ms",
+                watchdogConfig.getIntervalMillis(), watchdogConfig.getStallThresholdMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 检测线程组中的每个线程，名称为 组名-序号
+     */
+    public void watch(String name, EventExecutorGroup group) {
+        int index = 0;
+        for (EventExecutor executor : group) {
+            loops.add(new Loop(name + "-" + index++, executor));
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long threshold = TimeUnit.MILLISECONDS.toNanos(watchdogConfig.getStallThresholdMillis());
+        for (Loop loop : loops) {
+            if (loop.executor.isShuttingDown()) {
+                continue;
+            }
+            if (loop.executor instanceof SingleThreadEventExecutor) {
+                loop.pendingTasks = ((SingleThreadEventExecutor) loop.executor).pendingTasks();
+                loop.maxPendingTasks = Math.max(loop.maxPendingTasks, loop.pendingTasks);
+            }
+            long submitted = loop.submittedNanos;
+            if (submitted == 0) {
+                loop.stallReported = false;
+                loop.submittedNanos = now;
+                try {
+                    loop.executor.execute(loop.probe);
+                } catch (RejectedExecutionException e) {
+                    loop.submittedNanos = 0;
+                }
+            } else if (!loop.stallReported && now - submitted >= threshold) {
+                loop.stallReported = true;
+                loop.stalls++;
+                stalled(loop, now - submitted);
+            }
+        }
+    }
+
+    /**
+     * 记录卡顿线程的堆栈
+     */
+    private void stalled(Loop loop, long stalledNanos) {
+        Thread thread = loop.thread;
+        List<String> stack = new ArrayList<>();
+        if (thread != null) {
+            StackTraceElement[] elements = thread.getStackTrace();
+            for (int i = 0; i < elements.length && i < watchdogConfig.getMaxStackDepth(); i++) {
+                stack.add(elements[i].toString());
+            }
+        }
+        log.warn("Event loop {} stalled for over {}ms, pending tasks: {}, thread {} at:\n\t{}",
+                loop.name, stalledNanos / 1_000_000, loop.pendingTasks,
+                thread == null ? "unknown" : thread.getName(), String.join("\n\t", stack));
+
+        Map<String, Object> stall = new LinkedHashMap<>();
+        stall.put("loop", loop.name);
+        stall.put("thread", thread == null ? null : thread.getName());
+        stall.put("detectedAt", System.currentTimeMillis());
+        stall.put("stalledMillis", stalledNanos / 1_000_000);
+        stall.put("pendingTasks", loop.pendingTasks);
+        stall.put("stack", stack);
+        synchronized (recentStalls) {
+            recentStalls.addFirst(stall);
+            while (recentStalls.size() > watchdogConfig.getMaxRecentStalls()) {
+                recentStalls.removeLast();
+            }
+        }
+    }
+
+    /**
+     * 各线程的调度延迟分位数、排队任务数、卡顿次数，以及最近的卡顿堆栈
+     */
+    public Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        List<Map<String, Object>> loopStats = new ArrayList<>();
+        for (Loop loop : loops) {
+            long[] counts = new long[LatencyHistogram.BUCKETS];
+            loop.lag.addTo(counts);
+            long submitted = loop.submittedNanos;
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("loop", loop.name);
+            item.put("thread", loop.thread == null ? null : loop.thread.getName());
+            item.put("pendingTasks", loop.pendingTasks);
+            item.put("maxPendingTasks", loop.maxPendingTasks);
+            item.put("probes", loop.probes);
+            item.put("p50Millis", LatencyHistogram.valueAtQuantile(counts, 0.5) / 1e6);
+            item.put("p99Millis", LatencyHistogram.valueAtQuantile(counts, 0.99) / 1e6);
+            item.put("p999Millis", LatencyHistogram.valueAtQuantile(counts, 0.999) / 1e6);
+            item.put("maxMillis", LatencyHistogram.valueAtQuantile(counts, 1) / 1e6);
+            item.put("stalls", loop.stalls);
+            // 当前排队中的探测已等待的时间
+            item.put("waitingMillis", submitted == 0 ? 0 : (now - submitted) / 1_000_000);
+            loopStats.add(item);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", watchdogConfig.isEnabled());
+        stats.put("stallThresholdMillis", watchdogConfig.getStallThresholdMillis());
+        stats.put("loops", loopStats);
+        synchronized (recentStalls) {
+            stats.put("recentStalls", new ArrayList<>(recentStalls));
+        }
+        return stats;
+    }
+
+    /**
+     * Prometheus 文本格式（0.0.4）输出，与 MessageMetrics 的输出拼接
+     */
+    public String prometheus() {
+        StringBuilder out = new StringBuilder(2048);
+        out.append("# HELP netty_event_loop_lag_seconds Delay between submitting a probe task and it starting, by loop\n");
+        out.append("# TYPE netty_event_loop_lag_seconds summary\n");
+        for (Loop loop : loops) {
+            long[] counts = new long[LatencyHistogram.BUCKETS];
+            long sum = loop.lag.addTo(counts);
+            for (double quantile : QUANTILES) {
+                out.append("netty_event_loop_lag_seconds{loop=\"").append(loop.name)
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(LatencyHistogram.valueAtQuantile(counts, quantile) / 1e9).append('\n');
+            }
+            long count = 0;
+            for (long each : counts) {
+                count += each;
+            }
+            out.append("netty_event_loop_lag_seconds_sum{loop=\"").append(loop.name).append("\"} ")
+                    .append(sum / 1e9).append('\n');
+            out.append("netty_event_loop_lag_seconds_count{loop=\"").append(loop.name).append("\"} ")
+                    .append(count).append('\n');
+        }
+        out.append("# HELP netty_event_loop_pending_tasks Tasks queued on the loop at the last probe\n");
+        out.append("# TYPE netty_event_loop_pending_tasks gauge\n");
+        for (Loop loop : loops) {
+            out.append("netty_event_loop_pending_tasks{loop=\"").append(loop.name).append("\"} ")
+                    .append(loop.pendingTasks).append('\n');
+        }
+        out.append("# HELP netty_event_loop_stalls_total Probes that waited longer than the stall threshold\n");
+        out.append("# TYPE netty_event_loop_stalls_total counter\n");
+        for (Loop loop : loops) {
+            out.append("netty_event_loop_stalls_total{loop=\"").append(loop.name).append("\"} ")
+                    .append(loop.stalls).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * 单个线程的探测状态
+     * 延迟直方图、探测次数和线程只由被检测线程在探测任务中写入，排队数和卡顿次数只由检测线程写入。
+     */
+    private static class Loop {
+        private final String name;
+        private final EventExecutor executor;
+        private final LatencyHistogram lag = new LatencyHistogram();
+        private final Runnable probe = this::probe;
+
+        private volatile Thread thread;
+        // 排队中的探测任务的投递时间，0表示没有
+        private volatile long submittedNanos;
+        private volatile boolean stallReported;
+        private volatile long probes;
+        private volatile int pendingTasks;
+        private volatile int maxPendingTasks;
+        private volatile long stalls;
+
+        Loop(String name, EventExecutor executor) {
+            this.name = name;
+            this.executor = executor;
+        }
+
+        private void probe() {
+            long lagNanos = System.nanoTime() - submittedNanos;
+            lag.record(lagNanos);
+            probes++;
+            if (thread == null) {
+                thread = Thread.currentThread();
+            }
+            if (stallReported) {
+                log.warn("Event loop {} recovered after {}ms", name, lagNanos / 1_000_000);
+            }
+            submittedNanos = 0;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.roc.netty.server.metrics;
+
+import com.roc.netty.server.config.HeavyHitterConfig;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按时间窗口统计消息数、字节数、错误数最多的客户端和消息类型，以及活跃客户端数
+ * 每个线程写入自己的统计，内存与客户端数无关：频繁项用 Space-Saving，客户端数用 HyperLogLog。
+ * 窗口按服务端当前时间划分，查询时合并最近若干窗口和所有线程的统计。
+ * IO线程收到的帧只写入本线程预分配的环形缓冲，由统计线程定时读取后计算哈希、更新统计，IO线程不加锁、不分配内存。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HeavyHitters {
+
+    private static final int MESSAGES_BY_CLIENT = 0;
+    private static final int BYTES_BY_CLIENT = 1;
+    private static final int MESSAGES_BY_TYPE = 2;
+    private static final int BYTES_BY_TYPE = 3;
+    private static final int ERRORS_BY_CLIENT = 4;
+    private static final int ERRORS_BY_EXCEPTION = 5;
+    private static final int UPLOADS_BY_CLIENT = 6;
+    private static final String[] NAMES = {"messagesByClient", "bytesByClient", "messagesByType", "bytesByType",
+            "errorsByClient", "errorsByException", "uploadsByClient"};
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final HeavyHitterConfig heavyHitterConfig;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+
+    private final FastThreadLocal<Recorder> recorder = new FastThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            Recorder created = new Recorder();
+            recorders.add(created);
+            return created;
+        }
+    };
+
+    // 每个IO线程一个收帧缓冲，由统计线程读取
+    private final List<InboundRing> rings = new CopyOnWriteArrayList<>();
+
+    private final FastThreadLocal<InboundRing> ring = new FastThreadLocal<InboundRing>() {
+        @Override
+        protected InboundRing initialValue() {
+            InboundRing created = new InboundRing(heavyHitterConfig.getRingSize());
+            rings.add(created);
+            return created;
+        }
+    };
+
+    // 缓冲已满而未统计的帧数
+    private final LongAdder droppedFrames = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!heavyHitterConfig.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("heavy-hitters", true));
+        long interval = heavyHitterConfig.getDrainIntervalMillis();
+        scheduler.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 收到一帧，在IO线程中调用，只写入本线程的缓冲
+     *
+     * @param clientId 未完成握手的连接为null，只按类型统计
+     */
+    public void inbound(String clientId, byte type, int bytes) {
+        if (!heavyHitterConfig.isEnabled()) {
+            return;
+        }
+        if (!ring.get().offer(clientId, type, bytes)) {
+            droppedFrames.increment();
+        }
+    }
+
+    /**
+     * 读取各IO线程缓冲中的帧并统计，只在统计线程中执行
+     */
+    void drain() {
+        try {
+            Recorder current = recorder.get();
+            for (InboundRing each : rings) {
+                synchronized (current) {
+                    Window window = current.window(System.currentTimeMillis());
+                    each.drain((clientId, type, bytes) -> {
+                        String typeName = MessageMetrics.typeName(type);
+                        window.sketches[MESSAGES_BY_TYPE].add(typeName, 1);
+                        window.sketches[BYTES_BY_TYPE].add(typeName, bytes);
+                        if (clientId != null) {
+                            long clientHash = HyperLogLog.hash(clientId);
+                            window.sketches[MESSAGES_BY_CLIENT].add(clientId, 1);
+                            window.sketches[BYTES_BY_CLIENT].add(clientId, bytes);
+                            window.clients.add(clientHash);
+                            current.allClients.add(clientHash);
+                        }
+                    });
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Heavy hitter drain failed", e);
+        }
+    }
+
+    /**
+     * 客户端上传的日志中的一条ERROR
+     */
+    public void error(String clientId) {
+        add(ERRORS_BY_CLIENT, clientId);
+    }
+
+    /**
+     * 客户端上传的日志中ERROR行的异常类型
+     */
+    public void exception(String exceptionType) {
+        add(ERRORS_BY_EXCEPTION, exceptionType);
+    }
+
+    /**
+     * 客户端的一个文件上传处理完毕
+     */
+    public void upload(String clientId) {
+        add(UPLOADS_BY_CLIENT, clientId);
+    }
+
+    private void add(int sketch, String key) {
+        if (!heavyHitterConfig.isEnabled()) {
+            return;
+        }
+        Recorder current = recorder.get();
+        synchronized (current) {
+            current.window(System.currentTimeMillis()).sketches[sketch].add(key, 1);
+        }
+    }
+
+    /**
+     * 最近 windows 个窗口（含当前未结束的窗口）中各项计数最多的key
+     * count 为估计计数的上界，guaranteed 为下界，二者相等时是准确值。
+     */
+    public Map<String, Object> query(int windows, int top) {
+        if (windows < 1 || windows > heavyHitterConfig.getRetainWindows()) {
+            throw new IllegalArgumentException("windows must be between 1 and " + heavyHitterConfig.getRetainWindows());
+        }
+        long windowMillis = heavyHitterConfig.getWindowSeconds() * 1000L;
+        long now = System.currentTimeMillis();
+        long currentStart = now - now % windowMillis;
+        long from = currentStart - (windows - 1) * windowMillis;
+
+        SpaceSaving.Merger[] mergers = new SpaceSaving.Merger[NAMES.length];
+        for (int i = 0; i < mergers.length; i++) {
+            mergers[i] = new SpaceSaving.Merger();
+        }
+        HyperLogLog clients = new HyperLogLog(heavyHitterConfig.getHllPrecision());
+        HyperLogLog allClients = new HyperLogLog(heavyHitterConfig.getHllPrecision());
+        for (Recorder each : recorders) {
+            synchronized (each) {
+                allClients.merge(each.allClients);
+                for (Window window : each.windows) {
+                    if (window != null && window.start >= from && window.start <= currentStart) {
+                        clients.merge(window.clients);
+                        for (int i = 0; i < mergers.length; i++) {
+                            mergers[i].add(window.sketches[i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", heavyHitterConfig.isEnabled());
+        result.put("windowSeconds", heavyHitterConfig.getWindowSeconds());
+        result.put("from", TIME_FORMAT.format(Instant.ofEpochMilli(from).atZone(zone)));
+        result.put("activeClients", clients.estimate());
+        result.put("clientsSinceStart", allClients.estimate());
+        result.put("droppedFrames", droppedFrames.sum());
+        for (int i = 0; i < mergers.length; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("total", mergers[i].getTotal());
+            item.put("top", mergers[i].top(top));
+            result.put(NAMES[i], item);
+        }
+        return result;
+    }
+
+    /**
+     * 单个线程的统计，写入与查询都在该对象上同步，写入时只有本线程竞争
+     */
+    private class Recorder {
+        private final Window[] windows = new Window[heavyHitterConfig.getRetainWindows()];
+        private final HyperLogLog allClients = new HyperLogLog(heavyHitterConfig.getHllPrecision());
+
+        /**
+         * 时间所在的窗口，环形复用过期的窗口
+         */
+        Window window(long now) {
+            long windowMillis = heavyHitterConfig.getWindowSeconds() * 1000L;
+            long start = now - now % windowMillis;
+            int index = (int) ((start / windowMillis) % windows.length);
+            Window window = windows[index];
+            if (window == null) {
+                window = new Window();
+                windows[index] = window;
+            }
+            if (window.start != start) {
+                window.clear();
+                window.start = start;
+            }
+            return window;
+        }
+    }
+
+    private class Window {
+        private long start;
+        private final SpaceSaving[] sketches = new SpaceSaving[NAMES.length];
+        private final HyperLogLog clients = new HyperLogLog(heavyHitterConfig.getHllPrecision());
+
+        Window() {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i] = new SpaceSaving(heavyHitterConfig.getCapacity());
+            }
+        }
+
+        void clear() {
+            for (SpaceSaving sketch : sketches) {
+                sketch.clear();
+            }
+            clients.clear();
+        }
+    }
+}
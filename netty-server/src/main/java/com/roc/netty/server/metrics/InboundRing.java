@@ -0,0 +1,67 @@
+package com.roc.netty.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 收到的帧的环形缓冲，单线程写入（所属的IO线程）、单线程读取（统计线程），不加锁
+ * 槽位预先分配，写入只保存客户端标识的引用、类型和长度，不分配内存；写满时丢弃新帧，不覆盖未读取的槽位。
+ */
+class InboundRing {
+
+    interface Visitor {
+        void frame(String clientId, byte type, int length);
+    }
+
+    private final String[] clients;
+    private final byte[] types;
+    private final int[] lengths;
+    private final int mask;
+
+    // 只由写入线程访问
+    private long head;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    InboundRing(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        this.clients = new String[capacity];
+        this.types = new byte[capacity];
+        this.lengths = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 写入一帧，缓冲已满时返回false
+     */
+    boolean offer(String clientId, byte type, int length) {
+        long sequence = head;
+        if (sequence - consumed.get() >= clients.length) {
+            return false;
+        }
+        int index = (int) (sequence & mask);
+        clients[index] = clientId;
+        types[index] = type;
+        lengths[index] = length;
+        head = sequence + 1;
+        published.lazySet(head);
+        return true;
+    }
+
+    /**
+     * 读取所有已发布的帧，返回读取的帧数
+     */
+    int drain(Visitor visitor) {
+        long cursor = consumed.get();
+        long end = published.get();
+        for (long sequence = cursor; sequence < end; sequence++) {
+            int index = (int) (sequence & mask);
+            visitor.frame(clients[index], types[index], lengths[index]);
+        }
+        consumed.lazySet(end);
+        return (int) (end - cursor);
+    }
+}
@@ -0,0 +1,36 @@
+package com.roc.netty.server.metrics;
+
+import com.roc.netty.server.protocol.MessageProtocol;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 记录消息从解码完成到业务处理器处理完的耗时，包括在业务线程池中排队的时间
+ * 必须与业务处理器使用同一个线程池并紧挨在它之前，这样 fireChannelRead 返回时业务处理已经结束。
+ */
+@Component
+@RequiredArgsConstructor
+@ChannelHandler.Sharable
+public class LatencyHandler extends ChannelInboundHandlerAdapter {
+
+    private final MessageMetrics messageMetrics;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof MessageProtocol)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        // 业务处理后消息可能被修改，先取出类型和时间
+        MessageProtocol message = (MessageProtocol) msg;
+        byte type = message.getType();
+        long receivedNanos = message.getReceivedNanos();
+        ctx.fireChannelRead(msg);
+        if (receivedNanos != 0) {
+            messageMetrics.handled(type, System.nanoTime() - receivedNanos);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.roc.netty.server.metrics;
+
+/**
+ * 每个连接独有的处理器实现该接口，报告自己持有的缓冲和本地内存，在连接的IO线程中调用
+ */
+public interface MemoryAccountable {
+
+    void account(ConnectionMemory.Usage usage);
+}
@@ -0,0 +1,170 @@
+package com.roc.netty.server.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving 频繁项统计：最多保留 capacity 个key的计数，
+ * 计数表满后新key替换计数最小的key并继承其计数作为误差上界。
+ * 任何实际计数超过 总量/capacity 的key一定在表中，表中计数减去误差是实际计数的下界。
+ * 非线程安全，由调用方加锁。
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    // 按计数的最小堆，堆顶是计数最小的key
+    private final Counter[] heap;
+    private int size;
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * key 的计数增加 weight
+     */
+    public void add(String key, long weight) {
+        total += weight;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            // 计数只增加，向下调整
+            counter.count += weight;
+            siftDown(counter.index);
+        } else if (size < capacity) {
+            counter = new Counter();
+            counter.key = key;
+            counter.count = weight;
+            counters.put(key, counter);
+            heap[size] = counter;
+            siftUp(size++);
+        } else {
+            // 替换计数最小的key，复用其计数对象
+            counter = heap[0];
+            counters.remove(counter.key);
+            counter.key = key;
+            counter.error = counter.count;
+            counter.count += weight;
+            counters.put(key, counter);
+            siftDown(0);
+        }
+    }
+
+    public void clear() {
+        counters.clear();
+        for (int i = 0; i < size; i++) {
+            heap[i] = null;
+        }
+        size = 0;
+        total = 0;
+    }
+
+    /**
+     * 计数表满时未在表中的key的计数上界，未满时为0
+     */
+    long minCount() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].index = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (heap[child].count >= counter.count) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static class Counter {
+        private String key;
+        private long count;
+        private long error;
+        private int index;
+    }
+
+    /**
+     * 合并多个统计（如各线程、各时间窗口），合并后的误差为各统计误差之和：
+     * 某个统计中没有的key，其在该统计中的计数按该统计的 minCount 估计。
+     */
+    public static class Merger {
+
+        // key -> {计数, 误差, 包含该key的统计的minCount之和}
+        private final Map<String, long[]> keys = new HashMap<>();
+        private long minSum;
+        private long total;
+
+        public void add(SpaceSaving summary) {
+            long min = summary.minCount();
+            minSum += min;
+            total += summary.total;
+            for (int i = 0; i < summary.size; i++) {
+                Counter counter = summary.heap[i];
+                long[] merged = keys.computeIfAbsent(counter.key, key -> new long[3]);
+                merged[0] += counter.count;
+                merged[1] += counter.error;
+                merged[2] += min;
+            }
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * 估计计数最多的 top 个key，count 为计数上界，guaranteed 为计数下界
+         */
+        public List<Map<String, Object>> top(int top) {
+            List<Map.Entry<String, long[]>> entries = new ArrayList<>(keys.entrySet());
+            for (Map.Entry<String, long[]> entry : entries) {
+                long[] merged = entry.getValue();
+                long missing = minSum - merged[2];
+                merged[0] += missing;
+                merged[1] += missing;
+                merged[2] = minSum;
+            }
+            entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (Map.Entry<String, long[]> entry : entries.subList(0, Math.min(top, entries.size()))) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("key", entry.getKey());
+                item.put("count", entry.getValue()[0]);
+                item.put("guaranteed", entry.getValue()[0] - entry.getValue()[1]);
+                result.add(item);
+            }
+            return result;
+        }
+    }
+}
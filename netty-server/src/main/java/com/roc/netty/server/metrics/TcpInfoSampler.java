@@ -0,0 +1,263 @@
+package com.roc.netty.server.metrics;
+
+import com.roc.netty.server.config.NettyConfig;
+import com.roc.netty.server.config.TcpInfoConfig;
+import com.roc.netty.server.service.ClientConnectionService;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelId;
+import io.netty.channel.EventLoop;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.epoll.EpollTcpInfo;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时读取各连接内核的 TCP_INFO（RTT、重传、拥塞窗口、未确认分段），保留滚动统计，
+ * RTT 或窗口内重传过多时在 ClientConnectionService 中标记该连接网络状况变差。
+ * 读取在各连接的IO线程中执行，每个IO线程一个任务；只支持 epoll 传输。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TcpInfoSampler {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final TcpInfoConfig tcpInfoConfig;
+    private final NettyConfig nettyConfig;
+    private final ClientConnectionService clientConnectionService;
+
+    private final Map<ChannelId, Link> links = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!tcpInfoConfig.isEnabled() || !supported()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("tcp-info-sampler", true));
+        scheduler.scheduleWithFixedDelay(this::sample, tcpInfoConfig.getIntervalSeconds(),
+                tcpInfoConfig.getIntervalSeconds(), TimeUnit.SECONDS);
+        log.info("TCP_INFO sampler enabled - interval: {}s, degraded rtt: {}ms, retransmits: {}",
+                tcpInfoConfig.getIntervalSeconds(), tcpInfoConfig.getDegradedRttMillis(),
+                tcpInfoConfig.getDegradedRetransmits());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private boolean supported() {
+        return nettyConfig.isEpoll() && Epoll.isAvailable();
+    }
+
+    private void sample() {
+        links.values().removeIf(link -> !link.channel.isActive());
+        Map<EventLoop, List<Channel>> byLoop = new HashMap<>();
+        for (Channel channel : clientConnectionService.getChannels()) {
+            if (channel instanceof EpollSocketChannel) {
+                byLoop.computeIfAbsent(channel.eventLoop(), loop -> new ArrayList<>()).add(channel);
+            }
+        }
+        for (Map.Entry<EventLoop, List<Channel>> entry : byLoop.entrySet()) {
+            entry.getKey().execute(() -> {
+                for (Channel channel : entry.getValue()) {
+                    if (channel.isActive()) {
+                        sample((EpollSocketChannel) channel);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 在连接的IO线程中执行
+     */
+    private void sample(EpollSocketChannel channel) {
+        Link link = links.computeIfAbsent(channel.id(), id -> new Link(channel, tcpInfoConfig.getWindowSamples()));
+        try {
+            channel.tcpInfo(link.info);
+        } catch (Exception e) {
+            // 连接刚关闭时读取失败，下一次采样时移除
+            return;
+        }
+        String reason;
+        String previous;
+        synchronized (link) {
+            link.update();
+            reason = degradedReason(link);
+            previous = link.degraded;
+            link.degraded = reason;
+        }
+        if (reason != null && previous == null) {
+            log.warn("Link degraded - client: {}, remote: {}, {}", clientConnectionService.getClientId(channel),
+                    channel.remoteAddress(), reason);
+        } else if (reason == null && previous != null) {
+            log.info("Link recovered - client: {}, remote: {}", clientConnectionService.getClientId(channel),
+                    channel.remoteAddress());
+        }
+        if (reason != null || previous != null) {
+            clientConnectionService.setDegraded(channel, reason);
+        }
+    }
+
+    private String degradedReason(Link link) {
+        long rttMillis = link.rtt / 1000;
+        long retransmits = link.windowRetransmits();
+        if (rttMillis >= tcpInfoConfig.getDegradedRttMillis()) {
+            return "rtt " + rttMillis + "ms";
+        }
+        if (retransmits >= tcpInfoConfig.getDegradedRetransmits()) {
+            return retransmits + " retransmits in last " + link.samplesInWindow() + " samples";
+        }
+        return null;
+    }
+
+    /**
+     * 各连接最近一次采样、滚动窗口内的RTT范围与重传数，以及所有连接的RTT与拥塞窗口分布
+     *
+     * @param top 按RTT从大到小列出的连接数
+     */
+    public Map<String, Object> getStats(int top) {
+        List<Map<String, Object>> connections = new ArrayList<>();
+        for (Link link : links.values()) {
+            synchronized (link) {
+                if (link.samples == 0) {
+                    continue;
+                }
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("clientId", clientConnectionService.getClientId(link.channel));
+                item.put("remoteAddress", String.valueOf(link.channel.remoteAddress()));
+                item.put("rttMillis", link.rtt / 1000.0);
+                item.put("rttVarMillis", link.rttVar / 1000.0);
+                item.put("minRttMillis", link.windowMinRtt() / 1000.0);
+                item.put("maxRttMillis", link.windowMaxRtt() / 1000.0);
+                item.put("cwnd", link.cwnd);
+                item.put("unacked", link.unacked);
+                item.put("lost", link.lost);
+                item.put("totalRetransmits", link.totalRetrans);
+                item.put("windowRetransmits", link.windowRetransmits());
+                item.put("degraded", link.degraded);
+                connections.add(item);
+            }
+        }
+        connections.sort((a, b) -> Double.compare((Double) b.get("rttMillis"), (Double) a.get("rttMillis")));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", tcpInfoConfig.isEnabled());
+        stats.put("supported", supported());
+        stats.put("intervalSeconds", tcpInfoConfig.getIntervalSeconds());
+        stats.put("connections", connections.size());
+        stats.put("rttMillis", distribution(connections, "rttMillis"));
+        stats.put("cwnd", distribution(connections, "cwnd"));
+        long windowRetransmits = 0;
+        for (Map<String, Object> item : connections) {
+            windowRetransmits += (Long) item.get("windowRetransmits");
+        }
+        stats.put("windowRetransmits", windowRetransmits);
+        stats.put("degraded", clientConnectionService.getDegradedLinks());
+        stats.put("top", connections.subList(0, Math.min(top, connections.size())));
+        return stats;
+    }
+
+    private static Map<String, Object> distribution(List<Map<String, Object>> connections, String key) {
+        double[] values = new double[connections.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ((Number) connections.get(i).get(key)).doubleValue();
+        }
+        Arrays.sort(values);
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (double quantile : QUANTILES) {
+            int index = (int) Math.ceil(quantile * values.length) - 1;
+            result.put("p" + Math.round(quantile * 100), values.length == 0 ? 0 : values[Math.max(0, index)]);
+        }
+        result.put("max", values.length == 0 ? 0 : values[values.length - 1]);
+        return result;
+    }
+
+    /**
+     * 单个连接的采样，最近一次的值与滚动窗口
+     */
+    private static class Link {
+        private final Channel channel;
+        private final EpollTcpInfo info = new EpollTcpInfo();
+        // 最近若干次采样的RTT(微秒)与两次采样间的重传分段数
+        private final long[] rtts;
+        private final long[] retransmits;
+        private long samples;
+
+        private long rtt;
+        private long rttVar;
+        private long cwnd;
+        private long unacked;
+        private long lost;
+        private long totalRetrans;
+        private String degraded;
+
+        Link(Channel channel, int windowSamples) {
+            this.channel = channel;
+            this.rtts = new long[windowSamples];
+            this.retransmits = new long[windowSamples];
+        }
+
+        void update() {
+            int slot = (int) (samples % rtts.length);
+            rtts[slot] = info.rtt();
+            retransmits[slot] = samples == 0 ? info.totalRetrans() : Math.max(0, info.totalRetrans() - totalRetrans);
+            samples++;
+            rtt = info.rtt();
+            rttVar = info.rttvar();
+            cwnd = info.sndCwnd();
+            unacked = info.unacked();
+            lost = info.lost();
+            totalRetrans = info.totalRetrans();
+        }
+
+        int samplesInWindow() {
+            return (int) Math.min(samples, rtts.length);
+        }
+
+        long windowRetransmits() {
+            long sum = 0;
+            for (int i = 0; i < samplesInWindow(); i++) {
+                sum += retransmits[i];
+            }
+            return sum;
+        }
+
+        long windowMinRtt() {
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < samplesInWindow(); i++) {
+                min = Math.min(min, rtts[i]);
+            }
+            return min;
+        }
+
+        long windowMaxRtt() {
+            long max = 0;
+            for (int i = 0; i < samplesInWindow(); i++) {
+                max = Math.max(max, rtts[i]);
+            }
+            return max;
+        }
+    }
+}
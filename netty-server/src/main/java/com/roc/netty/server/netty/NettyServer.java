@@ -1,27 +1,39 @@
 package com.roc.netty.server.netty;
 
+import com.roc.netty.server.codec.FrameDecoder;
+import com.roc.netty.server.codec.MessageCompressionHandler;
 import com.roc.netty.server.codec.MessageDecoder;
 import com.roc.netty.server.codec.MessageEncoder;
+import com.roc.netty.server.compress.DictionaryTrainer;
 import com.roc.netty.server.config.NettyConfig;
 import com.roc.netty.server.handler.HeartbeatHandler;
+import com.roc.netty.server.handler.LatencyProbeHandler;
 import com.roc.netty.server.handler.ServerBusinessHandler;
+import com.roc.netty.server.handler.SlowConsumerHandler;
+import com.roc.netty.server.metrics.EventLoopWatchdog;
+import com.roc.netty.server.metrics.LatencyHandler;
+import com.roc.netty.server.metrics.MetricsHandler;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -38,6 +50,19 @@ public class NettyServer {
     // 业务线程池，用于处理耗时的业务逻辑
     private static final EventExecutorGroup BUSINESS_GROUP = new DefaultEventExecutorGroup(16);
 
+    /**
+     * 业务线程池中排队等待执行的任务数
+     */
+    public static int businessPendingTasks() {
+        int pending = 0;
+        for (EventExecutor executor : BUSINESS_GROUP) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                pending += ((SingleThreadEventExecutor) executor).pendingTasks();
+            }
+        }
+        return pending;
+    }
+
     // 最大帧长度
     private static final int MAX_FRAME_LENGTH = 100 * 1024 * 1024; // 100MB
     private static final int LENGTH_FIELD_OFFSET = 0;
@@ -50,23 +75,45 @@ public class NettyServer {
     private ChannelFuture channelFuture;
     private final NettyConfig nettyConfig;
     private final ServerBusinessHandler serverBusinessHandler;
+    private final DictionaryTrainer dictionaryTrainer;
+    private final MetricsHandler metricsHandler;
+    private final LatencyHandler latencyHandler;
+    private final LatencyProbeHandler latencyProbeHandler;
+    private final EventLoopWatchdog eventLoopWatchdog;
 
 
-    public NettyServer(NettyConfig nettyConfig, ServerBusinessHandler serverBusinessHandler) {
+    public NettyServer(NettyConfig nettyConfig, ServerBusinessHandler serverBusinessHandler,
+                       DictionaryTrainer dictionaryTrainer, MetricsHandler metricsHandler,
+                       LatencyHandler latencyHandler, LatencyProbeHandler latencyProbeHandler,
+                       EventLoopWatchdog eventLoopWatchdog) {
         this.nettyConfig = nettyConfig;
         this.serverBusinessHandler = serverBusinessHandler;
+        this.dictionaryTrainer = dictionaryTrainer;
+        this.metricsHandler = metricsHandler;
+        this.latencyHandler = latencyHandler;
+        this.latencyProbeHandler = latencyProbeHandler;
+        this.eventLoopWatchdog = eventLoopWatchdog;
     }
 
 
     @PostConstruct
     public void start() {
-        bossGroup = new NioEventLoopGroup(nettyConfig.getBossThreads(), new DefaultThreadFactory(nettyConfig.getBossNamePrefix()));
-        workerGroup = new NioEventLoopGroup(nettyConfig.getWorkerThreads(), new DefaultThreadFactory(nettyConfig.getWorkerNamePrefix()));
+        boolean epoll = nettyConfig.isEpoll() && Epoll.isAvailable();
+        if (epoll) {
+            bossGroup = new EpollEventLoopGroup(nettyConfig.getBossThreads(), new DefaultThreadFactory(nettyConfig.getBossNamePrefix()));
+            workerGroup = new EpollEventLoopGroup(nettyConfig.getWorkerThreads(), new DefaultThreadFactory(nettyConfig.getWorkerNamePrefix()));
+        } else {
+            bossGroup = new NioEventLoopGroup(nettyConfig.getBossThreads(), new DefaultThreadFactory(nettyConfig.getBossNamePrefix()));
+            workerGroup = new NioEventLoopGroup(nettyConfig.getWorkerThreads(), new DefaultThreadFactory(nettyConfig.getWorkerNamePrefix()));
+        }
+        // 检测IO线程与业务线程的调度延迟和卡顿
+        eventLoopWatchdog.watch("worker", workerGroup);
+        eventLoopWatchdog.watch("business", BUSINESS_GROUP);
 
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
                     .option(ChannelOption.SO_BACKLOG, nettyConfig.getBacklog())
                     .childOption(ChannelOption.SO_KEEPALIVE, nettyConfig.isKeepAlive())
                     // 开启Nagle算法，要求高实时性时关闭
@@ -86,7 +133,7 @@ public class NettyServer {
                             // lengthFieldLength: 长度字段的长度
                             // lengthAdjustment: 长度调整值
                             // initialBytesToStrip: 需要跳过的字节数
-                            p.addLast(new LengthFieldBasedFrameDecoder(
+                            p.addLast(new FrameDecoder(
                                     MAX_FRAME_LENGTH,
                                     LENGTH_FIELD_OFFSET,
                                     LENGTH_FIELD_LENGTH,
@@ -99,6 +146,17 @@ public class NettyServer {
                             // 添加编解码器
                             p.addLast(new MessageEncoder());
                             p.addLast(new MessageDecoder());
+                            // 出站缓冲长时间不可写时记录JFR事件
+                            p.addLast(new SlowConsumerHandler());
+                            // 按消息类型统计收发的帧，位于压缩之前，统计的是实际传输的大小
+                            if (nettyConfig.isMetrics()) {
+                                p.addLast(metricsHandler);
+                            }
+                            // 业务消息预置字典压缩
+                            NettyConfig.MessageCompressionConfig compression = nettyConfig.getMessageCompression();
+                            if (compression.isEnabled()) {
+                                p.addLast(new MessageCompressionHandler(dictionaryTrainer, compression.getMinSize()));
+                            }
                             p.addLast(new IdleStateHandler(
                                     nettyConfig.getReaderIdleTimeSeconds(),
                                     nettyConfig.getWriterIdleTimeSeconds(),
@@ -106,7 +164,14 @@ public class NettyServer {
                                     TimeUnit.SECONDS
                             ));
                             p.addLast(new HeartbeatHandler());
-                            // 添加业务处理器
+                            // 延迟探测在IO线程中先回复一次
+                            if (nettyConfig.isLatencyProbe()) {
+                                p.addLast(latencyProbeHandler);
+                            }
+                            // 添加业务处理器，延迟统计与其在同一业务线程中执行
+                            if (nettyConfig.isMetrics()) {
+                                p.addLast(BUSINESS_GROUP, latencyHandler);
+                            }
                             p.addLast(BUSINESS_GROUP, serverBusinessHandler);
 
                             log.debug("Channel initialized: {}", ch);
@@ -115,7 +180,7 @@ public class NettyServer {
 
             // 绑定端口，开始接收进来的连接
             channelFuture = b.bind(nettyConfig.getHost(), nettyConfig.getPort()).sync();
-            log.info("Netty server started on port: {}", nettyConfig.getPort());
+            log.info("Netty server started on port: {}, transport: {}", nettyConfig.getPort(), epoll ? "epoll" : "nio");
 
             // 等待服务器 socket 关闭
             channelFuture.channel().closeFuture().addListener(future -> {
@@ -0,0 +1,27 @@
+package com.roc.netty.server.pipeline;
+
+import com.roc.netty.server.config.PipelineConfig;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按异常类型统计每个时间窗口的出现次数，异常类型由 {@link ExceptionTypeTransform} 提取
+ */
+@Order(200)
+@Component
+public class ExceptionTypeAggregator extends KeyCountAggregator {
+
+    public ExceptionTypeAggregator(PipelineConfig pipelineConfig) {
+        super(pipelineConfig);
+    }
+
+    @Override
+    public String getName() {
+        return "exceptions";
+    }
+
+    @Override
+    protected String key(LogRecord record) {
+        return record.getExceptionType();
+    }
+}
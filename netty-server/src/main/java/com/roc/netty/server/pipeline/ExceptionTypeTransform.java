@@ -0,0 +1,46 @@
+package com.roc.netty.server.pipeline;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 从完整行后的第一个续行中提取异常类型，如
+ * java.lang.IllegalStateException: order failed -> java.lang.IllegalStateException
+ * 类名必须带包名，以 Exception 或 Error 结尾
+ */
+@Order(100)
+@Component
+public class ExceptionTypeTransform implements LogTransform {
+
+    private static final int MAX_TYPE_LENGTH = 256;
+
+    @Override
+    public void apply(LogRecord record) {
+        if (record.getContinuation() != 1) {
+            return;
+        }
+        byte[] line = record.getLine();
+        int start = record.getOffset();
+        int end = start + Math.min(record.getLength(), MAX_TYPE_LENGTH);
+        int p = start;
+        boolean qualified = false;
+        while (p < end && line[p] != ':') {
+            byte b = line[p];
+            if (b == '.') {
+                qualified = true;
+            } else if (!(Character.isLetterOrDigit(b) || b == '_' || b == '$')) {
+                return;
+            }
+            p++;
+        }
+        if (!qualified || line[p - 1] == '.') {
+            return;
+        }
+        String type = new String(line, start, p - start, StandardCharsets.UTF_8);
+        if (type.endsWith("Exception") || type.endsWith("Error")) {
+            record.setExceptionType(type);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.roc.netty.server.pipeline;
+
+import com.roc.netty.server.ingest.LogLineParser;
+import com.roc.netty.server.metrics.HeavyHitters;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 把上传日志中的ERROR行和处理完的文件计入按客户端的频繁项统计
+ */
+@Order(200)
+@Component
+@RequiredArgsConstructor
+public class HeavyHitterSink implements LogSink {
+
+    private final HeavyHitters heavyHitters;
+
+    @Override
+    public void accept(LogRecord record) {
+        if (record.getLevel() != LogLineParser.ERROR) {
+            return;
+        }
+        if (record.getContinuation() == 0) {
+            heavyHitters.error(record.getClientId());
+        } else if (record.getExceptionType() != null) {
+            // 异常类型在续行中识别出
+            heavyHitters.exception(record.getExceptionType());
+        }
+    }
+
+    @Override
+    public void onFileComplete(String clientId, String fileName) {
+        heavyHitters.upload(clientId);
+    }
+}
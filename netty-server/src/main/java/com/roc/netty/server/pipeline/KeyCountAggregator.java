@@ -0,0 +1,37 @@
+package com.roc.netty.server.pipeline;
+
+import com.roc.netty.server.config.PipelineConfig;
+
+import java.util.Map;
+
+/**
+ * 按时间窗口统计某个key出现次数的聚合，子类只需给出每条记录的key
+ */
+public abstract class KeyCountAggregator implements LogAggregator {
+
+    private final WindowedCounter counter;
+
+    protected KeyCountAggregator(PipelineConfig pipelineConfig) {
+        this.counter = new WindowedCounter(pipelineConfig.getBucketSeconds() * 1000L, pipelineConfig.getMaxBuckets());
+    }
+
+    /**
+     * 记录的key，返回null表示该记录不计数
+     */
+    protected abstract String key(LogRecord record);
+
+    @Override
+    public void add(LogRecord record) {
+        String key = key(record);
+        if (key != null) {
+            counter.increment(record.getClientId(), record.getTimestamp(), key);
+        }
+    }
+
+    @Override
+    public Map<String, Object> query(String clientId, long from, long to, int top) {
+        Map<String, Object> result = counter.query(clientId, from, to, top);
+        result.put("evictedBuckets", counter.getEvictedBuckets());
+        return result;
+    }
+}
@@ -0,0 +1,27 @@
+package com.roc.netty.server.pipeline;
+
+import com.roc.netty.server.config.PipelineConfig;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按级别统计每个时间窗口的行数，如每分钟ERROR数
+ */
+@Order(100)
+@Component
+public class LevelCountAggregator extends KeyCountAggregator {
+
+    public LevelCountAggregator(PipelineConfig pipelineConfig) {
+        super(pipelineConfig);
+    }
+
+    @Override
+    public String getName() {
+        return "levels";
+    }
+
+    @Override
+    protected String key(LogRecord record) {
+        return record.getContinuation() == 0 ? record.getLevelName() : null;
+    }
+}
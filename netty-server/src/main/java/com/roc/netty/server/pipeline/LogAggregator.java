@@ -0,0 +1,25 @@
+package com.roc.netty.server.pipeline;
+
+import java.util.Map;
+
+/**
+ * 管道聚合阶段，在内存中增量维护按时间窗口的聚合结果，查询时直接返回
+ * 注册方式和线程约定同 {@link LogFilter}，查询可能与add并发
+ */
+public interface LogAggregator {
+
+    /**
+     * 聚合名称，作为查询路径
+     */
+    String getName();
+
+    void add(LogRecord record);
+
+    /**
+     * 查询时间范围 [from, to) 内的聚合结果
+     *
+     * @param clientId 只查询该客户端，为null时合并所有客户端
+     * @param top      返回计数最多的key个数
+     */
+    Map<String, Object> query(String clientId, long from, long to, int top);
+}
@@ -0,0 +1,10 @@
+package com.roc.netty.server.pipeline;
+
+/**
+ * 管道过滤阶段，被过滤的完整行连同其续行不再进入后续阶段
+ * 以Spring Bean形式注册，按 @Order 顺序执行；同一文件的行在同一线程中按顺序回调，不同文件之间可能并发
+ */
+public interface LogFilter {
+
+    boolean accept(LogRecord record);
+}
@@ -0,0 +1,119 @@
+package com.roc.netty.server.pipeline;
+
+import com.roc.netty.server.ingest.LogLineParser;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 在管道中流动的一行日志，每个上传文件一个实例，逐行复用
+ * 续行（如异常堆栈）沿用所属完整行的时间、级别和logger。
+ * 行数据所在数组在回调返回后可能被复用，需要保留时应复制。
+ */
+@Getter
+public class LogRecord {
+
+    private final String clientId;
+    private final String fileName;
+
+    private byte[] line;
+    private int offset;
+    private int length;
+
+    private long timestamp;
+    private byte level;
+    private int messageStart;
+    // 完整行在文件中的序号（从1开始），续行取所属完整行的序号
+    private long lineNumber;
+    // 0 表示完整行，n 表示所属完整行之后的第n个续行
+    private int continuation;
+
+    // 由转换阶段填写：续行中的异常类型
+    @Setter
+    private String exceptionType;
+
+    // logger复制保存，续行时原数组可能已被复用
+    @Getter(AccessLevel.NONE)
+    private byte[] loggerBytes = new byte[64];
+    @Getter(AccessLevel.NONE)
+    private int loggerLength;
+    @Getter(AccessLevel.NONE)
+    private String logger;
+
+    LogRecord(String clientId, String fileName) {
+        this.clientId = clientId;
+        this.fileName = fileName;
+    }
+
+    /**
+     * 设置为一条完整行
+     */
+    void parsed(byte[] line, int offset, int length, LogLineParser parser) {
+        this.line = line;
+        this.offset = offset;
+        this.length = length;
+        this.timestamp = parser.getTimestamp();
+        this.level = parser.getLevel();
+        this.messageStart = parser.getMessageStart();
+        this.lineNumber++;
+        this.continuation = 0;
+        this.exceptionType = null;
+        loggerLength = parser.getLoggerEnd() - parser.getLoggerStart();
+        if (loggerBytes.length < loggerLength) {
+            loggerBytes = new byte[loggerLength];
+        }
+        System.arraycopy(line, parser.getLoggerStart(), loggerBytes, 0, loggerLength);
+        logger = null;
+    }
+
+    /**
+     * 设置为上一条完整行的续行
+     */
+    void continued(byte[] line, int offset, int length) {
+        this.line = line;
+        this.offset = offset;
+        this.length = length;
+        this.messageStart = offset;
+        this.continuation++;
+        this.exceptionType = null;
+    }
+
+    /**
+     * 是否有过完整行，文件开头的续行没有所属行
+     */
+    boolean hasParent() {
+        return lineNumber > 0;
+    }
+
+    public String getLevelName() {
+        return LogLineParser.LEVEL_NAMES[level];
+    }
+
+    public String getLogger() {
+        if (logger == null) {
+            logger = new String(loggerBytes, 0, loggerLength, StandardCharsets.UTF_8);
+        }
+        return logger;
+    }
+
+    public boolean loggerStartsWith(byte[] prefix) {
+        if (loggerLength < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (loggerBytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 消息部分，续行为整行
+     */
+    public String getMessage() {
+        return new String(line, messageStart, offset + length - messageStart, StandardCharsets.UTF_8);
+    }
+}
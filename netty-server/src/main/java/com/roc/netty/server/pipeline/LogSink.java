@@ -0,0 +1,16 @@
+package com.roc.netty.server.pipeline;
+
+/**
+ * 管道输出阶段，接收通过过滤并完成转换的记录
+ * 注册方式和线程约定同 {@link LogFilter}
+ */
+public interface LogSink {
+
+    void accept(LogRecord record);
+
+    /**
+     * 一个文件的所有行已处理完毕
+     */
+    default void onFileComplete(String clientId, String fileName) {
+    }
+}
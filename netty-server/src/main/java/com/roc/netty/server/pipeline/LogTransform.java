@@ -0,0 +1,10 @@
+package com.roc.netty.server.pipeline;
+
+/**
+ * 管道转换阶段，从行中提取字段写回记录，供聚合和输出阶段使用
+ * 注册方式和线程约定同 {@link LogFilter}
+ */
+public interface LogTransform {
+
+    void apply(LogRecord record);
+}
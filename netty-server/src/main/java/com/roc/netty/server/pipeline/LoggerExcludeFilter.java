@@ -0,0 +1,33 @@
+package com.roc.netty.server.pipeline;
+
+import com.roc.netty.server.config.PipelineConfig;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 过滤配置中排除的logger前缀
+ */
+@Order(100)
+@Component
+public class LoggerExcludeFilter implements LogFilter {
+
+    private final byte[][] prefixes;
+
+    public LoggerExcludeFilter(PipelineConfig pipelineConfig) {
+        this.prefixes = pipelineConfig.getExcludeLoggers().stream()
+                .map(prefix -> prefix.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+    }
+
+    @Override
+    public boolean accept(LogRecord record) {
+        for (byte[] prefix : prefixes) {
+            if (record.loggerStartsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,169 @@
+package com.roc.netty.server.pipeline;
+
+import com.roc.netty.server.config.PipelineConfig;
+import com.roc.netty.server.ingest.IngestListener;
+import com.roc.netty.server.ingest.LogLineParser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 上传日志的流式处理管道：过滤 → 转换 → 聚合 → 输出
+ * 上传数据解压切行后逐行经过各阶段，聚合结果在内存中增量维护，查询时不再重新读取文件。
+ * 各阶段以Spring Bean形式注册，同类阶段按 @Order 顺序执行。
+ */
+@Slf4j
+@Component
+public class ProcessingPipeline implements IngestListener {
+
+    private static final IngestListener DISCARD = (clientId, line, offset, length) -> {
+    };
+
+    private final PipelineConfig pipelineConfig;
+    private final List<LogFilter> filters;
+    private final List<LogTransform> transforms;
+    private final List<LogAggregator> aggregators;
+    private final List<LogSink> sinks;
+
+    // 统计
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder orphanLines = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder[] filtered;
+
+    public ProcessingPipeline(PipelineConfig pipelineConfig,
+                              ObjectProvider<LogFilter> filters,
+                              ObjectProvider<LogTransform> transforms,
+                              ObjectProvider<LogAggregator> aggregators,
+                              ObjectProvider<LogSink> sinks) {
+        this.pipelineConfig = pipelineConfig;
+        this.filters = filters.orderedStream().collect(Collectors.toList());
+        this.transforms = transforms.orderedStream().collect(Collectors.toList());
+        this.aggregators = aggregators.orderedStream().collect(Collectors.toList());
+        this.sinks = sinks.orderedStream().collect(Collectors.toList());
+        this.filtered = new LongAdder[this.filters.size()];
+        for (int i = 0; i < filtered.length; i++) {
+            filtered[i] = new LongAdder();
+        }
+        log.info("Processing pipeline - filters: {}, transforms: {}, aggregators: {}, sinks: {}",
+                names(this.filters), names(this.transforms), names(this.aggregators), names(this.sinks));
+    }
+
+    /**
+     * 续行要沿用所属完整行的字段，必须通过 {@link #forFile} 按文件消费
+     */
+    @Override
+    public void onLine(String clientId, byte[] line, int offset, int length) {
+        throw new IllegalStateException("Pipeline lines must be fed through forFile");
+    }
+
+    @Override
+    public IngestListener forFile(String clientId, String fileName) {
+        if (!pipelineConfig.isEnabled()) {
+            return DISCARD;
+        }
+        return new FileRun(clientId, fileName);
+    }
+
+    public LogAggregator getAggregator(String name) {
+        for (LogAggregator aggregator : aggregators) {
+            if (aggregator.getName().equals(name)) {
+                return aggregator;
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> filterStats = new LinkedHashMap<>();
+        for (int i = 0; i < filters.size(); i++) {
+            filterStats.put(filters.get(i).getClass().getSimpleName(), filtered[i].sum());
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", pipelineConfig.isEnabled());
+        stats.put("files", files.sum());
+        stats.put("lines", lines.sum());
+        stats.put("orphanLines", orphanLines.sum());
+        stats.put("records", records.sum());
+        stats.put("filtered", filterStats);
+        stats.put("transforms", names(transforms));
+        stats.put("aggregators", aggregators.stream().map(LogAggregator::getName).collect(Collectors.toList()));
+        stats.put("sinks", names(sinks));
+        return stats;
+    }
+
+    private static List<String> names(List<?> stages) {
+        return stages.stream().map(stage -> stage.getClass().getSimpleName()).collect(Collectors.toList());
+    }
+
+    /**
+     * 一个上传文件的处理状态，同一文件的行在同一线程中按顺序回调
+     */
+    private class FileRun implements IngestListener {
+
+        private final LogLineParser parser = new LogLineParser();
+        private final LogRecord record;
+        // 所属完整行被过滤时，其续行一并丢弃
+        private boolean skipping;
+
+        FileRun(String clientId, String fileName) {
+            this.record = new LogRecord(clientId, fileName);
+        }
+
+        @Override
+        public void onLine(String clientId, byte[] line, int offset, int length) {
+            lines.increment();
+            if (parser.parse(line, offset, length)) {
+                record.parsed(line, offset, length, parser);
+                skipping = !accept();
+                if (skipping) {
+                    return;
+                }
+            } else {
+                if (!record.hasParent()) {
+                    orphanLines.increment();
+                    return;
+                }
+                if (skipping) {
+                    return;
+                }
+                record.continued(line, offset, length);
+            }
+            records.increment();
+            for (LogTransform transform : transforms) {
+                transform.apply(record);
+            }
+            for (LogAggregator aggregator : aggregators) {
+                aggregator.add(record);
+            }
+            for (LogSink sink : sinks) {
+                sink.accept(record);
+            }
+        }
+
+        @Override
+        public void onFileComplete(String clientId, String fileName) {
+            files.increment();
+            for (LogSink sink : sinks) {
+                sink.onFileComplete(clientId, fileName);
+            }
+        }
+
+        private boolean accept() {
+            for (int i = 0; i < filters.size(); i++) {
+                if (!filters.get(i).accept(record)) {
+                    filtered[i].increment();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.roc.netty.server.pipeline;
+
+import com.roc.netty.server.config.PipelineConfig;
+import com.roc.netty.server.ingest.LogLineParser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 保留每个客户端最近的ERROR行及其异常类型
+ */
+@Order(100)
+@Component
+@RequiredArgsConstructor
+public class RecentErrorsSink implements LogSink {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+
+    private final PipelineConfig pipelineConfig;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<String, Deque<ErrorEntry>> clients = new ConcurrentHashMap<>();
+
+    @Override
+    public void accept(LogRecord record) {
+        if (record.getLevel() != LogLineParser.ERROR) {
+            return;
+        }
+        Deque<ErrorEntry> errors = clients.computeIfAbsent(record.getClientId(), id -> new ArrayDeque<>());
+        synchronized (errors) {
+            if (record.getContinuation() == 0) {
+                if (errors.size() >= pipelineConfig.getRecentErrors()) {
+                    errors.pollFirst();
+                }
+                errors.addLast(new ErrorEntry(record));
+                return;
+            }
+            if (record.getExceptionType() != null) {
+                // 异常类型在续行中，补到同一文件同一行的记录上
+                for (ErrorEntry entry : (Iterable<ErrorEntry>) errors::descendingIterator) {
+                    if (entry.lineNumber == record.getLineNumber() && entry.fileName.equals(record.getFileName())) {
+                        entry.exceptionType = record.getExceptionType();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 最近的ERROR行，新的在前
+     */
+    public List<Map<String, Object>> query(String clientId, int limit) {
+        Deque<ErrorEntry> errors = clients.get(clientId);
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (errors == null) {
+            return result;
+        }
+        synchronized (errors) {
+            for (ErrorEntry entry : (Iterable<ErrorEntry>) errors::descendingIterator) {
+                if (result.size() == limit) {
+                    break;
+                }
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("time", TIME_FORMAT.format(Instant.ofEpochMilli(entry.timestamp).atZone(zone)));
+                item.put("logger", entry.logger);
+                item.put("message", entry.message);
+                item.put("exceptionType", entry.exceptionType);
+                item.put("file", entry.fileName);
+                item.put("line", entry.lineNumber);
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static class ErrorEntry {
+        final long timestamp;
+        final String logger;
+        final String message;
+        final String fileName;
+        final long lineNumber;
+        String exceptionType;
+
+        ErrorEntry(LogRecord record) {
+            this.timestamp = record.getTimestamp();
+            this.logger = record.getLogger();
+            String text = record.getMessage();
+            this.message = text.length() > MAX_MESSAGE_LENGTH ? text.substring(0, MAX_MESSAGE_LENGTH) : text;
+            this.fileName = record.getFileName();
+            this.lineNumber = record.getLineNumber();
+        }
+    }
+}
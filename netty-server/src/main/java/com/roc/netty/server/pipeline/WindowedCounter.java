@@ -0,0 +1,143 @@
+package com.roc.netty.server.pipeline;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按客户端、时间窗口、key 增量计数
+ * 窗口按日志时间划分（补传的旧日志计入其所属窗口），每个客户端最多保留 maxBuckets 个窗口，超过后丢弃最早的窗口
+ */
+public class WindowedCounter {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final long bucketMillis;
+    private final int maxBuckets;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<String, ClientBuckets> clients = new ConcurrentHashMap<>();
+    private final LongAdder evictedBuckets = new LongAdder();
+
+    public WindowedCounter(long bucketMillis, int maxBuckets) {
+        this.bucketMillis = bucketMillis;
+        this.maxBuckets = maxBuckets;
+    }
+
+    public void increment(String clientId, long timestamp, String key) {
+        clients.computeIfAbsent(clientId, id -> new ClientBuckets()).increment(timestamp - Math.floorMod(timestamp, bucketMillis), key);
+    }
+
+    public long getEvictedBuckets() {
+        return evictedBuckets.sum();
+    }
+
+    /**
+     * 查询与 [from, to) 相交的窗口，返回各窗口的计数和整个范围内计数最多的key
+     */
+    public Map<String, Object> query(String clientId, long from, long to, int top) {
+        // 窗口起始时间 -> key -> 计数
+        NavigableMap<Long, Map<String, Long>> merged = new TreeMap<>();
+        if (clientId != null) {
+            ClientBuckets buckets = clients.get(clientId);
+            if (buckets != null) {
+                buckets.copyTo(merged, from - bucketMillis + 1, to);
+            }
+        } else {
+            for (ClientBuckets buckets : clients.values()) {
+                buckets.copyTo(merged, from - bucketMillis + 1, to);
+            }
+        }
+
+        Map<String, Long> totals = new HashMap<>();
+        long total = 0;
+        List<Map<String, Object>> windows = new ArrayList<>(merged.size());
+        for (Map.Entry<Long, Map<String, Long>> bucket : merged.entrySet()) {
+            long bucketTotal = 0;
+            for (Map.Entry<String, Long> count : bucket.getValue().entrySet()) {
+                totals.merge(count.getKey(), count.getValue(), Long::sum);
+                bucketTotal += count.getValue();
+            }
+            total += bucketTotal;
+            Map<String, Object> window = new LinkedHashMap<>();
+            window.put("start", TIME_FORMAT.format(Instant.ofEpochMilli(bucket.getKey()).atZone(zone)));
+            window.put("total", bucketTotal);
+            window.put("counts", bucket.getValue());
+            windows.add(window);
+        }
+
+        List<Map<String, Object>> topKeys = new ArrayList<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(top)
+                .forEach(entry -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("key", entry.getKey());
+                    item.put("count", entry.getValue());
+                    topKeys.add(item);
+                });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("clientId", clientId);
+        result.put("bucketSeconds", bucketMillis / 1000);
+        result.put("total", total);
+        result.put("distinctKeys", totals.size());
+        result.put("top", topKeys);
+        result.put("windows", windows);
+        return result;
+    }
+
+    /**
+     * 一个客户端的窗口，写入和查询都加锁；同一客户端并发上传很少，锁基本无竞争
+     */
+    private class ClientBuckets {
+
+        private final TreeMap<Long, Map<String, long[]>> buckets = new TreeMap<>();
+        // 日志时间基本有序，缓存最近的窗口避免每行查找TreeMap
+        private long lastStart = Long.MIN_VALUE;
+        private Map<String, long[]> lastBucket;
+
+        synchronized void increment(long bucketStart, String key) {
+            if (bucketStart != lastStart || lastBucket == null) {
+                lastBucket = buckets.get(bucketStart);
+                if (lastBucket == null) {
+                    if (buckets.size() >= maxBuckets) {
+                        if (bucketStart < buckets.firstKey()) {
+                            // 比保留的所有窗口都早，直接丢弃
+                            evictedBuckets.increment();
+                            return;
+                        }
+                        buckets.pollFirstEntry();
+                        evictedBuckets.increment();
+                    }
+                    lastBucket = new HashMap<>();
+                    buckets.put(bucketStart, lastBucket);
+                }
+                lastStart = bucketStart;
+            }
+            long[] count = lastBucket.get(key);
+            if (count == null) {
+                lastBucket.put(key, new long[]{1});
+            } else {
+                count[0]++;
+            }
+        }
+
+        synchronized void copyTo(NavigableMap<Long, Map<String, Long>> target, long from, long to) {
+            for (Map.Entry<Long, Map<String, long[]>> bucket : buckets.subMap(from, true, to, false).entrySet()) {
+                Map<String, Long> counts = target.computeIfAbsent(bucket.getKey(), start -> new TreeMap<>());
+                for (Map.Entry<String, long[]> count : bucket.getValue().entrySet()) {
+                    counts.merge(count.getKey(), count.getValue()[0], Long::sum);
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.roc.netty.server.protocol;
 
+import com.roc.netty.server.constant.Constants;
 import io.netty.util.CharsetUtil;
 import lombok.Data;
 
@@ -10,6 +11,11 @@ import lombok.Data;
  * | Length | Type | Content |
  * | 4字节  | 1字节 | N字节   |
  * +--------+------+---------+
+ * 类型最高位为1时带扩展头：
+ * +--------+------+-------+-------------+-------------------+---------+
+ * | Length | Type | Flags | DictVersion | TraceId + SpanId  | Content |
+ * | 4字节  | 1字节 | 1字节  | 2字节(可选)   | 8字节 + 8字节(可选) | N字节   |
+ * +--------+------+-------+-------------+-------------------+---------+
  */
 @Data
 public class MessageProtocol {
@@ -26,10 +32,62 @@ public class MessageProtocol {
      * 消息id
      */
     private long msgId;
+    /**
+     * 帧标志，非0时编码扩展头
+     */
+    private byte flags;
+    /**
+     * 压缩字典版本，仅在带字典压缩标志时编码
+     */
+    private short dictVersion;
+    /**
+     * 追踪ID，仅在带追踪标志时编码
+     */
+    private long traceId;
+    /**
+     * 发送方的跨度ID，接收方作为父跨度；仅在带追踪标志时编码
+     */
+    private long spanId;
     /**
      * 消息内容
      */
     private byte[] content;
+    /**
+     * 解码完成的时间(System.nanoTime)，只在本进程内统计延迟使用，不编码
+     */
+    private long receivedNanos;
+
+    /**
+     * 扩展头长度（标志 + 可选的字典版本 + 可选的追踪ID与跨度ID），无扩展头时为0
+     */
+    public int extensionLength() {
+        if (flags == 0) {
+            return 0;
+        }
+        int length = 1;
+        if ((flags & Constants.FLAG_DICT_COMPRESSED) != 0) {
+            length += 2;
+        }
+        if ((flags & Constants.FLAG_TRACED) != 0) {
+            length += 16;
+        }
+        return length;
+    }
+
+    public boolean isTraced() {
+        return (flags & Constants.FLAG_TRACED) != 0;
+    }
+
+    /**
+     * 带上追踪上下文，并按扩展头的变化调整消息长度；须在设置长度之后调用
+     */
+    public void setTrace(long traceId, long spanId) {
+        int before = extensionLength();
+        this.flags |= Constants.FLAG_TRACED;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.length += extensionLength() - before;
+    }
 
 
     /**
@@ -0,0 +1,355 @@
+package com.roc.netty.server.search;
+
+import com.roc.netty.server.config.SearchIndexConfig;
+import com.roc.netty.server.logstore.LogStore;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 一个客户端的关键词索引：一个写入中的内存段 + 按位置排列的若干冻结内存段和磁盘段
+ * 追加由日志存储在分区锁内回调，行位置递增；冻结段写盘、合并和删除只在索引线程中执行，
+ * 完成后整体替换段列表，查询读取替换前的列表不受影响。
+ */
+@Slf4j
+class ClientIndex {
+
+    @Getter
+    private final String clientId;
+    private final Path directory;
+    private final SearchIndexConfig config;
+    private final Tokenizer tokenizer;
+    private final Consumer<String> addTerm = term -> this.active.add(term);
+
+    // 按位置排序，冻结内存段总在磁盘段之后
+    private volatile List<IndexSegment> segments = Collections.emptyList();
+    private MemorySegment active = new MemorySegment();
+    // 已索引的最后一行的位置
+    @Getter
+    private volatile long indexedPosition = -1;
+
+    ClientIndex(String clientId, Path directory, SearchIndexConfig config) {
+        this.clientId = clientId;
+        this.directory = directory;
+        this.config = config;
+        this.tokenizer = new Tokenizer(config);
+    }
+
+    /**
+     * 加载目录中的磁盘段，删除未完成的临时文件和已被合并段覆盖的旧段（合并后异常退出时残留）
+     */
+    static ClientIndex load(String clientId, Path directory, SearchIndexConfig config) throws IOException {
+        ClientIndex index = new ClientIndex(clientId, directory, config);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.collect(Collectors.toList());
+        }
+        List<DiskSegment> loaded = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(SegmentWriter.TEMP_SUFFIX)) {
+                Files.deleteIfExists(file);
+            } else if (name.endsWith(SegmentWriter.SUFFIX)) {
+                try {
+                    loaded.add(DiskSegment.open(file));
+                } catch (IOException e) {
+                    log.warn("Dropping unreadable index segment {}: {}", file, e.getMessage());
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        loaded.sort(Comparator.comparingLong(DiskSegment::minPosition)
+                .thenComparing(Comparator.comparingLong(DiskSegment::maxPosition).reversed()));
+        List<IndexSegment> kept = new ArrayList<>();
+        long covered = -1;
+        for (DiskSegment segment : loaded) {
+            if (segment.maxPosition() <= covered) {
+                Files.deleteIfExists(segment.getFile());
+                continue;
+            }
+            kept.add(segment);
+            covered = segment.maxPosition();
+        }
+        index.segments = Collections.unmodifiableList(kept);
+        index.indexedPosition = covered;
+        return index;
+    }
+
+    /**
+     * 索引一行，内存段达到大小上限时冻结并返回，由调用方安排写盘
+     */
+    synchronized MemorySegment add(long position, byte[] line, int offset, int length) {
+        if (position <= indexedPosition) {
+            // 回放与已有段重叠的部分
+            return null;
+        }
+        active.startLine(position);
+        tokenizer.tokenizeLine(line, offset, length, addTerm);
+        indexedPosition = position;
+        return active.memoryBytes() >= config.getBufferBytes() ? freeze() : null;
+    }
+
+    /**
+     * 内存段超过停留时间（或force）时冻结并返回，没有需要写盘的数据时返回null
+     */
+    synchronized MemorySegment freezeIfDue(boolean force) {
+        if (active.isEmpty()) {
+            return null;
+        }
+        if (force || System.currentTimeMillis() - active.createdMillis() >= config.getFlushIntervalSeconds() * 1000L) {
+            return freeze();
+        }
+        return null;
+    }
+
+    /**
+     * 冻结的内存段写成磁盘段并替换，只在索引线程中调用
+     */
+    void write(MemorySegment frozen) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(fileName(frozen.minPosition(), frozen.maxPosition()));
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            frozen.writeTo(writer);
+            writer.finish(frozen.lineCount(), frozen.minPosition(), frozen.maxPosition());
+        }
+        replace(Collections.singletonList(frozen), DiskSegment.open(file));
+    }
+
+    /**
+     * 选出待合并的相邻磁盘段：磁盘段数达到mergeFactor时，取连续mergeFactor个总大小最小且不超过上限的段
+     */
+    List<DiskSegment> selectMerge() {
+        List<DiskSegment> disk = new ArrayList<>();
+        // 只合并开头连续的磁盘段，保证合并后的段与其他段位置范围不重叠
+        for (IndexSegment segment : segments) {
+            if (!(segment instanceof DiskSegment)) {
+                break;
+            }
+            disk.add((DiskSegment) segment);
+        }
+        int factor = config.getMergeFactor();
+        int best = -1;
+        long bestSize = Long.MAX_VALUE;
+        for (int i = 0; i + factor <= disk.size(); i++) {
+            long size = 0;
+            for (int j = i; j < i + factor; j++) {
+                size += disk.get(j).getFileSize();
+            }
+            if (size < bestSize && size <= config.getMaxSegmentBytes()) {
+                best = i;
+                bestSize = size;
+            }
+        }
+        return best < 0 ? null : new ArrayList<>(disk.subList(best, best + factor));
+    }
+
+    /**
+     * 合并相邻磁盘段：按词多路归并词典，同一个词的倒排列表按段顺序拼接，只在索引线程中调用
+     */
+    void merge(List<DiskSegment> group) throws IOException {
+        DiskSegment first = group.get(0);
+        DiskSegment last = group.get(group.size() - 1);
+        Path file = directory.resolve(fileName(first.minPosition(), last.maxPosition()));
+        DiskSegment.TermCursor[] cursors = new DiskSegment.TermCursor[group.size()];
+        String[] heads = new String[group.size()];
+        long lineCount = 0;
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = group.get(i).cursor();
+            heads[i] = cursors[i].next() ? cursors[i].term() : null;
+            lineCount += group.get(i).lineCount();
+        }
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            while (true) {
+                String term = null;
+                for (String head : heads) {
+                    if (head != null && (term == null || head.compareTo(term) < 0)) {
+                        term = head;
+                    }
+                }
+                if (term == null) {
+                    break;
+                }
+                writer.startTerm(term);
+                for (int i = 0; i < cursors.length; i++) {
+                    if (!term.equals(heads[i])) {
+                        continue;
+                    }
+                    Postings postings = cursors[i].postings();
+                    while (postings.next()) {
+                        writer.add(postings.current());
+                    }
+                    heads[i] = cursors[i].next() ? cursors[i].term() : null;
+                }
+                writer.endTerm();
+            }
+            writer.finish(lineCount, first.minPosition(), last.maxPosition());
+        }
+        replace(new ArrayList<IndexSegment>(group), DiskSegment.open(file));
+        // 正在进行的查询仍持有映射，删除文件不影响其读取
+        for (DiskSegment segment : group) {
+            Files.deleteIfExists(segment.getFile());
+        }
+    }
+
+    /**
+     * 查询同时包含所有词的行
+     *
+     * @param after 只返回位置大于after的行，用于翻页
+     * @param out   按位置升序写入匹配的行位置
+     * @return 匹配的行数，最多out.length
+     */
+    int search(Collection<String> terms, long after, long[] out, SearchStats stats) {
+        List<IndexSegment> view;
+        synchronized (this) {
+            view = new ArrayList<>(segments);
+            if (!active.isEmpty()) {
+                view.add(active.copyOf(terms));
+            }
+        }
+        int found = 0;
+        for (IndexSegment segment : view) {
+            if (found == out.length) {
+                break;
+            }
+            if (segment.maxPosition() <= after) {
+                continue;
+            }
+            stats.segmentsSearched++;
+            Postings[] lists = new Postings[terms.size()];
+            int n = 0;
+            for (String term : terms) {
+                Postings postings = segment.postings(term);
+                if (postings == null) {
+                    break;
+                }
+                lists[n++] = postings;
+            }
+            if (n < lists.length) {
+                continue;
+            }
+            // 从最短的列表开始求交集
+            Arrays.sort(lists, Comparator.comparingInt(Postings::count));
+            found = intersect(lists, after + 1, out, found, stats);
+        }
+        return found;
+    }
+
+    /**
+     * 删除所指日志段都已被删除的磁盘段，只在索引线程中执行
+     *
+     * @param liveSegmentIds 日志存储中现有的段编号，升序
+     * @return 删除的磁盘段数
+     */
+    int dropUnreadable(long[] liveSegmentIds) throws IOException {
+        List<IndexSegment> unreadable = new ArrayList<>();
+        for (IndexSegment segment : segments) {
+            if (!(segment instanceof DiskSegment)) {
+                continue;
+            }
+            long first = LogStore.segmentId(segment.minPosition());
+            long last = LogStore.segmentId(segment.maxPosition());
+            int index = Arrays.binarySearch(liveSegmentIds, first);
+            int next = index >= 0 ? index : -index - 1;
+            if (next == liveSegmentIds.length || liveSegmentIds[next] > last) {
+                unreadable.add(segment);
+            }
+        }
+        if (unreadable.isEmpty()) {
+            return 0;
+        }
+        remove(unreadable);
+        // 正在进行的查询仍持有映射，删除文件不影响其读取
+        for (IndexSegment segment : unreadable) {
+            Files.deleteIfExists(((DiskSegment) segment).getFile());
+        }
+        return unreadable.size();
+    }
+
+    synchronized long memoryBytes() {
+        return active.memoryBytes();
+    }
+
+    List<IndexSegment> getSegments() {
+        return segments;
+    }
+
+    private static int intersect(Postings[] lists, long target, long[] out, int found, SearchStats stats) {
+        Postings lead = lists[0];
+        while (found < out.length) {
+            if (!lead.advance(target)) {
+                break;
+            }
+            long candidate = lead.current();
+            boolean matched = true;
+            for (int i = 1; i < lists.length; i++) {
+                if (!lists[i].advance(candidate)) {
+                    return found;
+                }
+                if (lists[i].current() > candidate) {
+                    target = lists[i].current();
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) {
+                out[found++] = candidate;
+                target = candidate + 1;
+            }
+            stats.candidates++;
+        }
+        return found;
+    }
+
+    private MemorySegment freeze() {
+        MemorySegment frozen = active;
+        active = new MemorySegment();
+        List<IndexSegment> updated = new ArrayList<>(segments);
+        updated.add(frozen);
+        segments = Collections.unmodifiableList(updated);
+        return frozen;
+    }
+
+    private synchronized void replace(List<IndexSegment> old, IndexSegment replacement) {
+        List<IndexSegment> updated = new ArrayList<>(segments.size());
+        boolean inserted = false;
+        for (IndexSegment segment : segments) {
+            if (!old.contains(segment)) {
+                updated.add(segment);
+            } else if (!inserted) {
+                updated.add(replacement);
+                inserted = true;
+            }
+        }
+        segments = Collections.unmodifiableList(updated);
+    }
+
+    private synchronized void remove(List<IndexSegment> old) {
+        List<IndexSegment> updated = new ArrayList<>(segments);
+        updated.removeAll(old);
+        segments = Collections.unmodifiableList(updated);
+    }
+
+    private static String fileName(long minPosition, long maxPosition) {
+        return String.format("%016x-%016x%s", minPosition, maxPosition, SegmentWriter.SUFFIX);
+    }
+
+    /**
+     * 一次查询的统计
+     */
+    static class SearchStats {
+        int segmentsSearched;
+        long candidates;
+    }
+}
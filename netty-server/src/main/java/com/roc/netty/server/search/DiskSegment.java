@@ -0,0 +1,185 @@
+package com.roc.netty.server.search;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 磁盘索引段，格式见 {@link SegmentWriter}
+ * 整个文件只读映射，内存中只保留稀疏索引；查词时二分稀疏索引，再在映射中顺序比较最多SPARSE_INTERVAL个词典项
+ */
+class DiskSegment implements IndexSegment {
+
+    @Getter
+    private final Path file;
+    @Getter
+    private final long fileSize;
+    private final MappedByteBuffer buffer;
+    private final int termCount;
+    private final long lineCount;
+    private final long minPosition;
+    private final long maxPosition;
+    private final int dictionaryOffset;
+    private final String[] sparseTerms;
+    private final int[] sparseDictionaryOffsets;
+    private final int[] sparsePostingsOffsets;
+
+    private DiskSegment(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.fileSize = buffer.capacity();
+        this.buffer = buffer;
+        if (fileSize < SegmentWriter.FOOTER_SIZE) {
+            throw new IOException("Index segment too short: " + file);
+        }
+        int footer = (int) fileSize - SegmentWriter.FOOTER_SIZE;
+        if (buffer.getInt(footer) != SegmentWriter.MAGIC) {
+            throw new IOException("Bad index segment magic: " + file);
+        }
+        this.termCount = buffer.getInt(footer + 4);
+        this.lineCount = buffer.getLong(footer + 8);
+        this.minPosition = buffer.getLong(footer + 16);
+        this.maxPosition = buffer.getLong(footer + 24);
+        this.dictionaryOffset = (int) buffer.getLong(footer + 32);
+        int sparseOffset = (int) buffer.getLong(footer + 40);
+        int sparseCount = buffer.getInt(footer + 48);
+
+        sparseTerms = new String[sparseCount];
+        sparseDictionaryOffsets = new int[sparseCount];
+        sparsePostingsOffsets = new int[sparseCount];
+        ByteBuffer sparse = buffer.duplicate();
+        ((Buffer) sparse).position(sparseOffset);
+        for (int i = 0; i < sparseCount; i++) {
+            byte[] term = new byte[(int) Postings.readVarLong(sparse)];
+            sparse.get(term);
+            sparseTerms[i] = new String(term, StandardCharsets.ISO_8859_1);
+            sparseDictionaryOffsets[i] = (int) Postings.readVarLong(sparse);
+            sparsePostingsOffsets[i] = (int) Postings.readVarLong(sparse);
+        }
+    }
+
+    static DiskSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index segment too large: " + file);
+            }
+            return new DiskSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public long minPosition() {
+        return minPosition;
+    }
+
+    @Override
+    public long maxPosition() {
+        return maxPosition;
+    }
+
+    @Override
+    public long lineCount() {
+        return lineCount;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    @Override
+    public Postings postings(String term) {
+        int slot = Arrays.binarySearch(sparseTerms, term);
+        if (slot < 0) {
+            slot = -slot - 2;
+            if (slot < 0) {
+                return null;
+            }
+        }
+        byte[] key = term.getBytes(StandardCharsets.ISO_8859_1);
+        TermCursor cursor = new TermCursor(slot);
+        for (int i = 0; i < SegmentWriter.SPARSE_INTERVAL && cursor.next(); i++) {
+            int cmp = cursor.compareTo(key);
+            if (cmp == 0) {
+                return cursor.postings();
+            }
+            if (cmp > 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从头顺序遍历词典，用于合并
+     */
+    TermCursor cursor() {
+        return new TermCursor(0);
+    }
+
+    /**
+     * 词典顺序遍历
+     */
+    class TermCursor {
+
+        private final ByteBuffer dictionary = buffer.duplicate();
+        private int remaining;
+        private byte[] term = new byte[64];
+        private int termLength;
+        private int count;
+        private int postingsOffset;
+        private int postingsLength;
+
+        TermCursor(int slot) {
+            if (sparseTerms.length == 0) {
+                return;
+            }
+            ((Buffer) dictionary).position(dictionaryOffset + sparseDictionaryOffsets[slot]);
+            this.remaining = termCount - slot * SegmentWriter.SPARSE_INTERVAL;
+            this.postingsOffset = sparsePostingsOffsets[slot];
+        }
+
+        boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            postingsOffset += postingsLength;
+            termLength = (int) Postings.readVarLong(dictionary);
+            if (term.length < termLength) {
+                term = new byte[termLength];
+            }
+            dictionary.get(term, 0, termLength);
+            count = (int) Postings.readVarLong(dictionary);
+            postingsLength = (int) Postings.readVarLong(dictionary);
+            remaining--;
+            return true;
+        }
+
+        String term() {
+            return new String(term, 0, termLength, StandardCharsets.ISO_8859_1);
+        }
+
+        int compareTo(byte[] key) {
+            int length = Math.min(termLength, key.length);
+            for (int i = 0; i < length; i++) {
+                int cmp = (term[i] & 0xFF) - (key[i] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return termLength - key.length;
+        }
+
+        Postings postings() {
+            ByteBuffer data = buffer.duplicate();
+            ((Buffer) data).position(postingsOffset);
+            return new Postings(data, count);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.roc.netty.server.search;
+
+/**
+ * 索引段：覆盖分区中一段连续位置的行，段之间位置范围不重叠
+ */
+interface IndexSegment {
+
+    long minPosition();
+
+    long maxPosition();
+
+    long lineCount();
+
+    /**
+     * 查询词的倒排列表，段中没有该词时返回null
+     */
+    Postings postings(String term);
+}
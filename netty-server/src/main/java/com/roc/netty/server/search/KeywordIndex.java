@@ -0,0 +1,269 @@
+package com.roc.netty.server.search;
+
+import com.roc.netty.server.config.SearchIndexConfig;
+import com.roc.netty.server.logstore.AppendListener;
+import com.roc.netty.server.logstore.LogStore;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 日志关键词倒排索引
+ * 订阅日志存储的追加，按客户端为每行分词，倒排列表记录行在日志存储中的位置（差值+变长整数编码）。
+ * 新数据先进入内存段，满后由索引线程写成不可变的磁盘段，磁盘段过多时合并相邻的段；
+ * 查询对各段的倒排列表求交集，再按位置从日志存储读取原始行。
+ * 重启时从磁盘段已覆盖的最后位置开始回放日志存储，补齐未写盘的内存段。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KeywordIndex implements AppendListener {
+
+    private static final long MAINTAIN_INTERVAL_SECONDS = 5;
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    private final SearchIndexConfig searchIndexConfig;
+    private final LogStore logStore;
+
+    private final Map<String, ClientIndex> indexes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!searchIndexConfig.isEnabled()) {
+            return;
+        }
+        if (!logStore.isEnabled()) {
+            log.warn("Keyword index disabled because log store is disabled");
+            return;
+        }
+        Path root = Paths.get(searchIndexConfig.getDirectory());
+        Files.createDirectories(root);
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                String clientId = dir.getFileName().toString();
+                indexes.put(clientId, ClientIndex.load(clientId, dir, searchIndexConfig));
+            }
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("keyword-index"));
+
+        long start = System.nanoTime();
+        long replayed = logStore.subscribe(this, clientId -> {
+            ClientIndex index = indexes.get(clientId);
+            return index != null ? index.getIndexedPosition() : -1;
+        });
+        log.info("Keyword index loaded - directory: {}, clients: {}, replayed lines: {}, took: {} ms",
+                root.toAbsolutePath(), indexes.size(), replayed, (System.nanoTime() - start) / 1_000_000);
+        executor.scheduleWithFixedDelay(this::maintain, MAINTAIN_INTERVAL_SECONDS, MAINTAIN_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (ClientIndex index : indexes.values()) {
+            MemorySegment frozen = index.freezeIfDue(true);
+            if (frozen != null) {
+                write(index, frozen);
+            }
+        }
+    }
+
+    @Override
+    public void onAppend(String clientId, long position, byte[] line, int offset, int length) {
+        ClientIndex index = indexes.computeIfAbsent(clientId, id ->
+                new ClientIndex(id, Paths.get(searchIndexConfig.getDirectory()).resolve(id), searchIndexConfig));
+        MemorySegment frozen = index.add(position, line, offset, length);
+        if (frozen != null) {
+            executor.execute(() -> write(index, frozen));
+        }
+    }
+
+    @Override
+    public void onSegmentsDropped(String clientId) {
+        ClientIndex index = indexes.get(clientId);
+        if (index != null) {
+            executor.execute(() -> dropUnreadable(index));
+        }
+    }
+
+    /**
+     * 查询同时包含所有关键词的行，按客户端、位置排序
+     *
+     * @param query    关键词，按与索引相同的规则分词
+     * @param clientId 只查询该客户端，为null时查询所有客户端
+     * @param cursor   上一页返回的nextCursor，第一页为null
+     * @param limit    返回的最大行数
+     */
+    public Map<String, Object> search(String query, String clientId, String cursor, int limit) throws IOException {
+        long start = System.nanoTime();
+        Set<String> terms = new LinkedHashSet<>();
+        new Tokenizer(searchIndexConfig).tokenizeQuery(query, terms::add);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("No searchable terms in query: " + query);
+        }
+        limit = Math.max(1, Math.min(limit, searchIndexConfig.getMaxResults()));
+
+        String cursorClient = null;
+        long cursorPosition = -1;
+        if (cursor != null && !cursor.isEmpty()) {
+            int separator = cursor.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            cursorClient = cursor.substring(0, separator);
+            cursorPosition = Long.parseLong(cursor.substring(separator + 1));
+        }
+
+        List<String> clients = new ArrayList<>();
+        if (clientId != null) {
+            clients.add(clientId);
+        } else {
+            clients.addAll(new TreeMap<>(indexes).keySet());
+        }
+
+        List<Map<String, Object>> hits = new ArrayList<>();
+        ClientIndex.SearchStats stats = new ClientIndex.SearchStats();
+        String nextCursor = null;
+        for (String client : clients) {
+            ClientIndex index = indexes.get(client);
+            if (index == null || (cursorClient != null && client.compareTo(cursorClient) < 0)) {
+                continue;
+            }
+            long after = client.equals(cursorClient) ? cursorPosition : -1;
+            long[] positions = new long[limit - hits.size()];
+            int found = index.search(terms, after, positions, stats);
+            List<byte[]> lines = logStore.readLines(client, positions, found);
+            for (int i = 0; i < found; i++) {
+                // 日志段已被删除的行不再返回
+                if (lines.get(i) == null) {
+                    continue;
+                }
+                Map<String, Object> hit = new LinkedHashMap<>();
+                hit.put("clientId", client);
+                hit.put("position", positions[i]);
+                hit.put("line", new String(lines.get(i), StandardCharsets.UTF_8));
+                hits.add(hit);
+            }
+            if (found == positions.length) {
+                nextCursor = client + ":" + positions[found - 1];
+                break;
+            }
+        }
+
+        long tookMicros = (System.nanoTime() - start) / 1000;
+        log.debug("Keyword search - query: {}, hits: {}, segments: {}, candidates: {}, took: {} us",
+                query, hits.size(), stats.segmentsSearched, stats.candidates, tookMicros);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("terms", terms);
+        result.put("hits", hits);
+        result.put("nextCursor", nextCursor);
+        result.put("segmentsSearched", stats.segmentsSearched);
+        result.put("tookMicros", tookMicros);
+        return result;
+    }
+
+    /**
+     * 各客户端的索引概况
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        for (ClientIndex index : indexes.values()) {
+            int diskSegments = 0;
+            long diskBytes = 0;
+            long lines = 0;
+            List<IndexSegment> segments = index.getSegments();
+            for (IndexSegment segment : segments) {
+                lines += segment.lineCount();
+                if (segment instanceof DiskSegment) {
+                    diskSegments++;
+                    diskBytes += ((DiskSegment) segment).getFileSize();
+                }
+            }
+            Map<String, Object> indexStats = new LinkedHashMap<>();
+            indexStats.put("diskSegments", diskSegments);
+            indexStats.put("frozenSegments", segments.size() - diskSegments);
+            indexStats.put("diskBytes", diskBytes);
+            indexStats.put("memoryBytes", index.memoryBytes());
+            indexStats.put("flushedLines", lines);
+            indexStats.put("indexedPosition", index.getIndexedPosition());
+            stats.put(index.getClientId(), indexStats);
+        }
+        return stats;
+    }
+
+    /**
+     * 定期把停留过久的内存段写盘，并合并磁盘段
+     */
+    private void maintain() {
+        for (ClientIndex index : indexes.values()) {
+            MemorySegment frozen = index.freezeIfDue(false);
+            if (frozen != null) {
+                write(index, frozen);
+            }
+            List<DiskSegment> group;
+            while ((group = index.selectMerge()) != null) {
+                long start = System.nanoTime();
+                try {
+                    index.merge(group);
+                } catch (IOException | RuntimeException e) {
+                    log.error("Failed to merge index segments of {}: {}", index.getClientId(), e.getMessage(), e);
+                    break;
+                }
+                log.info("Index segments merged - client: {}, segments: {}, took: {} ms",
+                        index.getClientId(), group.size(), (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * 日志段被保留清理删除后，删除只指向已删除段的索引段
+     */
+    private void dropUnreadable(ClientIndex index) {
+        try {
+            int dropped = index.dropUnreadable(logStore.segmentIds(index.getClientId()));
+            if (dropped > 0) {
+                log.info("Index segments dropped - client: {}, segments: {}", index.getClientId(), dropped);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to drop index segments of {}: {}", index.getClientId(), e.getMessage(), e);
+        }
+    }
+
+    private void write(ClientIndex index, MemorySegment frozen) {
+        long start = System.nanoTime();
+        try {
+            index.write(frozen);
+        } catch (IOException | RuntimeException e) {
+            // 冻结段保留在内存中继续可查，重启后从日志存储回放重建
+            log.error("Failed to write index segment of {}: {}", index.getClientId(), e.getMessage(), e);
+            return;
+        }
+        log.info("Index segment written - client: {}, lines: {}, terms: {}, took: {} ms",
+                index.getClientId(), frozen.lineCount(), frozen.termCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
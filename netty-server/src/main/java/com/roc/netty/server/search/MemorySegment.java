@@ -0,0 +1,163 @@
+package com.roc.netty.server.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存中的索引段，新追加的行先写入这里，达到大小或时间上限后冻结并写成磁盘段
+ * 写入由所属ClientIndex加锁调用；冻结后只读
+ */
+class MemorySegment implements IndexSegment {
+
+    // 每个词的对象、字符串和哈希表项的大致开销
+    private static final int TERM_OVERHEAD = 96;
+
+    private final Map<String, PostingsBuffer> terms = new HashMap<>();
+    private final long createdMillis = System.currentTimeMillis();
+    private long minPosition = -1;
+    private long maxPosition = -1;
+    private long lineCount;
+    private long memoryBytes;
+
+    /**
+     * 记录一行的开始，行的位置必须递增
+     */
+    void startLine(long position) {
+        if (minPosition < 0) {
+            minPosition = position;
+        }
+        maxPosition = position;
+        lineCount++;
+    }
+
+    /**
+     * 当前行包含term，同一行中重复的词只记录一次
+     */
+    void add(String term) {
+        PostingsBuffer postings = terms.get(term);
+        if (postings == null) {
+            postings = new PostingsBuffer();
+            terms.put(term, postings);
+            memoryBytes += TERM_OVERHEAD + term.length() * 2L;
+        }
+        memoryBytes += postings.add(maxPosition);
+    }
+
+    boolean isEmpty() {
+        return lineCount == 0;
+    }
+
+    long memoryBytes() {
+        return memoryBytes;
+    }
+
+    long createdMillis() {
+        return createdMillis;
+    }
+
+    int termCount() {
+        return terms.size();
+    }
+
+    @Override
+    public long minPosition() {
+        return minPosition;
+    }
+
+    @Override
+    public long maxPosition() {
+        return maxPosition;
+    }
+
+    @Override
+    public long lineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public Postings postings(String term) {
+        PostingsBuffer postings = terms.get(term);
+        return postings != null ? postings.iterator() : null;
+    }
+
+    /**
+     * 复制指定词的倒排列表，供查询在锁外读取仍在写入的段
+     */
+    MemorySegment copyOf(Collection<String> queryTerms) {
+        MemorySegment copy = new MemorySegment();
+        copy.minPosition = minPosition;
+        copy.maxPosition = maxPosition;
+        copy.lineCount = lineCount;
+        for (String term : queryTerms) {
+            PostingsBuffer postings = terms.get(term);
+            if (postings != null) {
+                copy.terms.put(term, postings.copy());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * 按词排序写入磁盘段
+     */
+    void writeTo(SegmentWriter writer) throws IOException {
+        List<String> sorted = new ArrayList<>(terms.keySet());
+        sorted.sort(null);
+        for (String term : sorted) {
+            Postings postings = terms.get(term).iterator();
+            writer.startTerm(term);
+            while (postings.next()) {
+                writer.add(postings.current());
+            }
+            writer.endTerm();
+        }
+    }
+
+    /**
+     * 一个词的倒排列表缓冲，编码与磁盘段相同
+     */
+    private static class PostingsBuffer {
+
+        private byte[] data = new byte[16];
+        private int length;
+        private int count;
+        private long last = -1;
+
+        /**
+         * @return 缓冲增长的字节数
+         */
+        int add(long position) {
+            if (position == last) {
+                return 0;
+            }
+            int grown = 0;
+            if (data.length - length < 10) {
+                grown = data.length;
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            length = Postings.writeVarLong(data, length, last < 0 ? position : position - last);
+            last = position;
+            count++;
+            return grown;
+        }
+
+        Postings iterator() {
+            return new Postings(ByteBuffer.wrap(data, 0, length), count);
+        }
+
+        PostingsBuffer copy() {
+            PostingsBuffer copy = new PostingsBuffer();
+            copy.data = Arrays.copyOf(data, length);
+            copy.length = length;
+            copy.count = count;
+            copy.last = last;
+            return copy;
+        }
+    }
+}
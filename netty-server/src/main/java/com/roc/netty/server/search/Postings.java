@@ -0,0 +1,77 @@
+package com.roc.netty.server.search;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 倒排列表迭代器，列表为递增的行位置，按差值+变长整数编码
+ */
+class Postings {
+
+    private final ByteBuffer data;
+    private final int count;
+    private int read;
+    private long current = -1;
+
+    /**
+     * @param data  从列表起始处开始的只读缓冲，position会被移动
+     * @param count 列表中的位置数
+     */
+    Postings(ByteBuffer data, int count) {
+        this.data = data;
+        this.count = count;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long current() {
+        return current;
+    }
+
+    boolean next() {
+        if (read == count) {
+            return false;
+        }
+        long delta = readVarLong(data);
+        current = read == 0 ? delta : current + delta;
+        read++;
+        return true;
+    }
+
+    /**
+     * 前进到第一个不小于target的位置，列表耗尽时返回false
+     */
+    boolean advance(long target) {
+        while (read == 0 || current < target) {
+            if (!next()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * 写入变长整数，返回写入后的位置；调用方保证数组剩余空间不少于10字节
+     */
+    static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,133 @@
+package com.roc.netty.server.search;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 磁盘索引段写入，文件格式：
+ * <pre>
+ * [倒排列表区] 各词的倒排列表依次存放
+ * [词典区]     按词排序：词长度, 词, 位置数, 倒排列表长度（变长整数）
+ * [稀疏索引]   每SPARSE_INTERVAL个词一条：词长度, 词, 词典项偏移, 倒排列表偏移
+ * [尾部]       固定长度，见 {@link #FOOTER_SIZE}
+ * </pre>
+ * 先写临时文件，完成后刷盘并原子重命名
+ */
+class SegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x4B574931;
+    // magic, termCount, lineCount, minPosition, maxPosition, dictionaryOffset, sparseOffset, sparseCount, 保留
+    static final int FOOTER_SIZE = 4 + 4 + 8 + 8 + 8 + 8 + 8 + 4 + 4;
+    static final int SPARSE_INTERVAL = 32;
+    static final String SUFFIX = ".kwi";
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path file;
+    private final Path tempFile;
+    private final FileOutputStream fileOut;
+    private final OutputStream out;
+    private final ByteArrayOutputStream dictionary = new ByteArrayOutputStream(64 * 1024);
+    private final ByteArrayOutputStream sparse = new ByteArrayOutputStream(4 * 1024);
+    private final byte[] varBuffer = new byte[10];
+
+    private long postingsBytes;
+    private int termCount;
+    private int sparseCount;
+    private boolean finished;
+
+    // 当前词
+    private byte[] term;
+    private long termStart;
+    private int termPostings;
+    private long last;
+
+    SegmentWriter(Path file) throws IOException {
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        this.fileOut = new FileOutputStream(tempFile.toFile());
+        this.out = new BufferedOutputStream(fileOut, 64 * 1024);
+    }
+
+    /**
+     * 开始写入一个词的倒排列表，词必须按升序写入
+     */
+    void startTerm(String term) {
+        this.term = term.getBytes(StandardCharsets.ISO_8859_1);
+        this.termStart = postingsBytes;
+        this.termPostings = 0;
+        this.last = -1;
+    }
+
+    /**
+     * 追加当前词的一个位置，位置必须递增
+     */
+    void add(long position) throws IOException {
+        int length = Postings.writeVarLong(varBuffer, 0, last < 0 ? position : position - last);
+        out.write(varBuffer, 0, length);
+        postingsBytes += length;
+        last = position;
+        termPostings++;
+    }
+
+    void endTerm() {
+        if (termCount % SPARSE_INTERVAL == 0) {
+            writeVar(sparse, term.length);
+            sparse.write(term, 0, term.length);
+            writeVar(sparse, dictionary.size());
+            writeVar(sparse, termStart);
+            sparseCount++;
+        }
+        writeVar(dictionary, term.length);
+        dictionary.write(term, 0, term.length);
+        writeVar(dictionary, termPostings);
+        writeVar(dictionary, postingsBytes - termStart);
+        termCount++;
+    }
+
+    long size() {
+        return postingsBytes + dictionary.size() + sparse.size() + FOOTER_SIZE;
+    }
+
+    /**
+     * 写入词典和尾部，刷盘后重命名为正式文件
+     */
+    Path finish(long lineCount, long minPosition, long maxPosition) throws IOException {
+        long dictionaryOffset = postingsBytes;
+        dictionary.writeTo(out);
+        long sparseOffset = dictionaryOffset + dictionary.size();
+        sparse.writeTo(out);
+
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        footer.putInt(MAGIC).putInt(termCount).putLong(lineCount).putLong(minPosition).putLong(maxPosition)
+                .putLong(dictionaryOffset).putLong(sparseOffset).putInt(sparseCount).putInt(0);
+        out.write(footer.array());
+        out.flush();
+        fileOut.getChannel().force(false);
+        out.close();
+        finished = true;
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            out.close();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void writeVar(ByteArrayOutputStream target, long value) {
+        int length = Postings.writeVarLong(varBuffer, 0, value);
+        target.write(varBuffer, 0, length);
+    }
+}
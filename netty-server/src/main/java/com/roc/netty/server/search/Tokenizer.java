@@ -0,0 +1,111 @@
+package com.roc.netty.server.search;
+
+import com.roc.netty.server.config.SearchIndexConfig;
+import com.roc.netty.server.ingest.LogTimestamps;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.function.Consumer;
+
+/**
+ * 日志行分词，直接在字节上处理
+ * 字母、数字、下划线和非ASCII字节组成单词，单词之间以 . - $ 相连的部分组成复合词，
+ * 如 java.lang.NullPointerException、trace id。复合词整体和其中的每个单词都作为索引词，
+ * 统一转小写。行首的时间戳由时间索引负责，不参与分词。
+ * 非线程安全，每个线程使用自己的实例。
+ */
+class Tokenizer {
+
+    private final int minLength;
+    private final int maxLength;
+    private final boolean indexNumbers;
+    private final LogTimestamps timestamps = new LogTimestamps(ZoneId.systemDefault());
+    private final byte[] scratch = new byte[256];
+
+    Tokenizer(SearchIndexConfig config) {
+        this.minLength = config.getMinTokenLength();
+        this.maxLength = config.getMaxTokenLength();
+        this.indexNumbers = config.isIndexNumbers();
+    }
+
+    /**
+     * 切分一行日志，同一个词在一行中可能回调多次
+     */
+    void tokenizeLine(byte[] line, int offset, int length, Consumer<String> consumer) {
+        int start = offset;
+        if (timestamps.parse(line, offset, length) >= 0) {
+            // 跳过 yyyy-MM-dd HH:mm:ss[.SSS]
+            start += length >= 23 && (line[offset + 19] == '.' || line[offset + 19] == ',') ? 23 : 19;
+        }
+        tokenize(line, start, offset + length, consumer);
+    }
+
+    /**
+     * 切分查询文本
+     */
+    void tokenizeQuery(String query, Consumer<String> consumer) {
+        byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+        tokenize(bytes, 0, bytes.length, consumer);
+    }
+
+    private void tokenize(byte[] data, int from, int end, Consumer<String> consumer) {
+        int i = from;
+        while (i < end) {
+            while (i < end && !isWord(data[i])) {
+                i++;
+            }
+            // 复合词：单词之间以连接符相连
+            int compoundStart = i;
+            int compoundEnd = i;
+            int words = 0;
+            while (i < end) {
+                int wordStart = i;
+                while (i < end && isWord(data[i])) {
+                    i++;
+                }
+                if (i == wordStart) {
+                    break;
+                }
+                emit(data, wordStart, i, consumer);
+                compoundEnd = i;
+                words++;
+                if (i + 1 < end && isJoiner(data[i]) && isWord(data[i + 1])) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            if (words > 1) {
+                emit(data, compoundStart, compoundEnd, consumer);
+            }
+        }
+    }
+
+    private void emit(byte[] data, int start, int end, Consumer<String> consumer) {
+        int length = end - start;
+        if (length < minLength || length > maxLength) {
+            return;
+        }
+        boolean numeric = true;
+        for (int i = 0; i < length; i++) {
+            byte b = data[start + i];
+            if (b < '0' || b > '9') {
+                numeric = false;
+            }
+            scratch[i] = b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b;
+        }
+        if (numeric && !indexNumbers) {
+            return;
+        }
+        // ISO_8859_1 一个字节对应一个字符，字符串顺序与无符号字节顺序一致
+        consumer.accept(new String(scratch, 0, length, StandardCharsets.ISO_8859_1));
+    }
+
+    private static boolean isWord(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b < 0;
+    }
+
+    private static boolean isJoiner(byte b) {
+        return b == '.' || b == '-' || b == '$';
+    }
+}
@@ -1,5 +1,6 @@
 package com.roc.netty.server.service;
 
+import com.roc.netty.server.logstore.LogStore;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelId;
 import io.netty.channel.group.ChannelGroup;
@@ -7,7 +8,9 @@ import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -15,12 +18,17 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 @Service
 public class ClientConnectionService {
+    // 声明和分配的标识都不可用时，上传归入该客户端
+    public static final String UNKNOWN_CLIENT_ID = "unknown";
+
     // 存储所有客户端连接
     private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
     // 存储客户端ID与Channel的映射关系
     private final Map<String, ChannelId> clientChannelMap = new ConcurrentHashMap<>();
     // 存储Channel与客户端ID的映射关系
     private final Map<ChannelId, String> channelClientMap = new ConcurrentHashMap<>();
+    // 网络状况变差的连接及原因
+    private final Map<ChannelId, String> degradedLinks = new ConcurrentHashMap<>();
 
     /**
      * 添加客户端连接
@@ -38,6 +46,7 @@ public class ClientConnectionService {
      */
     public void removeConnection(Channel channel) {
         if (channel != null) {
+            degradedLinks.remove(channel.id());
             String clientId = channelClientMap.remove(channel.id());
             if (clientId != null) {
                 clientChannelMap.remove(clientId);
@@ -57,6 +66,50 @@ public class ClientConnectionService {
         return null;
     }
 
+    /**
+     * 根据Channel获取客户端ID
+     */
+    public String getClientId(Channel channel) {
+        return channel != null ? channelClientMap.get(channel.id()) : null;
+    }
+
+    /**
+     * 上传所属的客户端：优先使用客户端声明的标识，否则使用连接建立时分配的标识
+     * 标识同时作为存储目录和分区名，只返回合法的标识
+     */
+    public String resolveClientId(Channel channel, Object declared) {
+        if (declared != null && LogStore.isValidClientId(declared.toString())) {
+            return declared.toString();
+        }
+        String assigned = getClientId(channel);
+        return LogStore.isValidClientId(assigned) ? assigned : UNKNOWN_CLIENT_ID;
+    }
+
+    /**
+     * 标记连接的网络状况变差，reason 为null时清除标记
+     */
+    public void setDegraded(Channel channel, String reason) {
+        if (reason == null) {
+            degradedLinks.remove(channel.id());
+        } else if (channelClientMap.containsKey(channel.id())) {
+            degradedLinks.put(channel.id(), reason);
+        }
+    }
+
+    /**
+     * 网络状况变差的客户端及原因
+     */
+    public Map<String, String> getDegradedLinks() {
+        Map<String, String> result = new TreeMap<>();
+        for (Map.Entry<ChannelId, String> entry : degradedLinks.entrySet()) {
+            String clientId = channelClientMap.get(entry.getKey());
+            if (clientId != null) {
+                result.put(clientId, entry.getValue());
+            }
+        }
+        return result;
+    }
+
     /**
      * 获取所有连接的客户端ID
      */
@@ -64,6 +117,13 @@ public class ClientConnectionService {
         return clientChannelMap.keySet().toArray(new String[0]);
     }
 
+    /**
+     * 已登记客户端ID的连接
+     */
+    public Collection<Channel> getChannels() {
+        return channels;
+    }
+
     /**
      * 获取当前连接数
      */
@@ -0,0 +1,236 @@
+package com.roc.netty.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.server.config.ExtractConfig;
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.dto.ExtractRequest;
+import com.roc.netty.server.ingest.LogLineParser;
+import com.roc.netty.server.protocol.MessageProtocol;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 客户端过滤提取
+ * 把日期范围、级别和文本/正则条件下发给客户端，由客户端扫描本地日志文件，只传回匹配的行；
+ * 传输量与匹配行数成正比，而不是与文件大小成正比。各客户端的结果在服务端按时间合并。
+ * 客户端发送受连接写缓冲水位限制，服务端收到的行数达到上限后取消仍在扫描的客户端。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExtractService {
+
+    private static final int DATA_HEADER_LENGTH = 4 + 4 + 8;
+
+    private final ObjectMapper objectMapper;
+    private final ClientConnectionService clientConnectionService;
+    private final ExtractConfig extractConfig;
+
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, Extraction> extractions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("extract-timer"));
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * 向目标客户端下发提取请求，返回的future在所有客户端结束或超时后完成
+     */
+    public CompletableFuture<Map<String, Object>> extract(ExtractRequest request) throws IOException {
+        Map<String, Object> frame = validate(request);
+        int maxLines = Math.min(request.getMaxLines() != null ? request.getMaxLines() : extractConfig.getMaxLines(),
+                extractConfig.getMaxLines());
+        int timeoutSeconds = Math.min(request.getTimeoutSeconds() != null
+                ? request.getTimeoutSeconds() : extractConfig.getTimeoutSeconds(), extractConfig.getMaxTimeoutSeconds());
+
+        List<String> targets = request.getClients() == null || request.getClients().isEmpty()
+                ? Arrays.asList(clientConnectionService.getAllClientIds()) : request.getClients();
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No connected clients");
+        }
+
+        int id = nextId.incrementAndGet();
+        Extraction extraction = new Extraction(id, maxLines, targets);
+        extractions.put(id, extraction);
+        extraction.getResult().whenComplete((result, e) -> extractions.remove(id));
+
+        frame.put("extractId", id);
+        // 客户端各自最多返回上限行数，合并后再截断
+        frame.put("maxLines", maxLines);
+        byte[] content = objectMapper.writeValueAsBytes(frame);
+        for (String connectionId : targets) {
+            Channel channel = clientConnectionService.getChannel(connectionId);
+            if (channel == null || !channel.isActive()) {
+                extraction.fail(connectionId, "not connected");
+                continue;
+            }
+            channel.writeAndFlush(message(Constants.EXTRACT_REQUEST, content)).addListener(future -> {
+                if (!future.isSuccess()) {
+                    extraction.fail(connectionId, "send failed");
+                }
+            });
+        }
+        log.info("Extract {} started - clients: {}, request: {}", id, targets.size(), frame);
+
+        timer.schedule(() -> {
+            List<String> pending = extraction.timeout();
+            if (!pending.isEmpty()) {
+                log.warn("Extract {} timed out waiting for {}", id, pending);
+                cancel(id, pending);
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        return extraction.getResult();
+    }
+
+    /**
+     * 收到匹配行数据块，内容格式：extractId(4字节) + stream(4字节) + baseTime(8字节) + 以换行分隔的行
+     * stream为客户端扫描的文件序号，baseTime为块首不带时间戳的行沿用的时间（-1表示没有）
+     */
+    public void onData(Channel channel, byte[] content) {
+        if (content.length < DATA_HEADER_LENGTH) {
+            log.warn("Ignoring extract data frame of {} bytes", content.length);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.wrap(content);
+        int id = header.getInt();
+        Extraction extraction = extractions.get(id);
+        if (extraction == null) {
+            // 已完成或超时，后续数据丢弃
+            return;
+        }
+        int stream = header.getInt();
+        long baseTime = header.getLong();
+        if (extraction.addData(clientConnectionService.getClientId(channel), stream, baseTime,
+                content, DATA_HEADER_LENGTH, content.length - DATA_HEADER_LENGTH)) {
+            log.info("Extract {} reached line limit, cancelling remaining clients", id);
+            cancel(id, extraction.pending());
+            for (String connectionId : extraction.pending()) {
+                extraction.fail(connectionId, "cancelled");
+            }
+        }
+    }
+
+    /**
+     * 客户端扫描结束，内容为JSON统计
+     */
+    public void onEnd(Channel channel, byte[] content) throws IOException {
+        HashMap<String, Object> summary = objectMapper.readValue(content, HashMap.class);
+        int id = ((Number) summary.remove("extractId")).intValue();
+        Extraction extraction = extractions.get(id);
+        if (extraction != null) {
+            extraction.end(clientConnectionService.getClientId(channel), summary);
+        }
+    }
+
+    /**
+     * 连接断开，进行中的提取把该客户端标记为断开
+     */
+    public void channelClosed(String connectionId) {
+        if (connectionId == null) {
+            return;
+        }
+        for (Extraction extraction : extractions.values()) {
+            if (extraction.contains(connectionId)) {
+                extraction.fail(connectionId, "disconnected");
+            }
+        }
+    }
+
+    private void cancel(int id, List<String> connectionIds) {
+        byte[] content;
+        try {
+            Map<String, Object> cancel = new HashMap<>();
+            cancel.put("extractId", id);
+            content = objectMapper.writeValueAsBytes(cancel);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String connectionId : connectionIds) {
+            Channel channel = clientConnectionService.getChannel(connectionId);
+            if (channel != null && channel.isActive()) {
+                channel.writeAndFlush(message(Constants.EXTRACT_CANCEL, content));
+            }
+        }
+    }
+
+    /**
+     * 校验请求并生成下发给客户端的条件，条件错误时由服务端直接拒绝，不下发
+     */
+    private Map<String, Object> validate(ExtractRequest request) {
+        LocalDate start;
+        LocalDate end;
+        try {
+            start = LocalDate.parse(request.getStartDay());
+            end = LocalDate.parse(request.getEndDay());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date format. Please use yyyy-MM-dd format");
+        }
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start date must be before or equal to end date");
+        }
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("startDay", start.toString());
+        frame.put("endDay", end.toString());
+        if (request.getLevels() != null && !request.getLevels().isEmpty()) {
+            List<String> levels = new ArrayList<>();
+            for (String level : request.getLevels()) {
+                int code = LogLineParser.levelOf(level);
+                if (code < 0) {
+                    throw new IllegalArgumentException("Unknown log level: " + level);
+                }
+                levels.add(LogLineParser.LEVEL_NAMES[code]);
+            }
+            frame.put("levels", levels);
+        }
+        if (request.getLiterals() != null) {
+            List<String> literals = new ArrayList<>();
+            for (String literal : request.getLiterals()) {
+                if (literal != null && !literal.isEmpty()) {
+                    literals.add(literal);
+                }
+            }
+            if (!literals.isEmpty()) {
+                frame.put("literals", literals);
+            }
+        }
+        if (request.getRegex() != null && !request.getRegex().isEmpty()) {
+            // 正则错误抛出PatternSyntaxException（IllegalArgumentException）
+            Pattern.compile(request.getRegex());
+            frame.put("regex", request.getRegex());
+        }
+        return frame;
+    }
+
+    private static MessageProtocol message(byte type, byte[] content) {
+        MessageProtocol message = new MessageProtocol();
+        message.setType(type);
+        message.setContent(content);
+        message.setLength(1 + content.length);
+        return message;
+    }
+}
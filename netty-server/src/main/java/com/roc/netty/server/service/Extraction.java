@@ -0,0 +1,236 @@
+package com.roc.netty.server.service;
+
+import com.roc.netty.server.ingest.LogTimestamps;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次过滤提取：收集各目标客户端返回的匹配行，全部客户端结束（或超时）后按时间合并
+ * 各连接的回调可能在不同线程，方法均加锁
+ */
+class Extraction {
+
+    @Getter
+    private final int id;
+    private final int maxLines;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Part> parts = new LinkedHashMap<>();
+    private final List<Line> lines = new ArrayList<>();
+    private final LogTimestamps timestamps = new LogTimestamps(ZoneId.systemDefault());
+    @Getter
+    private final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+    private long bytesReceived;
+    private boolean truncated;
+
+    Extraction(int id, int maxLines, List<String> connectionIds) {
+        this.id = id;
+        this.maxLines = maxLines;
+        for (String connectionId : connectionIds) {
+            parts.put(connectionId, new Part(connectionId, parts.size()));
+        }
+    }
+
+    /**
+     * 收到一个客户端的匹配行数据块
+     *
+     * @param stream   客户端扫描的文件序号，同一文件的块按顺序到达，不同文件的块交错到达
+     * @param baseTime 块首不带时间戳的行沿用的时间，-1时沿用该文件上一块最后的时间
+     * @return 本次达到行数上限时返回true，调用方应取消未结束的客户端
+     */
+    synchronized boolean addData(String connectionId, int stream, long baseTime, byte[] data, int offset, int length) {
+        Part part = parts.get(connectionId);
+        if (part == null || part.status != null || truncated) {
+            return false;
+        }
+        Stream source = part.streams.computeIfAbsent(stream, Stream::new);
+        if (baseTime >= 0) {
+            source.lastTime = baseTime;
+        }
+        bytesReceived += length;
+        int end = offset + length;
+        int lineStart = offset;
+        for (int i = offset; i <= end; i++) {
+            if (i < end && data[i] != '\n') {
+                continue;
+            }
+            if (i > lineStart) {
+                if (lines.size() == maxLines) {
+                    truncated = true;
+                    return true;
+                }
+                // 不以时间戳开头的行（如异常堆栈）沿用同一文件上一行的时间
+                long time = timestamps.parse(data, lineStart, i - lineStart);
+                if (time >= 0) {
+                    source.lastTime = time;
+                }
+                lines.add(new Line(source.lastTime, part, source.id, source.lines++,
+                        new String(data, lineStart, i - lineStart, StandardCharsets.UTF_8)));
+                part.lines++;
+            }
+            lineStart = i + 1;
+        }
+        return false;
+    }
+
+    /**
+     * 客户端扫描结束
+     *
+     * @param summary 客户端返回的统计：clientId, files, bytesScanned, linesMatched, truncated, error
+     */
+    synchronized void end(String connectionId, Map<String, Object> summary) {
+        Part part = parts.get(connectionId);
+        if (part == null || part.status != null) {
+            return;
+        }
+        part.summary = summary;
+        part.status = summary.get("error") != null ? "error" : "done";
+        completeIfDone();
+    }
+
+    /**
+     * 客户端未能完成：发送失败、连接断开
+     */
+    synchronized void fail(String connectionId, String status) {
+        Part part = parts.get(connectionId);
+        if (part != null && part.status == null) {
+            part.status = status;
+            completeIfDone();
+        }
+    }
+
+    /**
+     * 超时，未结束的客户端标记为timeout后直接合并已收到的结果
+     *
+     * @return 未结束的客户端连接ID
+     */
+    synchronized List<String> timeout() {
+        List<String> pending = pending();
+        for (String connectionId : pending) {
+            parts.get(connectionId).status = "timeout";
+        }
+        completeIfDone();
+        return pending;
+    }
+
+    synchronized List<String> pending() {
+        List<String> pending = new ArrayList<>();
+        for (Part part : parts.values()) {
+            if (part.status == null) {
+                pending.add(part.connectionId);
+            }
+        }
+        return pending;
+    }
+
+    synchronized boolean contains(String connectionId) {
+        return parts.containsKey(connectionId);
+    }
+
+    private void completeIfDone() {
+        if (!pending().isEmpty() || result.isDone()) {
+            return;
+        }
+        // 按时间合并；同一时间按客户端、文件、文件内顺序排列，异常堆栈与所属行保持相连
+        lines.sort(Comparator.comparingLong((Line line) -> line.time)
+                .thenComparingInt(line -> line.part.index)
+                .thenComparingInt(line -> line.stream)
+                .thenComparingLong(line -> line.sequence));
+
+        Map<String, Object> clients = new LinkedHashMap<>();
+        boolean complete = true;
+        for (Part part : parts.values()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("status", part.status);
+            info.put("linesReceived", part.lines);
+            if (part.summary != null) {
+                info.putAll(part.summary);
+            }
+            clients.put(part.connectionId, info);
+            complete &= "done".equals(part.status);
+            // 客户端达到各自的行数上限时同样视为截断
+            if (part.summary != null && Boolean.TRUE.equals(part.summary.get("truncated"))) {
+                truncated = true;
+            }
+        }
+        List<Map<String, Object>> merged = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("client", line.part.label());
+            item.put("line", line.text);
+            merged.add(item);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("extractId", id);
+        response.put("complete", complete);
+        response.put("truncated", truncated);
+        response.put("elapsedMillis", (System.nanoTime() - startNanos) / 1_000_000);
+        response.put("bytesReceived", bytesReceived);
+        response.put("lineCount", merged.size());
+        response.put("clients", clients);
+        response.put("lines", merged);
+        result.complete(response);
+    }
+
+    private static class Part {
+        final String connectionId;
+        // 在请求目标中的顺序
+        final int index;
+        final Map<Integer, Stream> streams = new HashMap<>();
+        String status;
+        Map<String, Object> summary;
+        long lines;
+
+        Part(String connectionId, int index) {
+            this.connectionId = connectionId;
+            this.index = index;
+        }
+
+        /**
+         * 优先使用客户端声明的标识
+         */
+        String label() {
+            Object clientId = summary != null ? summary.get("clientId") : null;
+            return clientId != null ? clientId.toString() : connectionId;
+        }
+    }
+
+    /**
+     * 客户端扫描的一个文件
+     */
+    private static class Stream {
+        final int id;
+        long lastTime;
+        long lines;
+
+        Stream(int id) {
+            this.id = id;
+        }
+    }
+
+    private static class Line {
+        final long time;
+        final Part part;
+        final int stream;
+        // 在所属文件中的顺序
+        final long sequence;
+        final String text;
+
+        Line(long time, Part part, int stream, long sequence, String text) {
+            this.time = time;
+            this.part = part;
+            this.stream = stream;
+            this.sequence = sequence;
+            this.text = text;
+        }
+    }
+}
@@ -1,19 +1,51 @@
 package com.roc.netty.server.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.server.codec.CompressionCodec;
+import com.roc.netty.server.dedup.ChunkAssembler;
+import com.roc.netty.server.dedup.StoredLocation;
+import com.roc.netty.server.ingest.IngestListener;
+import com.roc.netty.server.ingest.LineSplitter;
+import com.roc.netty.server.jfr.FileProcessedEvent;
+import com.roc.netty.server.logstore.LogStore;
+import com.roc.netty.server.storage.BlockCompressor;
+import com.roc.netty.server.storage.BlockFileReader;
+import com.roc.netty.server.storage.BlockFileWriter;
+import com.roc.netty.server.storage.StorageFile;
+import com.roc.netty.server.storage.StorageWriter;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 
 @Slf4j
@@ -21,84 +53,369 @@ import java.util.zip.GZIPInputStream;
 @RequiredArgsConstructor
 public class FileService {
 
+    public static final String UPLOAD_DIR = "logs/uploaded";
+    private static final int INGEST_BUFFER_SIZE = 64 * 1024;
+
     private final ObjectMapper objectMapper;
+    private final StorageWriter storageWriter;
+    private final BlockCompressor blockCompressor;
+    private final ClientConnectionService clientConnectionService;
+    private final UploadAdmissionService uploadAdmissionService;
+    private final UploadDedupService uploadDedupService;
+    // 上传日志的逐行消费者
+    private final List<IngestListener> ingestListeners;
+
+    // 进行中的分块上传，key为 channelId:transferId
+    private final Map<String, UploadSession> uploadSessions = new ConcurrentHashMap<>();
+    // 写入失败（或传输ID未知）的上传，已回复过错误，之后的数据块直接丢弃，收到传输尾或连接断开时清除
+    private final Set<String> failedUploads = ConcurrentHashMap.newKeySet();
+    // 落盘后按行消费新增内容，单线程保证同一文件按落盘顺序消费
+    private ExecutorService ingestExecutor;
+
+    @PostConstruct
+    public void start() {
+        ingestExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("upload-ingest"));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        ingestExecutor.shutdown();
+        if (!ingestExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Upload ingest did not finish in time");
+        }
+    }
 
     /**
-     * 处理上传的文件
+     * 开始一次分块上传
      *
-     * @param content 文件内容（Base64编码）
-     * @return 处理结果信息
+     * @param channel 上传所在的连接
+     * @param header  传输头（JSON）：transferId, fileName, codec, beCompressed, clientId, binary, manifest
+     *                manifest为true时之前已发送内容清单，数据只包含服务端要求的块
      */
-    public String processUploadedFile(byte[] content) throws IOException {
-        GZIPInputStream gzipIn = null;
-        ByteArrayOutputStream bos = null;
-        ByteArrayInputStream bis = null;
-
-        try {
-            // 解析文件信息
-            HashMap<String, Object> fileInfo = objectMapper.readValue(content, HashMap.class);
-            byte[] base64Content;
-            String filename = fileInfo.get("fileName").toString();
-            int originalSize = ((Number) fileInfo.get("originalSize")).intValue();
-            boolean beCompressed = Boolean.TRUE.equals(fileInfo.get("beCompressed"));
+    public void beginUpload(Channel channel, byte[] header) throws IOException {
+        HashMap<String, Object> info = objectMapper.readValue(header, HashMap.class);
+        int transferId = ((Number) info.get("transferId")).intValue();
+        // 只保留文件名，防止路径穿越
+        String filename = Paths.get(info.get("fileName").toString()).getFileName().toString();
+        CompressionCodec codec = CompressionCodec.fromHeader(info);
+        String clientId = clientConnectionService.resolveClientId(channel, info.get("clientId"));
+        boolean binary = Boolean.TRUE.equals(info.get("binary"));
 
-            // 如果是压缩过的内容，直接使用二进制数据
-            base64Content = fileInfo.get("content").toString().getBytes(StandardCharsets.UTF_8);
+        // 按客户端分目录，避免不同客户端的同名文件互相覆盖；目录由写盘线程首次写入时创建
+        // 文本日志按块压缩存储，二进制文件原样存储
+        boolean blockFormat = !binary && blockCompressor.isEnabled();
+        Path target = Paths.get(UPLOAD_DIR, clientId).resolve(blockFormat ? filename + BlockFileWriter.SUFFIX : filename);
+        ChunkAssembler assembler = Boolean.TRUE.equals(info.get("manifest"))
+                ? uploadDedupService.assemble(channel, transferId) : null;
+        // 日志文件只在末尾追加，重传时已存储的部分之前已经消费过
+        long ingestFrom = -1;
+        if (!binary && !ingestListeners.isEmpty()) {
+            StoredLocation stored = uploadDedupService.find(clientId, filename);
+            ingestFrom = stored != null ? stored.getSize() : 0;
+        }
+        UploadSession session = new UploadSession(transferId, clientId, filename, target, codec, storageWriter,
+                ingestFrom, blockFormat ? blockCompressor : null, assembler);
+        String key = sessionKey(channel, transferId);
+        failedUploads.remove(key);
+        UploadSession previous = uploadSessions.put(key, session);
+        if (previous != null) {
+            log.warn("Duplicate transfer id {}, previous upload of {} aborted", transferId, previous.getFileName());
+            previous.abort();
+        }
+        uploadAdmissionService.started(channel, transferId);
+        log.info("Upload started - transferId: {}, client: {}, file: {}, codec: {}", transferId, clientId, filename, codec);
+    }
 
+    /**
+     * 数据块所属的传输ID
+     */
+    public static int transferId(byte[] chunk) {
+        return ((chunk[0] & 0xFF) << 24) | ((chunk[1] & 0xFF) << 16)
+                | ((chunk[2] & 0xFF) << 8) | (chunk[3] & 0xFF);
+    }
 
-            // 解码Base64数据
-            byte[] compressedData = Base64.getDecoder().decode(base64Content);
+    /**
+     * 接收一个数据块，内容格式：transferId(4字节) + 数据
+     * 只有传输的第一次失败抛出异常，已失败的传输之后的数据块直接丢弃
+     */
+    public void appendChunk(Channel channel, byte[] chunk) {
+        int transferId = transferId(chunk);
+        String key = sessionKey(channel, transferId);
+        if (failedUploads.contains(key)) {
+            return;
+        }
+        UploadSession session = uploadSessions.get(key);
+        if (session == null) {
+            failedUploads.add(key);
+            throw new IllegalStateException("Unknown transfer id: " + transferId);
+        }
+        try {
+            session.write(chunk, 4, chunk.length - 4);
+        } catch (RuntimeException e) {
+            failedUploads.add(key);
+            uploadSessions.remove(key);
+            session.abort();
+            uploadAdmissionService.release(channel, transferId);
+            if (session.getAssembler() != null) {
+                uploadDedupService.failed(session.getClientId(), session.getFileName());
+            }
+            throw e;
+        }
+        StorageFile storageFile = session.getStorageFile();
+        if (storageFile.isBackedUp() && channel.config().isAutoRead()) {
+            // 写盘跟不上时暂停读取该连接，不阻塞共享的业务线程，积压排空后恢复
+            log.debug("Storage backed up, pausing reads from {}", channel.remoteAddress());
+            channel.config().setAutoRead(false);
+            storageFile.whenDrained(() -> channel.config().setAutoRead(true));
+        }
+    }
 
-            // 解压数据
-            bis = new ByteArrayInputStream(compressedData);
-            gzipIn = new GZIPInputStream(bis);
-            bos = new ByteArrayOutputStream();
+    /**
+     * 结束一次分块上传
+     *
+     * @param trailer 传输尾（JSON）：transferId, originalSize, compressedSize, aborted
+     * @return 文件落盘后完成的处理结果信息，客户端放弃传输或传输已失败（已回复过错误）时结果为null
+     */
+    public CompletableFuture<String> completeUpload(Channel channel, byte[] trailer) throws IOException {
+        HashMap<String, Object> info = objectMapper.readValue(trailer, HashMap.class);
+        int transferId = ((Number) info.get("transferId")).intValue();
+        String key = sessionKey(channel, transferId);
+        if (failedUploads.remove(key)) {
+            log.debug("Upload {} already failed, trailer ignored", transferId);
+            return CompletableFuture.completedFuture(null);
+        }
+        UploadSession session = uploadSessions.remove(key);
+        if (session == null) {
+            throw new IllegalStateException("Unknown transfer id: " + transferId);
+        }
+        if (Boolean.TRUE.equals(info.get("aborted"))) {
+            log.warn("Upload aborted by client - transferId: {}, file: {}", transferId, session.getFileName());
+            session.abort();
+            uploadAdmissionService.release(channel, transferId);
+            return CompletableFuture.completedFuture(null);
+        }
 
-            byte[] buffer = new byte[1024];
-            int len;
-            while ((len = gzipIn.read(buffer)) > 0) {
-                // 将buffer
-                bos.write(buffer, 0, len);
+        CompletableFuture<Path> saved;
+        try {
+            saved = session.finish();
+        } catch (RuntimeException e) {
+            session.abort();
+            uploadAdmissionService.release(channel, transferId);
+            if (session.getAssembler() != null) {
+                uploadDedupService.failed(session.getClientId(), session.getFileName());
             }
+            throw e;
+        }
+        // 落盘（或失败）后归还上传名额，成功时记录文件的内容清单并消费新增的行
+        saved.whenComplete((path, e) -> {
+            uploadAdmissionService.release(channel, transferId);
+            if (e == null) {
+                uploadDedupService.saved(session.getClientId(), session.getFileName(), session.getAssembler());
+                if (session.getIngestFrom() >= 0) {
+                    ingestExecutor.execute(() -> ingest(session.getClientId(), session.getFileName(), path,
+                            session.getIngestFrom()));
+                }
+            }
+        });
+        Object originalSize = info.get("originalSize");
+        if (originalSize != null && ((Number) originalSize).longValue() != session.getWrittenBytes()) {
+            log.warn("Upload size mismatch - file: {}, expected: {}, actual: {}",
+                    session.getTarget(), originalSize, session.getWrittenBytes());
+        }
+        return saved.thenApply(savePath -> {
+            log.info("File saved successfully: {}, received: {} bytes, written: {} bytes",
+                    savePath, session.getReceivedBytes(), session.getWrittenBytes());
+            return "File received and saved: " + savePath;
+        });
+    }
 
-            byte[] decompressedData = bos.toByteArray();
-
-            // 创建保存目录
-            String savePath = "logs/uploaded/" + filename;
-            Path saveDir = Paths.get("logs/uploaded");
-            if (!Files.exists(saveDir)) {
-                Files.createDirectories(saveDir);
+    /**
+     * 连接断开时放弃该连接上所有未完成的上传
+     */
+    public void abortUploads(Channel channel) {
+        String prefix = channel.id().asLongText() + ":";
+        failedUploads.removeIf(key -> key.startsWith(prefix));
+        uploadSessions.entrySet().removeIf(entry -> {
+            if (!entry.getKey().startsWith(prefix)) {
+                return false;
             }
+            log.warn("Connection closed, upload aborted: {}", entry.getValue().getFileName());
+            entry.getValue().abort();
+            return true;
+        });
+        uploadAdmissionService.channelClosed(channel);
+        uploadDedupService.channelClosed(channel);
+    }
 
-            // 保存文件
-            Files.write(Paths.get(savePath), decompressedData);
-            log.info("File saved successfully: {}", savePath);
+    /**
+     * 是否有上传进行中
+     */
+    public boolean hasActiveUploads() {
+        return !uploadSessions.isEmpty();
+    }
 
-            return "File received and saved: " + savePath;
+    /**
+     * 目标文件是否正在被上传写入
+     */
+    public boolean isUploading(Path target) {
+        for (UploadSession session : uploadSessions.values()) {
+            if (session.getTarget().equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        } finally {
-            // 关闭资源
-            if (gzipIn != null) {
-                try {
-                    gzipIn.close();
+    /**
+     * 列出客户端上传的文件
+     */
+    public List<Map<String, Object>> listUploaded(String clientId) throws IOException {
+        List<Map<String, Object>> files = new ArrayList<>();
+        Path dir = uploadDir(clientId);
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        List<Path> paths;
+        try (Stream<Path> stream = Files.list(dir)) {
+            // 跳过临时文件和合并状态等隐藏文件
+            paths = stream.filter(path -> !path.getFileName().toString().endsWith(".part")
+                            && !path.getFileName().toString().startsWith("."))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("size", Files.size(path));
+            if (name.endsWith(BlockFileWriter.SUFFIX)) {
+                file.put("fileName", name.substring(0, name.length() - BlockFileWriter.SUFFIX.length()));
+                file.put("format", "block");
+                try (BlockFileReader reader = BlockFileReader.open(path)) {
+                    file.put("rawSize", reader.getRawSize());
+                    file.put("lines", reader.getLineCount());
+                    file.put("blocks", reader.getBlockCount());
                 } catch (IOException e) {
-                    log.error("Error closing GZIPInputStream", e);
+                    file.put("error", e.getMessage());
                 }
+            } else {
+                file.put("fileName", name);
+                file.put("format", "plain");
             }
-            if (bos != null) {
-                try {
-                    bos.close();
-                } catch (IOException e) {
-                    log.error("Error closing ByteArrayOutputStream", e);
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * 上传文件的存储路径，块压缩格式优先；文件不存在时返回null
+     */
+    public Path resolveUploaded(String clientId, String fileName) {
+        // 只保留文件名，防止路径穿越
+        String name = Paths.get(fileName).getFileName().toString();
+        Path dir = uploadDir(clientId);
+        Path block = dir.resolve(name + BlockFileWriter.SUFFIX);
+        if (Files.isRegularFile(block)) {
+            return block;
+        }
+        Path plain = dir.resolve(name);
+        return Files.isRegularFile(plain) ? plain : null;
+    }
+
+    /**
+     * 从已落盘的文件读取 from 之后的内容，按行交给IngestListener
+     * 在落盘后消费，放弃或失败的上传不会留下部分行；文件比之前存储的短时视为新文件，从头消费
+     */
+    private void ingest(String clientId, String fileName, Path path, long from) {
+        LineSplitter lineSplitter = new LineSplitter(clientId, fileName, ingestListeners);
+        byte[] buffer = new byte[INGEST_BUFFER_SIZE];
+        try {
+            if (path.getFileName().toString().endsWith(BlockFileWriter.SUFFIX)) {
+                try (BlockFileReader reader = BlockFileReader.open(path)) {
+                    long size = reader.getRawSize();
+                    for (long position = from <= size ? from : 0; position < size; ) {
+                        int n = (int) Math.min(buffer.length, size - position);
+                        reader.read(position, buffer, 0, n);
+                        lineSplitter.feed(buffer, 0, n);
+                        position += n;
+                    }
                 }
-            }
-            if (bis != null) {
-                try {
-                    bis.close();
-                } catch (IOException e) {
-                    log.error("Error closing ByteArrayInputStream", e);
+            } else {
+                try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                    long size = file.size();
+                    long position = from <= size ? from : 0;
+                    ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+                    int n;
+                    while (position < size && (n = file.read(wrapped, position)) > 0) {
+                        lineSplitter.feed(buffer, 0, n);
+                        position += n;
+                        wrapped.clear();
+                    }
                 }
             }
+            lineSplitter.finish();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to ingest uploaded file {}: {}", path, e.getMessage(), e);
+        }
+    }
+
+    private static Path uploadDir(String clientId) {
+        if (!LogStore.isValidClientId(clientId)) {
+            throw new IllegalArgumentException("Invalid client id: " + clientId);
+        }
+        return Paths.get(UPLOAD_DIR, clientId);
+    }
+
+    private static String sessionKey(Channel channel, int transferId) {
+        return channel.id().asLongText() + ":" + transferId;
+    }
+
+    /**
+     * 处理上传的文件
+     *
+     * @param content 文件内容（Base64编码）
+     * @return 文件落盘后完成的处理结果信息
+     */
+    public CompletableFuture<String> processUploadedFile(byte[] content) throws IOException {
+        FileProcessedEvent event = new FileProcessedEvent();
+        event.begin();
+
+        // 解析文件信息
+        HashMap<String, Object> fileInfo = objectMapper.readValue(content, HashMap.class);
+        // 只保留文件名，防止路径穿越
+        String filename = Paths.get(fileInfo.get("fileName").toString()).getFileName().toString();
+        byte[] decompressedData = decodeContent(fileInfo);
+
+        // 交给写盘线程保存，目录在首次写入时创建
+        Path savePath = Paths.get(UPLOAD_DIR).resolve(filename);
+        StorageFile storageFile = storageWriter.open(savePath,
+                savePath.resolveSibling(filename + "." + System.nanoTime() + ".part"));
+        storageFile.append(Unpooled.wrappedBuffer(decompressedData));
+        return storageFile.commit().whenComplete((path, e) -> event.record("", filename, "GZIP",
+                content.length, decompressedData.length, e == null)).thenApply(path -> {
+            log.info("File saved successfully: {}", path);
+            return "File received and saved: " + path;
+        });
+    }
+
+    /**
+     * 整文件上传的内容：Base64编码的GZIP数据，解码并解压
+     *
+     * @param fileInfo 上传的JSON：fileName, content
+     */
+    public static byte[] decodeContent(Map<String, Object> fileInfo) throws IOException {
+        // 解码Base64数据
+        byte[] compressedData = Base64.getDecoder().decode(
+                fileInfo.get("content").toString().getBytes(StandardCharsets.UTF_8));
+
+        // 解压数据
+        try (GZIPInputStream gzipIn = new GZIPInputStream(new ByteArrayInputStream(compressedData));
+             ByteArrayOutputStream bos = new ByteArrayOutputStream(compressedData.length * 4)) {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = gzipIn.read(buffer)) > 0) {
+                bos.write(buffer, 0, len);
+            }
+            return bos.toByteArray();
         }
     }
 }
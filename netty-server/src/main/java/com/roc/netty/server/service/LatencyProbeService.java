@@ -0,0 +1,142 @@
+package com.roc.netty.server.service;
+
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.metrics.LatencyHistogram;
+import com.roc.netty.server.protocol.MessageProtocol;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelId;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 往返延迟探测：回复客户端的探测帧，并按客户端汇总延迟
+ * 探测在IO线程收到时立即回复一次（只含网络与IO线程），业务线程处理时再回复一次（另含业务线程池排队），
+ * 客户端据此区分网络时间和服务端排队时间，并在下一个探测中带上测得的往返时间供服务端汇总。
+ */
+@Service
+@RequiredArgsConstructor
+public class LatencyProbeService {
+
+    public static final byte STAGE_IO = 1;
+    public static final byte STAGE_BUSINESS = 2;
+
+    // 探测帧：序号 + 发送时间 + 上次IO线程往返时间 + 上次业务线程往返时间
+    private static final int PROBE_LENGTH = 32;
+    // 回复帧：序号 + 发送时间 + 阶段 + 服务端停留时间
+    private static final int REPLY_LENGTH = 25;
+
+    private final ClientConnectionService clientConnectionService;
+
+    private final Map<ChannelId, ClientProbes> clients = new ConcurrentHashMap<>();
+
+    /**
+     * 构造回复帧
+     *
+     * @param serverNanos 从解码完成到回复的时间
+     */
+    public static MessageProtocol reply(byte[] probe, byte stage, long serverNanos) {
+        ByteBuffer content = ByteBuffer.allocate(REPLY_LENGTH);
+        content.put(probe, 0, 16);
+        content.put(stage);
+        content.putLong(serverNanos);
+
+        MessageProtocol message = new MessageProtocol();
+        message.setType(Constants.LATENCY_PROBE_REPLY);
+        message.setLength(1 + REPLY_LENGTH);
+        message.setContent(content.array());
+        return message;
+    }
+
+    /**
+     * 业务线程处理探测：回复并记录排队时间与客户端上报的往返时间
+     */
+    public void onBusiness(Channel channel, MessageProtocol msg) {
+        byte[] probe = msg.getContent();
+        if (probe == null || probe.length < PROBE_LENGTH) {
+            throw new IllegalArgumentException("Invalid latency probe length: " + (probe == null ? 0 : probe.length));
+        }
+        long queued = System.nanoTime() - msg.getReceivedNanos();
+        channel.writeAndFlush(reply(probe, STAGE_BUSINESS, queued));
+
+        ByteBuffer content = ByteBuffer.wrap(probe);
+        long ioRtt = content.getLong(16);
+        long businessRtt = content.getLong(24);
+        ClientProbes probes = clients.computeIfAbsent(channel.id(), id -> new ClientProbes(channel));
+        synchronized (probes) {
+            probes.count++;
+            probes.queue.record(queued);
+            if (ioRtt > 0) {
+                probes.ioRtt.record(ioRtt);
+            }
+            if (businessRtt > 0) {
+                probes.businessRtt.record(businessRtt);
+            }
+        }
+    }
+
+    /**
+     * 连接断开，丢弃该连接的汇总
+     */
+    public void channelClosed(Channel channel) {
+        clients.remove(channel.id());
+    }
+
+    /**
+     * 该连接的探测汇总占用的堆内存估计(字节)，没有探测时为0
+     */
+    public long heapBytes(Channel channel) {
+        return clients.containsKey(channel.id()) ? 3L * LatencyHistogram.HEAP_BYTES + 64 : 0;
+    }
+
+    /**
+     * 各客户端的探测次数、业务线程池排队时间和客户端测得的往返时间
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new TreeMap<>();
+        for (ClientProbes probes : clients.values()) {
+            String clientId = clientConnectionService.getClientId(probes.channel);
+            Map<String, Object> client = new LinkedHashMap<>();
+            client.put("remoteAddress", String.valueOf(probes.channel.remoteAddress()));
+            synchronized (probes) {
+                client.put("probes", probes.count);
+                client.put("serverQueue", summary(probes.queue));
+                client.put("ioRoundTrip", summary(probes.ioRtt));
+                client.put("businessRoundTrip", summary(probes.businessRtt));
+            }
+            result.put(clientId != null ? clientId : probes.channel.id().asShortText(), client);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> summary(LatencyHistogram histogram) {
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(counts);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("p50Millis", LatencyHistogram.valueAtQuantile(counts, 0.5) / 1e6);
+        summary.put("p90Millis", LatencyHistogram.valueAtQuantile(counts, 0.9) / 1e6);
+        summary.put("p99Millis", LatencyHistogram.valueAtQuantile(counts, 0.99) / 1e6);
+        summary.put("maxMillis", LatencyHistogram.valueAtQuantile(counts, 1) / 1e6);
+        return summary;
+    }
+
+    /**
+     * 单个连接的探测汇总，记录与读取都在该对象上同步
+     */
+    private static class ClientProbes {
+        private final Channel channel;
+        private final LatencyHistogram queue = new LatencyHistogram();
+        private final LatencyHistogram ioRtt = new LatencyHistogram();
+        private final LatencyHistogram businessRtt = new LatencyHistogram();
+        private long count;
+
+        ClientProbes(Channel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.roc.netty.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.common.metrics.CpuLoad;
+import com.roc.netty.server.config.AdmissionConfig;
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.netty.NettyServer;
+import com.roc.netty.server.protocol.MessageProtocol;
+import com.roc.netty.server.storage.StorageWriter;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上传准入调度
+ * 客户端先申报待上传的文件和大小，服务端按当前容量授予名额，客户端收到授予后才开始发送数据：
+ * 1. 进行中的上传数、每个客户端的上传数有上限，客户端之间轮流授予；
+ * 2. 在途上传的申报大小不超过 写盘吞吐 × 窗口，写盘越快允许的在途数据越多；
+ * 3. 写盘队列或业务线程池积压时暂停授予，CPU繁忙时只保留一个上传。
+ * 名额在文件落盘、放弃或连接断开时归还；授予后迟迟不开始的名额超时收回，
+ * 连接已断开或超过客户端等待时间的申报不再授予，直接丢弃。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadAdmissionService {
+
+    // 写盘吞吐采样间隔
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AdmissionConfig admissionConfig;
+    private final ObjectMapper objectMapper;
+    private final StorageWriter storageWriter;
+    private final ClientConnectionService clientConnectionService;
+
+    private ScheduledExecutorService scheduler;
+
+    // 以下状态由this保护
+    // 客户端 -> 等待授予的申报，按申报顺序
+    private final Map<String, Deque<Transfer>> pending = new HashMap<>();
+    // 有等待申报的客户端，队首下次优先授予
+    private final Deque<String> rotation = new ArrayDeque<>();
+    // 已授予未归还的名额，key为 channelId:transferId
+    private final Map<String, Transfer> active = new LinkedHashMap<>();
+    private long inFlightBytes;
+    private String blockedBy;
+    private double cpuLoad = -1;
+    private double diskBytesPerSecond;
+    private long lastBytesWritten;
+    private long lastSampleNanos;
+
+    // 统计
+    private final LongAdder announced = new LongAdder();
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        if (!admissionConfig.isEnabled()) {
+            return;
+        }
+        lastSampleNanos = System.nanoTime();
+        lastBytesWritten = storageWriter.getBytesWritten();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("upload-admission"));
+        scheduler.scheduleWithFixedDelay(this::schedule, admissionConfig.getScheduleIntervalMillis(),
+                admissionConfig.getScheduleIntervalMillis(), TimeUnit.MILLISECONDS);
+        log.info("Upload admission enabled - max active: {}, per client: {}, window: {}s",
+                admissionConfig.getMaxActiveUploads(), admissionConfig.getMaxActivePerClient(),
+                admissionConfig.getInFlightWindowSeconds());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 客户端申报一个待上传文件，内容（JSON）：transferId, fileName, size, clientId, waitSeconds
+     * waitSeconds为客户端等待授予的最长时间，超过后客户端已放弃该上传。
+     * 申报排队后立即回复确认，客户端据此区分排队等待与不支持准入的服务端。
+     */
+    public void announce(Channel channel, byte[] content) throws IOException {
+        HashMap<String, Object> info = objectMapper.readValue(content, HashMap.class);
+        int transferId = ((Number) info.get("transferId")).intValue();
+        announced.increment();
+        if (!admissionConfig.isEnabled()) {
+            sendGrant(channel, transferId, 0);
+            return;
+        }
+        String clientId = clientConnectionService.resolveClientId(channel, info.get("clientId"));
+        Object size = info.get("size");
+        Object waitSeconds = info.get("waitSeconds");
+        long wait = waitSeconds != null
+                ? Math.min(((Number) waitSeconds).longValue(), admissionConfig.getMaxPendingSeconds())
+                : admissionConfig.getMaxPendingSeconds();
+        Transfer transfer = new Transfer(channel, transferId, clientId, String.valueOf(info.get("fileName")),
+                size != null ? ((Number) size).longValue() : 0, TimeUnit.SECONDS.toNanos(wait));
+        synchronized (this) {
+            Deque<Transfer> queue = pending.get(transfer.clientId);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                pending.put(transfer.clientId, queue);
+                rotation.addLast(transfer.clientId);
+            }
+            queue.addLast(transfer);
+        }
+        Map<String, Object> queued = new HashMap<>();
+        queued.put("transferId", transferId);
+        send(channel, Constants.UPLOAD_QUEUED, queued);
+        schedule();
+    }
+
+    /**
+     * 上传开始（收到FILE_UPLOAD_BEGIN），未申报的传输不受调度
+     */
+    public synchronized void started(Channel channel, int transferId) {
+        Transfer transfer = active.get(key(channel, transferId));
+        if (transfer != null) {
+            transfer.started = true;
+        }
+    }
+
+    /**
+     * 上传落盘、失败或被放弃，归还名额
+     */
+    public void release(Channel channel, int transferId) {
+        synchronized (this) {
+            Transfer transfer = active.remove(key(channel, transferId));
+            if (transfer == null) {
+                return;
+            }
+            inFlightBytes -= transfer.size;
+            completed.increment();
+        }
+        schedule();
+    }
+
+    /**
+     * 连接断开，丢弃该连接的申报并归还名额
+     */
+    public void channelClosed(Channel channel) {
+        synchronized (this) {
+            for (Deque<Transfer> queue : pending.values()) {
+                queue.removeIf(transfer -> transfer.channel == channel);
+            }
+            Iterator<Transfer> iterator = active.values().iterator();
+            while (iterator.hasNext()) {
+                Transfer transfer = iterator.next();
+                if (transfer.channel == channel) {
+                    inFlightBytes -= transfer.size;
+                    iterator.remove();
+                }
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * 按当前容量授予名额，申报、归还时立即执行，另由定时任务周期执行以跟随负载变化
+     */
+    private synchronized void schedule() {
+        if (!admissionConfig.isEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        sample(now);
+        expireGrants(now);
+        dropAbandoned(now);
+
+        if (storageWriter.getQueuedBytes() > admissionConfig.getMaxQueuedBytes()) {
+            blockedBy = "storage queue";
+            return;
+        }
+        if (NettyServer.businessPendingTasks() > admissionConfig.getMaxBusinessPendingTasks()) {
+            blockedBy = "business queue";
+            return;
+        }
+        int limit = cpuLoad > admissionConfig.getMaxCpuLoad() ? 1 : admissionConfig.getMaxActiveUploads();
+        long budget = inFlightBudget();
+        blockedBy = null;
+
+        // 每次从轮转队首的客户端授予一个，授予后该客户端排到队尾
+        int skipped = 0;
+        while (active.size() < limit && skipped < rotation.size()) {
+            String clientId = rotation.pollFirst();
+            Deque<Transfer> queue = pending.get(clientId);
+            if (queue == null || queue.isEmpty()) {
+                pending.remove(clientId);
+                continue;
+            }
+            if (activeCount(clientId) >= admissionConfig.getMaxActivePerClient()) {
+                rotation.addLast(clientId);
+                skipped++;
+                continue;
+            }
+            Transfer transfer = queue.peekFirst();
+            if (!active.isEmpty() && inFlightBytes + transfer.size > budget) {
+                // 放不下时保持顺序等待名额归还，避免大文件一直被小文件插队
+                rotation.addFirst(clientId);
+                blockedBy = "in-flight bytes";
+                return;
+            }
+            queue.pollFirst();
+            if (queue.isEmpty()) {
+                pending.remove(clientId);
+            } else {
+                rotation.addLast(clientId);
+            }
+            skipped = 0;
+            transfer.grantedNanos = now;
+            active.put(key(transfer.channel, transfer.transferId), transfer);
+            inFlightBytes += transfer.size;
+            granted.increment();
+            waitNanos.add(now - transfer.announcedNanos);
+            sendGrant(transfer.channel, transfer.transferId, (now - transfer.announcedNanos) / 1_000_000);
+        }
+        if (active.size() >= limit && hasPending()) {
+            blockedBy = limit == 1 && admissionConfig.getMaxActiveUploads() > 1 ? "cpu" : "active uploads";
+        }
+    }
+
+    /**
+     * 写盘吞吐按秒采样，指数平滑
+     */
+    private void sample(long now) {
+        if (now - lastSampleNanos < SAMPLE_INTERVAL_NANOS) {
+            return;
+        }
+        long written = storageWriter.getBytesWritten();
+        double rate = (written - lastBytesWritten) * 1e9 / (now - lastSampleNanos);
+        diskBytesPerSecond = diskBytesPerSecond == 0 ? rate : diskBytesPerSecond * 0.7 + rate * 0.3;
+        lastBytesWritten = written;
+        lastSampleNanos = now;
+        cpuLoad = CpuLoad.system();
+    }
+
+    private void expireGrants(long now) {
+        long timeout = TimeUnit.SECONDS.toNanos(admissionConfig.getGrantTimeoutSeconds());
+        Iterator<Transfer> iterator = active.values().iterator();
+        while (iterator.hasNext()) {
+            Transfer transfer = iterator.next();
+            if (!transfer.started && (now - transfer.grantedNanos > timeout || !transfer.channel.isActive())) {
+                log.warn("Upload grant expired - client: {}, file: {}", transfer.clientId, transfer.fileName);
+                inFlightBytes -= transfer.size;
+                iterator.remove();
+                expired.increment();
+            }
+        }
+    }
+
+    /**
+     * 丢弃连接已断开或客户端已放弃等待的申报，避免其占住轮转位置或在授予后占用名额直到超时
+     */
+    private void dropAbandoned(long now) {
+        Iterator<Map.Entry<String, Deque<Transfer>>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Deque<Transfer> queue = entries.next().getValue();
+            queue.removeIf(transfer -> {
+                if (transfer.channel.isActive() && now - transfer.deadlineNanos < 0) {
+                    return false;
+                }
+                log.warn("Upload announce dropped - client: {}, file: {}, reason: {}", transfer.clientId,
+                        transfer.fileName, transfer.channel.isActive() ? "wait timeout" : "disconnected");
+                abandoned.increment();
+                return true;
+            });
+            if (queue.isEmpty()) {
+                entries.remove();
+            }
+        }
+        rotation.removeIf(clientId -> !pending.containsKey(clientId));
+    }
+
+    private long inFlightBudget() {
+        return Math.max(admissionConfig.getMinInFlightBytes(),
+                (long) (diskBytesPerSecond * admissionConfig.getInFlightWindowSeconds()));
+    }
+
+    private int activeCount(String clientId) {
+        int count = 0;
+        for (Transfer transfer : active.values()) {
+            if (transfer.clientId.equals(clientId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean hasPending() {
+        for (Deque<Transfer> queue : pending.values()) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendGrant(Channel channel, int transferId, long waitedMillis) {
+        Map<String, Object> grant = new HashMap<>();
+        grant.put("transferId", transferId);
+        grant.put("waitedMillis", waitedMillis);
+        send(channel, Constants.UPLOAD_GRANT, grant);
+    }
+
+    private void send(Channel channel, byte type, Map<String, Object> body) {
+        byte[] content;
+        try {
+            content = objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        MessageProtocol message = new MessageProtocol();
+        message.setType(type);
+        message.setContent(content);
+        message.setLength(1 + content.length);
+        channel.writeAndFlush(message);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        Map<String, Object> pendingByClient = new LinkedHashMap<>();
+        int pendingTransfers = 0;
+        for (Map.Entry<String, Deque<Transfer>> entry : pending.entrySet()) {
+            pendingByClient.put(entry.getKey(), entry.getValue().size());
+            pendingTransfers += entry.getValue().size();
+        }
+        List<Map<String, Object>> activeUploads = new ArrayList<>();
+        for (Transfer transfer : active.values()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("clientId", transfer.clientId);
+            item.put("fileName", transfer.fileName);
+            item.put("size", transfer.size);
+            item.put("started", transfer.started);
+            item.put("activeMillis", (now - transfer.grantedNanos) / 1_000_000);
+            activeUploads.add(item);
+        }
+        long grantedCount = granted.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", admissionConfig.isEnabled());
+        stats.put("blockedBy", blockedBy);
+        stats.put("pendingTransfers", pendingTransfers);
+        stats.put("activeUploads", active.size());
+        stats.put("inFlightBytes", inFlightBytes);
+        stats.put("inFlightBudget", inFlightBudget());
+        stats.put("diskBytesPerSecond", (long) diskBytesPerSecond);
+        stats.put("storageQueuedBytes", storageWriter.getQueuedBytes());
+        stats.put("businessPendingTasks", NettyServer.businessPendingTasks());
+        stats.put("cpuLoad", cpuLoad);
+        stats.put("announced", announced.sum());
+        stats.put("granted", grantedCount);
+        stats.put("completed", completed.sum());
+        stats.put("expired", expired.sum());
+        stats.put("abandoned", abandoned.sum());
+        stats.put("averageWaitMillis", grantedCount > 0 ? waitNanos.sum() / grantedCount / 1_000_000 : 0);
+        stats.put("pending", pendingByClient);
+        stats.put("active", activeUploads);
+        return stats;
+    }
+
+    private static String key(Channel channel, int transferId) {
+        return channel.id().asLongText() + ":" + transferId;
+    }
+
+    private static class Transfer {
+        final Channel channel;
+        final int transferId;
+        final String clientId;
+        final String fileName;
+        final long size;
+        final long announcedNanos = System.nanoTime();
+        // 超过该时间客户端已放弃等待
+        final long deadlineNanos;
+        long grantedNanos;
+        boolean started;
+
+        Transfer(Channel channel, int transferId, String clientId, String fileName, long size, long waitNanos) {
+            this.channel = channel;
+            this.transferId = transferId;
+            this.clientId = clientId;
+            this.fileName = fileName;
+            this.size = size;
+            this.deadlineNanos = announcedNanos + waitNanos;
+        }
+    }
+}
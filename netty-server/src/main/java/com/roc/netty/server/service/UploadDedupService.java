@@ -0,0 +1,322 @@
+package com.roc.netty.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roc.netty.server.compaction.CompactionService;
+import com.roc.netty.server.config.DedupConfig;
+import com.roc.netty.server.constant.Constants;
+import com.roc.netty.server.dedup.ChunkAssembler;
+import com.roc.netty.server.dedup.ChunkIndex;
+import com.roc.netty.server.dedup.ChunkSources;
+import com.roc.netty.server.dedup.FileManifest;
+import com.roc.netty.server.dedup.StoredLocation;
+import com.roc.netty.server.protocol.MessageProtocol;
+import com.roc.netty.server.storage.BlockFileReader;
+import com.roc.netty.server.storage.BlockFileWriter;
+import io.netty.channel.Channel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上传内容去重
+ * 客户端上传前发送文件清单（整文件哈希与固定大小块的哈希），服务端在内容寻址的块索引中查找：
+ * 同一文件内容未变时跳过上传；否则只要求上传索引中没有的块，其余块在还原时从已存储的文件读取。
+ * 日志文件通常只在末尾追加，重传重叠的日期范围时只需传输新增部分。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadDedupService {
+
+    // 块索引日志，与上传文件同目录，列表时作为隐藏文件跳过
+    private static final String INDEX_FILE = ".chunk-index.jsonl";
+
+    private final DedupConfig dedupConfig;
+    private final ObjectMapper objectMapper;
+    private final ClientConnectionService clientConnectionService;
+    // 合并服务依赖FileService，延迟获取避免循环依赖
+    private final ObjectProvider<CompactionService> compactionService;
+
+    private ChunkIndex index;
+    // 已回复清单、等待FILE_UPLOAD_BEGIN的上传，key为 channelId:transferId
+    private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+
+    // 统计
+    private final LongAdder manifests = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder chunksOffered = new LongAdder();
+    private final LongAdder chunksRequested = new LongAdder();
+    private final LongAdder bytesOffered = new LongAdder();
+    private final LongAdder bytesRequested = new LongAdder();
+    private final LongAdder bytesReused = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!dedupConfig.isEnabled()) {
+            return;
+        }
+        index = new ChunkIndex(Paths.get(FileService.UPLOAD_DIR, INDEX_FILE), objectMapper);
+        index.load();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    /**
+     * 收到文件清单，内容（JSON）：transferId, fileName, clientId, size, chunkSize, fileHash, chunks
+     * 回复（JSON）：transferId, status，status为 unchanged 不需上传、partial 只上传missing中的块、
+     * full 整文件上传、disabled 不使用清单上传
+     */
+    public void onManifest(Channel channel, byte[] content) throws IOException {
+        HashMap<String, Object> info = objectMapper.readValue(content, HashMap.class);
+        int transferId = ((Number) info.get("transferId")).intValue();
+        manifests.increment();
+        expirePlans();
+
+        Map<String, Object> reply = new LinkedHashMap<>();
+        reply.put("transferId", transferId);
+        FileManifest manifest = objectMapper.convertValue(info, FileManifest.class);
+        if (index == null || !acceptable(manifest)) {
+            reply.put("status", "disabled");
+            send(channel, reply);
+            return;
+        }
+        // 只保留文件名，防止路径穿越
+        String fileName = Paths.get(info.get("fileName").toString()).getFileName().toString();
+        String clientId = clientConnectionService.resolveClientId(channel, info.get("clientId"));
+        String key = clientId + "/" + fileName;
+        int chunkCount = manifest.getChunks().length;
+        chunksOffered.add(chunkCount);
+        bytesOffered.add(manifest.getSize());
+
+        FileManifest stored = index.get(key);
+        if (stored != null && stored.getFileHash() == manifest.getFileHash() && stored.getSize() == manifest.getSize()
+                && stored.getChunkSize() == manifest.getChunkSize()) {
+            StoredLocation location = locate(key);
+            if (location != null && location.getSize() == manifest.getSize()) {
+                unchanged.increment();
+                log.info("Upload skipped, content unchanged - client: {}, file: {}", clientId, fileName);
+                reply.put("status", "unchanged");
+                send(channel, reply);
+                return;
+            }
+        }
+
+        // 逐块查找已存储的位置，同一文件只定位一次
+        ChunkAssembler.Source[] sources = new ChunkAssembler.Source[chunkCount];
+        Map<String, StoredLocation> locations = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long missingBytes = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            int length = manifest.chunkLength(i);
+            ChunkIndex.ChunkRef ref = index.find(manifest.getChunks()[i]);
+            FileManifest source = ref != null ? index.get(ref.getKey()) : null;
+            if (source != null && source.chunkLength(ref.getIndex()) == length) {
+                StoredLocation location = locations.containsKey(ref.getKey())
+                        ? locations.get(ref.getKey()) : locate(ref.getKey());
+                locations.put(ref.getKey(), location);
+                if (location != null && location.getSize() == source.getSize()) {
+                    sources[i] = new ChunkAssembler.Source(ref.getKey(), (long) ref.getIndex() * source.getChunkSize());
+                    continue;
+                }
+            }
+            missing.add(i);
+            missingBytes += length;
+        }
+        locations.values().removeIf(location -> location == null);
+        chunksRequested.add(missing.size());
+        bytesRequested.add(missingBytes);
+
+        plans.put(sessionKey(channel, transferId), new Plan(manifest, sources, locations, System.nanoTime()));
+        if (missing.size() == chunkCount) {
+            reply.put("status", "full");
+        } else {
+            reply.put("status", "partial");
+            reply.put("missing", missing);
+        }
+        log.info("Upload manifest - client: {}, file: {}, chunks: {}, missing: {} ({} of {} bytes)",
+                clientId, fileName, chunkCount, missing.size(), missingBytes, manifest.getSize());
+        send(channel, reply);
+    }
+
+    /**
+     * 开始按清单上传，返回还原器；整文件上传时只计算块哈希
+     */
+    public ChunkAssembler assemble(Channel channel, int transferId) throws IOException {
+        Plan plan = plans.remove(sessionKey(channel, transferId));
+        if (plan == null) {
+            throw new IllegalStateException("No manifest for transfer id: " + transferId);
+        }
+        if (plan.locations.isEmpty()) {
+            return new ChunkAssembler(plan.manifest.getChunkSize());
+        }
+        try {
+            return new ChunkAssembler(plan.manifest, plan.sources, new ChunkSources(plan.locations));
+        } catch (IOException e) {
+            // 回复清单后被清理的文件，下次上传时重新传输
+            plan.locations.keySet().forEach(index::remove);
+            failures.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 文件落盘后记录其内容清单；未按清单上传时内容未知，删除旧清单
+     */
+    public void saved(String clientId, String fileName, ChunkAssembler assembler) {
+        if (index == null) {
+            return;
+        }
+        String key = clientId + "/" + fileName;
+        if (assembler == null || assembler.getResult() == null) {
+            index.remove(key);
+            return;
+        }
+        bytesReused.add(assembler.getReusedBytes());
+        index.put(key, assembler.getResult());
+    }
+
+    /**
+     * 按清单还原失败（已存储的块或上传的块与清单不符），删除可能已失效的清单
+     */
+    public void failed(String clientId, String fileName) {
+        if (index != null) {
+            failures.increment();
+            index.remove(clientId + "/" + fileName);
+        }
+    }
+
+    /**
+     * 连接断开时丢弃该连接未开始的上传
+     */
+    public void channelClosed(Channel channel) {
+        String prefix = channel.id().asLongText() + ":";
+        plans.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", index != null);
+        stats.put("indexedFiles", index != null ? index.fileCount() : 0);
+        stats.put("indexedChunks", index != null ? index.chunkCount() : 0);
+        stats.put("pendingPlans", plans.size());
+        stats.put("manifests", manifests.sum());
+        stats.put("unchanged", unchanged.sum());
+        stats.put("chunksOffered", chunksOffered.sum());
+        stats.put("chunksRequested", chunksRequested.sum());
+        stats.put("bytesOffered", bytesOffered.sum());
+        stats.put("bytesRequested", bytesRequested.sum());
+        stats.put("bytesReused", bytesReused.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    /**
+     * 清单对应文件内容当前的存储位置，已被清理时同时删除其清单
+     *
+     * @param key 客户端/原始文件名
+     */
+    private StoredLocation locate(String key) {
+        int slash = key.indexOf('/');
+        StoredLocation location = find(key.substring(0, slash), key.substring(slash + 1));
+        if (location == null) {
+            index.remove(key);
+        }
+        return location;
+    }
+
+    /**
+     * 文件内容当前的存储位置：单独存储的文件，或已被合并进的合并文件；不存在或无法读取时返回null
+     */
+    StoredLocation find(String clientId, String fileName) {
+        Path dir = Paths.get(FileService.UPLOAD_DIR, clientId);
+        try {
+            Path block = dir.resolve(fileName + BlockFileWriter.SUFFIX);
+            if (Files.isRegularFile(block)) {
+                try (BlockFileReader reader = BlockFileReader.open(block)) {
+                    return new StoredLocation(block, true, 0, reader.getRawSize());
+                }
+            }
+            Path plain = dir.resolve(fileName);
+            if (Files.isRegularFile(plain)) {
+                return new StoredLocation(plain, false, 0, Files.size(plain));
+            }
+            CompactionService compaction = compactionService.getIfAvailable();
+            CompactionService.MemberLocation member = compaction != null
+                    ? compaction.findMember(clientId, fileName) : null;
+            if (member != null) {
+                try (BlockFileReader reader = BlockFileReader.open(member.getPath())) {
+                    return new StoredLocation(member.getPath(), true,
+                            reader.lineOffset(member.getMember().getFirstLine()), member.getMember().getRawSize());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to locate stored file {}/{}: {}", clientId, fileName, e.getMessage());
+        }
+        return null;
+    }
+
+    private boolean acceptable(FileManifest manifest) {
+        return manifest.matchesSize()
+                && manifest.getChunkSize() >= dedupConfig.getMinChunkSize()
+                && manifest.getChunkSize() <= dedupConfig.getMaxChunkSize()
+                && manifest.getChunks().length <= dedupConfig.getMaxChunks();
+    }
+
+    private void expirePlans() {
+        long expireBefore = System.nanoTime() - TimeUnit.SECONDS.toNanos(dedupConfig.getPendingTimeoutSeconds());
+        plans.values().removeIf(plan -> plan.createdNanos - expireBefore < 0);
+    }
+
+    private void send(Channel channel, Map<String, Object> reply) throws IOException {
+        byte[] content = objectMapper.writeValueAsBytes(reply);
+        MessageProtocol message = new MessageProtocol();
+        message.setType(Constants.UPLOAD_MANIFEST_REPLY);
+        message.setContent(content);
+        message.setLength(1 + content.length);
+        channel.writeAndFlush(message);
+    }
+
+    private static String sessionKey(Channel channel, int transferId) {
+        return channel.id().asLongText() + ":" + transferId;
+    }
+
+    /**
+     * 已回复清单的上传：各块来源与需要打开的已存储文件
+     */
+    private static class Plan {
+        final FileManifest manifest;
+        final ChunkAssembler.Source[] sources;
+        final Map<String, StoredLocation> locations;
+        final long createdNanos;
+
+        Plan(FileManifest manifest, ChunkAssembler.Source[] sources, Map<String, StoredLocation> locations,
+             long createdNanos) {
+            this.manifest = manifest;
+            this.sources = sources;
+            this.locations = locations;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.roc.netty.server.service;
+
+import com.roc.netty.server.codec.CompressionCodec;
+import com.roc.netty.server.dedup.ChunkAssembler;
+import com.roc.netty.server.jfr.FileProcessedEvent;
+import com.roc.netty.server.storage.BlockCompressor;
+import com.roc.netty.server.storage.BlockFileWriter;
+import com.roc.netty.server.storage.StorageFile;
+import com.roc.netty.server.storage.StorageWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次分块上传的接收状态
+ * 收到的数据块边解压边交给写盘线程写入临时文件，传输结束后原子重命名为目标文件；
+ * 文本日志可按块重新压缩存储，落盘成功后再由FileService把新增内容交给IngestListener；
+ * 按内容清单上传时，解压后的数据先经还原器与服务端已有的块按序合并
+ */
+@Slf4j
+@Getter
+public class UploadSession {
+
+    private final int transferId;
+    private final String clientId;
+    private final String fileName;
+    private final Path target;
+    private final CompressionCodec codec;
+    private final StorageFile storageFile;
+    // 按编码流式解压，STORE时为null
+    private final EmbeddedChannel inflater;
+    // 开始上传时该文件已存储的原始数据长度，落盘后只消费超出部分；不需消费（二进制文件）时为-1
+    private final long ingestFrom;
+    // 按块压缩存储，为null时直接存储解压后的数据
+    private final BlockFileWriter blockWriter;
+    // 按内容清单还原，未发送清单时为null
+    private final ChunkAssembler assembler;
+    // JFR事件，从创建会话开始计时
+    @Getter(AccessLevel.NONE)
+    private final FileProcessedEvent processedEvent = new FileProcessedEvent();
+
+    private long receivedBytes;
+    private long writtenBytes;
+
+    public UploadSession(int transferId, String clientId, String fileName, Path target, CompressionCodec codec,
+                         StorageWriter storageWriter, long ingestFrom, BlockCompressor blockCompressor,
+                         ChunkAssembler assembler) {
+        this.transferId = transferId;
+        this.clientId = clientId;
+        this.fileName = fileName;
+        this.target = target;
+        this.codec = codec;
+        this.storageFile = storageWriter.open(target,
+                target.resolveSibling(target.getFileName() + "." + transferId + ".part"));
+        ChannelHandler decoder = codec.newDecoder();
+        this.inflater = decoder != null ? new EmbeddedChannel(decoder) : null;
+        this.ingestFrom = ingestFrom;
+        this.blockWriter = blockCompressor != null
+                ? new BlockFileWriter(storageFile, blockCompressor, blockCompressor.getBlockSize()) : null;
+        this.assembler = assembler;
+        processedEvent.begin();
+    }
+
+    /**
+     * 写入一个数据块，数据数组交给写盘线程后不能再修改
+     */
+    public void write(byte[] data, int offset, int length) {
+        receivedBytes += length;
+        ByteBuf chunk = Unpooled.wrappedBuffer(data, offset, length);
+        if (inflater == null) {
+            receive(chunk);
+            return;
+        }
+        inflater.writeInbound(chunk);
+        drain();
+    }
+
+    /**
+     * 结束传输，返回的future在文件落盘后完成
+     */
+    public CompletableFuture<Path> finish() {
+        if (inflater != null) {
+            inflater.finish();
+            drain();
+        }
+        if (assembler != null) {
+            try {
+                assembler.finish(this::append);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to assemble upload: " + e.getMessage(), e);
+            }
+        }
+        if (blockWriter != null) {
+            try {
+                blockWriter.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to finish block file: " + e.getMessage(), e);
+            }
+        }
+        return storageFile.commit().whenComplete((path, e) -> recordProcessed(e == null));
+    }
+
+    /**
+     * 放弃传输并清理临时文件
+     */
+    public void abort() {
+        if (inflater != null) {
+            inflater.finishAndReleaseAll();
+        }
+        if (assembler != null) {
+            assembler.close();
+        }
+        if (blockWriter != null) {
+            blockWriter.abort();
+        }
+        storageFile.abort();
+        recordProcessed(false);
+    }
+
+    private void recordProcessed(boolean success) {
+        processedEvent.record(clientId, fileName, codec.name(), receivedBytes, writtenBytes, success);
+    }
+
+    private void drain() {
+        ByteBuf buf;
+        while ((buf = inflater.readInbound()) != null) {
+            receive(buf);
+        }
+    }
+
+    private void receive(ByteBuf buf) {
+        if (assembler == null) {
+            append(buf);
+            return;
+        }
+        try {
+            assembler.write(buf, this::append);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to assemble upload: " + e.getMessage(), e);
+        }
+    }
+
+    private void append(ByteBuf buf) {
+        writtenBytes += buf.readableBytes();
+        if (blockWriter == null) {
+            storageFile.append(buf);
+            return;
+        }
+        try {
+            blockWriter.write(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write block file: " + e.getMessage(), e);
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.roc.netty.server.storage;
+
+import com.roc.netty.server.config.StorageConfig;
+import com.roc.netty.server.ingest.LogTimestamps;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 块压缩线程池，所有上传共用
+ * 每个块独立压缩为raw deflate，同时统计块内行数和第一个时间戳，供块索引使用
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlockCompressor {
+
+    private final StorageConfig storageConfig;
+
+    private ExecutorService executor;
+    private int threads;
+    private ThreadLocal<Deflater> deflaters;
+
+    @PostConstruct
+    public void start() {
+        if (!storageConfig.isBlockFormat()) {
+            return;
+        }
+        threads = storageConfig.getCompressorThreads() > 0
+                ? storageConfig.getCompressorThreads() : Runtime.getRuntime().availableProcessors();
+        int level = storageConfig.getBlockCompressionLevel();
+        deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+        executor = Executors.newFixedThreadPool(threads, new DefaultThreadFactory("block-compressor"));
+        log.info("Block compressor started - threads: {}, block size: {}, level: {}",
+                threads, storageConfig.getBlockSize(), level);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    public int getBlockSize() {
+        return storageConfig.getBlockSize();
+    }
+
+    /**
+     * 单个上传同时压缩的最大块数
+     */
+    public int maxInFlight() {
+        return threads * 2;
+    }
+
+    /**
+     * 提交一个块，块必须从行首开始；data在压缩完成前不能修改
+     */
+    Future<CompressedBlock> submit(byte[] data, int length) {
+        return executor.submit(() -> compress(data, length));
+    }
+
+    private CompressedBlock compress(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        int lines = 0;
+        long firstTimestamp = -1;
+        LogTimestamps timestamps = null;
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            if (firstTimestamp < 0) {
+                if (timestamps == null) {
+                    timestamps = new LogTimestamps(ZoneId.systemDefault());
+                }
+                firstTimestamp = timestamps.parse(data, lineStart, i - lineStart);
+            }
+            lines++;
+            lineStart = i + 1;
+        }
+
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        byte[] out = new byte[length + (length >> 8) + 64];
+        int outLength = 0;
+        while (!deflater.finished()) {
+            if (outLength == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            outLength += deflater.deflate(out, outLength, out.length - outLength);
+        }
+        boolean endsWithNewline = length > 0 && data[length - 1] == '\n';
+        return new CompressedBlock(out, outLength, length, (int) crc.getValue(), lines, firstTimestamp, endsWithNewline);
+    }
+
+    /**
+     * 压缩结果
+     */
+    static class CompressedBlock {
+        final byte[] data;
+        final int length;
+        final int rawLength;
+        final int crc;
+        final int lines;
+        // 块内第一个带时间戳的行的时间，没有时为-1
+        final long firstTimestamp;
+        final boolean endsWithNewline;
+
+        CompressedBlock(byte[] data, int length, int rawLength, int crc, int lines, long firstTimestamp,
+                        boolean endsWithNewline) {
+            this.data = data;
+            this.length = length;
+            this.rawLength = rawLength;
+            this.crc = crc;
+            this.lines = lines;
+            this.firstTimestamp = firstTimestamp;
+            this.endsWithNewline = endsWithNewline;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.roc.netty.server.storage;
+
+import com.roc.netty.server.ingest.LogTimestamps;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 按块压缩的日志文件读取，格式见 {@link BlockFileWriter}
+ * 打开时只读取块索引，按行号或时间定位到起始块后只解压需要的块。非线程安全。
+ */
+public class BlockFileReader implements Closeable {
+
+    private final FileChannel channel;
+    @Getter
+    private final int blockCount;
+    @Getter
+    private final long lineCount;
+    @Getter
+    private final long rawSize;
+    private final long[] firstLines;
+    private final long[] timestamps;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] rawLengths;
+    private final int[] crcs;
+    private final int[] flags;
+    // 各块在原始数据中的起始偏移
+    private final long[] rawOffsets;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private byte[] compressed = new byte[0];
+    // 最近解压的块，按偏移连续读取时复用
+    private int cachedBlock = -1;
+    private byte[] cachedData;
+
+    private BlockFileReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size < BlockFileWriter.HEADER_SIZE + BlockFileWriter.FOOTER_SIZE) {
+            throw new IOException("Block file too short");
+        }
+        ByteBuffer footer = readFully(size - BlockFileWriter.FOOTER_SIZE, BlockFileWriter.FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        blockCount = footer.getInt();
+        lineCount = footer.getLong();
+        rawSize = footer.getLong();
+        if (footer.getInt() != BlockFileWriter.MAGIC
+                || indexOffset + (long) blockCount * BlockFileWriter.INDEX_ENTRY_SIZE != size - BlockFileWriter.FOOTER_SIZE) {
+            throw new IOException("Bad block file footer");
+        }
+
+        firstLines = new long[blockCount];
+        timestamps = new long[blockCount];
+        offsets = new long[blockCount];
+        lengths = new int[blockCount];
+        rawLengths = new int[blockCount];
+        crcs = new int[blockCount];
+        flags = new int[blockCount];
+        rawOffsets = new long[blockCount];
+        ByteBuffer index = readFully(indexOffset, blockCount * BlockFileWriter.INDEX_ENTRY_SIZE);
+        for (int i = 0; i < blockCount; i++) {
+            firstLines[i] = index.getLong();
+            timestamps[i] = index.getLong();
+            offsets[i] = index.getLong();
+            lengths[i] = index.getInt();
+            rawLengths[i] = index.getInt();
+            crcs[i] = index.getInt();
+            flags[i] = index.getInt();
+            rawOffsets[i] = i == 0 ? 0 : rawOffsets[i - 1] + rawLengths[i - 1];
+        }
+    }
+
+    public static BlockFileReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new BlockFileReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 输出全部内容
+     */
+    public void readAll(OutputStream out) throws IOException {
+        for (int i = 0; i < blockCount; i++) {
+            out.write(readBlock(i), 0, rawLengths[i]);
+        }
+    }
+
+    /**
+     * 输出行号在 [fromLine, fromLine + count) 内的行，行号从0开始
+     *
+     * @return 输出的行数
+     */
+    public long readLines(long fromLine, long count, OutputStream out) throws IOException {
+        long toLine = Math.min(lineCount, fromLine + count);
+        if (fromLine < 0 || fromLine >= toLine) {
+            return 0;
+        }
+        // 行号不大于fromLine的最后一块；该块若从上一块的行中间开始且首行号恰为fromLine，则该行起始在更前的块
+        int block = 0;
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstLines[mid] <= fromLine) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        while (block > 0 && firstLines[block] == fromLine && (flags[block] & BlockFileWriter.FLAG_CONTINUATION) != 0) {
+            block--;
+        }
+
+        long line = firstLines[block];
+        boolean selected = line >= fromLine && (flags[block] & BlockFileWriter.FLAG_CONTINUATION) == 0;
+        for (int i = block; i < blockCount && line < toLine; i++) {
+            byte[] data = readBlock(i);
+            int length = rawLengths[i];
+            int lineStart = 0;
+            for (int p = 0; p < length && line < toLine; p++) {
+                if (data[p] != '\n') {
+                    continue;
+                }
+                if (selected) {
+                    out.write(data, lineStart, p + 1 - lineStart);
+                }
+                line++;
+                selected = line >= fromLine;
+                lineStart = p + 1;
+            }
+            // 块末尾没有换行的部分属于跨块的行
+            if (selected && line < toLine && lineStart < length) {
+                out.write(data, lineStart, length - lineStart);
+            }
+        }
+        return line - fromLine;
+    }
+
+    /**
+     * 读取原始数据中 [position, position + length) 的内容
+     */
+    public void read(long position, byte[] dest, int offset, int length) throws IOException {
+        if (position < 0 || position + length > rawSize) {
+            throw new IOException("Range " + position + "+" + length + " out of raw size " + rawSize);
+        }
+        int block = blockAt(position);
+        while (length > 0) {
+            byte[] data = cachedBlock(block);
+            int from = (int) (position - rawOffsets[block]);
+            int n = Math.min(length, rawLengths[block] - from);
+            System.arraycopy(data, from, dest, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+            block++;
+        }
+    }
+
+    /**
+     * 行号对应的原始数据偏移，行号从0开始，不小于总行数时返回原始总大小
+     */
+    public long lineOffset(long line) throws IOException {
+        if (line <= 0) {
+            return 0;
+        }
+        if (line >= lineCount) {
+            return rawSize;
+        }
+        int block = 0;
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstLines[mid] <= line) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        while (block > 0 && firstLines[block] == line && (flags[block] & BlockFileWriter.FLAG_CONTINUATION) != 0) {
+            block--;
+        }
+        long current = firstLines[block];
+        if (current == line && (flags[block] & BlockFileWriter.FLAG_CONTINUATION) == 0) {
+            return rawOffsets[block];
+        }
+        for (int i = block; i < blockCount; i++) {
+            byte[] data = cachedBlock(i);
+            for (int p = 0; p < rawLengths[i]; p++) {
+                if (data[p] == '\n' && ++current == line) {
+                    return rawOffsets[i] + p + 1;
+                }
+            }
+        }
+        return rawSize;
+    }
+
+    /**
+     * 输出时间在 [from, to) 内的行，没有时间戳的行（如异常堆栈）沿用上一行的时间。
+     * 按文件内时间递增定位：从首个时间戳小于from的最后一块开始，到首个时间戳不小于to的块为止。
+     *
+     * @return 输出的行数
+     */
+    public long readTimeRange(long from, long to, OutputStream out) throws IOException {
+        if (blockCount == 0) {
+            return 0;
+        }
+        int block = 0;
+        for (int i = 0; i < blockCount && timestamps[i] < from; i++) {
+            block = i;
+        }
+        LogTimestamps parser = new LogTimestamps(ZoneId.systemDefault());
+        long lineTime = timestamps[block];
+        long matched = 0;
+        // 起始块若从上一块的行中间开始，开头的残行不输出；之后的块延续上一块最后一行的选择状态
+        boolean selected = false;
+        for (int i = block; i < blockCount; i++) {
+            if (i > block && timestamps[i] >= to) {
+                break;
+            }
+            byte[] data = readBlock(i);
+            int length = rawLengths[i];
+            boolean atLineStart = (flags[i] & BlockFileWriter.FLAG_CONTINUATION) == 0;
+            int p = 0;
+            while (p < length) {
+                int newline = p;
+                while (newline < length && data[newline] != '\n') {
+                    newline++;
+                }
+                if (atLineStart) {
+                    long parsed = parser.parse(data, p, newline - p);
+                    if (parsed >= 0) {
+                        lineTime = parsed;
+                    }
+                    selected = lineTime >= from && lineTime < to;
+                    if (selected) {
+                        matched++;
+                    }
+                }
+                int end = Math.min(newline + 1, length);
+                if (selected) {
+                    out.write(data, p, end - p);
+                }
+                atLineStart = newline < length;
+                p = end;
+            }
+        }
+        return matched;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    private int blockAt(long position) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (rawOffsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private byte[] cachedBlock(int block) throws IOException {
+        if (block != cachedBlock) {
+            cachedData = readBlock(block);
+            cachedBlock = block;
+        }
+        return cachedData;
+    }
+
+    private byte[] readBlock(int block) throws IOException {
+        int length = lengths[block];
+        if (compressed.length < length) {
+            compressed = new byte[length];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(compressed, 0, length);
+        long position = offsets[block];
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of block file");
+            }
+        }
+
+        byte[] data = new byte[rawLengths[block]];
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        try {
+            int inflated = 0;
+            while (inflated < data.length && !inflater.finished()) {
+                int n = inflater.inflate(data, inflated, data.length - inflated);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != data.length) {
+                throw new IOException("Truncated block " + block);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted block " + block + ": " + e.getMessage(), e);
+        }
+        crc.reset();
+        crc.update(data, 0, data.length);
+        if ((int) crc.getValue() != crcs[block]) {
+            throw new IOException("Checksum mismatch in block " + block);
+        }
+        return data;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of block file");
+            }
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,193 @@
+package com.roc.netty.server.storage;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 按块压缩的日志文件写入，文件格式：
+ * <pre>
+ * [头部]   magic(4) + version(4)
+ * [数据块] 各块独立的raw deflate数据，块在换行处截断
+ * [块索引] 每块一项：首行行号(8)、首个时间戳(8)、文件偏移(8)、压缩长度(4)、原始长度(4)、CRC32(4)、标志(4)
+ * [尾部]   索引偏移(8) + 块数(4) + 总行数(8) + 原始总大小(8) + magic(4)
+ * </pre>
+ * 数据按块交给压缩线程池并行压缩，按原顺序写出；每个上传同时在途的块数有上限，超过时等待最早的块。
+ * 只在上传处理线程中使用。
+ */
+public class BlockFileWriter {
+
+    static final int MAGIC = 0x4C424C4B;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int INDEX_ENTRY_SIZE = 8 + 8 + 8 + 4 + 4 + 4 + 4;
+    static final int FOOTER_SIZE = 8 + 4 + 8 + 8 + 4;
+    public static final String SUFFIX = ".blk";
+    // 块不从行首开始（单行超过块大小上限时被强制截断）
+    static final int FLAG_CONTINUATION = 1;
+    // 找不到换行时块最多扩大到的倍数
+    private static final int MAX_BLOCK_GROWTH = 64;
+
+    private final StorageFile storageFile;
+    private final BlockCompressor compressor;
+    private final int blockSize;
+    private final int maxInFlight;
+    private final Deque<Pending> inFlight = new ArrayDeque<>();
+
+    private byte[] buffer;
+    private int bufferLength;
+    private boolean continuation;
+
+    // 已写出部分的状态
+    private long offset = HEADER_SIZE;
+    private long lines;
+    private long rawSize;
+    private long lastTimestamp = -1;
+    private boolean endsWithNewline = true;
+    private ByteBuffer index = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 64);
+    private int blockCount;
+
+    public BlockFileWriter(StorageFile storageFile, BlockCompressor compressor, int blockSize) {
+        this.storageFile = storageFile;
+        this.compressor = compressor;
+        this.blockSize = blockSize;
+        this.maxInFlight = compressor.maxInFlight();
+        this.buffer = new byte[blockSize];
+        ByteBuf header = Unpooled.buffer(HEADER_SIZE);
+        header.writeInt(MAGIC).writeInt(VERSION);
+        storageFile.append(header);
+    }
+
+    /**
+     * 写入原始数据，不改变data的读索引，调用方负责释放
+     */
+    public void write(ByteBuf data) throws IOException {
+        int position = data.readerIndex();
+        int end = position + data.readableBytes();
+        while (position < end) {
+            int n = Math.min(end - position, buffer.length - bufferLength);
+            data.getBytes(position, buffer, bufferLength, n);
+            bufferLength += n;
+            position += n;
+            if (bufferLength == buffer.length) {
+                cutBlock();
+            }
+        }
+    }
+
+    /**
+     * 写出剩余数据、块索引和尾部
+     */
+    public void finish() throws IOException {
+        if (bufferLength > 0) {
+            submit(buffer, bufferLength);
+            buffer = null;
+            bufferLength = 0;
+        }
+        while (!inFlight.isEmpty()) {
+            writeHead();
+        }
+        if (!endsWithNewline) {
+            // 最后一行没有换行符
+            lines++;
+        }
+        ((Buffer) index).flip();
+        ByteBuf trailer = Unpooled.buffer(index.remaining() + FOOTER_SIZE);
+        trailer.writeBytes(index);
+        trailer.writeLong(offset).writeInt(blockCount).writeLong(lines).writeLong(rawSize).writeInt(MAGIC);
+        storageFile.append(trailer);
+    }
+
+    /**
+     * 放弃写入，取消在途的压缩任务
+     */
+    public void abort() {
+        for (Pending pending : inFlight) {
+            pending.future.cancel(true);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * 缓冲已满：在最后一个换行处截断成块，剩余部分留到下一块
+     */
+    private void cutBlock() throws IOException {
+        int cut = bufferLength;
+        while (cut > 0 && buffer[cut - 1] != '\n') {
+            cut--;
+        }
+        if (cut == 0) {
+            if (buffer.length < blockSize * MAX_BLOCK_GROWTH) {
+                // 单行超过块大小，扩大缓冲继续寻找换行
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                return;
+            }
+            cut = bufferLength;
+        }
+        // 扩大后的缓冲在较早的换行处截断时，剩余部分可能超过块大小
+        int rest = bufferLength - cut;
+        byte[] next = new byte[Math.max(blockSize, rest)];
+        System.arraycopy(buffer, cut, next, 0, rest);
+        submit(buffer, cut);
+        continuation = buffer[cut - 1] != '\n';
+        buffer = next;
+        bufferLength = rest;
+    }
+
+    private void submit(byte[] data, int length) throws IOException {
+        inFlight.add(new Pending(compressor.submit(data, length), continuation));
+        // 保持有序输出：队首完成即写出，超过上限时阻塞等待队首
+        while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || inFlight.peek().future.isDone())) {
+            writeHead();
+        }
+    }
+
+    private void writeHead() throws IOException {
+        Pending pending = inFlight.poll();
+        BlockCompressor.CompressedBlock block;
+        try {
+            block = pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing block");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress block", e.getCause());
+        }
+
+        // 没有带时间戳行的块沿用前一块的时间
+        long timestamp = block.firstTimestamp >= 0 ? block.firstTimestamp : lastTimestamp;
+        if (index.remaining() < INDEX_ENTRY_SIZE) {
+            ((Buffer) index).flip();
+            index = ByteBuffer.allocate(index.capacity() * 2).put(index);
+        }
+        index.putLong(lines).putLong(timestamp).putLong(offset)
+                .putInt(block.length).putInt(block.rawLength).putInt(block.crc)
+                .putInt(pending.continuation ? FLAG_CONTINUATION : 0);
+        blockCount++;
+        storageFile.append(Unpooled.wrappedBuffer(block.data, 0, block.length));
+        offset += block.length;
+        lines += block.lines;
+        rawSize += block.rawLength;
+        lastTimestamp = timestamp;
+        endsWithNewline = block.endsWithNewline;
+    }
+
+    private static final class Pending {
+        private final Future<BlockCompressor.CompressedBlock> future;
+        private final boolean continuation;
+
+        private Pending(Future<BlockCompressor.CompressedBlock> future, boolean continuation) {
+            this.future = future;
+            this.continuation = continuation;
+        }
+    }
+}
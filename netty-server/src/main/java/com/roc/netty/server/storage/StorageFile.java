@@ -0,0 +1,202 @@
+package com.roc.netty.server.storage;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一个正在写入的文件
+ * 数据先写入临时文件，提交时刷盘并原子重命名为目标文件。
+ * 公开方法可在任意线程调用，只是把任务放入所属写盘线程的队列；其余方法只在写盘线程中执行。
+ */
+public class StorageFile {
+
+    private final StorageWriter.Worker worker;
+    private final Path target;
+    private final Path tempFile;
+    private final int batchSize;
+    private final CompletableFuture<Path> committed = new CompletableFuture<>();
+
+    private FileChannel channel;
+    // 合并写入缓冲，攒满一批再写，每次写入的偏移和长度都是4KB对齐的
+    private ByteBuf buffer;
+    private long position;
+    // 写入过程中的第一个异常，之后的数据直接丢弃，提交时返回该异常
+    private IOException failure;
+
+    StorageFile(StorageWriter.Worker worker, Path target, Path tempFile, int batchSize) {
+        this.worker = worker;
+        this.target = target;
+        this.tempFile = tempFile;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 追加数据，调用后数据的所有权交给写盘线程
+     */
+    public void append(ByteBuf data) {
+        worker.submit(new StorageWriter.Task(this, StorageWriter.TaskType.APPEND, data));
+    }
+
+    /**
+     * 提交文件，返回的future在数据落盘并重命名为目标文件后完成
+     */
+    public CompletableFuture<Path> commit() {
+        worker.submit(new StorageWriter.Task(this, StorageWriter.TaskType.COMMIT, null));
+        return committed;
+    }
+
+    /**
+     * 放弃写入并删除临时文件
+     */
+    public void abort() {
+        worker.submit(new StorageWriter.Task(this, StorageWriter.TaskType.ABORT, null));
+    }
+
+    /**
+     * 所属写盘线程的队列积压是否超过容量，超过时提交方应暂停产生数据
+     */
+    public boolean isBackedUp() {
+        return worker.isBackedUp();
+    }
+
+    /**
+     * 积压排空到容量一半以下时执行listener，在写盘线程或当前线程中执行，不能阻塞
+     */
+    public void whenDrained(Runnable listener) {
+        worker.whenDrained(listener);
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    void doAppend(ByteBuf data) {
+        try {
+            if (failure != null || committed.isDone()) {
+                return;
+            }
+            if (channel == null) {
+                worker.ensureDirectory(tempFile.getParent());
+                channel = FileChannel.open(tempFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                buffer = PooledByteBufAllocator.DEFAULT.directBuffer(batchSize, batchSize);
+            }
+            while (data.isReadable()) {
+                buffer.writeBytes(data, Math.min(data.readableBytes(), buffer.writableBytes()));
+                if (!buffer.isWritable()) {
+                    flushBuffer();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            ReferenceCountUtil.release(data);
+        }
+    }
+
+    /**
+     * 写出缓冲中剩余的数据，返回false表示写入失败，future已异常完成
+     */
+    boolean flush() {
+        try {
+            if (failure == null) {
+                if (channel == null) {
+                    // 空文件
+                    worker.ensureDirectory(tempFile.getParent());
+                    channel = FileChannel.open(tempFile,
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                } else {
+                    flushBuffer();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (failure != null) {
+            fail(failure);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 数据已写出后完成提交：可选刷盘、关闭并重命名
+     */
+    void complete(boolean fsync) {
+        try {
+            if (fsync) {
+                channel.force(false);
+                worker.recordFsync();
+            }
+            channel.close();
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        } finally {
+            releaseBuffer();
+        }
+        committed.complete(target);
+    }
+
+    /**
+     * 写盘线程处理该文件的任务时出现意外异常：之后的数据丢弃，提交时返回失败
+     *
+     * @param now 是否立即以失败完成（提交或放弃时）
+     */
+    void failed(RuntimeException e, boolean now) {
+        if (failure == null) {
+            failure = new IOException("Storage write failed: " + e.getMessage(), e);
+        }
+        if (now) {
+            fail(failure);
+        }
+    }
+
+    void doAbort() {
+        cleanUp();
+        committed.cancel(false);
+    }
+
+    private void fail(IOException e) {
+        cleanUp();
+        committed.completeExceptionally(e);
+    }
+
+    private void cleanUp() {
+        releaseBuffer();
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            // 临时文件残留不影响后续上传
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        while (buffer.isReadable()) {
+            int written = buffer.readBytes(channel, position, buffer.readableBytes());
+            position += written;
+            worker.recordWrite(written);
+        }
+        buffer.clear();
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+}
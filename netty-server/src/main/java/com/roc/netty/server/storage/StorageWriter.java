@@ -0,0 +1,332 @@
+package com.roc.netty.server.storage;
+
+import com.roc.netty.server.config.StorageConfig;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上传文件写盘引擎
+ * 上传处理线程只把数据放入队列，由少量写盘线程负责实际IO：
+ * 1. 每个文件固定由一个写盘线程写入，保证顺序，文件句柄只在该线程中使用；
+ * 2. 数据在文件缓冲中攒满一批（4KB对齐）再写，减少系统调用；
+ * 3. 开启刷盘时，一段时间内到达的提交合并处理，同一目录的重命名只刷一次目录；
+ * 4. 提交从不阻塞，队列积压超过容量时由提交方暂停产生数据（如关闭连接的自动读），排空到一半以下时通知恢复。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageWriter {
+
+    private static final int ALIGNMENT = 4096;
+    // 每次从队列取出的最大任务数
+    private static final int MAX_DRAIN = 256;
+
+    private final StorageConfig storageConfig;
+
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private Worker[] workers;
+    private int batchSize;
+
+    // 统计
+    private final long startNanos = System.nanoTime();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder writeCalls = new LongAdder();
+    private final LongAdder fileFsyncs = new LongAdder();
+    private final LongAdder directoryFsyncs = new LongAdder();
+    private final LongAdder commitGroups = new LongAdder();
+    private final LongAdder filesCommitted = new LongAdder();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private long lastStatsNanos = startNanos;
+    private long lastStatsBytes;
+
+    @PostConstruct
+    public void start() {
+        batchSize = (storageConfig.getBatchSize() + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        ThreadFactory threadFactory = new DefaultThreadFactory("storage-writer");
+        workers = new Worker[storageConfig.getWriterThreads()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(storageConfig.getQueueCapacity());
+            workers[i].thread = threadFactory.newThread(workers[i]);
+            workers[i].thread.start();
+        }
+        log.info("Storage writer started - threads: {}, batch size: {}, fsync: {}",
+                workers.length, batchSize, storageConfig.isFsync());
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Worker worker : workers) {
+            worker.running = false;
+            worker.thread.interrupt();
+        }
+    }
+
+    /**
+     * 打开一个待写入的文件，数据写入临时文件，提交后重命名为目标文件
+     */
+    public StorageFile open(Path target, Path tempFile) {
+        Worker worker = workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+        return new StorageFile(worker, target, tempFile, batchSize);
+    }
+
+    /**
+     * 累计写出的字节数
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * 已提交但尚未写出的字节数
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * 写盘统计，速率为距上次查询的平均值
+     */
+    public synchronized Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        long written = bytesWritten.sum();
+        long calls = writeCalls.sum();
+        int queuedTasks = 0;
+        for (Worker worker : workers) {
+            queuedTasks += worker.queue.size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("writerThreads", workers.length);
+        stats.put("queuedTasks", queuedTasks);
+        stats.put("queuedBytes", queuedBytes.get());
+        stats.put("bytesWritten", written);
+        stats.put("writeCalls", calls);
+        stats.put("averageWriteSize", calls > 0 ? written / calls : 0);
+        stats.put("bytesPerSecond", (long) ((written - lastStatsBytes) * 1e9 / Math.max(1, now - lastStatsNanos)));
+        stats.put("averageBytesPerSecond", (long) (written * 1e9 / Math.max(1, now - startNanos)));
+        stats.put("filesCommitted", filesCommitted.sum());
+        stats.put("commitGroups", commitGroups.sum());
+        stats.put("fileFsyncs", fileFsyncs.sum());
+        stats.put("directoryFsyncs", directoryFsyncs.sum());
+        lastStatsNanos = now;
+        lastStatsBytes = written;
+        return stats;
+    }
+
+    enum TaskType {
+        APPEND, COMMIT, ABORT
+    }
+
+    @AllArgsConstructor
+    static class Task {
+        private final StorageFile file;
+        private final TaskType type;
+        private final ByteBuf data;
+    }
+
+    /**
+     * 写盘线程
+     */
+    class Worker implements Runnable {
+
+        private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+        private final int capacity;
+        // 积压时暂停的提交方，排空到容量一半以下时通知
+        private final Queue<Runnable> drainListeners = new ConcurrentLinkedQueue<>();
+        private final Set<Path> knownDirectories = new HashSet<>();
+        // 已写出数据、等待组提交刷盘的文件
+        private final List<StorageFile> pendingCommits = new ArrayList<>();
+        private long firstPendingNanos;
+        private Thread thread;
+        private volatile boolean running = true;
+
+        Worker(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * 提交任务，不阻塞提交方（业务线程池是所有连接共享的）
+         */
+        void submit(Task task) {
+            if (task.data != null) {
+                queuedBytes.addAndGet(task.data.readableBytes());
+            }
+            queue.offer(task);
+        }
+
+        boolean isBackedUp() {
+            return queue.size() >= capacity;
+        }
+
+        void whenDrained(Runnable listener) {
+            drainListeners.add(listener);
+            // 登记之前写盘线程可能已经排空
+            if (queue.size() <= capacity / 2) {
+                notifyDrained();
+            }
+        }
+
+        private void notifyDrained() {
+            Runnable listener;
+            while ((listener = drainListeners.poll()) != null) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    log.warn("Storage drain listener failed: {}", e.getMessage(), e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Task> batch = new ArrayList<>(MAX_DRAIN);
+            while (running) {
+                try {
+                    Task first = pendingCommits.isEmpty()
+                            ? queue.take()
+                            : queue.poll(remainingGroupNanos(), TimeUnit.NANOSECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, MAX_DRAIN - 1);
+                        processBatch(batch);
+                    }
+                    if (!drainListeners.isEmpty() && queue.size() <= capacity / 2) {
+                        notifyDrained();
+                    }
+                    // 队列已空或等待超时则提交，负载高时同一组内的提交更多
+                    if (!pendingCommits.isEmpty() && (queue.isEmpty() || remainingGroupNanos() <= 0)) {
+                        commitGroup();
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    log.error("Storage writer error: {}", e.getMessage(), e);
+                }
+            }
+        }
+
+        /**
+         * 逐个处理任务，单个任务的意外异常只让所属文件失败；无论如何都清空批次，避免下一轮重复写入
+         */
+        private void processBatch(List<Task> batch) {
+            try {
+                for (Task task : batch) {
+                    try {
+                        process(task);
+                    } catch (RuntimeException e) {
+                        log.error("Storage task {} failed for {}: {}", task.type, task.file.getTarget(), e.getMessage(), e);
+                        task.file.failed(e, task.type != TaskType.APPEND);
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+
+        private void process(Task task) {
+            switch (task.type) {
+                case APPEND:
+                    queuedBytes.addAndGet(-task.data.readableBytes());
+                    task.file.doAppend(task.data);
+                    break;
+                case COMMIT:
+                    if (!task.file.flush()) {
+                        break;
+                    }
+                    if (storageConfig.isFsync()) {
+                        if (pendingCommits.isEmpty()) {
+                            firstPendingNanos = System.nanoTime();
+                        }
+                        pendingCommits.add(task.file);
+                    } else {
+                        task.file.complete(false);
+                        filesCommitted.increment();
+                    }
+                    break;
+                case ABORT:
+                    task.file.doAbort();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * 组提交：逐个文件刷盘并重命名，最后每个涉及的目录刷一次，使重命名持久化
+         */
+        private void commitGroup() {
+            Set<Path> directories = new LinkedHashSet<>();
+            try {
+                for (StorageFile file : pendingCommits) {
+                    try {
+                        file.complete(true);
+                    } catch (RuntimeException e) {
+                        log.error("Storage commit failed for {}: {}", file.getTarget(), e.getMessage(), e);
+                        file.failed(e, true);
+                    }
+                    directories.add(file.getTarget().toAbsolutePath().getParent());
+                }
+                filesCommitted.add(pendingCommits.size());
+                commitGroups.increment();
+            } finally {
+                pendingCommits.clear();
+            }
+            for (Path directory : directories) {
+                try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+                    dir.force(true);
+                    directoryFsyncs.increment();
+                } catch (IOException e) {
+                    // 部分平台不支持打开目录刷盘
+                    log.debug("Directory fsync not supported for {}: {}", directory, e.getMessage());
+                }
+            }
+        }
+
+        private long remainingGroupNanos() {
+            return firstPendingNanos + TimeUnit.MILLISECONDS.toNanos(storageConfig.getGroupCommitMillis()) - System.nanoTime();
+        }
+
+        void ensureDirectory(Path directory) throws IOException {
+            if (directory != null && knownDirectories.add(directory)) {
+                Files.createDirectories(directory);
+            }
+        }
+
+        void recordWrite(int bytes) {
+            bytesWritten.add(bytes);
+            writeCalls.increment();
+        }
+
+        void recordFsync() {
+            fileFsyncs.increment();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.roc.netty.server.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 跨度环形缓冲，多线程写入、单线程导出，不加锁
+ * 写入方取得递增序号后发布到序号对应的槽位，写满后覆盖最早的跨度，槽位中的序号只增不减；
+ * 读取方按序号读取，槽位中的序号与期望不符说明已被覆盖（计为丢弃）或尚未发布（下次再读）。
+ */
+public class SpanRing {
+
+    private final AtomicReferenceArray<Span> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    public SpanRing(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public void add(Span span) {
+        long sequence = next.getAndIncrement();
+        span.sequence = sequence;
+        int index = (int) (sequence & mask);
+        // 写入慢的线程不能用旧跨度覆盖已发布的新跨度，否则读取方会一直等待已被覆盖的序号
+        Span current;
+        do {
+            current = slots.get(index);
+            if (current != null && current.sequence > sequence) {
+                return;
+            }
+        } while (!slots.compareAndSet(index, current, span));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 已写入的跨度总数
+     */
+    public long written() {
+        return next.get();
+    }
+
+    /**
+     * 从 cursor 开始读取已发布的跨度到 out，返回新的游标；被覆盖而没读到的跨度数累加到 dropped[0]
+     */
+    public long drain(long cursor, List<Span> out, long[] dropped) {
+        long end = next.get();
+        if (end - cursor > capacity()) {
+            dropped[0] += end - capacity() - cursor;
+            cursor = end - capacity();
+        }
+        while (cursor < end) {
+            Span span = slots.get((int) (cursor & mask));
+            if (span == null || span.sequence < cursor) {
+                // 序号已分配但还没发布
+                break;
+            }
+            if (span.sequence == cursor) {
+                out.add(span);
+            } else {
+                dropped[0]++;
+            }
+            cursor++;
+        }
+        return cursor;
+    }
+
+    /**
+     * 最近写入的至多 limit 个跨度，新的在前
+     */
+    public List<Span> recent(int limit) {
+        List<Span> result = new ArrayList<>(Math.min(limit, capacity()));
+        long end = next.get();
+        for (long sequence = end - 1; sequence >= Math.max(0, end - capacity()) && result.size() < limit; sequence--) {
+            Span span = slots.get((int) (sequence & mask));
+            if (span != null && span.sequence == sequence) {
+                result.add(span);
+            }
+        }
+        return result;
+    }
+}
@@ -1,9 +1,10 @@
 package com.example.netty.client;
 
+import com.roc.netty.server.NettyServerApplication;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(classes = NettyServerApplication.class)
 class NettyClientApplicationTests {
 
     @Test
@@ -0,0 +1,182 @@
+package com.roc.netty.server.columnar;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DayFileTests {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+    private static final long BASE_TIME = 1_704_067_200_000L;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 第i行：时间有正有负的抖动，级别按 i % 5，线程 thread-(i % threads)，logger 按 i % 3
+     */
+    private static RowGroupBuilder build(int rows, int threads) {
+        RowGroupBuilder builder = new RowGroupBuilder();
+        for (int i = 0; i < rows; i++) {
+            addRow(builder, i, threads);
+            if (i % 10 == 9) {
+                byte[] trace = ("\tat com.example.Service.call(Service.java:" + i + ")").getBytes(StandardCharsets.UTF_8);
+                builder.appendToLastMessage(trace, 0, trace.length);
+            }
+        }
+        return builder;
+    }
+
+    private static void addRow(RowGroupBuilder builder, int i, int threads) {
+        String thread = "thread-" + (i % threads);
+        String logger = "com.example.Logger" + (i % 3);
+        String message = "message " + i;
+        byte[] line = (thread + logger + message).getBytes(StandardCharsets.UTF_8);
+        int loggerStart = thread.length();
+        int messageStart = loggerStart + logger.length();
+        builder.addRow(time(i), (byte) (i % 5), line, 0, loggerStart, loggerStart, messageStart,
+                messageStart, line.length);
+    }
+
+    private static long time(int i) {
+        return BASE_TIME + i * 1000L + (i % 2 == 0 ? 250 : -250);
+    }
+
+    private static String message(int i) {
+        String message = "message " + i;
+        return i % 10 == 9 ? message + "\n\tat com.example.Service.call(Service.java:" + i + ")" : message;
+    }
+
+    private static void assertRows(FileChannel channel, RowGroup rowGroup, int first, int threads)
+            throws IOException {
+        RowGroupScan scan = new RowGroupScan(channel, rowGroup);
+        long[] times = scan.times();
+        byte[] levels = scan.levels();
+        String[] threadNames = scan.threadNames();
+        int[] threadCodes = scan.threadCodes();
+        String[] loggerNames = scan.loggerNames();
+        int[] loggerCodes = scan.loggerCodes();
+        RowGroup.Messages messages = scan.messages();
+        for (int row = 0; row < rowGroup.rows; row++) {
+            int i = first + row;
+            assertEquals(time(i), times[row]);
+            assertEquals(i % 5, levels[row]);
+            assertEquals("thread-" + (i % threads), threadNames[threadCodes[row]]);
+            assertEquals("com.example.Logger" + (i % 3), loggerNames[loggerCodes[row]]);
+            assertEquals(message(i), messages.get(row));
+        }
+    }
+
+    @Test
+    void rowGroupsRoundTripThroughDayFile() throws IOException {
+        Path file = directory.resolve("client-a").resolve("2024-01-01.col");
+        DayFile dayFile = DayFile.open(DAY, file);
+        // 线程数超过256时字典编码为2字节
+        dayFile.append(build(1000, 300).encode(true));
+        dayFile.append(build(50, 4).encode(false));
+        assertEquals(Files.size(file), dayFile.size());
+
+        DayFile reopened = DayFile.open(DAY, file);
+        List<RowGroup> rowGroups = reopened.getRowGroups();
+        assertEquals(2, rowGroups.size());
+        assertEquals(dayFile.size(), reopened.size());
+        RowGroup first = rowGroups.get(0);
+        assertEquals(1000, first.rows);
+        assertEquals(time(0), first.minTime);
+        assertEquals(time(999), first.maxTime);
+        assertEquals(0x1F, first.levelMask);
+        try (FileChannel channel = reopened.openForRead()) {
+            assertRows(channel, first, 0, 300);
+            assertRows(channel, rowGroups.get(1), 0, 4);
+        }
+    }
+
+    @Test
+    void scanSelectsRowsByColumnFilters() throws IOException {
+        Path file = directory.resolve("2024-01-01.col");
+        DayFile dayFile = DayFile.open(DAY, file);
+        dayFile.append(build(200, 8).encode(true));
+        RowGroup rowGroup = dayFile.getRowGroups().get(0);
+        try (FileChannel channel = dayFile.openForRead()) {
+            // 级别4为ERROR，logger按 i % 3，线程按 i % 8，时间在 [time(20), time(120)) 内
+            ColumnarFilter filter = new ColumnarFilter(time(20), time(120), "ERROR", "%Logger1", "thread-_", null);
+            RowGroupScan scan = new RowGroupScan(channel, rowGroup);
+            int count = scan.select(filter);
+            int expected = 0;
+            for (int i = 0; i < 200; i++) {
+                boolean match = i % 5 == 4 && i % 3 == 1 && time(i) >= time(20) && time(i) < time(120);
+                assertEquals(match, scan.selected[i], "row " + i);
+                expected += match ? 1 : 0;
+            }
+            assertEquals(expected, count);
+
+            ColumnarFilter byMessage = new ColumnarFilter(time(0), time(200), null, null, null, "Service.java:19");
+            RowGroupScan messageScan = new RowGroupScan(channel, rowGroup);
+            assertEquals(2, messageScan.select(byMessage));
+            assertTrue(messageScan.selected[19]);
+            assertTrue(messageScan.selected[199]);
+        }
+    }
+
+    @Test
+    void incompleteTrailingRowGroupIsTruncated() throws IOException {
+        Path file = directory.resolve("2024-01-01.col");
+        DayFile dayFile = DayFile.open(DAY, file);
+        byte[] complete = build(100, 4).encode(true);
+        dayFile.append(complete);
+        // 异常退出时写了一半的行组
+        byte[] partial = build(100, 4).encode(false);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(partial, 0, partial.length / 2));
+        }
+
+        DayFile reopened = DayFile.open(DAY, file);
+        assertEquals(1, reopened.getRowGroups().size());
+        assertEquals(complete.length, reopened.size());
+        assertEquals(complete.length, Files.size(file));
+        assertArrayEquals(complete, Files.readAllBytes(file));
+
+        // 截断后继续追加
+        reopened.append(partial);
+        assertEquals(2, DayFile.open(DAY, file).getRowGroups().size());
+    }
+
+    @Test
+    void invalidHeaderIsRejected() {
+        byte[] encoded = build(10, 2).encode(false);
+        ByteBuffer header = ByteBuffer.wrap(encoded, 0, RowGroupBuilder.HEADER_SIZE).slice();
+        assertNull(RowGroup.parse(0, header, encoded.length - 1));
+        encoded[0] = 0;
+        assertNull(RowGroup.parse(0, ByteBuffer.wrap(encoded, 0, RowGroupBuilder.HEADER_SIZE).slice(), encoded.length));
+    }
+
+    @Test
+    void deletedFileRejectsAppends() throws IOException {
+        Path file = directory.resolve("client-a").resolve("2024-01-01.col");
+        DayFile dayFile = DayFile.open(DAY, file);
+        assertTrue(dayFile.append(build(100, 4).encode(true)));
+        long size = Files.size(file);
+
+        assertEquals(size, dayFile.delete());
+        assertFalse(Files.exists(file));
+        // 删除后的追加不再重建文件，由调用方重新打开
+        assertFalse(dayFile.append(build(10, 4).encode(true)));
+        assertFalse(Files.exists(file));
+        assertEquals(0, dayFile.delete());
+    }
+}
@@ -0,0 +1,82 @@
+package com.roc.netty.server.compress;
+
+import com.roc.netty.server.config.NettyConfig;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DictionaryTrainerTests {
+
+    private static final int MAX_SAMPLES = 64;
+
+    private DictionaryTrainer newTrainer() {
+        NettyConfig config = new NettyConfig();
+        config.getMessageCompression().setMaxSamples(MAX_SAMPLES);
+        DictionaryTrainer trainer = new DictionaryTrainer(config);
+        trainer.start();
+        return trainer;
+    }
+
+    private static byte[] message(int thread, int i) {
+        return ("{\"type\":\"order\",\"thread\":" + thread + ",\"sequence\":" + i + ",\"status\":\"ok\"}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void keepsEverySampleUntilFull() {
+        DictionaryTrainer trainer = newTrainer();
+        for (int i = 0; i < MAX_SAMPLES / 2; i++) {
+            trainer.sample(message(0, i));
+        }
+        assertEquals(MAX_SAMPLES / 2, trainer.snapshot().size());
+    }
+
+    @Test
+    void ignoresMessagesOutsideSampleSizeLimits() {
+        DictionaryTrainer trainer = newTrainer();
+        trainer.sample(null);
+        trainer.sample(new byte[4]);
+        trainer.sample(new byte[8192]);
+        assertTrue(trainer.snapshot().isEmpty());
+    }
+
+    @Test
+    void concurrentSamplingFillsReservoirWithSampledMessages() throws Exception {
+        DictionaryTrainer trainer = newTrainer();
+        int threads = 4;
+        int perThread = 10_000;
+        Set<String> sampled = new HashSet<>();
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                sampled.add(new String(message(t, i), StandardCharsets.UTF_8));
+            }
+        }
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    trainer.sample(message(thread, i));
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        List<byte[]> snapshot = trainer.snapshot();
+        assertEquals(MAX_SAMPLES, snapshot.size());
+        for (byte[] sample : snapshot) {
+            assertTrue(sampled.contains(new String(sample, StandardCharsets.UTF_8)));
+        }
+        assertTrue(DictionaryTrainer.train(snapshot, 1024).length > 0);
+    }
+}
@@ -0,0 +1,158 @@
+package com.roc.netty.server.dedup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChunkAssemblerTests {
+
+    private static final int CHUNK_SIZE = 64;
+    private static final String KEY = "client-a/app.log";
+
+    @TempDir
+    Path directory;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final Consumer<ByteBuf> sink = buf -> {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        buf.release();
+        output.write(bytes, 0, bytes.length);
+    };
+
+    private static byte[] content(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static FileManifest manifest(byte[] data) {
+        int count = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        long[] chunks = new long[count];
+        for (int i = 0; i < count; i++) {
+            chunks[i] = XxHash64.hash(data, i * CHUNK_SIZE, Math.min(CHUNK_SIZE, data.length - i * CHUNK_SIZE));
+        }
+        return new FileManifest(data.length, CHUNK_SIZE, XxHash64.combine(chunks), chunks);
+    }
+
+    private ChunkSources sources(byte[] stored) throws IOException {
+        Path file = directory.resolve("app.log");
+        Files.write(file, stored);
+        return new ChunkSources(Collections.singletonMap(KEY, new StoredLocation(file, false, 0, stored.length)));
+    }
+
+    /**
+     * 按不规则的大小发送数据，模拟解压后到达的数据块
+     */
+    private static void upload(ChunkAssembler assembler, byte[] data, Consumer<ByteBuf> sink) throws IOException {
+        Random random = new Random(7);
+        for (int position = 0; position < data.length; ) {
+            int n = Math.min(data.length - position, 1 + random.nextInt(3 * CHUNK_SIZE));
+            assembler.write(Unpooled.copiedBuffer(data, position, n), sink);
+            position += n;
+        }
+    }
+
+    @Test
+    void wholeFileUploadRecordsChunkHashes() throws IOException {
+        byte[] data = content(10 * CHUNK_SIZE + 17, 1);
+        ChunkAssembler assembler = new ChunkAssembler(CHUNK_SIZE);
+        upload(assembler, data, sink);
+        assembler.finish(sink);
+        assertArrayEquals(data, output.toByteArray());
+        assertEquals(manifest(data), assembler.getResult());
+        assertEquals(0, assembler.getReusedBytes());
+    }
+
+    @Test
+    void appendedFileReusesStoredPrefix() throws IOException {
+        // 已存储的文件追加了新内容：前10块复用，只上传追加的部分
+        byte[] stored = content(10 * CHUNK_SIZE, 2);
+        byte[] data = Arrays.copyOf(stored, 13 * CHUNK_SIZE + 5);
+        System.arraycopy(content(3 * CHUNK_SIZE + 5, 3), 0, data, stored.length, 3 * CHUNK_SIZE + 5);
+        FileManifest expected = manifest(data);
+        ChunkAssembler.Source[] sourceList = new ChunkAssembler.Source[expected.getChunks().length];
+        for (int i = 0; i < 10; i++) {
+            sourceList[i] = new ChunkAssembler.Source(KEY, (long) i * CHUNK_SIZE);
+        }
+
+        ChunkAssembler assembler = new ChunkAssembler(expected, sourceList, sources(stored));
+        upload(assembler, Arrays.copyOfRange(data, stored.length, data.length), sink);
+        assembler.finish(sink);
+        assertArrayEquals(data, output.toByteArray());
+        assertEquals(stored.length, assembler.getReusedBytes());
+        assertEquals(expected, assembler.getResult());
+    }
+
+    @Test
+    void reusedChunksInterleaveWithUploadedChunks() throws IOException {
+        // 块1、3、4在已存储的文件中（位置不同），其余块上传
+        byte[] data = content(6 * CHUNK_SIZE + 30, 4);
+        byte[] stored = new byte[5 * CHUNK_SIZE];
+        System.arraycopy(data, CHUNK_SIZE, stored, 4 * CHUNK_SIZE, CHUNK_SIZE);
+        System.arraycopy(data, 3 * CHUNK_SIZE, stored, 0, 2 * CHUNK_SIZE);
+        FileManifest expected = manifest(data);
+        ChunkAssembler.Source[] sourceList = new ChunkAssembler.Source[expected.getChunks().length];
+        sourceList[1] = new ChunkAssembler.Source(KEY, 4L * CHUNK_SIZE);
+        sourceList[3] = new ChunkAssembler.Source(KEY, 0);
+        sourceList[4] = new ChunkAssembler.Source(KEY, CHUNK_SIZE);
+        ByteArrayOutputStream missing = new ByteArrayOutputStream();
+        for (int i : new int[]{0, 2, 5, 6}) {
+            missing.write(data, i * CHUNK_SIZE, expected.chunkLength(i));
+        }
+
+        ChunkAssembler assembler = new ChunkAssembler(expected, sourceList, sources(stored));
+        upload(assembler, missing.toByteArray(), sink);
+        assembler.finish(sink);
+        assertArrayEquals(data, output.toByteArray());
+        assertEquals(3L * CHUNK_SIZE, assembler.getReusedBytes());
+        assertEquals(expected, assembler.getResult());
+    }
+
+    @Test
+    void changedStoredChunkIsRejected() throws IOException {
+        byte[] data = content(4 * CHUNK_SIZE, 5);
+        byte[] stored = Arrays.copyOf(data, 2 * CHUNK_SIZE);
+        stored[CHUNK_SIZE + 3] ^= 1;
+        FileManifest expected = manifest(data);
+        ChunkAssembler.Source[] sourceList = new ChunkAssembler.Source[expected.getChunks().length];
+        sourceList[0] = new ChunkAssembler.Source(KEY, 0);
+        sourceList[1] = new ChunkAssembler.Source(KEY, CHUNK_SIZE);
+
+        ChunkAssembler assembler = new ChunkAssembler(expected, sourceList, sources(stored));
+        assertThrows(IOException.class, () -> upload(assembler,
+                Arrays.copyOfRange(data, 2 * CHUNK_SIZE, data.length), sink));
+        assembler.close();
+    }
+
+    @Test
+    void uploadNotMatchingManifestIsRejected() throws IOException {
+        byte[] data = content(3 * CHUNK_SIZE, 6);
+        FileManifest expected = manifest(data);
+        ChunkAssembler.Source[] none = new ChunkAssembler.Source[expected.getChunks().length];
+
+        byte[] corrupted = data.clone();
+        corrupted[CHUNK_SIZE] ^= 1;
+        ChunkAssembler assembler = new ChunkAssembler(expected, none, sources(new byte[0]));
+        assertThrows(IOException.class, () -> upload(assembler, corrupted, sink));
+
+        // 数据不足：结束时仍缺块
+        ChunkAssembler truncated = new ChunkAssembler(expected, none, sources(new byte[0]));
+        upload(truncated, Arrays.copyOf(data, 2 * CHUNK_SIZE + 1), sink);
+        assertThrows(IOException.class, () -> truncated.finish(sink));
+    }
+}
@@ -0,0 +1,117 @@
+package com.roc.netty.server.logstore;
+
+import com.roc.netty.server.compaction.RetentionTarget;
+import com.roc.netty.server.config.LogStoreConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogStoreRetentionTests {
+
+    private static final String CLIENT = "client-a";
+
+    @TempDir
+    Path directory;
+
+    private LogStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        LogStoreConfig config = new LogStoreConfig();
+        config.setDirectory(directory.toString());
+        config.setSegmentMaxBytes(1024);
+        store = new LogStore(config);
+        store.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    /**
+     * 写入某天的 count 行，每行约60字节，超过1024字节时滚动到新段
+     */
+    private void append(LocalDate day, int count) {
+        for (int i = 0; i < count; i++) {
+            byte[] line = String.format("%s 10:00:%02d.000 [main] INFO  com.example.Service - line %d",
+                    day, i % 60, i).getBytes(StandardCharsets.UTF_8);
+            store.onLine(CLIENT, line, 0, line.length);
+        }
+    }
+
+    @Test
+    void dropsSealedSegmentsAndNotifiesListeners() throws IOException {
+        LocalDate old = LocalDate.now().minusDays(40);
+        append(old, 20);
+        append(LocalDate.now(), 20);
+
+        List<RetentionTarget.Unit> units = store.retentionUnits(CLIENT);
+        assertTrue(units.size() >= 3, "segments: " + units.size());
+        assertEquals(old, units.get(0).getDay());
+        assertFalse(units.get(0).isWritable());
+        assertTrue(units.get(units.size() - 1).isWritable());
+        assertEquals(LocalDate.now(), units.get(units.size() - 1).getDay());
+
+        List<String> dropped = new ArrayList<>();
+        store.subscribe(new AppendListener() {
+            @Override
+            public void onAppend(String clientId, long position, byte[] line, int offset, int length) {
+            }
+
+            @Override
+            public void onSegmentsDropped(String clientId) {
+                dropped.add(clientId);
+            }
+        }, clientId -> Long.MAX_VALUE);
+
+        RetentionTarget.Unit first = units.get(0);
+        long firstId = Long.parseLong(first.getName());
+        long[] positions = {LogStore.position(firstId, 0)};
+        assertNotNull(store.readLines(CLIENT, positions, 1).get(0));
+
+        assertTrue(store.deleteUnit(CLIENT, first) > 0);
+        assertEquals(1, dropped.size());
+        assertNull(store.readLines(CLIENT, positions, 1).get(0));
+        assertFalse(Files.exists(directory.resolve(CLIENT).resolve(Segment.fileName(firstId, Segment.LOG_SUFFIX))));
+        assertEquals(units.size() - 1, store.segmentIds(CLIENT).length);
+        assertEquals(0, store.deleteUnit(CLIENT, first));
+
+        // 可写段不删除
+        RetentionTarget.Unit active = units.get(units.size() - 1);
+        assertEquals(0, store.deleteUnit(CLIENT, active));
+        long[] remaining = store.segmentIds(CLIENT);
+        assertEquals(Long.parseLong(active.getName()), remaining[remaining.length - 1]);
+    }
+
+    @Test
+    void reloadedSegmentsKeepTheirDays() throws IOException {
+        LocalDate old = LocalDate.now().minusDays(3);
+        append(old, 30);
+        long[] before = store.segmentIds(CLIENT);
+        store.close();
+
+        setUp();
+        assertArrayEquals(before, store.segmentIds(CLIENT));
+        for (RetentionTarget.Unit unit : store.retentionUnits(CLIENT)) {
+            assertEquals(old, unit.getDay());
+            assertFalse(unit.isWritable());
+        }
+    }
+}
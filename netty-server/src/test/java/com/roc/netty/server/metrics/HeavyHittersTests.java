@@ -0,0 +1,69 @@
+package com.roc.netty.server.metrics;
+
+import com.roc.netty.server.config.HeavyHitterConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeavyHittersTests {
+
+    @Test
+    void ringKeepsUnreadFramesAndDropsWhenFull() {
+        InboundRing ring = new InboundRing(1000);
+        assertEquals(1024, ring.capacity());
+        List<String> read = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < ring.capacity(); i++) {
+                assertTrue(ring.offer("client-" + i, (byte) 1, i));
+            }
+            assertFalse(ring.offer("overflow", (byte) 1, 0));
+            read.clear();
+            assertEquals(ring.capacity(), ring.drain((clientId, type, length) -> read.add(clientId + ":" + length)));
+            assertEquals("client-0:0", read.get(0));
+            assertEquals("client-1023:1023", read.get(ring.capacity() - 1));
+        }
+        assertEquals(0, ring.drain((clientId, type, length) -> read.add(clientId)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void framesAreCountedAfterDrain() {
+        HeavyHitterConfig config = new HeavyHitterConfig();
+        config.setRingSize(1024);
+        HeavyHitters heavyHitters = new HeavyHitters(config);
+        for (int i = 0; i < 100; i++) {
+            heavyHitters.inbound("client-a", (byte) 1, 10);
+        }
+        heavyHitters.inbound("client-b", (byte) 1, 5000);
+        heavyHitters.inbound(null, (byte) 1, 1);
+        heavyHitters.drain();
+        for (int i = 0; i < 2000; i++) {
+            heavyHitters.inbound("client-c", (byte) 1, 1);
+        }
+
+        Map<String, Object> result = heavyHitters.query(2, 10);
+        assertEquals(2000L - 1024, result.get("droppedFrames"));
+        heavyHitters.drain();
+        result = heavyHitters.query(2, 10);
+        assertEquals(3L, result.get("activeClients"));
+
+        List<Map<String, Object>> messages = (List<Map<String, Object>>)
+                ((Map<String, Object>) result.get("messagesByClient")).get("top");
+        assertEquals("client-c", messages.get(0).get("key"));
+        assertEquals(1024L, messages.get(0).get("count"));
+        assertEquals("client-a", messages.get(1).get("key"));
+        assertEquals(100L, messages.get(1).get("count"));
+
+        List<Map<String, Object>> bytes = (List<Map<String, Object>>)
+                ((Map<String, Object>) result.get("bytesByClient")).get("top");
+        assertEquals("client-b", bytes.get(0).get("key"));
+        assertEquals(5000L, bytes.get(0).get("count"));
+        assertEquals(1126L, ((Map<String, Object>) result.get("messagesByType")).get("total"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.roc.netty.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTests {
+
+    private static final int PRECISION = 12;
+    // 标准误差 1.04/sqrt(4096) ≈ 1.6%，按4倍标准误差检查
+    private static final double TOLERANCE = 4 * 1.04 / Math.sqrt(1 << PRECISION);
+
+    private static HyperLogLog of(int from, int to) {
+        HyperLogLog hll = new HyperLogLog(PRECISION);
+        for (int i = from; i < to; i++) {
+            hll.add(HyperLogLog.hash("client-" + i));
+        }
+        return hll;
+    }
+
+    private static void assertWithinBound(long expected, long estimate) {
+        double error = Math.abs(estimate - expected) / (double) expected;
+        assertTrue(error <= TOLERANCE, "expected " + expected + " but estimated " + estimate);
+    }
+
+    @Test
+    void emptyEstimatesZero() {
+        assertEquals(0, new HyperLogLog(PRECISION).estimate());
+    }
+
+    @Test
+    void estimatesWithinErrorBound() {
+        for (int cardinality : new int[]{10, 100, 1000, 5000, 20000, 100000, 1000000}) {
+            assertWithinBound(cardinality, of(0, cardinality).estimate());
+        }
+    }
+
+    @Test
+    void smallCardinalityIsNearlyExact() {
+        // 线性计数区间内几乎没有碰撞
+        for (int cardinality = 1; cardinality <= 50; cardinality++) {
+            assertEquals(cardinality, of(0, cardinality).estimate(), 1);
+        }
+    }
+
+    @Test
+    void duplicatesDoNotCount() {
+        HyperLogLog hll = of(0, 5000);
+        long estimate = hll.estimate();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 5000; i++) {
+                hll.add(HyperLogLog.hash("client-" + i));
+            }
+        }
+        assertEquals(estimate, hll.estimate());
+    }
+
+    @Test
+    void mergeEstimatesUnion() {
+        HyperLogLog merged = of(0, 30000);
+        merged.merge(of(20000, 50000));
+        assertWithinBound(50000, merged.estimate());
+
+        HyperLogLog direct = of(0, 50000);
+        assertEquals(direct.estimate(), merged.estimate());
+    }
+
+    @Test
+    void clearResets() {
+        HyperLogLog hll = of(0, 1000);
+        hll.clear();
+        assertEquals(0, hll.estimate());
+    }
+}
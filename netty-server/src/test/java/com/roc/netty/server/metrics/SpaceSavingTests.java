@@ -0,0 +1,113 @@
+package com.roc.netty.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTests {
+
+    private static long count(Map<String, Object> item) {
+        return (Long) item.get("count");
+    }
+
+    private static long guaranteed(Map<String, Object> item) {
+        return (Long) item.get("guaranteed");
+    }
+
+    @Test
+    void exactWhileNotFull() {
+        SpaceSaving summary = new SpaceSaving(16);
+        for (int i = 0; i < 10; i++) {
+            summary.add("key-" + i, i + 1);
+            summary.add("key-" + i, i + 1);
+        }
+        assertEquals(0, summary.minCount());
+
+        SpaceSaving.Merger merger = new SpaceSaving.Merger();
+        merger.add(summary);
+        assertEquals(110, merger.getTotal());
+        List<Map<String, Object>> top = merger.top(3);
+        assertEquals(3, top.size());
+        assertEquals("key-9", top.get(0).get("key"));
+        assertEquals(20, count(top.get(0)));
+        assertEquals(20, guaranteed(top.get(0)));
+        assertEquals("key-8", top.get(1).get("key"));
+        assertEquals("key-7", top.get(2).get("key"));
+    }
+
+    @Test
+    void heavyKeysAreKeptWithBoundedError() {
+        // 10个重度key各占约5%，其余为大量轻度key
+        int capacity = 64;
+        SpaceSaving summary = new SpaceSaving(capacity);
+        Map<String, Long> actual = new HashMap<>();
+        Random random = new Random(1);
+        long total = 0;
+        for (int i = 0; i < 200000; i++) {
+            String key = random.nextInt(2) == 0 ? "heavy-" + random.nextInt(10) : "light-" + random.nextInt(50000);
+            long weight = 1 + random.nextInt(3);
+            summary.add(key, weight);
+            actual.merge(key, weight, Long::sum);
+            total += weight;
+        }
+        // 表满后未在表中的key的计数不超过 总量/容量
+        assertTrue(summary.minCount() <= total / capacity);
+
+        SpaceSaving.Merger merger = new SpaceSaving.Merger();
+        merger.add(summary);
+        assertEquals(total, merger.getTotal());
+        List<Map<String, Object>> top = merger.top(10);
+        for (Map<String, Object> item : top) {
+            String key = (String) item.get("key");
+            assertTrue(key.startsWith("heavy-"), key);
+            long real = actual.get(key);
+            assertTrue(guaranteed(item) <= real && real <= count(item), key);
+            assertTrue(count(item) - guaranteed(item) <= total / capacity, key);
+        }
+    }
+
+    @Test
+    void mergedBoundsCoverActualCounts() {
+        // 各窗口的key分布不同，合并后上下界仍包含实际计数
+        Map<String, Long> actual = new HashMap<>();
+        SpaceSaving.Merger merger = new SpaceSaving.Merger();
+        Random random = new Random(2);
+        for (int window = 0; window < 5; window++) {
+            SpaceSaving summary = new SpaceSaving(32);
+            for (int i = 0; i < 20000; i++) {
+                int skew = random.nextInt(4) == 0 ? random.nextInt(8) : 8 + random.nextInt(1000);
+                String key = "key-" + ((skew + window * 3) % 1008);
+                summary.add(key, 1);
+                actual.merge(key, 1L, Long::sum);
+            }
+            merger.add(summary);
+        }
+        assertEquals(100000, merger.getTotal());
+        for (Map<String, Object> item : merger.top(8)) {
+            long real = actual.getOrDefault((String) item.get("key"), 0L);
+            assertTrue(guaranteed(item) <= real && real <= count(item), item.toString());
+        }
+    }
+
+    @Test
+    void clearResets() {
+        SpaceSaving summary = new SpaceSaving(16);
+        for (int i = 0; i < 100; i++) {
+            summary.add("key-" + i, 1);
+        }
+        summary.clear();
+        assertEquals(0, summary.minCount());
+        summary.add("again", 5);
+        SpaceSaving.Merger merger = new SpaceSaving.Merger();
+        merger.add(summary);
+        assertEquals(5, merger.getTotal());
+        assertEquals(1, merger.top(10).size());
+        assertEquals(5, guaranteed(merger.top(10).get(0)));
+    }
+}
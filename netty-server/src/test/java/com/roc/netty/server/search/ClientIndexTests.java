@@ -0,0 +1,162 @@
+package com.roc.netty.server.search;
+
+import com.roc.netty.server.config.SearchIndexConfig;
+import com.roc.netty.server.logstore.LogStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientIndexTests {
+
+    @TempDir
+    Path directory;
+
+    private final SearchIndexConfig config = new SearchIndexConfig();
+
+    private ClientIndex index;
+
+    /**
+     * 第i行的位置为 i * 10；每3行包含error，每5行包含disk
+     */
+    private void addLines(int from, int to) {
+        for (int i = from; i < to; i++) {
+            StringBuilder line = new StringBuilder("line ").append(i % 2 == 0 ? "even" : "odd");
+            if (i % 3 == 0) {
+                line.append(" ERROR");
+            }
+            if (i % 5 == 0) {
+                line.append(" disk full");
+            }
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            index.add(i * 10L, bytes, 0, bytes.length);
+        }
+    }
+
+    private static long[] expected(int from, int to, int divisor) {
+        List<Long> positions = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (i % divisor == 0) {
+                positions.add(i * 10L);
+            }
+        }
+        return positions.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private long[] search(long after, int limit, String... terms) {
+        long[] out = new long[limit];
+        int found = index.search(Arrays.asList(terms), after, out, new ClientIndex.SearchStats());
+        return Arrays.copyOf(out, found);
+    }
+
+    /**
+     * 按游标逐页读取所有结果
+     */
+    private long[] searchAll(int pageSize, String... terms) {
+        List<Long> all = new ArrayList<>();
+        long after = -1;
+        while (true) {
+            long[] page = search(after, pageSize, terms);
+            for (long position : page) {
+                all.add(position);
+            }
+            if (page.length < pageSize) {
+                break;
+            }
+            after = page[page.length - 1];
+        }
+        return all.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Test
+    void intersectsPostingsOfAllTerms() {
+        index = new ClientIndex("client-a", directory, config);
+        addLines(0, 200);
+        assertArrayEquals(expected(0, 200, 3), search(-1, 1000, "error"));
+        assertArrayEquals(expected(0, 200, 15), search(-1, 1000, "error", "disk"));
+        assertArrayEquals(expected(0, 200, 30), search(-1, 1000, "error", "disk", "even"));
+        assertEquals(0, search(-1, 1000, "error", "missing").length);
+    }
+
+    @Test
+    void cursorPagesWithoutGapsOrDuplicates() {
+        index = new ClientIndex("client-a", directory, config);
+        addLines(0, 500);
+        assertArrayEquals(expected(0, 500, 3), searchAll(7, "error"));
+        assertArrayEquals(expected(0, 500, 15), searchAll(4, "disk", "error"));
+        // 游标正好落在一页的最后一个结果上
+        long[] first = search(-1, 3, "disk");
+        assertArrayEquals(new long[]{0, 50, 100}, first);
+        assertArrayEquals(new long[]{150, 200, 250}, search(first[2], 3, "disk"));
+    }
+
+    @Test
+    void searchSpansMemoryAndDiskSegments() throws IOException {
+        config.setMergeFactor(2);
+        index = new ClientIndex("client-a", directory, config);
+        addLines(0, 100);
+        index.write(index.freezeIfDue(true));
+        addLines(100, 200);
+        index.write(index.freezeIfDue(true));
+        // 仍在内存中的段
+        addLines(200, 300);
+        assertEquals(2, index.getSegments().size());
+        assertArrayEquals(expected(0, 300, 15), searchAll(5, "error", "disk"));
+
+        List<DiskSegment> group = index.selectMerge();
+        assertNotNull(group);
+        index.merge(group);
+        assertEquals(1, index.getSegments().size());
+        assertNull(index.selectMerge());
+        assertArrayEquals(expected(0, 300, 15), searchAll(5, "error", "disk"));
+        assertArrayEquals(expected(0, 300, 3), searchAll(1000, "error"));
+
+        // 重新加载只有已写盘的段，已索引位置之前的行不再重复索引
+        ClientIndex reloaded = ClientIndex.load("client-a", directory, config);
+        assertEquals(1990, reloaded.getIndexedPosition());
+        byte[] line = "line error".getBytes(StandardCharsets.UTF_8);
+        assertNull(reloaded.add(1990, line, 0, line.length));
+        index = reloaded;
+        assertArrayEquals(expected(0, 200, 3), search(-1, 1000, "error"));
+        assertTrue(index.getSegments().get(0) instanceof DiskSegment);
+    }
+
+    @Test
+    void dropsSegmentsPointingOnlyAtDeletedLogSegments() throws IOException {
+        index = new ClientIndex("client-a", directory, config);
+        byte[] line = "disk full".getBytes(StandardCharsets.UTF_8);
+        for (long segmentId = 1; segmentId <= 3; segmentId++) {
+            for (long offset = 0; offset < 5; offset++) {
+                index.add(LogStore.position(segmentId, offset * 100), line, 0, line.length);
+            }
+            index.write(index.freezeIfDue(true));
+        }
+        assertEquals(15, search(-1, 100, "disk").length);
+
+        // 日志段1已删除；段2、3仍在
+        assertEquals(1, index.dropUnreadable(new long[]{2, 3, 4}));
+        long[] found = search(-1, 100, "disk");
+        assertEquals(10, found.length);
+        assertEquals(LogStore.position(2, 0), found[0]);
+        assertEquals(0, index.dropUnreadable(new long[]{2, 3, 4}));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+
+        ClientIndex reloaded = ClientIndex.load("client-a", directory, config);
+        assertEquals(2, reloaded.getSegments().size());
+    }
+}
@@ -0,0 +1,65 @@
+package com.roc.netty.server.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingsTests {
+
+    private static Postings encode(long... positions) {
+        byte[] data = new byte[positions.length * 10];
+        int length = 0;
+        long last = -1;
+        for (long position : positions) {
+            length = Postings.writeVarLong(data, length, last < 0 ? position : position - last);
+            last = position;
+        }
+        return new Postings(ByteBuffer.wrap(data, 0, length), positions.length);
+    }
+
+    @Test
+    void varLongRoundTrip() {
+        long[] values = {0, 1, 127, 128, 16383, 16384, 1L << 40, Long.MAX_VALUE, -1};
+        byte[] data = new byte[values.length * 10];
+        int length = 0;
+        for (long value : values) {
+            length = Postings.writeVarLong(data, length, value);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        for (long value : values) {
+            assertEquals(value, Postings.readVarLong(buffer));
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void iteratesDeltaEncodedPositions() {
+        long[] positions = {5, 6, 300, 70000, 1L << 41};
+        Postings postings = encode(positions);
+        assertEquals(positions.length, postings.count());
+        for (long position : positions) {
+            assertTrue(postings.next());
+            assertEquals(position, postings.current());
+        }
+        assertFalse(postings.next());
+    }
+
+    @Test
+    void advanceSkipsToFirstPositionNotBelowTarget() {
+        Postings postings = encode(10, 20, 30, 40);
+        assertTrue(postings.advance(0));
+        assertEquals(10, postings.current());
+        // 已在目标上时不前进
+        assertTrue(postings.advance(10));
+        assertEquals(10, postings.current());
+        assertTrue(postings.advance(21));
+        assertEquals(30, postings.current());
+        assertTrue(postings.advance(40));
+        assertEquals(40, postings.current());
+        assertFalse(postings.advance(41));
+    }
+}
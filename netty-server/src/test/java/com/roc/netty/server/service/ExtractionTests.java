@@ -0,0 +1,60 @@
+package com.roc.netty.server.service;
+
+import com.roc.netty.server.ingest.LogTimestamps;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExtractionTests {
+
+    private static void add(Extraction extraction, String connectionId, int stream, long baseTime, String... lines) {
+        byte[] data = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+        extraction.addData(connectionId, stream, baseTime, data, 0, data.length);
+    }
+
+    private static long time(String timestamp) {
+        byte[] bytes = timestamp.getBytes(StandardCharsets.UTF_8);
+        return new LogTimestamps(ZoneId.systemDefault()).parse(bytes, 0, bytes.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> merged(Extraction extraction) {
+        List<String> lines = new ArrayList<>();
+        for (Map<String, Object> item : (List<Map<String, Object>>) extraction.getResult().join().get("lines")) {
+            lines.add(item.get("client") + " " + item.get("line"));
+        }
+        return lines;
+    }
+
+    @Test
+    void stackTracesStayWithTheirLineAcrossClientsAndFiles() {
+        Extraction extraction = new Extraction(1, 100, Arrays.asList("a", "b"));
+        // 客户端a并行扫描两个文件，块交错到达；客户端b的行与a同一时间
+        add(extraction, "a", 0, -1, "2024-01-01 10:00:00.000 ERROR first", "\tat A.run");
+        add(extraction, "b", 0, -1, "2024-01-01 10:00:00.000 ERROR other", "\tat B.run");
+        add(extraction, "a", 1, -1, "2024-01-01 09:00:00.000 INFO earlier");
+        // 文件0的下一块以堆栈行开头，沿用块首时间而不是文件1最后的时间
+        add(extraction, "a", 0, time("2024-01-01 10:00:00.000"), "\tat A.main");
+        // 未带块首时间时沿用同一文件上一块最后的时间
+        add(extraction, "b", 0, -1, "\tat B.main");
+        extraction.end("a", Collections.emptyMap());
+        extraction.end("b", Collections.emptyMap());
+
+        assertEquals(Arrays.asList(
+                "a 2024-01-01 09:00:00.000 INFO earlier",
+                "a 2024-01-01 10:00:00.000 ERROR first",
+                "a \tat A.run",
+                "a \tat A.main",
+                "b 2024-01-01 10:00:00.000 ERROR other",
+                "b \tat B.run",
+                "b \tat B.main"), merged(extraction));
+    }
+}
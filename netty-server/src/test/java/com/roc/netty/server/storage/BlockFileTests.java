@@ -0,0 +1,132 @@
+package com.roc.netty.server.storage;
+
+import com.roc.netty.server.config.StorageConfig;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BlockFileTests {
+
+    private static final int BLOCK_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    private StorageWriter storageWriter;
+    private BlockCompressor compressor;
+
+    @BeforeEach
+    void start() {
+        StorageConfig config = new StorageConfig();
+        config.setBlockSize(BLOCK_SIZE);
+        config.setFsync(false);
+        config.setCompressorThreads(2);
+        storageWriter = new StorageWriter(config);
+        storageWriter.start();
+        compressor = new BlockCompressor(config);
+        compressor.start();
+    }
+
+    @AfterEach
+    void stop() {
+        compressor.stop();
+        storageWriter.stop();
+    }
+
+    /**
+     * 按不同大小的数据块写入，返回落盘的文件
+     */
+    private Path write(byte[] data, int maxChunk) throws Exception {
+        Path target = directory.resolve("app.log" + BlockFileWriter.SUFFIX);
+        StorageFile storageFile = storageWriter.open(target, directory.resolve("app.log.part"));
+        BlockFileWriter writer = new BlockFileWriter(storageFile, compressor, BLOCK_SIZE);
+        Random random = new Random(42);
+        for (int position = 0; position < data.length; ) {
+            int n = Math.min(data.length - position, 1 + random.nextInt(maxChunk));
+            writer.write(Unpooled.wrappedBuffer(data, position, n));
+            position += n;
+        }
+        writer.finish();
+        return storageFile.commit().get(10, TimeUnit.SECONDS);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static byte[] lines(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertRoundTrip(byte[] data, Path file, long lineCount) throws Exception {
+        try (BlockFileReader reader = BlockFileReader.open(file)) {
+            assertEquals(data.length, reader.getRawSize());
+            assertEquals(lineCount, reader.getLineCount());
+            ByteArrayOutputStream all = new ByteArrayOutputStream();
+            reader.readAll(all);
+            assertArrayEquals(data, all.toByteArray());
+            // 按偏移读取跨越块边界的范围
+            byte[] range = new byte[(int) Math.min(data.length, 3 * BLOCK_SIZE + 17)];
+            int from = data.length - range.length;
+            reader.read(from, range, 0, range.length);
+            assertArrayEquals(Arrays.copyOfRange(data, from, data.length), range);
+        }
+    }
+
+    @Test
+    void shortLinesRoundTrip() throws Exception {
+        String[] lines = new String[500];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "2024-01-01 12:00:00.000 INFO line " + i;
+        }
+        byte[] data = lines(lines);
+        assertRoundTrip(data, write(data, 300), lines.length);
+    }
+
+    @Test
+    void linesLongerThanBlockSizeRoundTrip() throws Exception {
+        // 长行使缓冲扩大，紧接的长行没有换行，在较早的换行处截断后剩余部分超过块大小
+        byte[] data = lines("head", repeat('a', 2 * BLOCK_SIZE + 100), repeat('b', 5 * BLOCK_SIZE), "short",
+                repeat('c', 2 * BLOCK_SIZE - 1), repeat('d', 7 * BLOCK_SIZE + 3), "tail");
+        Path file = write(data, 8 * BLOCK_SIZE);
+        assertRoundTrip(data, file, 7);
+        try (BlockFileReader reader = BlockFileReader.open(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(2, reader.readLines(2, 2, out));
+            assertArrayEquals(lines(repeat('b', 5 * BLOCK_SIZE), "short"), out.toByteArray());
+        }
+    }
+
+    @Test
+    void lineBeyondMaxGrowthIsSplitIntoContinuationBlocks() throws Exception {
+        byte[] data = lines("first", repeat('z', 70 * BLOCK_SIZE), "last");
+        Path file = write(data, 4 * BLOCK_SIZE);
+        assertRoundTrip(data, file, 3);
+        try (BlockFileReader reader = BlockFileReader.open(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(1, reader.readLines(1, 1, out));
+            assertArrayEquals(lines(repeat('z', 70 * BLOCK_SIZE)), out.toByteArray());
+            out.reset();
+            assertEquals(1, reader.readLines(2, 1, out));
+            assertArrayEquals(lines("last"), out.toByteArray());
+        }
+    }
+}
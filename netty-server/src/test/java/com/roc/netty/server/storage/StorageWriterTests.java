@@ -0,0 +1,73 @@
+package com.roc.netty.server.storage;
+
+import com.roc.netty.server.config.StorageConfig;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageWriterTests {
+
+    private static final int QUEUE_CAPACITY = 4;
+
+    @TempDir
+    Path directory;
+
+    private StorageWriter storageWriter;
+
+    @BeforeEach
+    void start() {
+        StorageConfig config = new StorageConfig();
+        config.setWriterThreads(1);
+        config.setQueueCapacity(QUEUE_CAPACITY);
+        config.setFsync(false);
+        storageWriter = new StorageWriter(config);
+        storageWriter.start();
+    }
+
+    @AfterEach
+    void stop() {
+        storageWriter.stop();
+    }
+
+    @Test
+    @Timeout(30)
+    void appendsBeyondCapacityWithoutBlocking() throws Exception {
+        Path target = directory.resolve("out.log");
+        StorageFile file = storageWriter.open(target, directory.resolve("out.log.part"));
+        int chunks = QUEUE_CAPACITY * 1000;
+        for (int i = 0; i < chunks; i++) {
+            file.append(Unpooled.wrappedBuffer(new byte[]{(byte) i}));
+        }
+        CountDownLatch drained = new CountDownLatch(1);
+        file.whenDrained(drained::countDown);
+        assertTrue(drained.await(10, TimeUnit.SECONDS));
+
+        assertEquals(target, file.commit().get(10, TimeUnit.SECONDS));
+        byte[] written = Files.readAllBytes(target);
+        assertEquals(chunks, written.length);
+        for (int i = 0; i < chunks; i++) {
+            assertEquals((byte) i, written[i]);
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void drainListenerRunsImmediatelyWhenNotBackedUp() throws Exception {
+        StorageFile file = storageWriter.open(directory.resolve("idle.log"), directory.resolve("idle.log.part"));
+        file.commit().get(10, TimeUnit.SECONDS);
+        CountDownLatch drained = new CountDownLatch(1);
+        file.whenDrained(drained::countDown);
+        assertEquals(0, drained.getCount());
+    }
+}
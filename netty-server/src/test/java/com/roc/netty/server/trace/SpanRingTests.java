@@ -0,0 +1,122 @@
+package com.roc.netty.server.trace;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpanRingTests {
+
+    private static Span span(long id) {
+        return new Span(1, id, 0, "test", Span.PRODUCER, (byte) 1, "peer", 0, 0);
+    }
+
+    private static void fill(SpanRing ring, long from, long to) {
+        for (long id = from; id < to; id++) {
+            ring.add(span(id));
+        }
+    }
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(2, new SpanRing(0).capacity());
+        assertEquals(8, new SpanRing(8).capacity());
+        assertEquals(16, new SpanRing(9).capacity());
+    }
+
+    @Test
+    void drainWithoutWraparound() {
+        SpanRing ring = new SpanRing(8);
+        fill(ring, 0, 5);
+        List<Span> out = new ArrayList<>();
+        long[] dropped = new long[1];
+        long cursor = ring.drain(0, out, dropped);
+        assertEquals(5, cursor);
+        assertEquals(5, out.size());
+        assertEquals(0, dropped[0]);
+
+        // 已读到末尾，再读为空
+        out.clear();
+        assertEquals(5, ring.drain(cursor, out, dropped));
+        assertTrue(out.isEmpty());
+    }
+
+    @Test
+    void overwrittenSpansAreCountedAsDropped() {
+        SpanRing ring = new SpanRing(8);
+        fill(ring, 0, 3);
+        List<Span> out = new ArrayList<>();
+        long[] dropped = new long[1];
+        long cursor = ring.drain(0, out, dropped);
+
+        // 绕环两圈多：只剩最近8个，其余计为丢弃
+        fill(ring, 3, 23);
+        out.clear();
+        cursor = ring.drain(cursor, out, dropped);
+        assertEquals(23, cursor);
+        assertEquals(12, dropped[0]);
+        assertEquals(8, out.size());
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(15 + i, out.get(i).getId());
+            assertEquals(15 + i, out.get(i).sequence);
+        }
+        assertEquals(23, ring.written());
+    }
+
+    @Test
+    void recentReturnsNewestFirstAcrossWraparound() {
+        SpanRing ring = new SpanRing(4);
+        fill(ring, 0, 10);
+        List<Span> recent = ring.recent(10);
+        assertEquals(4, recent.size());
+        for (int i = 0; i < recent.size(); i++) {
+            assertEquals(9 - i, recent.get(i).getId());
+        }
+        assertEquals(2, ring.recent(2).size());
+        assertEquals(9, ring.recent(2).get(0).getId());
+    }
+
+    @Test
+    @Timeout(60)
+    void concurrentWritersAreAllAccountedFor() throws InterruptedException {
+        SpanRing ring = new SpanRing(1024);
+        int writers = 4;
+        int perWriter = 50000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            executor.execute(() -> {
+                fill(ring, 0, perWriter);
+                done.countDown();
+            });
+        }
+
+        // 写入期间持续读取：读到的与丢弃的合计等于写入总数，读到的序号严格递增
+        List<Span> out = new ArrayList<>();
+        long[] dropped = new long[1];
+        long cursor = 0;
+        long read = 0;
+        long last = -1;
+        while (done.getCount() > 0 || cursor < ring.written()) {
+            out.clear();
+            cursor = ring.drain(cursor, out, dropped);
+            for (Span span : out) {
+                assertTrue(span.sequence > last);
+                last = span.sequence;
+            }
+            read += out.size();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals((long) writers * perWriter, ring.written());
+        assertEquals(ring.written(), read + dropped[0]);
+    }
+}